@@ -0,0 +1,249 @@
+/**
+ * The chess framework library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the chess framework library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package free.chess;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import free.chess.variants.BothSidesCastlingVariant;
+import free.chess.variants.NoCastlingVariant;
+import free.chess.variants.atomic.Atomic;
+import free.chess.variants.fischerrandom.FischerRandom;
+import free.chess.variants.giveaway.Giveaway;
+import free.chess.variants.kriegspiel.Kriegspiel;
+import free.chess.variants.shatranj.Shatranj;
+import free.chess.variants.suicide.Suicide;
+
+
+/**
+ * Counts the leaf nodes of the move tree (performs "perft") to a given depth
+ * from a set of test positions, checks the counts against their known values
+ * and reports the speed, in nodes per second. Variants with chess move rules
+ * are walked with {@link ChessMoveGenerator}, which yields the legal moves.
+ * Other variants are walked with
+ * {@link WildVariant#getTargetSquares(Position, Square)}, which yields every
+ * move the variant allows its pieces, whether legal or not.
+ * <P>Run with:
+ * <PRE>
+ * java free.chess.Perft [iterations]
+ * </PRE>
+ * The exit code is 1 if any count doesn't match its known value.
+ */
+
+public class Perft{
+
+
+
+  /**
+   * The "Kiwipete" test position, rich in castling, promotions, pins and
+   * en-passant.
+   */
+
+  private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+
+
+  /**
+   * A sparse endgame test position, rich in checks and en-passant.
+   */
+
+  private static final String ENDGAME = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+
+
+
+  /**
+   * A test position with promotions and underpromotions.
+   */
+
+  private static final String PROMOTIONS = "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
+
+
+
+  /**
+   * A test position with a discovered check and a promotion by capture.
+   */
+
+  private static final String MIDDLEGAME = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8";
+
+
+
+  /**
+   * The test cases, each an array of the variant, the FEN of the position
+   * (<code>null</code> for the initial position), the depth and the known
+   * leaf count (-1 if unknown).
+   */
+
+  private static final Object [][] TEST_CASES = new Object[][]{
+    {Chess.getInstance(), null, new Integer(5), new Long(4865609)},
+    {Chess.getInstance(), KIWIPETE, new Integer(4), new Long(4085603)},
+    {Chess.getInstance(), ENDGAME, new Integer(5), new Long(674624)},
+    {Chess.getInstance(), PROMOTIONS, new Integer(4), new Long(422333)},
+    {Chess.getInstance(), MIDDLEGAME, new Integer(4), new Long(2103487)},
+    {new NoCastlingVariant(Chess.INITIAL_POSITION_FEN, "No castling"), null, new Integer(4), new Long(197281)},
+    {new BothSidesCastlingVariant(Chess.INITIAL_POSITION_FEN, "Both sides castling"), null, new Integer(4),
+      new Long(197281)},
+    {Atomic.getInstance(), null, new Integer(3), new Long(8902)},
+    {Suicide.getInstance(), null, new Integer(3), new Long(8902)},
+    {Giveaway.getInstance(), null, new Integer(3), new Long(8902)},
+    {Kriegspiel.getInstance(), null, new Integer(3), new Long(8902)},
+    {Shatranj.getInstance(), null, new Integer(3), new Long(4176)},
+    {FischerRandom.getInstance(), null, new Integer(3), new Long(-1)},
+  };
+
+
+
+  /**
+   * Returns the amount of leaf nodes at the specified depth of the legal move
+   * tree of the specified position, which must be of a variant with chess move
+   * rules.
+   */
+
+  public static long perft(Position pos, int depth){
+    if (depth == 0)
+      return 1;
+
+    Position [] positions = new Position[depth];
+    int [][] moves = new int[depth][ChessMoveGenerator.MAX_MOVE_COUNT];
+    positions[0] = pos;
+    for (int i = 1; i < depth; i++)
+      positions[i] = new Position(pos);
+
+    return perft(positions, moves, 0, new ChessMoveGenerator());
+  }
+
+
+
+  /**
+   * Returns the amount of leaf nodes below the position at the specified ply
+   * of the specified position stack, which is as deep as the tree.
+   */
+
+  private static long perft(Position [] positions, int [][] moves, int ply, ChessMoveGenerator generator){
+    Position pos = positions[ply];
+    int [] plyMoves = moves[ply];
+    int moveCount = generator.generateLegalMoves(pos, plyMoves);
+    if (ply == positions.length - 1)
+      return moveCount;
+
+    Position child = positions[ply + 1];
+    long nodes = 0;
+    for (int i = 0; i < moveCount; i++){
+      child.copyFrom(pos);
+      child.makeMove(PackedMove.toMove(child, plyMoves[i]));
+      nodes += perft(positions, moves, ply + 1, generator);
+    }
+
+    return nodes;
+  }
+
+
+
+  /**
+   * Returns the amount of leaf nodes at the specified depth of the tree of
+   * moves to the target squares of the pieces of the player to move, as
+   * returned by {@link WildVariant#getTargetSquares(Position, Square)}. This
+   * works for any variant, but for most, the moves aren't necessarily legal.
+   */
+
+  public static long targetSquarePerft(Position pos, int depth){
+    if (depth == 0)
+      return 1;
+
+    WildVariant variant = pos.getVariant();
+    Player player = pos.getCurrentPlayer();
+    Position child = (depth == 1) ? null : new Position(variant);
+    long nodes = 0;
+    for (int squareIndex = 0; squareIndex < 64; squareIndex++){
+      Square square = PackedMove.getSquare(squareIndex);
+      Piece piece = pos.getPieceAt(square);
+      if ((piece == null) || !player.equals(piece.getPlayer()))
+        continue;
+
+      Collection targetSquares = variant.getTargetSquares(pos, square);
+      for (Iterator i = targetSquares.iterator(); i.hasNext();){
+        Square targetSquare = (Square)i.next();
+        Piece [] promotionTargets = variant.getPromotionTargets(pos, square, targetSquare);
+        int promotionCount = (promotionTargets == null) ? 1 : promotionTargets.length;
+        for (int j = 0; j < promotionCount; j++){
+          if (depth == 1)
+            nodes++;
+          else{
+            Piece promotionTarget = (promotionTargets == null) ? null : promotionTargets[j];
+            child.copyFrom(pos);
+            child.makeMove(variant.createMove(child, square, targetSquare, promotionTarget, null));
+            nodes += targetSquarePerft(child, depth - 1);
+          }
+        }
+      }
+    }
+
+    return nodes;
+  }
+
+
+
+  /**
+   * Runs the test cases.
+   */
+
+  public static void main(String [] args) throws PositionFormatException{
+    int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : 1;
+
+    boolean isFailed = false;
+    for (int i = 0; i < TEST_CASES.length; i++){
+      WildVariant variant = (WildVariant)TEST_CASES[i][0];
+      String fen = (String)TEST_CASES[i][1];
+      int depth = ((Integer)TEST_CASES[i][2]).intValue();
+      long expected = ((Long)TEST_CASES[i][3]).longValue();
+
+      boolean isLegal = (variant instanceof ChesslikeGenericVariant) &&
+        ((ChesslikeGenericVariant)variant).hasChessMoveRules();
+
+      long nodes = 0;
+      long bestTime = Long.MAX_VALUE;
+      for (int j = 0; j < iterations; j++){
+        Position pos = new Position(variant);
+        if (fen != null)
+          pos.setFEN(fen);
+
+        long startTime = System.nanoTime();
+        nodes = isLegal ? perft(pos, depth) : targetSquarePerft(pos, depth);
+        bestTime = Math.min(bestTime, System.nanoTime() - startTime);
+      }
+
+      boolean isCorrect = (expected == -1) || (nodes == expected);
+      isFailed |= !isCorrect;
+
+      System.out.println(variant.getName() + (fen == null ? "" : " [" + fen + "]") +
+        (isLegal ? "" : " (target squares)") + ", depth " + depth + ": " + nodes + " nodes" +
+        (isCorrect ? "" : ", FAILED - expected " + expected) +
+        ", " + (nodes * 1000000000L / Math.max(1, bestTime)) + " nodes/sec");
+    }
+
+    if (isFailed)
+      System.exit(1);
+  }
+
+
+
+}
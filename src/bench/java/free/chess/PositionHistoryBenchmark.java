@@ -0,0 +1,134 @@
+/**
+ * The chess framework library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the chess framework library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package free.chess;
+
+import java.util.Random;
+
+
+/**
+ * Measures how long it takes to obtain the position after a random ply of a
+ * long game with {@link PositionHistory}, compared to replaying the moves from
+ * the initial position. The game is made of random legal moves; if it ends
+ * before reaching the requested length, another one is played.
+ * <P>Run with:
+ * <PRE>
+ * java free.chess.PositionHistoryBenchmark [plies] [lookups]
+ * </PRE>
+ */
+
+public class PositionHistoryBenchmark{
+
+
+
+  /**
+   * Runs the benchmark.
+   */
+
+  public static void main(String [] args){
+    if (args.length > 2){
+      System.err.println("Usage: java free.chess.PositionHistoryBenchmark [plies] [lookups]");
+      System.exit(1);
+    }
+
+    int plyCount = (args.length > 0) ? Integer.parseInt(args[0]) : 300;
+    int lookupCount = (args.length > 1) ? Integer.parseInt(args[1]) : 100000;
+
+    Position initialPosition = new Position(Chess.getInstance());
+    Move [] moves = null;
+    for (long seed = 0; moves == null; seed++)
+      moves = playRandomGame(initialPosition, plyCount, new Random(seed));
+
+    long startTime = System.nanoTime();
+    PositionHistory history = new PositionHistory(initialPosition);
+    for (int i = 0; i < moves.length; i++)
+      history.addMove(moves[i]);
+    long buildTime = System.nanoTime() - startTime;
+
+    System.out.println(plyCount + " plies, " + history.getCheckpointCount() + " snapshots, a snapshot every " +
+      history.getCheckpointInterval() + " plies, built in " + (buildTime / 1000) + " us");
+
+    // Check the history against replaying
+    Position expected = new Position(initialPosition);
+    Position actual = new Position(initialPosition);
+    for (int ply = 0; ply <= plyCount; ply++){
+      history.getPosition(ply, actual);
+      if (!expected.getFEN().equals(actual.getFEN()))
+        throw new IllegalStateException("Wrong position after " + ply + " plies: " + actual.getFEN());
+      if (ply < plyCount)
+        expected.makeMove(moves[ply]);
+    }
+
+    int [] plies = new int[lookupCount];
+    Random random = new Random(1);
+    for (int i = 0; i < lookupCount; i++)
+      plies[i] = random.nextInt(plyCount + 1);
+
+    Position position = new Position(initialPosition);
+    for (int iteration = 0; iteration < 3; iteration++){
+      startTime = System.nanoTime();
+      for (int i = 0; i < lookupCount; i++)
+        history.getPosition(plies[i], position);
+      long historyTime = System.nanoTime() - startTime;
+
+      startTime = System.nanoTime();
+      for (int i = 0; i < lookupCount; i++){
+        position.copyFrom(initialPosition);
+        for (int j = 0; j < plies[i]; j++)
+          position.makeMove(moves[j]);
+      }
+      long replayTime = System.nanoTime() - startTime;
+
+      System.out.println("Iteration " + (iteration + 1) + ": " +
+        (historyTime / lookupCount) + " ns per lookup with history, " +
+        (replayTime / lookupCount) + " ns per lookup by replaying");
+    }
+  }
+
+
+
+  /**
+   * Plays a game of random legal moves of the specified length from the
+   * specified position, and returns its moves, or <code>null</code> if the
+   * game ended sooner.
+   */
+
+  private static Move [] playRandomGame(Position initialPosition, int plyCount, Random random){
+    ChessMoveGenerator generator = new ChessMoveGenerator();
+    int [] legalMoves = new int[ChessMoveGenerator.MAX_MOVE_COUNT];
+    Position position = new Position(initialPosition);
+    Move [] moves = new Move[plyCount];
+    for (int i = 0; i < plyCount; i++){
+      int moveCount = generator.generateLegalMoves(position, legalMoves);
+      if (moveCount == 0)
+        return null;
+
+      moves[i] = PackedMove.toMove(position, legalMoves[random.nextInt(moveCount)]);
+      position.makeMove(moves[i]);
+    }
+
+    return moves;
+  }
+
+
+
+}
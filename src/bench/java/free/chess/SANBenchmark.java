@@ -0,0 +1,143 @@
+/**
+ * The chess framework library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the chess framework library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package free.chess;
+
+import java.util.Random;
+
+
+/**
+ * Measures how fast {@link SANCodec} encodes and decodes moves, and checks
+ * that decoding the SAN of each move yields the move back. The moves are those
+ * of games made of random legal moves (which, being random, are rich in
+ * ambiguous piece moves, promotions and mates).
+ * <P>Run with:
+ * <PRE>
+ * java free.chess.SANBenchmark [games] [iterations]
+ * </PRE>
+ */
+
+public class SANBenchmark{
+
+
+
+  /**
+   * The maximum length of the played games, in plies.
+   */
+
+  private static final int MAX_PLY_COUNT = 300;
+
+
+
+  /**
+   * Runs the benchmark.
+   */
+
+  public static void main(String [] args){
+    if (args.length > 2){
+      System.err.println("Usage: java free.chess.SANBenchmark [games] [iterations]");
+      System.exit(1);
+    }
+
+    int gameCount = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+    int iterationCount = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+
+    // Play the games, keeping the position before each move, and the move
+    ChessMoveGenerator generator = new ChessMoveGenerator();
+    int [] legalMoves = new int[ChessMoveGenerator.MAX_MOVE_COUNT];
+    Random random = new Random(0);
+    IntMoveList moves = new IntMoveList();
+    Position [] positions = new Position[gameCount * MAX_PLY_COUNT];
+    for (int i = 0; i < gameCount; i++){
+      Position position = new Position(Chess.getInstance());
+      for (int ply = 0; ply < MAX_PLY_COUNT; ply++){
+        int moveCount = generator.generateLegalMoves(position, legalMoves);
+        if (moveCount == 0)
+          break;
+
+        int move = legalMoves[random.nextInt(moveCount)];
+        positions[moves.size()] = new Position(position);
+        moves.add(move);
+        position.makeMove(PackedMove.toMove(position, move));
+      }
+    }
+
+    int moveCount = moves.size();
+    SANCodec codec = new SANCodec();
+    String [] sans = new String[moveCount];
+    int checkCount = 0, mateCount = 0, disambiguationCount = 0;
+    for (int i = 0; i < moveCount; i++){
+      sans[i] = codec.toSAN(positions[i], moves.get(i));
+      if (codec.parseSAN(positions[i], sans[i]) != moves.get(i))
+        throw new IllegalStateException("Wrong decoding of " + sans[i] + " in " + positions[i].getFEN());
+
+      char lastChar = sans[i].charAt(sans[i].length() - 1);
+      if (lastChar == '+')
+        checkCount++;
+      else if (lastChar == '#')
+        mateCount++;
+      if (isDisambiguated(sans[i]))
+        disambiguationCount++;
+    }
+
+    System.out.println(moveCount + " moves in " + gameCount + " games, " + checkCount + " checks, " +
+      mateCount + " mates, " + disambiguationCount + " disambiguated moves");
+
+    for (int iteration = 0; iteration < iterationCount; iteration++){
+      long startTime = System.nanoTime();
+      for (int i = 0; i < moveCount; i++)
+        codec.toSAN(positions[i], moves.get(i));
+      long encodeTime = System.nanoTime() - startTime;
+
+      startTime = System.nanoTime();
+      for (int i = 0; i < moveCount; i++)
+        codec.parseSAN(positions[i], sans[i]);
+      long decodeTime = System.nanoTime() - startTime;
+
+      System.out.println("Iteration " + (iteration + 1) + ": " +
+        (encodeTime / moveCount) + " ns per encoded move, " +
+        (decodeTime / moveCount) + " ns per decoded move");
+    }
+  }
+
+
+
+  /**
+   * Returns whether the specified SAN of a piece move has a disambiguation.
+   */
+
+  private static boolean isDisambiguated(String san){
+    if ("NBRQK".indexOf(san.charAt(0)) == -1)
+      return false;
+
+    int end = san.length();
+    while ("+#".indexOf(san.charAt(end - 1)) != -1)
+      end--;
+    if (san.charAt(end - 3) == 'x')
+      end--;
+
+    return end > 3;
+  }
+
+
+
+}
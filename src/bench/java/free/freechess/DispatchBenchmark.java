@@ -0,0 +1,131 @@
+/**
+ * The freechess.org connection library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002, 2003 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The freechess.org connection library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The freechess.org connection library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the freechess.org connection library; if not, write to the Free
+ * Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package free.freechess;
+
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Vector;
+
+import free.util.ReplaySocket;
+
+
+/**
+ * Measures how the lines of a recorded freechess.org session are dispatched
+ * to their handlers by {@link FreechessConnection}. The lines are run through
+ * a bare <code>FreechessConnection</code>, and the amount of handler
+ * invocations per line is reported, along with the amount it would take to
+ * offer each line to all the handlers in order, and the time spent per line.
+ * Sessions can be recorded by running Jin with the
+ * <code>free.jin.recordSession</code> system property set to the file to
+ * record into; each session is recorded into a file of its own, named as
+ * described in {@link free.util.SessionRecorder#createForFile(String)}.
+ * <P>Run with:
+ * <PRE>
+ * java free.freechess.DispatchBenchmark &lt;recording&gt; [iterations]
+ * </PRE>
+ */
+
+public class DispatchBenchmark{
+
+
+
+  /**
+   * Runs the benchmark.
+   */
+
+  public static void main(String [] args) throws IOException{
+    if ((args.length < 1) || (args.length > 2)){
+      System.err.println("Usage: java free.freechess.DispatchBenchmark <recording> [iterations]");
+      System.exit(1);
+    }
+
+    int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+    Vector lines = readLines(args[0]);
+    System.out.println("Read " + lines.size() + " lines");
+
+    for (int i = 0; i < iterations; i++){
+      FreechessConnection conn = new FreechessConnection("guest", null, null);
+      LineDispatcher dispatcher = conn.getLineDispatcher();
+
+      int errorCount = 0;
+      long startTime = System.nanoTime();
+      for (int j = 0; j < lines.size(); j++){
+        try{
+          conn.handleMessage(lines.elementAt(j));
+        } catch (RuntimeException e){
+            // Some handlers rely on state established when actually connected
+            errorCount++;
+          }
+      }
+      long time = System.nanoTime() - startTime;
+
+      long lineCount = dispatcher.getLineCount();
+      System.out.println("Iteration " + (i + 1) + ": " +
+        "invocations/line: " + ratio(dispatcher.getInvocationCount(), lineCount) +
+        ", sequential invocations/line: " + ratio(dispatcher.getSequentialInvocationCount(), lineCount) +
+        ", ns/line: " + (lineCount == 0 ? 0 : time / lineCount) +
+        (errorCount == 0 ? "" : ", errors: " + errorCount));
+    }
+  }
+
+
+
+  /**
+   * Reads the lines of the session recorded in the specified file.
+   */
+
+  private static Vector readLines(String filename) throws IOException{
+    ReplaySocket socket = new ReplaySocket(new FileInputStream(filename), 0);
+    try{
+      InputStream in = socket.getInputStream();
+      LineFramer lineFramer = new LineFramer();
+      Vector lines = new Vector();
+      try{
+        String line;
+        while ((line = lineFramer.readLine(in)) != null)
+          lines.addElement(line);
+      } catch (EOFException e){} // The recording was cut short, use what we have
+
+      return lines;
+    } finally{
+        socket.close();
+      }
+  }
+
+
+
+  /**
+   * Returns the ratio of the specified numbers, formatted with two decimal
+   * digits.
+   */
+
+  private static String ratio(long a, long b){
+    return b == 0 ? "0" : String.valueOf(Math.round(100.0 * a / b) / 100.0);
+  }
+
+
+
+}
@@ -0,0 +1,217 @@
+/**
+ * The freechess.org connection library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002, 2003 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The freechess.org connection library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The freechess.org connection library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the freechess.org connection library; if not, write to the Free
+ * Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package free.freechess;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Vector;
+
+import free.util.ReplaySocket;
+
+
+/**
+ * Measures how fast {@link LineFramer} frames the lines of a recorded
+ * freechess.org session, compared to the byte-at-a-time framing
+ * <code>FreechessConnection</code> did before it, which appended each byte to
+ * a <code>StringBuffer</code> and compared the buffer's contents to the prompt
+ * after every byte. Both framers read the recorded data from memory, and are
+ * first checked to frame the same lines. Sessions can be recorded by running
+ * Jin with the <code>free.jin.recordSession</code> system property set to the
+ * file to record into; each session is recorded into a file of its own, named
+ * as described in {@link free.util.SessionRecorder#createForFile(String)}.
+ * <P>Run with:
+ * <PRE>
+ * java free.freechess.LineFramerBenchmark &lt;recording&gt; [iterations]
+ * </PRE>
+ */
+
+public class LineFramerBenchmark{
+
+
+
+  /**
+   * Runs the benchmark.
+   */
+
+  public static void main(String [] args) throws IOException{
+    if ((args.length < 1) || (args.length > 2)){
+      System.err.println("Usage: java free.freechess.LineFramerBenchmark <recording> [iterations]");
+      System.exit(1);
+    }
+
+    int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+    byte [] data = readRecording(args[0]);
+    Vector lines = frameWithLineFramer(data);
+    System.out.println("Read " + data.length + " bytes, " + lines.size() + " lines");
+
+    Vector oldLines = frameByteAtATime(data);
+    if (!oldLines.equals(lines)){
+      System.err.println("The framers disagree: " + oldLines.size() + " lines vs. " + lines.size() + " lines");
+      System.exit(1);
+    }
+
+    for (int i = 0; i < iterations; i++){
+      long startTime = System.nanoTime();
+      frameByteAtATime(data);
+      long oldTime = System.nanoTime() - startTime;
+
+      startTime = System.nanoTime();
+      frameWithLineFramer(data);
+      long newTime = System.nanoTime() - startTime;
+
+      System.out.println("Iteration " + (i + 1) + ": " +
+        "byte-at-a-time MB/s: " + throughput(data.length, oldTime) +
+        ", LineFramer MB/s: " + throughput(data.length, newTime) +
+        ", speedup: " + (newTime == 0 ? "-" : String.valueOf(Math.round(10.0 * oldTime / newTime) / 10.0)));
+    }
+  }
+
+
+
+  /**
+   * Reads the data sent by the server in the session recorded in the specified
+   * file.
+   */
+
+  private static byte [] readRecording(String filename) throws IOException{
+    ReplaySocket socket = new ReplaySocket(new FileInputStream(filename), 0);
+    try{
+      InputStream in = socket.getInputStream();
+      ByteArrayOutputStream data = new ByteArrayOutputStream();
+      byte [] buf = new byte[8192];
+      try{
+        int count;
+        while ((count = in.read(buf, 0, buf.length)) != -1)
+          data.write(buf, 0, count);
+      } catch (EOFException e){} // The recording was cut short, use what we have
+
+      return data.toByteArray();
+    } finally{
+        socket.close();
+      }
+  }
+
+
+
+  /**
+   * Frames the lines of the specified data with a {@link LineFramer}.
+   */
+
+  private static Vector frameWithLineFramer(byte [] data) throws IOException{
+    InputStream in = new ByteArrayInputStream(data);
+    LineFramer lineFramer = new LineFramer();
+    Vector lines = new Vector();
+    String line;
+    while ((line = lineFramer.readLine(in)) != null)
+      lines.addElement(line);
+
+    return lines;
+  }
+
+
+
+  /**
+   * Frames the lines of the specified data the way
+   * <code>FreechessConnection</code> did before {@link LineFramer}.
+   */
+
+  private static Vector frameByteAtATime(byte [] data) throws IOException{
+    PushbackInputStream in = new PushbackInputStream(new BufferedInputStream(new ByteArrayInputStream(data)));
+    Vector lines = new Vector();
+    String line;
+    while ((line = readLineByteAtATime(in)) != null)
+      lines.addElement(line);
+
+    return lines;
+  }
+
+
+
+  /**
+   * Reads a single line from the specified stream, a byte at a time. Returns
+   * <code>null</code> if the end of the stream is reached.
+   */
+
+  private static String readLineByteAtATime(PushbackInputStream in) throws IOException{
+    StringBuffer buf = new StringBuffer();
+
+    boolean lineStartsWithPrompt = false;
+    while (true){
+      int b = in.read();
+
+      if (b < 0){
+        if (buf.length() == 0) // Clean disconnection
+          return null;
+        break;
+      }
+
+      // End of line
+      if (b == '\n'){
+        // FICS uses \n\r for an end-of-line marker!?
+        // Eat the following '\r', if there is one
+        b = in.read();
+        if ((b > 0) && (b != '\r'))
+          in.unread(b);
+
+        // Ignore all-prompt lines
+        if (lineStartsWithPrompt && (buf.length() == 0)){
+          lineStartsWithPrompt = false;
+          continue;
+        }
+        else
+          break;
+      }
+
+      buf.append((char)b);
+
+      // Filter out the prompt
+      if (buf.toString().equals("fics% ")){
+        buf.setLength(0);
+        lineStartsWithPrompt = true;
+      }
+    }
+
+    return buf.toString();
+  }
+
+
+
+  /**
+   * Returns the throughput, in megabytes per second, of processing the
+   * specified amount of bytes in the specified amount of nanoseconds.
+   */
+
+  private static String throughput(long bytes, long nanos){
+    return nanos == 0 ? "-" : String.valueOf(Math.round(10.0 * bytes * 1000 / nanos) / 10.0);
+  }
+
+
+
+}
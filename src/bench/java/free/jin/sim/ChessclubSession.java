@@ -0,0 +1,279 @@
+/**
+ * Jin - a chess client for internet chess servers.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package free.jin.sim;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.BitSet;
+import java.util.StringTokenizer;
+
+import free.chessclub.ChessclubConstants;
+import free.chessclub.level2.Datagram;
+
+
+/**
+ * A {@link SimulatorSession} speaking the chessclub.com level 2 datagram
+ * protocol. Only the datagrams the client turned on are sent, with the
+ * optional fields the client asked for.
+ */
+
+class ChessclubSession extends SimulatorSession{
+
+
+
+  /**
+   * The datagram delimiter character (^Y).
+   */
+
+  private static final char DG_DELIM = '\u0019';
+
+
+
+  /**
+   * The level 2 settings requested by the client.
+   */
+
+  private final BitSet level2Settings = new BitSet();
+
+
+
+  /**
+   * Creates a new <code>ChessclubSession</code> for the specified client of
+   * the specified simulator.
+   */
+
+  public ChessclubSession(IcsSimulator simulator, Socket socket) throws IOException{
+    super(simulator, socket);
+  }
+
+
+
+  /**
+   * Sends the login prompt.
+   */
+
+  @Override
+  protected void sendWelcome() throws IOException{
+    write("Welcome to the simulated Internet Chess Club\n\nlogin: ");
+  }
+
+
+
+  /**
+   * Processes level1/level2 settings, logs the client in on the first other
+   * line, and then responds to <code>set-2</code> commands.
+   */
+
+  @Override
+  protected void processCommand(String command) throws IOException{
+    String tag = null;
+    if (command.startsWith("`")){
+      int tagEnd = command.indexOf('`', 1);
+      if (tagEnd != -1){
+        tag = command.substring(1, tagEnd);
+        command = command.substring(tagEnd + 1);
+      }
+    }
+    if (command.startsWith("multi "))
+      command = command.substring("multi ".length());
+    command = command.trim();
+
+    if (command.startsWith("level1="))
+      return;
+    else if (command.startsWith("level2settings=")){
+      String settings = command.substring("level2settings=".length());
+      for (int i = 0; i < settings.length(); i++)
+        if (settings.charAt(i) == '1')
+          level2Settings.set(i);
+    }
+    else if (getUsername() == null){
+      if (command.length() == 0)
+        return;
+
+      String username = new StringTokenizer(command, " ").nextToken();
+      writeDatagram(Datagram.DG_WHO_AM_I, new String[]{username, "{}"});
+      loginSucceeded(username);
+    }
+    else if (command.startsWith("set-2 ")){
+      StringTokenizer tokens = new StringTokenizer(command, " ");
+      tokens.nextToken();
+      try{
+        int dgNumber = Integer.parseInt(tokens.nextToken());
+        boolean state = tokens.nextToken().equals("1");
+        synchronized(level2Settings){
+          if (state)
+            level2Settings.set(dgNumber);
+          else
+            level2Settings.clear(dgNumber);
+        }
+
+        String response = datagram(Datagram.DG_SET2, new String[]{String.valueOf(dgNumber), state ? "1" : "0"});
+        if ((dgNumber == Datagram.DG_DUMMY_RESPONSE) && state)
+          response += datagram(Datagram.DG_DUMMY_RESPONSE, new String[0]);
+        write(DG_DELIM + "[0 " + getUsername() + (tag == null ? "" : " " + tag) + "\r\n" +
+          response + DG_DELIM + "]");
+      } catch (RuntimeException e){} // Bad command; a real server would complain
+    }
+  }
+
+
+
+  /**
+   * Returns whether the client turned on the specified datagram.
+   */
+
+  private boolean isDGOn(int dgNumber){
+    synchronized(level2Settings){
+      return level2Settings.get(dgNumber);
+    }
+  }
+
+
+
+  /**
+   * Returns the string representing the datagram with the specified id and
+   * (already encoded) fields.
+   */
+
+  private static String datagram(int id, String [] fields){
+    StringBuffer buf = new StringBuffer();
+    buf.append(DG_DELIM).append('(').append(id);
+    for (int i = 0; i < fields.length; i++)
+      buf.append(' ').append(fields[i]);
+    buf.append(DG_DELIM).append(')');
+
+    return buf.toString();
+  }
+
+
+
+  /**
+   * Sends the specified datagram, if the client turned it on.
+   */
+
+  private void writeDatagram(int id, String [] fields) throws IOException{
+    if ((id == Datagram.DG_WHO_AM_I) || isDGOn(id))
+      write(datagram(id, fields));
+  }
+
+
+
+  /**
+   * Sends DG_STARTED_OBSERVING, DG_FLIP and DG_POSITION_BEGIN for the
+   * specified game, followed by a DG_SEND_MOVES for each move already played
+   * in it.
+   */
+
+  @Override
+  protected void sendGameStarted(SimulatedGame game) throws IOException{
+    String gameNumber = String.valueOf(game.getNumber());
+    int plyCount = game.getPlyCount();
+    writeDatagram(Datagram.DG_STARTED_OBSERVING, new String[]{
+      gameNumber, game.getWhiteName(), game.getBlackName(), "0", "Blitz", "1", "3", "0", "3", "0",
+      "1", "{}", "1500", "1500", gameNumber, "{}", "{}", "0", "0", "0", "{}"});
+    writeDatagram(Datagram.DG_FLIP, new String[]{gameNumber, "0"});
+    writeDatagram(Datagram.DG_POSITION_BEGIN, new String[]{gameNumber, "{}", String.valueOf(plyCount)});
+
+    for (int ply = 0; ply < plyCount; ply++)
+      sendMove(game, ply, ChessclubConstants.INITIAL_MOVE);
+  }
+
+
+
+  /**
+   * Sends DG_SEND_MOVES for the last move in the specified game.
+   */
+
+  @Override
+  protected void sendMove(SimulatedGame game) throws IOException{
+    sendMove(game, game.getPlyCount() - 1, ChessclubConstants.PLAYED_MOVE);
+  }
+
+
+
+  /**
+   * Sends DG_SEND_MOVES for the move at the specified ply (0-based) in the
+   * specified game, with the specified variation code and the fields requested
+   * by the client.
+   */
+
+  private void sendMove(SimulatedGame game, int ply, int variationCode) throws IOException{
+    String [] fields = new String[6];
+    int count = 0;
+    fields[count++] = String.valueOf(game.getNumber());
+    if (isDGOn(Datagram.DG_MOVE_ALGEBRAIC))
+      fields[count++] = game.getMoveSAN(ply);
+    if (isDGOn(Datagram.DG_MOVE_SMITH))
+      fields[count++] = game.getMoveFrom(ply) + game.getMoveTo(ply);
+    if (isDGOn(Datagram.DG_MOVE_TIME))
+      fields[count++] = "1";
+    if (isDGOn(Datagram.DG_MOVE_CLOCK))
+      fields[count++] = "180";
+    if (isDGOn(Datagram.DG_IS_VARIATION))
+      fields[count++] = String.valueOf(variationCode);
+
+    String [] sentFields = new String[count];
+    System.arraycopy(fields, 0, sentFields, 0, count);
+    writeDatagram(Datagram.DG_SEND_MOVES, sentFields);
+  }
+
+
+
+  /**
+   * Sends DG_SEEK.
+   */
+
+  @Override
+  protected void sendSeekAdded(int index, String name, int rating) throws IOException{
+    writeDatagram(Datagram.DG_SEEK, new String[]{
+      String.valueOf(index), name, "{}", String.valueOf(rating),
+      String.valueOf(ChessclubConstants.ESTABLISHED_RATING_TYPE), "0", "Blitz", "3", "0", "1", "-1",
+      "0", "9999", "1", "0", "{}"});
+  }
+
+
+
+  /**
+   * Sends DG_SEEK_REMOVED.
+   */
+
+  @Override
+  protected void sendSeekRemoved(int index) throws IOException{
+    writeDatagram(Datagram.DG_SEEK_REMOVED, new String[]{String.valueOf(index), "0"});
+  }
+
+
+
+  /**
+   * Sends DG_CHANNEL_TELL.
+   */
+
+  @Override
+  protected void sendChannelTell(int channel, String name, String message) throws IOException{
+    writeDatagram(Datagram.DG_CHANNEL_TELL, new String[]{
+      String.valueOf(channel), name, "{}", "{" + message + "}",
+      String.valueOf(ChessclubConstants.REGULAR_CHANNEL_TELL)});
+  }
+
+
+
+}
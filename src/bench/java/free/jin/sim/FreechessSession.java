@@ -0,0 +1,191 @@
+/**
+ * Jin - a chess client for internet chess servers.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package free.jin.sim;
+
+import java.io.IOException;
+import java.net.Socket;
+
+import free.freechess.Ivar;
+
+
+/**
+ * A {@link SimulatorSession} speaking the freechess.org text protocol, with
+ * style 12 boards, gameinfo lines and seekinfo lines.
+ */
+
+class FreechessSession extends SimulatorSession{
+
+
+
+  /**
+   * The end-of-line marker used by the server.
+   */
+
+  private static final String EOL = "\n\r";
+
+
+
+  /**
+   * The prompt.
+   */
+
+  private static final String PROMPT = "fics% ";
+
+
+
+  /**
+   * Whether the client turned on the compressmove ivar, in which case moves
+   * are sent as delta-boards.
+   */
+
+  private volatile boolean isCompressMove = false;
+
+
+
+  /**
+   * Creates a new <code>FreechessSession</code> for the specified client of
+   * the specified simulator.
+   */
+
+  public FreechessSession(IcsSimulator simulator, Socket socket) throws IOException{
+    super(simulator, socket);
+  }
+
+
+
+  /**
+   * Sends the login prompt.
+   */
+
+  @Override
+  protected void sendWelcome() throws IOException{
+    write("Welcome to the simulated Free Internet Chess Server" + EOL + EOL + "login: ");
+  }
+
+
+
+  /**
+   * Logs the client in on the first line which isn't an ivar setting, and
+   * ignores everything else.
+   */
+
+  @Override
+  protected void processCommand(String command) throws IOException{
+    if (getUsername() == null){
+      if (command.startsWith("%b")){
+        int index = "%b".length() + Ivar.COMPRESSMOVE.getIndex();
+        isCompressMove = (command.length() > index) && (command.charAt(index) == '1');
+        return;
+      }
+      if (command.trim().length() == 0)
+        return;
+
+      String username = command.trim();
+      write("**** Starting FICS session as " + username + " ****" + EOL + EOL + PROMPT);
+      loginSucceeded(username);
+    }
+    else
+      write(PROMPT);
+  }
+
+
+
+  /**
+   * Sends the gameinfo line and the initial board of the specified game.
+   */
+
+  @Override
+  protected void sendGameStarted(SimulatedGame game) throws IOException{
+    write("<g1> " + game.getNumber() + " p=0 t=blitz r=1 u=1,1 it=180,0 i=180,0 pt=0 rt=1500,1500 ts=1,1" + EOL +
+      style12(game) + EOL + PROMPT);
+  }
+
+
+
+  /**
+   * Sends the board after the last move in the specified game, or a
+   * delta-board if the client turned on compressmove.
+   */
+
+  @Override
+  protected void sendMove(SimulatedGame game) throws IOException{
+    if (isCompressMove)
+      write("<d1> " + game.getNumber() + " " + game.getPlyCount() + " " + game.getLastMoveSAN() + " " +
+        game.getLastMoveFrom() + game.getLastMoveTo() + " 1000 180000" + EOL + PROMPT);
+    else
+      write(style12(game) + EOL + PROMPT);
+  }
+
+
+
+  /**
+   * Returns the style 12 line for the current position in the specified
+   * game.
+   */
+
+  private static String style12(SimulatedGame game){
+    int plyCount = game.getPlyCount();
+    String lastMove = (plyCount == 0) ? "none (0:00.000) none" :
+      "N/" + game.getLastMoveFrom() + "-" + game.getLastMoveTo() + " (0:01.000) " + game.getLastMoveSAN();
+
+    return "<12> " + game.getStyle12Board() + " " + (game.isWhiteToMove() ? "W" : "B") + " -1 1 1 1 1 " +
+      plyCount + " " + game.getNumber() + " " + game.getWhiteName() + " " + game.getBlackName() +
+      " 0 3 0 39 39 180000 180000 " + (plyCount / 2 + 1) + " " + lastMove + " 0 1 0";
+  }
+
+
+
+  /**
+   * Sends a seekinfo line.
+   */
+
+  @Override
+  protected void sendSeekAdded(int index, String name, int rating) throws IOException{
+    write("<s> " + index + " w=" + name + " ti=00 rt=" + rating + "  t=3 i=0 r=r tp=blitz c=? rr=0-9999 a=t f=f" +
+      EOL + PROMPT);
+  }
+
+
+
+  /**
+   * Sends a seek removal line.
+   */
+
+  @Override
+  protected void sendSeekRemoved(int index) throws IOException{
+    write("<sr> " + index + EOL + PROMPT);
+  }
+
+
+
+  /**
+   * Sends a channel tell.
+   */
+
+  @Override
+  protected void sendChannelTell(int channel, String name, String message) throws IOException{
+    write(name + "(" + channel + "): " + message + EOL + PROMPT);
+  }
+
+
+
+}
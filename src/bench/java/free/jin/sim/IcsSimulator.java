@@ -0,0 +1,367 @@
+/**
+ * Jin - a chess client for internet chess servers.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package free.jin.sim;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import free.jin.chessclub.JinChessclubConnection;
+import free.jin.event.ChatEvent;
+import free.jin.event.ChatListener;
+import free.jin.event.GameAdapter;
+import free.jin.event.ListenerManager;
+import free.jin.event.MoveListLoadedEvent;
+import free.jin.event.MoveMadeEvent;
+import free.jin.event.SeekEvent;
+import free.jin.event.SeekListener;
+import free.jin.event.SeekListenerManager;
+import free.jin.freechess.JinFreechessConnection;
+
+
+/**
+ * A local server simulating either freechess.org or chessclub.com closely
+ * enough for {@link JinFreechessConnection} and {@link JinChessclubConnection}
+ * to log in and run against it. Every client which logs in is made to observe
+ * a configurable amount of games, and is sent moves in those games, seeks and
+ * channel tells at configurable rates. This allows load and latency testing
+ * without the real servers.
+ * <P>Run with:
+ * <PRE>
+ * java free.jin.sim.IcsSimulator fics|icc [-port n] [-games n] [-moveRate r]
+ *   [-seekRate r] [-chatRate r] [-history plies] [-client] [-reportInterval seconds]
+ * </PRE>
+ * Rates are per second; the move rate is per game. The history is the amount of
+ * plies already played in each game when the client starts observing it. If <code>-client</code> is
+ * specified, an in-process Jin connection logs into the simulator and the time
+ * from the moment the server sends each move until the client fires the
+ * corresponding <code>MoveMadeEvent</code> is reported periodically.
+ */
+
+public class IcsSimulator{
+
+
+
+  /**
+   * Whether we simulate chessclub.com (as opposed to freechess.org).
+   */
+
+  private final boolean isChessclub;
+
+
+
+  /**
+   * The server socket.
+   */
+
+  private final ServerSocket serverSocket;
+
+
+
+  /**
+   * The amount of games each client observes.
+   */
+
+  private final int gameCount;
+
+
+
+  /**
+   * The amount of moves per second made in each game.
+   */
+
+  private final double moveRate;
+
+
+
+  /**
+   * The amount of seeks sent per second.
+   */
+
+  private final double seekRate;
+
+
+
+  /**
+   * The amount of chat lines sent per second.
+   */
+
+  private final double chatRate;
+
+
+
+  /**
+   * The amount of plies already played in each game when a client starts
+   * observing it.
+   */
+
+  private final int historyLength;
+
+
+
+  /**
+   * The latency tracker notified of sent moves; <code>null</code> if none.
+   */
+
+  private volatile LatencyTracker latencyTracker = null;
+
+
+
+  /**
+   * Creates a new <code>IcsSimulator</code> with the specified parameters,
+   * listening on the specified port (0 for any free port). The simulator
+   * doesn't accept clients until {@link #start()} is invoked.
+   */
+
+  public IcsSimulator(boolean isChessclub, int port, int gameCount, double moveRate, double seekRate,
+      double chatRate, int historyLength) throws IOException{
+    this.isChessclub = isChessclub;
+    this.serverSocket = new ServerSocket(port);
+    this.gameCount = gameCount;
+    this.moveRate = moveRate;
+    this.seekRate = seekRate;
+    this.chatRate = chatRate;
+    this.historyLength = historyLength;
+  }
+
+
+
+  /**
+   * Returns the port the simulator listens on.
+   */
+
+  public int getPort(){
+    return serverSocket.getLocalPort();
+  }
+
+
+
+  /**
+   * Returns the amount of games each client observes.
+   */
+
+  public int getGameCount(){
+    return gameCount;
+  }
+
+
+
+  /**
+   * Returns the amount of moves per second made in each game.
+   */
+
+  public double getMoveRate(){
+    return moveRate;
+  }
+
+
+
+  /**
+   * Returns the amount of seeks sent per second.
+   */
+
+  public double getSeekRate(){
+    return seekRate;
+  }
+
+
+
+  /**
+   * Returns the amount of chat lines sent per second.
+   */
+
+  public double getChatRate(){
+    return chatRate;
+  }
+
+
+
+  /**
+   * Returns the amount of plies already played in each game when a client
+   * starts observing it.
+   */
+
+  public int getHistoryLength(){
+    return historyLength;
+  }
+
+
+
+  /**
+   * Sets the latency tracker notified of sent moves; <code>null</code> for
+   * none.
+   */
+
+  public void setLatencyTracker(LatencyTracker latencyTracker){
+    this.latencyTracker = latencyTracker;
+  }
+
+
+
+  /**
+   * Returns the latency tracker notified of sent moves; <code>null</code> if
+   * none.
+   */
+
+  public LatencyTracker getLatencyTracker(){
+    return latencyTracker;
+  }
+
+
+
+  /**
+   * Starts accepting clients, in a separate thread.
+   */
+
+  public void start(){
+    Thread acceptor = new Thread("SimulatorAcceptor"){
+      @Override
+      public void run(){
+        try{
+          while (true){
+            Socket socket = serverSocket.accept();
+            socket.setTcpNoDelay(true);
+            SimulatorSession session = isChessclub ?
+              (SimulatorSession)new ChessclubSession(IcsSimulator.this, socket) :
+              (SimulatorSession)new FreechessSession(IcsSimulator.this, socket);
+            session.start();
+          }
+        } catch (IOException e){
+            e.printStackTrace();
+          }
+      }
+    };
+    acceptor.start();
+  }
+
+
+
+  /**
+   * Creates a Jin connection to the simulator, which reports moves to the
+   * specified latency tracker, and logs it in.
+   */
+
+  private void connectClient(final LatencyTracker latencyTracker){
+    free.jin.Connection conn;
+    if (isChessclub)
+      conn = new JinChessclubConnection("Tester", null);
+    else
+      conn = new JinFreechessConnection("Tester", null);
+
+    ListenerManager listenerManager = conn.getListenerManager();
+    listenerManager.addGameListener(new GameAdapter(){
+      @Override
+      public void moveMade(MoveMadeEvent evt){
+        latencyTracker.moveReceived(evt.getGame().getID());
+      }
+      @Override
+      public void moveListLoaded(MoveListLoadedEvent evt){
+        latencyTracker.otherEventReceived();
+      }
+    });
+    listenerManager.addChatListener(new ChatListener(){
+      @Override
+      public void chatMessageReceived(ChatEvent evt){
+        latencyTracker.otherEventReceived();
+      }
+    });
+    ((SeekListenerManager)listenerManager).addSeekListener(new SeekListener(){
+      @Override
+      public void seekAdded(SeekEvent evt){
+        latencyTracker.otherEventReceived();
+      }
+      @Override
+      public void seekRemoved(SeekEvent evt){
+        latencyTracker.otherEventReceived();
+      }
+    });
+
+    conn.initiateConnectAndLogin("localhost", getPort());
+  }
+
+
+
+  /**
+   * Runs the simulator.
+   */
+
+  public static void main(String [] args) throws IOException, InterruptedException{
+    if ((args.length == 0) || !(args[0].equals("fics") || args[0].equals("icc"))){
+      System.err.println("Usage: java free.jin.sim.IcsSimulator fics|icc [-port n] [-games n] [-moveRate r] " +
+        "[-seekRate r] [-chatRate r] [-history plies] [-client] [-reportInterval seconds]");
+      System.exit(1);
+    }
+
+    boolean isChessclub = args[0].equals("icc");
+    int port = 5000;
+    int gameCount = 10;
+    double moveRate = 1;
+    double seekRate = 5;
+    double chatRate = 5;
+    int historyLength = 0;
+    boolean runClient = false;
+    int reportInterval = 5;
+
+    for (int i = 1; i < args.length; i++){
+      String arg = args[i];
+      if (arg.equals("-client"))
+        runClient = true;
+      else if (i + 1 == args.length)
+        throw new IllegalArgumentException("Missing value for " + arg);
+      else if (arg.equals("-port"))
+        port = Integer.parseInt(args[++i]);
+      else if (arg.equals("-games"))
+        gameCount = Integer.parseInt(args[++i]);
+      else if (arg.equals("-moveRate"))
+        moveRate = Double.parseDouble(args[++i]);
+      else if (arg.equals("-seekRate"))
+        seekRate = Double.parseDouble(args[++i]);
+      else if (arg.equals("-chatRate"))
+        chatRate = Double.parseDouble(args[++i]);
+      else if (arg.equals("-history"))
+        historyLength = Integer.parseInt(args[++i]);
+      else if (arg.equals("-reportInterval"))
+        reportInterval = Integer.parseInt(args[++i]);
+      else
+        throw new IllegalArgumentException("Unknown option: " + arg);
+    }
+
+    IcsSimulator simulator = new IcsSimulator(isChessclub, port, gameCount, moveRate, seekRate, chatRate,
+      historyLength);
+    simulator.start();
+    System.out.println("Simulating " + args[0] + " on port " + simulator.getPort());
+
+    if (runClient){
+      LatencyTracker latencyTracker = new LatencyTracker();
+      simulator.setLatencyTracker(latencyTracker);
+      simulator.connectClient(latencyTracker);
+
+      while (true){
+        Thread.sleep(reportInterval * 1000L);
+        System.out.println(latencyTracker.report());
+      }
+    }
+  }
+
+
+
+}
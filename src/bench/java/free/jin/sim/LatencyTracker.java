@@ -0,0 +1,181 @@
+/**
+ * Jin - a chess client for internet chess servers.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package free.jin.sim;
+
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.LinkedList;
+
+
+/**
+ * Measures the time from the moment the simulated server sends a move until
+ * the client fires the corresponding <code>MoveMadeEvent</code>. Moves are
+ * matched by game and order, so a tracker may only be used for a single client.
+ */
+
+public class LatencyTracker{
+
+
+
+  /**
+   * Maps game ids (as strings) to <code>LinkedList</code>s of the times, in
+   * nanoseconds, at which moves whose events haven't fired yet were sent.
+   */
+
+  private final Hashtable pendingMoves = new Hashtable();
+
+
+
+  /**
+   * The latencies, in nanoseconds, measured since the last report.
+   */
+
+  private long [] latencies = new long[1024];
+
+
+
+  /**
+   * The amount of latencies measured since the last report.
+   */
+
+  private int latencyCount = 0;
+
+
+
+  /**
+   * The amount of other events (seeks, chat) received since the last report.
+   */
+
+  private int otherEventCount = 0;
+
+
+
+  /**
+   * Invoked by the server right before it sends a move in the specified game.
+   */
+
+  public synchronized void moveSent(Object gameId){
+    String key = String.valueOf(gameId);
+    LinkedList sendTimes = (LinkedList)pendingMoves.get(key);
+    if (sendTimes == null){
+      sendTimes = new LinkedList();
+      pendingMoves.put(key, sendTimes);
+    }
+
+    sendTimes.addLast(new Long(System.nanoTime()));
+  }
+
+
+
+  /**
+   * Invoked by the client when it fires a <code>MoveMadeEvent</code> in the
+   * specified game.
+   */
+
+  public synchronized void moveReceived(Object gameId){
+    long now = System.nanoTime();
+
+    LinkedList sendTimes = (LinkedList)pendingMoves.get(String.valueOf(gameId));
+    if ((sendTimes == null) || sendTimes.isEmpty())
+      return;
+
+    long sendTime = ((Long)sendTimes.removeFirst()).longValue();
+
+    if (latencyCount == latencies.length){
+      long [] newLatencies = new long[latencies.length * 2];
+      System.arraycopy(latencies, 0, newLatencies, 0, latencyCount);
+      latencies = newLatencies;
+    }
+    latencies[latencyCount++] = now - sendTime;
+  }
+
+
+
+  /**
+   * Invoked by the client when it receives any other simulated event.
+   */
+
+  public synchronized void otherEventReceived(){
+    otherEventCount++;
+  }
+
+
+
+  /**
+   * Returns a one line summary of the latencies measured since the last
+   * report, and starts measuring anew.
+   */
+
+  public synchronized String report(){
+    int pendingCount = 0;
+    for (Enumeration e = pendingMoves.elements(); e.hasMoreElements();)
+      pendingCount += ((LinkedList)e.nextElement()).size();
+
+    String result;
+    if (latencyCount == 0)
+      result = "moves: 0";
+    else{
+      Arrays.sort(latencies, 0, latencyCount);
+
+      long total = 0;
+      for (int i = 0; i < latencyCount; i++)
+        total += latencies[i];
+
+      result = "moves: " + latencyCount +
+        ", latency (ms) mean: " + millis(total / latencyCount) +
+        ", p50: " + millis(percentile(0.5)) +
+        ", p99: " + millis(percentile(0.99)) +
+        ", max: " + millis(latencies[latencyCount - 1]);
+    }
+
+    result += ", in flight: " + pendingCount + ", other events: " + otherEventCount;
+
+    latencyCount = 0;
+    otherEventCount = 0;
+
+    return result;
+  }
+
+
+
+  /**
+   * Returns the specified percentile of the (sorted) latencies.
+   */
+
+  private long percentile(double fraction){
+    return latencies[Math.min(latencyCount - 1, (int)(latencyCount * fraction))];
+  }
+
+
+
+  /**
+   * Formats the specified amount of nanoseconds as milliseconds.
+   */
+
+  private static String millis(long nanos){
+    return String.valueOf(Math.round(nanos / 10000.0) / 100.0);
+  }
+
+
+
+}
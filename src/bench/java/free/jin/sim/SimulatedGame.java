@@ -0,0 +1,239 @@
+/**
+ * Jin - a chess client for internet chess servers.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package free.jin.sim;
+
+
+/**
+ * A game played on the simulated server. To keep the simulator simple, the
+ * players of a simulated game never do anything but shuffle their kingside
+ * knights back and forth, which is legal forever and only ever produces four
+ * distinct positions.
+ */
+
+class SimulatedGame{
+
+
+
+  /**
+   * The squares the knights move from, indexed by the ply number modulo 4.
+   */
+
+  private static final String [] FROM_SQUARES = {"g1", "g8", "f3", "f6"};
+
+
+
+  /**
+   * The squares the knights move to, indexed by the ply number modulo 4.
+   */
+
+  private static final String [] TO_SQUARES = {"f3", "f6", "g1", "g8"};
+
+
+
+  /**
+   * The game number.
+   */
+
+  private final int number;
+
+
+
+  /**
+   * The name of the white player.
+   */
+
+  private final String whiteName;
+
+
+
+  /**
+   * The name of the black player.
+   */
+
+  private final String blackName;
+
+
+
+  /**
+   * The amount of plies played so far.
+   */
+
+  private int plyCount = 0;
+
+
+
+  /**
+   * Creates a new <code>SimulatedGame</code> with the specified game number,
+   * between the specified players.
+   */
+
+  public SimulatedGame(int number, String whiteName, String blackName){
+    this.number = number;
+    this.whiteName = whiteName;
+    this.blackName = blackName;
+  }
+
+
+
+  /**
+   * Returns the game number.
+   */
+
+  public int getNumber(){
+    return number;
+  }
+
+
+
+  /**
+   * Returns the name of the white player.
+   */
+
+  public String getWhiteName(){
+    return whiteName;
+  }
+
+
+
+  /**
+   * Returns the name of the black player.
+   */
+
+  public String getBlackName(){
+    return blackName;
+  }
+
+
+
+  /**
+   * Returns the amount of plies played so far.
+   */
+
+  public int getPlyCount(){
+    return plyCount;
+  }
+
+
+
+  /**
+   * Makes the next move.
+   */
+
+  public void makeMove(){
+    plyCount++;
+  }
+
+
+
+  /**
+   * Returns whether it's white's turn to move.
+   */
+
+  public boolean isWhiteToMove(){
+    return (plyCount % 2) == 0;
+  }
+
+
+
+  /**
+   * Returns the square the move at the specified ply (0-based) was made from,
+   * e.g. "g1".
+   */
+
+  public String getMoveFrom(int ply){
+    return FROM_SQUARES[ply % 4];
+  }
+
+
+
+  /**
+   * Returns the square the move at the specified ply (0-based) was made to,
+   * e.g. "f3".
+   */
+
+  public String getMoveTo(int ply){
+    return TO_SQUARES[ply % 4];
+  }
+
+
+
+  /**
+   * Returns the move at the specified ply (0-based) in SAN, e.g. "Nf3".
+   */
+
+  public String getMoveSAN(int ply){
+    return "N" + getMoveTo(ply);
+  }
+
+
+
+  /**
+   * Returns the square the last move was made from, e.g. "g1". The game must
+   * have at least one move.
+   */
+
+  public String getLastMoveFrom(){
+    return getMoveFrom(plyCount - 1);
+  }
+
+
+
+  /**
+   * Returns the square the last move was made to, e.g. "f3". The game must
+   * have at least one move.
+   */
+
+  public String getLastMoveTo(){
+    return getMoveTo(plyCount - 1);
+  }
+
+
+
+  /**
+   * Returns the last move in SAN, e.g. "Nf3". The game must have at least one
+   * move.
+   */
+
+  public String getLastMoveSAN(){
+    return getMoveSAN(plyCount - 1);
+  }
+
+
+
+  /**
+   * Returns the current position as the 8 ranks of a FICS style 12 board,
+   * separated by spaces, 8th rank first.
+   */
+
+  public String getStyle12Board(){
+    boolean isWhiteKnightOut = ((plyCount % 4) == 1) || ((plyCount % 4) == 2);
+    boolean isBlackKnightOut = ((plyCount % 4) == 2) || ((plyCount % 4) == 3);
+
+    return (isBlackKnightOut ? "rnbqkb-r" : "rnbqkbnr") + " pppppppp " +
+      (isBlackKnightOut ? "-----n--" : "--------") + " -------- -------- " +
+      (isWhiteKnightOut ? "-----N--" : "--------") + " PPPPPPPP " +
+      (isWhiteKnightOut ? "RNBQKB-R" : "RNBQKBNR");
+  }
+
+
+
+}
@@ -0,0 +1,355 @@
+/**
+ * Jin - a chess client for internet chess servers.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package free.jin.sim;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.LinkedList;
+
+
+/**
+ * The session of a single client connected to the {@link IcsSimulator}. Reads
+ * and responds to the client's commands and, once the client logs in, feeds it
+ * game moves, seeks and chat at the rates configured in the simulator.
+ * Subclasses implement the actual server protocol.
+ */
+
+abstract class SimulatorSession extends Thread{
+
+
+
+  /**
+   * The maximum amount of seeks outstanding at any given time. Once reached,
+   * the oldest seek is removed for each new one.
+   */
+
+  private static final int MAX_SEEK_COUNT = 300;
+
+
+
+  /**
+   * The simulator.
+   */
+
+  protected final IcsSimulator simulator;
+
+
+
+  /**
+   * The socket to the client.
+   */
+
+  private final Socket socket;
+
+
+
+  /**
+   * The stream we write to the client with.
+   */
+
+  private final OutputStream out;
+
+
+
+  /**
+   * The username of the client; <code>null</code> until it logs in.
+   */
+
+  private String username = null;
+
+
+
+  /**
+   * The games the client is observing.
+   */
+
+  private SimulatedGame [] games;
+
+
+
+  /**
+   * The indices of outstanding seeks, oldest first.
+   */
+
+  private final LinkedList seekIndices = new LinkedList();
+
+
+
+  /**
+   * The index of the next seek.
+   */
+
+  private int nextSeekIndex = 1;
+
+
+
+  /**
+   * The amount of chat lines sent so far.
+   */
+
+  private int chatCount = 0;
+
+
+
+  /**
+   * Creates a new <code>SimulatorSession</code> for the specified client of the
+   * specified simulator.
+   */
+
+  public SimulatorSession(IcsSimulator simulator, Socket socket) throws IOException{
+    super("SimulatorSession-" + socket.getPort());
+
+    this.simulator = simulator;
+    this.socket = socket;
+    this.out = new BufferedOutputStream(socket.getOutputStream());
+
+    setDaemon(true);
+  }
+
+
+
+  /**
+   * Returns the username of the client, or <code>null</code> if it hasn't
+   * logged in yet.
+   */
+
+  protected synchronized String getUsername(){
+    return username;
+  }
+
+
+
+  /**
+   * Reads the client's commands until it disconnects.
+   */
+
+  @Override
+  public void run(){
+    try{
+      sendWelcome();
+
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO8859_1"));
+      String line;
+      while ((line = in.readLine()) != null)
+        processCommand(line);
+    } catch (IOException e){}
+      finally{
+        try{
+          socket.close();
+        } catch (IOException e){}
+      }
+  }
+
+
+
+  /**
+   * Writes the specified string to the client and flushes it.
+   */
+
+  protected synchronized void write(String s) throws IOException{
+    out.write(s.getBytes("ISO8859_1"));
+    out.flush();
+  }
+
+
+
+  /**
+   * Marks the client as logged in with the specified username, and starts
+   * feeding it data.
+   */
+
+  protected synchronized void loginSucceeded(String username){
+    if (this.username != null)
+      return;
+
+    this.username = username;
+
+    Thread feeder = new Thread("SimulatorFeeder-" + username){
+      @Override
+      public void run(){
+        try{
+          feed();
+        } catch (IOException e){}
+          catch (InterruptedException e){}
+      }
+    };
+    feeder.setDaemon(true);
+    feeder.start();
+  }
+
+
+
+  /**
+   * Feeds data to the client until it disconnects.
+   */
+
+  private void feed() throws IOException, InterruptedException{
+    int gameCount = simulator.getGameCount();
+    games = new SimulatedGame[gameCount];
+    for (int i = 0; i < gameCount; i++){
+      games[i] = new SimulatedGame(i + 1, "White" + (i + 1), "Black" + (i + 1));
+      for (int j = 0; j < simulator.getHistoryLength(); j++)
+        games[i].makeMove();
+      sendGameStarted(games[i]);
+    }
+
+    long moveInterval = interval(gameCount * simulator.getMoveRate());
+    long seekInterval = interval(simulator.getSeekRate());
+    long chatInterval = interval(simulator.getChatRate());
+
+    long now = System.nanoTime();
+    long nextMoveTime = after(now, moveInterval);
+    long nextSeekTime = after(now, seekInterval);
+    long nextChatTime = after(now, chatInterval);
+    int nextGameIndex = 0;
+
+    while (!socket.isClosed()){
+      long nextTime = Math.min(nextMoveTime, Math.min(nextSeekTime, nextChatTime));
+      if (nextTime == Long.MAX_VALUE)
+        return;
+
+      long delay = nextTime - System.nanoTime();
+      if (delay > 0)
+        Thread.sleep(delay / 1000000, (int)(delay % 1000000));
+
+      if (nextTime == nextMoveTime){
+        SimulatedGame game = games[nextGameIndex];
+        nextGameIndex = (nextGameIndex + 1) % games.length;
+
+        game.makeMove();
+        LatencyTracker latencyTracker = simulator.getLatencyTracker();
+        if (latencyTracker != null)
+          latencyTracker.moveSent(new Integer(game.getNumber()));
+        sendMove(game);
+
+        nextMoveTime += moveInterval;
+      }
+      else if (nextTime == nextSeekTime){
+        if (seekIndices.size() == MAX_SEEK_COUNT)
+          sendSeekRemoved(((Integer)seekIndices.removeFirst()).intValue());
+
+        int index = nextSeekIndex++;
+        seekIndices.addLast(new Integer(index));
+        sendSeekAdded(index, "Seeker" + (index % 1000), 1000 + (index * 37) % 1500);
+
+        nextSeekTime += seekInterval;
+      }
+      else{
+        chatCount++;
+        sendChannelTell(1 + chatCount % 5, "Chatter" + (char)('a' + chatCount % 26), "Simulated chat line number " + chatCount);
+
+        nextChatTime += chatInterval;
+      }
+    }
+  }
+
+
+
+  /**
+   * Returns the interval, in nanoseconds, between events occurring at the
+   * specified rate (per second), or <code>Long.MAX_VALUE</code> if the rate is
+   * 0.
+   */
+
+  private static long interval(double rate){
+    return rate <= 0 ? Long.MAX_VALUE : (long)(1000000000 / rate);
+  }
+
+
+
+  /**
+   * Returns the time, in nanoseconds, the specified interval after the
+   * specified time, or <code>Long.MAX_VALUE</code> if the interval is
+   * <code>Long.MAX_VALUE</code>.
+   */
+
+  private static long after(long time, long interval){
+    return interval == Long.MAX_VALUE ? Long.MAX_VALUE : time + interval;
+  }
+
+
+
+  /**
+   * Sends whatever the server sends when a client connects.
+   */
+
+  protected abstract void sendWelcome() throws IOException;
+
+
+
+  /**
+   * Processes the specified command sent by the client. Implementations must
+   * call {@link #loginSucceeded(String)} once the client logs in.
+   */
+
+  protected abstract void processCommand(String command) throws IOException;
+
+
+
+  /**
+   * Notifies the client that it is now observing the specified game, with
+   * whatever moves have already been played in it.
+   */
+
+  protected abstract void sendGameStarted(SimulatedGame game) throws IOException;
+
+
+
+  /**
+   * Notifies the client of the last move made in the specified game.
+   */
+
+  protected abstract void sendMove(SimulatedGame game) throws IOException;
+
+
+
+  /**
+   * Notifies the client of a new seek with the specified index, by the
+   * specified player with the specified rating.
+   */
+
+  protected abstract void sendSeekAdded(int index, String name, int rating) throws IOException;
+
+
+
+  /**
+   * Notifies the client that the seek with the specified index has been
+   * removed.
+   */
+
+  protected abstract void sendSeekRemoved(int index) throws IOException;
+
+
+
+  /**
+   * Sends the client a tell by the specified player in the specified channel.
+   */
+
+  protected abstract void sendChannelTell(int channel, String name, String message) throws IOException;
+
+
+
+}
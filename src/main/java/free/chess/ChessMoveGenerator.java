@@ -0,0 +1,608 @@
+/**
+ * The chess framework library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the chess framework library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package free.chess;
+
+
+/**
+ * Generates the legal moves of the player to move in a position of a
+ * {@link ChesslikeGenericVariant} whose pieces move as in chess (see
+ * {@link ChesslikeGenericVariant#hasChessMoveRules()}). Unlike
+ * {@link WildVariant#getTargetSquares(Position, Square)}, moves which leave the
+ * king in check are excluded, and castling out of, through or into check isn't
+ * allowed. Whether a king or pawn move is a castling or an en-passant is still
+ * determined by the variant, but is only allowed if the position holds the
+ * corresponding castling right or en-passant square.
+ * <P>The moves are written into a caller supplied <code>int</code> array,
+ * each packed into a single <code>int</code> as described in
+ * {@link PackedMove}. No objects are allocated while generating moves,
+ * so a generator may be reused for many positions; it is not thread safe.
+ */
+
+public final class ChessMoveGenerator{
+
+
+
+  /**
+   * The size of a move array sufficient for any position. The largest known
+   * amount of legal moves in a chess position is 218.
+   */
+
+  public static final int MAX_MOVE_COUNT = 256;
+
+
+
+  /**
+   * The squares attacked by a knight standing on each square.
+   */
+
+  private static final long [] KNIGHT_ATTACKS = new long[64];
+
+
+
+  /**
+   * The squares attacked by a king standing on each square.
+   */
+
+  private static final long [] KING_ATTACKS = new long[64];
+
+
+
+  /**
+   * The squares attacked by a white pawn standing on each square.
+   */
+
+  private static final long [] WHITE_PAWN_ATTACKS = new long[64];
+
+
+
+  /**
+   * The squares attacked by a black pawn standing on each square.
+   */
+
+  private static final long [] BLACK_PAWN_ATTACKS = new long[64];
+
+
+
+  /**
+   * The file and rank steps of the bishop directions.
+   */
+
+  private static final int [][] BISHOP_DIRECTIONS = new int[][]{{-1, -1}, {1, -1}, {-1, 1}, {1, 1}};
+
+
+
+  /**
+   * The file and rank steps of the rook directions.
+   */
+
+  private static final int [][] ROOK_DIRECTIONS = new int[][]{{0, -1}, {-1, 0}, {1, 0}, {0, 1}};
+
+
+
+  /**
+   * The promotion target types, in the order they are generated.
+   */
+
+  private static final int [] PROMOTION_TYPES = new int[]{
+    ChessPiece.QUEEN, ChessPiece.ROOK, ChessPiece.BISHOP, ChessPiece.KNIGHT};
+
+
+
+  static{
+    int [][] knightOffsets = new int[][]{{-1, -2}, {1, -2}, {-2, -1}, {2, -1}, {-2, 1}, {2, 1}, {-1, 2}, {1, 2}};
+    int [][] kingOffsets = new int[][]{{-1, -1}, {0, -1}, {1, -1}, {-1, 0}, {1, 0}, {-1, 1}, {0, 1}, {1, 1}};
+
+    for (int square = 0; square < 64; square++){
+      int file = square & 7;
+      int rank = square >> 3;
+      KNIGHT_ATTACKS[square] = offsetSquares(file, rank, knightOffsets);
+      KING_ATTACKS[square] = offsetSquares(file, rank, kingOffsets);
+      WHITE_PAWN_ATTACKS[square] = offsetSquares(file, rank, new int[][]{{-1, 1}, {1, 1}});
+      BLACK_PAWN_ATTACKS[square] = offsetSquares(file, rank, new int[][]{{-1, -1}, {1, -1}});
+    }
+  }
+
+
+
+  /**
+   * The position we're currently generating moves for.
+   */
+
+  private Position position;
+
+
+
+  /**
+   * The variant of <code>position</code>.
+   */
+
+  private ChesslikeGenericVariant variant;
+
+
+
+  /**
+   * The color of the player to move.
+   */
+
+  private int color;
+
+
+
+  /**
+   * The squares occupied by the pieces of the player to move.
+   */
+
+  private long ownPieces;
+
+
+
+  /**
+   * All the occupied squares.
+   */
+
+  private long occupied;
+
+
+
+  /**
+   * The square of the king of the player to move, or -1 if he has no king.
+   */
+
+  private int kingSquare;
+
+
+
+  /**
+   * The opponent's pawns.
+   */
+
+  private long enemyPawns;
+
+
+
+  /**
+   * The opponent's knights.
+   */
+
+  private long enemyKnights;
+
+
+
+  /**
+   * The opponent's bishops and queens.
+   */
+
+  private long enemyDiagonalSliders;
+
+
+
+  /**
+   * The opponent's rooks and queens.
+   */
+
+  private long enemyStraightSliders;
+
+
+
+  /**
+   * The opponent's king.
+   */
+
+  private long enemyKing;
+
+
+
+  /**
+   * The number of the en-passant square of the position, or -1 if none.
+   */
+
+  private int enPassantSquare;
+
+
+
+  /**
+   * The array into which we're currently writing moves.
+   */
+
+  private int [] moves;
+
+
+
+  /**
+   * The amount of moves written into <code>moves</code> so far.
+   */
+
+  private int moveCount;
+
+
+
+  /**
+   * The squares to which moves are currently being generated.
+   */
+
+  private long targetMask;
+
+
+
+  /**
+   * Returns the bitboard of the squares at the specified offsets from the
+   * square with the specified file and rank.
+   */
+
+  private static long offsetSquares(int file, int rank, int [][] offsets){
+    long result = 0;
+    for (int i = 0; i < offsets.length; i++){
+      int targetFile = file + offsets[i][0];
+      int targetRank = rank + offsets[i][1];
+      if (Square.isValid(targetFile, targetRank))
+        result |= 1L << (targetRank*8 + targetFile);
+    }
+
+    return result;
+  }
+
+
+
+  /**
+   * Returns the bitboard of the squares attacked by a piece sliding in the
+   * specified directions from the specified square, given the specified
+   * occupied squares.
+   */
+
+  private static long slidingAttacks(int square, long occupied, int [][] directions){
+    long result = 0;
+    for (int i = 0; i < directions.length; i++){
+      int fileStep = directions[i][0];
+      int rankStep = directions[i][1];
+      int file = (square & 7) + fileStep;
+      int rank = (square >> 3) + rankStep;
+      while (((file | rank) & ~7) == 0){
+        long bit = 1L << (rank*8 + file);
+        result |= bit;
+        if ((occupied & bit) != 0)
+          break;
+        file += fileStep;
+        rank += rankStep;
+      }
+    }
+
+    return result;
+  }
+
+
+
+  /**
+   * Writes the legal moves of the player to move in the specified position
+   * into the specified array, and returns their amount. The array should have
+   * room for at least <code>MAX_MOVE_COUNT</code> moves.
+   *
+   * @throws IllegalArgumentException if the variant of the position isn't a
+   * <code>ChesslikeGenericVariant</code> with chess move rules.
+   */
+
+  public int generateLegalMoves(Position pos, int [] moves){
+    return generateLegalMoves(pos, -1L, moves);
+  }
+
+
+
+  /**
+   * Writes the legal moves of the player to move in the specified position
+   * which end on one of the squares in the specified bitboard into the
+   * specified array, and returns their amount. This is much faster than
+   * generating all the moves when only the moves to a certain square are of
+   * interest, as the legality of the other moves isn't checked.
+   *
+   * @throws IllegalArgumentException if the variant of the position isn't a
+   * <code>ChesslikeGenericVariant</code> with chess move rules.
+   */
+
+  public int generateLegalMoves(Position pos, long targetMask, int [] moves){
+    prepare(pos);
+
+    this.moves = moves;
+    this.moveCount = 0;
+    this.targetMask = targetMask;
+
+    try{
+      int type = ChessPiece.PAWN;
+      for (long pieces = position.getBitboard(color, type); pieces != 0; pieces &= pieces - 1)
+        generatePawnMoves(Long.numberOfTrailingZeros(pieces));
+
+      type = ChessPiece.KNIGHT;
+      for (long pieces = position.getBitboard(color, type); pieces != 0; pieces &= pieces - 1){
+        int square = Long.numberOfTrailingZeros(pieces);
+        addMoves(square, KNIGHT_ATTACKS[square] & ~ownPieces, type);
+      }
+
+      type = ChessPiece.BISHOP;
+      for (long pieces = position.getBitboard(color, type); pieces != 0; pieces &= pieces - 1){
+        int square = Long.numberOfTrailingZeros(pieces);
+        addMoves(square, slidingAttacks(square, occupied, BISHOP_DIRECTIONS) & ~ownPieces, type);
+      }
+
+      type = ChessPiece.ROOK;
+      for (long pieces = position.getBitboard(color, type); pieces != 0; pieces &= pieces - 1){
+        int square = Long.numberOfTrailingZeros(pieces);
+        addMoves(square, slidingAttacks(square, occupied, ROOK_DIRECTIONS) & ~ownPieces, type);
+      }
+
+      type = ChessPiece.QUEEN;
+      for (long pieces = position.getBitboard(color, type); pieces != 0; pieces &= pieces - 1){
+        int square = Long.numberOfTrailingZeros(pieces);
+        long targets = slidingAttacks(square, occupied, BISHOP_DIRECTIONS) |
+          slidingAttacks(square, occupied, ROOK_DIRECTIONS);
+        addMoves(square, targets & ~ownPieces, type);
+      }
+
+      type = ChessPiece.KING;
+      for (long pieces = position.getBitboard(color, type); pieces != 0; pieces &= pieces - 1){
+        int square = Long.numberOfTrailingZeros(pieces);
+        addMoves(square, KING_ATTACKS[square] & ~ownPieces, type);
+        generateCastlingMoves(square);
+      }
+
+      return moveCount;
+    } finally{
+        this.position = null;
+        this.variant = null;
+        this.moves = null;
+      }
+  }
+
+
+
+  /**
+   * Returns whether the player to move in the specified position is in check.
+   *
+   * @throws IllegalArgumentException if the variant of the position isn't a
+   * <code>ChesslikeGenericVariant</code> with chess move rules.
+   */
+
+  public boolean isInCheck(Position pos){
+    prepare(pos);
+
+    try{
+      return (kingSquare != -1) && isAttacked(kingSquare, occupied, -1L);
+    } finally{
+        this.position = null;
+        this.variant = null;
+      }
+  }
+
+
+
+  /**
+   * Loads the state of the specified position into our fields.
+   */
+
+  private void prepare(Position pos){
+    WildVariant wildVariant = pos.getVariant();
+    if (!(wildVariant instanceof ChesslikeGenericVariant) ||
+        !((ChesslikeGenericVariant)wildVariant).hasChessMoveRules())
+      throw new IllegalArgumentException("Unsupported variant: " + wildVariant);
+
+    this.position = pos;
+    this.variant = (ChesslikeGenericVariant)wildVariant;
+    this.color = pos.getCurrentPlayer().getPieceColor();
+
+    int enemyColor = -color;
+    Player player = pos.getCurrentPlayer();
+    this.ownPieces = pos.getOccupiedSquares(player);
+    this.occupied = ownPieces | pos.getOccupiedSquares(player.getOpponent());
+
+    long king = pos.getBitboard(color, ChessPiece.KING);
+    this.kingSquare = (king == 0) ? -1 : Long.numberOfTrailingZeros(king);
+
+    long enemyQueens = pos.getBitboard(enemyColor, ChessPiece.QUEEN);
+    this.enemyPawns = pos.getBitboard(enemyColor, ChessPiece.PAWN);
+    this.enemyKnights = pos.getBitboard(enemyColor, ChessPiece.KNIGHT);
+    this.enemyDiagonalSliders = pos.getBitboard(enemyColor, ChessPiece.BISHOP) | enemyQueens;
+    this.enemyStraightSliders = pos.getBitboard(enemyColor, ChessPiece.ROOK) | enemyQueens;
+    this.enemyKing = pos.getBitboard(enemyColor, ChessPiece.KING);
+
+    Square enPassant = pos.getEnPassantSquare();
+    this.enPassantSquare = (enPassant == null) ? -1 : PackedMove.getSquareIndex(enPassant);
+  }
+
+
+
+  /**
+   * Returns whether the specified square is attacked by the opponent, given
+   * the specified occupied squares, and with the opponent's pieces limited to
+   * the specified mask (which excludes captured pieces).
+   */
+
+  private boolean isAttacked(int square, long occupied, long enemyMask){
+    long pawnAttacks = (color == Piece.WHITE) ? WHITE_PAWN_ATTACKS[square] : BLACK_PAWN_ATTACKS[square];
+    if ((pawnAttacks & enemyPawns & enemyMask) != 0)
+      return true;
+    if ((KNIGHT_ATTACKS[square] & enemyKnights & enemyMask) != 0)
+      return true;
+    if ((KING_ATTACKS[square] & enemyKing) != 0)
+      return true;
+    if (((enemyDiagonalSliders & enemyMask) != 0) &&
+        ((slidingAttacks(square, occupied, BISHOP_DIRECTIONS) & enemyDiagonalSliders & enemyMask) != 0))
+      return true;
+    if (((enemyStraightSliders & enemyMask) != 0) &&
+        ((slidingAttacks(square, occupied, ROOK_DIRECTIONS) & enemyStraightSliders & enemyMask) != 0))
+      return true;
+
+    return false;
+  }
+
+
+
+  /**
+   * Adds the moves by the piece of the specified type on the specified square
+   * to each of the specified target squares, as long as they are legal.
+   */
+
+  private void addMoves(int square, long targets, int pieceType){
+    for (targets &= targetMask; targets != 0; targets &= targets - 1)
+      addIfLegal(square, Long.numberOfTrailingZeros(targets), pieceType, 0, 0);
+  }
+
+
+
+  /**
+   * Generates the moves of the pawn on the specified square.
+   */
+
+  private void generatePawnMoves(int square){
+    int file = square & 7;
+    int rank = square >> 3;
+    int direction = (color == Piece.WHITE) ? 1 : -1;
+    int initialRank = (color == Piece.WHITE) ? 1 : 6;
+    int promotionRank = (color == Piece.WHITE) ? 7 : 0;
+
+    int targetRank = rank + direction;
+    if ((targetRank & ~7) != 0)
+      return;
+
+    // Move forward
+    int target = targetRank*8 + file;
+    if ((occupied & (1L << target)) == 0){
+      addPawnMove(square, target, targetRank == promotionRank, 0);
+
+      // Double pawn push
+      int doubleTarget = target + 8*direction;
+      if ((rank == initialRank) && ((occupied & (1L << doubleTarget)) == 0))
+        addIfLegal(square, doubleTarget, ChessPiece.PAWN, 0, PackedMove.DOUBLE_PAWN_PUSH);
+    }
+
+    // Captures and en-passant
+    long attacks = (color == Piece.WHITE) ? WHITE_PAWN_ATTACKS[square] : BLACK_PAWN_ATTACKS[square];
+    for (; attacks != 0; attacks &= attacks - 1){
+      target = Long.numberOfTrailingZeros(attacks);
+      long targetBit = 1L << target;
+      if ((occupied & targetBit & ~ownPieces) != 0)
+        addPawnMove(square, target, targetRank == promotionRank, 0);
+      else if ((target == enPassantSquare) && ((occupied & targetBit) == 0) &&
+          variant.isEnPassant(position, PackedMove.getSquare(square), PackedMove.getSquare(target), null))
+        addIfLegal(square, target, ChessPiece.PAWN, 0, PackedMove.EN_PASSANT);
+    }
+  }
+
+
+
+  /**
+   * Adds the move of a pawn from the specified square to the specified square,
+   * in all its promotion variations if it's a promotion, with the specified
+   * flags.
+   */
+
+  private void addPawnMove(int from, int to, boolean isPromotion, int flags){
+    if (isPromotion){
+      for (int i = 0; i < PROMOTION_TYPES.length; i++)
+        addIfLegal(from, to, ChessPiece.PAWN, PROMOTION_TYPES[i], flags);
+    }
+    else
+      addIfLegal(from, to, ChessPiece.PAWN, 0, flags);
+  }
+
+
+
+  /**
+   * Generates the castling moves of the king on the specified square.
+   */
+
+  private void generateCastlingMoves(int square){
+    if ((square != kingSquare) || isAttacked(square, occupied, -1L))
+      return;
+
+    int castlingRights = position.getCastlingRights();
+    int kingsideRight = (color == Piece.WHITE) ? Position.WHITE_KINGSIDE_CASTLING : Position.BLACK_KINGSIDE_CASTLING;
+    int queensideRight = (color == Piece.WHITE) ? Position.WHITE_QUEENSIDE_CASTLING : Position.BLACK_QUEENSIDE_CASTLING;
+
+    int rank = square >> 3;
+    Square from = PackedMove.getSquare(square);
+    for (int file = 0; file < 8; file++){
+      int target = rank*8 + file;
+      if ((target == square) || ((targetMask & (1L << target)) == 0))
+        continue;
+
+      // The rook the king castles with is on the side it moves towards
+      if ((castlingRights & ((target > square) ? kingsideRight : queensideRight)) == 0)
+        continue;
+
+      Square to = PackedMove.getSquare(target);
+      int flags;
+      if (variant.isShortCastling(position, from, to, null))
+        flags = PackedMove.SHORT_CASTLING;
+      else if (variant.isLongCastling(position, from, to, null))
+        flags = PackedMove.LONG_CASTLING;
+      else
+        continue;
+
+      // The king may not pass through or land on an attacked square
+      int step = (target > square) ? 1 : -1;
+      boolean isSafe = true;
+      for (int passed = square + step; isSafe; passed += step){
+        isSafe = !isAttacked(passed, occupied, -1L);
+        if (passed == target)
+          break;
+      }
+
+      if (isSafe)
+        moves[moveCount++] = PackedMove.pack(square, target, ChessPiece.KING, 0, 0, flags);
+    }
+  }
+
+
+
+  /**
+   * Adds the specified move, if it doesn't leave the king of the player to
+   * move in check.
+   */
+
+  private void addIfLegal(int from, int to, int pieceType, int promotionType, int flags){
+    long fromBit = 1L << from;
+    long toBit = 1L << to;
+    if ((targetMask & toBit) == 0)
+      return;
+
+    long occupiedAfter = (occupied & ~fromBit) | toBit;
+    long enemyMask = ~toBit;
+    int capturedType;
+    if ((flags & PackedMove.EN_PASSANT) != 0){
+      long capturedBit = 1L << ((from & ~7) | (to & 7));
+      occupiedAfter &= ~capturedBit;
+      enemyMask &= ~capturedBit;
+      capturedType = ChessPiece.PAWN;
+    }
+    else{
+      Piece captured = position.getPieceAt(to & 7, to >> 3);
+      capturedType = (captured == null) ? 0 : captured.getType();
+    }
+
+    int king = (pieceType == ChessPiece.KING) ? to : kingSquare;
+    if ((king != -1) && isAttacked(king, occupiedAfter, enemyMask))
+      return;
+
+    moves[moveCount++] = PackedMove.pack(from, to, pieceType, capturedType, promotionType, flags);
+  }
+
+
+
+}
@@ -753,6 +753,24 @@ public class ChesslikeGenericVariant implements WildVariant{
   
   
   
+  /**
+   * Returns whether the pieces in this variant move and capture as in chess,
+   * and a move is legal exactly when it doesn't leave the king in check -
+   * castling and en-passant aside, which are defined by
+   * {@link #isShortCastling(Position, Square, Square, ChessPiece)},
+   * {@link #isLongCastling(Position, Square, Square, ChessPiece)} and
+   * {@link #isEnPassant(Position, Square, Square, ChessPiece)}. If so,
+   * {@link ChessMoveGenerator} can generate the legal moves of this variant.
+   * This method returns <code>true</code>; variants with different rules
+   * must override it.
+   */
+  
+  public boolean hasChessMoveRules(){
+    return true;
+  }
+  
+  
+  
   /**
    * Returns the target squares for a piece which jumps to its destination 
    * (king and knight).
@@ -0,0 +1,266 @@
+/**
+ * The chess framework library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the chess framework library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package free.chess;
+
+import java.util.Vector;
+
+
+/**
+ * A list of moves, kept packed into <code>int</code>s as described in
+ * {@link PackedMove}, without creating an object per move. Moves which can't
+ * be packed (such as those of variants with their own move classes) are kept
+ * as objects on the side, so the list can hold the moves of any game.
+ * <B>IMPORTANT:</B> This class is not thread safe.
+ */
+
+public final class IntMoveList{
+
+
+
+  /**
+   * The bit marking list entries which are indices into
+   * <code>irregularMoves</code> rather than packed moves.
+   */
+
+  private static final int IRREGULAR = 1 << 31;
+
+
+
+  /**
+   * The entries.
+   */
+
+  private int [] moves;
+
+
+
+  /**
+   * The amount of entries.
+   */
+
+  private int size = 0;
+
+
+
+  /**
+   * The moves which couldn't be packed, in order; <code>null</code> until
+   * there are any.
+   */
+
+  private Vector irregularMoves = null;
+
+
+
+  /**
+   * Creates a new, empty <code>IntMoveList</code>.
+   */
+
+  public IntMoveList(){
+    this(32);
+  }
+
+
+
+  /**
+   * Creates a new, empty <code>IntMoveList</code> with room for the specified
+   * amount of moves.
+   */
+
+  public IntMoveList(int capacity){
+    moves = new int[Math.max(1, capacity)];
+  }
+
+
+
+  /**
+   * Returns the amount of moves in the list.
+   */
+
+  public int size(){
+    return size;
+  }
+
+
+
+  /**
+   * Adds the specified packed move to the end of the list.
+   */
+
+  public void add(int move){
+    if ((move & IRREGULAR) != 0)
+      throw new IllegalArgumentException("Bad packed move: " + move);
+
+    addEntry(move);
+  }
+
+
+
+  /**
+   * Adds the specified entry to the end of the list.
+   */
+
+  private void addEntry(int entry){
+    if (size == moves.length){
+      int [] newMoves = new int[moves.length * 2];
+      System.arraycopy(moves, 0, newMoves, 0, size);
+      moves = newMoves;
+    }
+
+    moves[size++] = entry;
+  }
+
+
+
+  /**
+   * Adds the specified move, made in the specified position, to the end of the
+   * list. The move is packed if possible.
+   */
+
+  public void addMove(Position pos, Move move){
+    if (PackedMove.isPackable(move))
+      addEntry(PackedMove.pack(pos, move));
+    else{
+      if (irregularMoves == null)
+        irregularMoves = new Vector();
+      addEntry(IRREGULAR | irregularMoves.size());
+      irregularMoves.addElement(move);
+    }
+  }
+
+
+
+  /**
+   * Returns whether the move at the specified index is kept packed.
+   */
+
+  public boolean isPacked(int index){
+    return (entry(index) & IRREGULAR) == 0;
+  }
+
+
+
+  /**
+   * Returns the packed move at the specified index.
+   *
+   * @throws IllegalArgumentException if the move isn't kept packed.
+   */
+
+  public int get(int index){
+    int entry = entry(index);
+    if ((entry & IRREGULAR) != 0)
+      throw new IllegalArgumentException("The move at " + index + " isn't packed");
+
+    return entry;
+  }
+
+
+
+  /**
+   * Returns the entry at the specified index.
+   */
+
+  private int entry(int index){
+    if ((index < 0) || (index >= size))
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+
+    return moves[index];
+  }
+
+
+
+  /**
+   * Returns the move at the specified index as a <code>Move</code> object.
+   * The specified position must be the one in which the move is made.
+   */
+
+  public Move getMove(Position pos, int index){
+    int entry = entry(index);
+    if ((entry & IRREGULAR) != 0)
+      return (Move)irregularMoves.elementAt(entry & ~IRREGULAR);
+    else
+      return PackedMove.toMove(pos, entry);
+  }
+
+
+
+  /**
+   * Makes the moves at the specified range of indices on the specified
+   * position, which must be the position in which the first of them is made.
+   */
+
+  public void makeMoves(Position pos, int start, int end){
+    if ((start < 0) || (end > size) || (start > end))
+      throw new IndexOutOfBoundsException("Range: " + start + "-" + end + ", size: " + size);
+
+    for (int i = start; i < end; i++)
+      pos.makeMove(getMove(pos, i));
+  }
+
+
+
+  /**
+   * Removes the moves at the end of the list, leaving the specified amount.
+   */
+
+  public void setSize(int newSize){
+    if ((newSize < 0) || (newSize > size))
+      throw new IndexOutOfBoundsException("Size: " + newSize + ", current size: " + size);
+
+    if (irregularMoves != null){
+      for (int i = newSize; i < size; i++){
+        if ((moves[i] & IRREGULAR) != 0){
+          irregularMoves.setSize(moves[i] & ~IRREGULAR);
+          break;
+        }
+      }
+    }
+
+    size = newSize;
+  }
+
+
+
+  /**
+   * Removes all the moves.
+   */
+
+  public void clear(){
+    setSize(0);
+  }
+
+
+
+  /**
+   * Returns an array of the entries in the list. Moves which aren't kept
+   * packed have negative entries.
+   */
+
+  public int [] toArray(){
+    int [] result = new int[size];
+    System.arraycopy(moves, 0, result, 0, size);
+    return result;
+  }
+
+
+
+}
@@ -39,7 +39,6 @@ import java.awt.event.InputEvent;
 import java.awt.event.MouseEvent;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
-import java.util.Collection;
 import java.util.Iterator;
 import java.util.Vector;
 
@@ -54,6 +53,8 @@ import free.chess.event.MoveEvent;
 import free.chess.event.MoveListener;
 import free.chess.event.MoveProgressEvent;
 import free.chess.event.MoveProgressListener;
+import free.util.FlightRecorderEventType;
+import free.util.LatencyMonitor;
 import free.util.MathUtilities;
 import free.util.PaintHook;
 import free.util.PlatformUtils;
@@ -278,6 +279,8 @@ public class JBoard extends JComponent{
   private final ChangeListener positionChangeListener = new ChangeListener(){
     @Override
     public void stateChanged(ChangeEvent evt){
+      targetSquaresMapSquares = 0;
+      
       if (positionChangedByMove){
         positionChangedByMove = false;
         return;
@@ -595,12 +598,62 @@ public class JBoard extends JComponent{
   
   
   /**
-   * A set of possible target squares during a move; <code>null</code> if none.
-   * May be <code>null</code> even during a move, if it's not required (neither
-   * in snap-to-legal-square, nor in highlight-legal-moves mode).
+   * The bitboard (bit <code>rank*8 + file</code> for each square) of possible
+   * target squares during a move. Only meaningful when
+   * <code>hasLegalTargetSquares</code> is <code>true</code>.
+   */
+  
+  private long legalTargetSquares = 0;
+  
+  
+  
+  /**
+   * Whether <code>legalTargetSquares</code> holds the possible target squares
+   * of the current move. May be <code>false</code> even during a move, if
+   * they're not required (neither in snap-to-legal-square, nor in
+   * highlight-legal-moves mode).
+   */
+  
+  private boolean hasLegalTargetSquares = false;
+  
+  
+  
+  /**
+   * The possible target squares, as bitboards, of the pieces in the current
+   * position, indexed by the number (<code>rank*8 + file</code>) of the square
+   * of the piece. Computed lazily, and only valid for the squares in
+   * <code>targetSquaresMapSquares</code>.
+   */
+  
+  private final long [] targetSquaresMap = new long[64];
+  
+  
+  
+  /**
+   * The bitboard of the squares whose entries in <code>targetSquaresMap</code>
+   * are valid for the current position. Cleared whenever the position
+   * changes.
+   */
+  
+  private long targetSquaresMapSquares = 0;
+  
+  
+  
+  /**
+   * The move generator with which we compute the legal moves of the player to
+   * move; created lazily.
+   */
+  
+  private ChessMoveGenerator moveGenerator = null;
+  
+  
+  
+  /**
+   * The array into which <code>moveGenerator</code> writes moves; created
+   * lazily.
    */
   
-  private Collection legalTargetSquares = null;
+  private int [] generatedMoves = null;
   
   
   
@@ -872,6 +925,7 @@ public class JBoard extends JComponent{
       position.removeMoveListener(positionMoveListener);
     }
     position = newPosition;
+    targetSquaresMapSquares = 0;
     position.addChangeListener(positionChangeListener);
     position.addMoveListener(positionMoveListener);
 
@@ -1137,9 +1191,8 @@ public class JBoard extends JComponent{
     
     if (isMovingPiece()){
       if (newValue)
-        legalTargetSquares = position.getTargetSquares(movedPieceSquare);
-      else
-        legalTargetSquares = null;
+        legalTargetSquares = getPossibleTargetSquares(movedPieceSquare);
+      hasLegalTargetSquares = newValue;
       
       repaint();
     }
@@ -1173,7 +1226,7 @@ public class JBoard extends JComponent{
     Object oldColor = this.legalTargetSquaresHighlightColor;
     this.legalTargetSquaresHighlightColor = color;
     
-    if (legalTargetSquares != null)
+    if (hasLegalTargetSquares)
       repaintLegalTargetSquares(null);
     
     firePropertyChange("legalTargetSquaresHighlightColor", oldColor, color);
@@ -1517,12 +1570,27 @@ public class JBoard extends JComponent{
 
   
 
+  /**
+   * The flight recorder event type of board paints.
+   */
+
+  private static final FlightRecorderEventType BOARD_PAINT_EVENT = new FlightRecorderEventType(
+      "free.chess.BoardPaint", "Board Paint", new String[]{"Jin", "Painting"},
+      "A JBoard painted",
+      new String[]{"dirtyX", "dirtyY", "dirtyWidth", "dirtyHeight"},
+      new String[]{"Dirty X", "Dirty Y", "Dirty Width", "Dirty Height"},
+      new Class[]{int.class, int.class, int.class, int.class});
+
+
+
   /**
    * Paints this JBoard on the given Graphics object.
    */
 
   @Override
   public void paintComponent(Graphics graphics){
+    Object flightEvent = BOARD_PAINT_EVENT.begin();
+    
     super.paintComponent(graphics);
     
     Rectangle originalClip = graphics.getClipBounds();
@@ -1586,10 +1654,10 @@ public class JBoard extends JComponent{
     }
     
     // Paint possible target squares
-    if (isHighlightLegalTargetSquares && (legalTargetSquares != null)){
+    if (isHighlightLegalTargetSquares && hasLegalTargetSquares){
       g.setColor(legalTargetSquaresHighlightColor);
-      for (Iterator i = legalTargetSquares.iterator(); i.hasNext();){
-        rect = squareToRect((Square)i.next(), rect);
+      for (long squares = legalTargetSquares; squares != 0; squares &= squares - 1){
+        rect = squareToRect(PackedMove.getSquare(Long.numberOfTrailingZeros(squares)), rect);
         if (rect.intersects(clipRect))
           g.fill(rect);
       }
@@ -1661,6 +1729,16 @@ public class JBoard extends JComponent{
         piecePainter.paintPiece(piece, g, this, rect, false);
       }
     }
+    
+    LatencyMonitor latencyMonitor = LatencyMonitor.getInstance();
+    if (latencyMonitor.isEnabled())
+      latencyMonitor.boardPainted();
+    
+    if (flightEvent != null){
+      Rectangle dirty = (originalClip == null) ? new Rectangle(0, 0, getWidth(), getHeight()) : originalClip;
+      BOARD_PAINT_EVENT.commit(flightEvent, new Object[]{new Integer(dirty.x), new Integer(dirty.y),
+        new Integer(dirty.width), new Integer(dirty.height)});
+    }
   }
   
   
@@ -2067,18 +2145,19 @@ public class JBoard extends JComponent{
    */
    
   private Square calcTargetSquare(Point cursorLocation){
-    if (isSnapToLegalSquare && (legalTargetSquares != null)){
+    if (isSnapToLegalSquare && hasLegalTargetSquares){
       // Check the usual case - square under the cursor
       Square cursorSquare = locationToSquare(cursorLocation);
-      if (movedPieceSquare.equals(cursorSquare) || legalTargetSquares.contains(cursorSquare))
+      if (movedPieceSquare.equals(cursorSquare) || ((cursorSquare != null) &&
+          ((legalTargetSquares & (1L << (cursorSquare.getRank()*8 + cursorSquare.getFile()))) != 0)))
         return cursorSquare;
       
       Rectangle rect = squareToRect(0, 0, null);
       int minDistanceSquared = // We don't want squares which are too far.
         MathUtilities.sqr((int)(1.5*Math.max(rect.width, rect.height))); 
       Square nearestSquare = null;
-      for (Iterator i = legalTargetSquares.iterator(); i.hasNext();){
-        Square square = (Square)i.next();
+      for (long squares = legalTargetSquares; squares != 0; squares &= squares - 1){
+        Square square = PackedMove.getSquare(Long.numberOfTrailingZeros(squares));
         squareToRect(square, rect);
         
         int dx = cursorLocation.x - (rect.x + rect.width/2);
@@ -2238,8 +2317,63 @@ public class JBoard extends JComponent{
    */
   
   private void repaintLegalTargetSquares(Rectangle helpRect){
-    for (Iterator i = legalTargetSquares.iterator(); i.hasNext();)
-      repaint(helpRect = squareToRect((Square)i.next(), helpRect));
+    for (long squares = legalTargetSquares; squares != 0; squares &= squares - 1)
+      repaint(helpRect = squareToRect(PackedMove.getSquare(Long.numberOfTrailingZeros(squares)), helpRect));
+  }
+  
+  
+  
+  /**
+   * Returns the bitboard of the squares to which the piece at the specified
+   * square may move in the current position. For the pieces of the player to
+   * move in variants with chess move rules, these are exactly the legal
+   * moves, computed for all the pieces at once; otherwise, they are the
+   * (possibly not legal) squares returned by
+   * {@link Position#getTargetSquares(Square)}. Either way, the result is
+   * cached until the position changes.
+   */
+  
+  private long getPossibleTargetSquares(Square square){
+    int index = square.getRank()*8 + square.getFile();
+    long bit = 1L << index;
+    if ((targetSquaresMapSquares & bit) != 0)
+      return targetSquaresMap[index];
+    
+    Piece piece = position.getPieceAt(square);
+    Player currentPlayer = position.getCurrentPlayer();
+    WildVariant variant = position.getVariant();
+    if ((piece != null) && currentPlayer.equals(piece.getPlayer()) &&
+        (variant instanceof ChesslikeGenericVariant) && ((ChesslikeGenericVariant)variant).hasChessMoveRules()){
+      if (moveGenerator == null){
+        moveGenerator = new ChessMoveGenerator();
+        generatedMoves = new int[ChessMoveGenerator.MAX_MOVE_COUNT];
+      }
+      
+      long pieceSquares = position.getOccupiedSquares(currentPlayer);
+      for (long squares = pieceSquares; squares != 0; squares &= squares - 1)
+        targetSquaresMap[Long.numberOfTrailingZeros(squares)] = 0;
+      
+      int moveCount = moveGenerator.generateLegalMoves(position, generatedMoves);
+      for (int i = 0; i < moveCount; i++){
+        int move = generatedMoves[i];
+        targetSquaresMap[PackedMove.getStartingSquare(move)] |= 
+          1L << PackedMove.getEndingSquare(move);
+      }
+      
+      targetSquaresMapSquares |= pieceSquares | bit;
+    }
+    else{
+      long targetSquares = 0;
+      for (Iterator i = position.getTargetSquares(square).iterator(); i.hasNext();){
+        Square targetSquare = (Square)i.next();
+        targetSquares |= 1L << (targetSquare.getRank()*8 + targetSquare.getFile());
+      }
+      
+      targetSquaresMap[index] = targetSquares;
+      targetSquaresMapSquares |= bit;
+    }
+    
+    return targetSquaresMap[index];
   }
   
   
@@ -2260,13 +2394,13 @@ public class JBoard extends JComponent{
     repaint(squareToRect(movedPieceSquare, rect));
     if (targetSquare != null)
       repaint(squareToRect(targetSquare, rect));
-    if (legalTargetSquares != null)
+    if (hasLegalTargetSquares)
       repaintLegalTargetSquares(rect);
     
     movedPieceSquare = null;
     movedPieceLoc = null;
     targetSquare = null;
-    legalTargetSquares = null;
+    hasLegalTargetSquares = false;
     
     fireMoveProgressEvent(new MoveProgressEvent(this, MoveProgressEvent.MOVE_MAKING_ENDED));
   }
@@ -2332,8 +2466,10 @@ public class JBoard extends JComponent{
         }
         movedPieceLoc = new Point(x, y);
         
-        if (isHighlightLegalTargetSquares() || isSnapToLegalSquare())
-          legalTargetSquares = position.getTargetSquares(movedPieceSquare);
+        if (isHighlightLegalTargetSquares() || isSnapToLegalSquare()){
+          legalTargetSquares = getPossibleTargetSquares(movedPieceSquare);
+          hasLegalTargetSquares = true;
+        }
         
         targetSquare = calcTargetSquare(movedPieceLoc);
         
@@ -2398,7 +2534,7 @@ public class JBoard extends JComponent{
         movedPieceSquare = null;
         movedPieceLoc = null;
         targetSquare = null;
-        legalTargetSquares = null;
+        hasLegalTargetSquares = false;
         moveGesture = 0;
         
         fireMoveProgressEvent(new MoveProgressEvent(this, MoveProgressEvent.MOVE_MAKING_ENDED));
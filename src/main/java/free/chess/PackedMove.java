@@ -0,0 +1,333 @@
+/**
+ * The chess framework library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the chess framework library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package free.chess;
+
+
+/**
+ * Static methods for working with chess moves packed into a single
+ * <code>int</code>, as generated by {@link ChessMoveGenerator} and stored by
+ * {@link IntMoveList}. A packed move holds the starting square in bits 0-5
+ * and the ending square in bits 6-11 (squares are numbered
+ * <code>rank*8 + file</code>), the promotion target type in bits 12-14, the
+ * flags (<code>EN_PASSANT</code>, <code>SHORT_CASTLING</code>,
+ * <code>LONG_CASTLING</code>, <code>DOUBLE_PAWN_PUSH</code>) in bits 15-18,
+ * the type of the moving piece in bits 19-21 and the type of the captured
+ * piece, if any, in bits 22-24. Piece types are those defined in
+ * <code>ChessPiece</code>, or <code>OTHER_PIECE</code> for pieces which aren't
+ * regular chess pieces. A packed move takes 4 bytes, where a
+ * <code>ChessMove</code> with its move string takes well over a hundred; moves
+ * should be kept packed and turned into <code>Move</code> objects (with
+ * {@link #toMove(Position, int)}) only where an API requires them.
+ */
+
+public final class PackedMove{
+
+
+
+  /**
+   * The flag of en-passant moves.
+   */
+
+  public static final int EN_PASSANT = 1 << 15;
+
+
+
+  /**
+   * The flag of short castling moves.
+   */
+
+  public static final int SHORT_CASTLING = 1 << 16;
+
+
+
+  /**
+   * The flag of long castling moves.
+   */
+
+  public static final int LONG_CASTLING = 1 << 17;
+
+
+
+  /**
+   * The flag of double pawn pushes.
+   */
+
+  public static final int DOUBLE_PAWN_PUSH = 1 << 18;
+
+
+
+  /**
+   * The piece type of pieces which aren't regular chess pieces.
+   */
+
+  public static final int OTHER_PIECE = 7;
+
+
+
+  /**
+   * This class may not be instantiated.
+   */
+
+  private PackedMove(){}
+
+
+
+  /**
+   * Packs the specified move properties into an <code>int</code>.
+   */
+
+  public static int pack(int from, int to, int pieceType, int capturedType, int promotionType, int flags){
+    return from | (to << 6) | (promotionType << 12) | flags | (pieceType << 19) | (capturedType << 22);
+  }
+
+
+
+  /**
+   * Returns whether the specified move can be packed - whether it's a
+   * <code>ChessMove</code> promoting, if at all, to a regular chess piece.
+   */
+
+  public static boolean isPackable(Move move){
+    if (!(move instanceof ChessMove))
+      return false;
+
+    ChessPiece promotionTarget = ((ChessMove)move).getPromotionTarget();
+    return (promotionTarget == null) || (getType(promotionTarget) != OTHER_PIECE);
+  }
+
+
+
+  /**
+   * Packs the specified move, made in the specified position.
+   *
+   * @throws IllegalArgumentException if the move can't be packed, as
+   * determined by {@link #isPackable(Move)}.
+   */
+
+  public static int pack(Position pos, Move move){
+    if (!isPackable(move))
+      throw new IllegalArgumentException("Can't pack " + move);
+
+    ChessMove cmove = (ChessMove)move;
+    Square startingSquare = cmove.getStartingSquare();
+    Square endingSquare = cmove.getEndingSquare();
+
+    int flags = 0;
+    if (cmove.isEnPassant())
+      flags |= EN_PASSANT;
+    if (cmove.isShortCastling())
+      flags |= SHORT_CASTLING;
+    if (cmove.isLongCastling())
+      flags |= LONG_CASTLING;
+    if (cmove.getDoublePawnPushFile() != -1)
+      flags |= DOUBLE_PAWN_PUSH;
+
+    Piece movingPiece = pos.getPieceAt(startingSquare);
+    int pieceType = (movingPiece == null) ? 0 : getType(movingPiece);
+    int capturedType = cmove.isCapture() ? getType(cmove.getCapturedPiece()) : 0;
+    int promotionType = cmove.isPromotion() ? getType(cmove.getPromotionTarget()) : 0;
+
+    return pack(getSquareIndex(startingSquare), getSquareIndex(endingSquare), pieceType, capturedType,
+      promotionType, flags);
+  }
+
+
+
+  /**
+   * Returns the packed type of the specified piece.
+   */
+
+  private static int getType(Piece piece){
+    int type = piece.getType();
+    return (piece.getClass() == ChessPiece.class) && (type >= ChessPiece.PAWN) && (type <= ChessPiece.KING) ?
+      type : OTHER_PIECE;
+  }
+
+
+
+  /**
+   * Returns the starting square of the specified move.
+   */
+
+  public static int getStartingSquare(int move){
+    return move & 63;
+  }
+
+
+
+  /**
+   * Returns the ending square of the specified move.
+   */
+
+  public static int getEndingSquare(int move){
+    return (move >>> 6) & 63;
+  }
+
+
+
+  /**
+   * Returns the type of the promotion target of the specified move, or 0 if
+   * it isn't a promotion.
+   */
+
+  public static int getPromotionType(int move){
+    return (move >>> 12) & 7;
+  }
+
+
+
+  /**
+   * Returns the type of the piece moved by the specified move.
+   */
+
+  public static int getPieceType(int move){
+    return (move >>> 19) & 7;
+  }
+
+
+
+  /**
+   * Returns the type of the piece captured by the specified move, or 0 if
+   * none.
+   */
+
+  public static int getCapturedType(int move){
+    return (move >>> 22) & 7;
+  }
+
+
+
+  /**
+   * Returns whether the specified move is a capture.
+   */
+
+  public static boolean isCapture(int move){
+    return getCapturedType(move) != 0;
+  }
+
+
+
+  /**
+   * Returns whether the specified move is an en-passant.
+   */
+
+  public static boolean isEnPassant(int move){
+    return (move & EN_PASSANT) != 0;
+  }
+
+
+
+  /**
+   * Returns whether the specified move is a short castling.
+   */
+
+  public static boolean isShortCastling(int move){
+    return (move & SHORT_CASTLING) != 0;
+  }
+
+
+
+  /**
+   * Returns whether the specified move is a long castling.
+   */
+
+  public static boolean isLongCastling(int move){
+    return (move & LONG_CASTLING) != 0;
+  }
+
+
+
+  /**
+   * Returns whether the specified move is a double pawn push.
+   */
+
+  public static boolean isDoublePawnPush(int move){
+    return (move & DOUBLE_PAWN_PUSH) != 0;
+  }
+
+
+
+  /**
+   * Returns the <code>Square</code> with the specified number.
+   */
+
+  public static Square getSquare(int square){
+    return Square.getInstance(square & 7, square >> 3);
+  }
+
+
+
+  /**
+   * Returns the number of the specified square.
+   */
+
+  public static int getSquareIndex(Square square){
+    return square.getRank()*8 + square.getFile();
+  }
+
+
+
+  /**
+   * Returns the chess piece of the specified color and type.
+   */
+
+  public static ChessPiece getPiece(int color, int type){
+    boolean isWhite = (color == Piece.WHITE);
+    switch (type){
+      case ChessPiece.PAWN: return isWhite ? ChessPiece.WHITE_PAWN : ChessPiece.BLACK_PAWN;
+      case ChessPiece.KNIGHT: return isWhite ? ChessPiece.WHITE_KNIGHT : ChessPiece.BLACK_KNIGHT;
+      case ChessPiece.BISHOP: return isWhite ? ChessPiece.WHITE_BISHOP : ChessPiece.BLACK_BISHOP;
+      case ChessPiece.ROOK: return isWhite ? ChessPiece.WHITE_ROOK : ChessPiece.BLACK_ROOK;
+      case ChessPiece.QUEEN: return isWhite ? ChessPiece.WHITE_QUEEN : ChessPiece.BLACK_QUEEN;
+      case ChessPiece.KING: return isWhite ? ChessPiece.WHITE_KING : ChessPiece.BLACK_KING;
+      default:
+        throw new IllegalArgumentException("Unknown piece type: " + type);
+    }
+  }
+
+
+
+  /**
+   * Creates a <code>Move</code> object corresponding to the specified packed
+   * move in the specified position, via the position's variant. The move has
+   * no move string.
+   */
+
+  public static Move toMove(Position pos, int move){
+    WildVariant variant = pos.getVariant();
+    if (isShortCastling(move))
+      return variant.createShortCastling(pos);
+    else if (isLongCastling(move))
+      return variant.createLongCastling(pos);
+
+    int promotionType = getPromotionType(move);
+    Piece promotionTarget = promotionType == 0 ? null :
+      getPiece(pos.getCurrentPlayer().getPieceColor(), promotionType);
+
+    return variant.createMove(pos, getSquare(getStartingSquare(move)),
+      getSquare(getEndingSquare(move)), promotionTarget, null);
+  }
+
+
+
+}
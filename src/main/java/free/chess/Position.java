@@ -22,7 +22,7 @@
 package free.chess;
 
 import java.util.Collection;
-import java.util.StringTokenizer;
+import java.util.Random;
 
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -38,6 +38,16 @@ import free.util.Utilities;
  * itself is generally variant independent, but it does make some assumptions,
  * such as the board being a 8x8 container of pieces, there being two players
  * and other things common to most chess variants.
+ * <P>Besides the pieces on each square, a position keeps a bitboard (a
+ * <code>long</code> with a bit per square, a1 being bit 0 and h8 bit 63) of the
+ * squares occupied by each kind of piece, and a Zobrist key of the pieces and
+ * the player to move. Both are updated incrementally as pieces are put on the
+ * board, so hashing, comparing and copying positions doesn't require walking
+ * the board.
+ * <P>A position also carries the rest of the state described by FEN - the
+ * castling rights, the en-passant square and the move clocks. These are
+ * updated by {@link #makeMove(Move)}, but aren't part of the position's
+ * identity for the purposes of {@link #equals(Object)} and {@link #hashCode()}.
  * <B>IMPORTANT:</B> This class is not thread safe.
  */
 
@@ -54,10 +64,115 @@ public final class Position{
   
   
   /**
-   * A matrix to keep references to the pieces.
+   * The castling right of White with the rook on the h-file (the rook on
+   * the king's side in regular chess).
    */
   
-  private final Piece [][] pieces = new Piece[8][8];
+  public static final int WHITE_KINGSIDE_CASTLING = 1;
+  
+  
+  
+  /**
+   * The castling right of White with the rook on the a-file (the rook on
+   * the queen's side in regular chess).
+   */
+  
+  public static final int WHITE_QUEENSIDE_CASTLING = 2;
+  
+  
+  
+  /**
+   * The castling right of Black with the rook on the h-file.
+   */
+  
+  public static final int BLACK_KINGSIDE_CASTLING = 4;
+  
+  
+  
+  /**
+   * The castling right of Black with the rook on the a-file.
+   */
+  
+  public static final int BLACK_QUEENSIDE_CASTLING = 8;
+  
+  
+  
+  /**
+   * All the castling rights.
+   */
+  
+  public static final int ALL_CASTLING = 15;
+  
+  
+  
+  /**
+   * The amount of bitboards, one for each color and piece type (1-7 for
+   * regular pieces, 0 for all others).
+   */
+  
+  private static final int BITBOARD_COUNT = 16;
+  
+  
+  
+  /**
+   * The Zobrist keys of the pieces, indexed by
+   * <code>bitboardIndex(piece)*64 + squareIndex</code>.
+   */
+  
+  private static final long [] PIECE_KEYS = new long[BITBOARD_COUNT * 64];
+  
+  
+  
+  /**
+   * The Zobrist key of black being the player to move.
+   */
+  
+  private static final long BLACK_TO_MOVE_KEY;
+  
+  
+  
+  static{
+    Random random = new Random(0x4a696e4368657373L); // Fixed, so that keys are stable across runs
+    for (int i = 0; i < PIECE_KEYS.length; i++)
+      PIECE_KEYS[i] = random.nextLong();
+    BLACK_TO_MOVE_KEY = random.nextLong();
+  }
+  
+  
+  
+  /**
+   * The pieces, indexed by <code>rank*8 + file</code>.
+   */
+  
+  private final Piece [] pieces = new Piece[64];
+  
+  
+  
+  /**
+   * The bitboards of the squares occupied by each kind of piece, indexed by
+   * <code>bitboardIndex(piece)</code>.
+   */
+  
+  private final long [] bitboards = new long[BITBOARD_COUNT];
+  
+  
+  
+  /**
+   * The amount of irregular pieces (those which share a bitboard with other
+   * kinds of pieces) on the board.
+   *
+   * @see #isRegularPiece(Piece)
+   */
+  
+  private int irregularPieceCount = 0;
+  
+  
+  
+  /**
+   * The Zobrist key of the pieces and the player to move.
+   */
+  
+  private long zobristKey = 0;
   
   
   
@@ -78,10 +193,55 @@ public final class Position{
   
   
   /**
-   * A FEN representation of the position.
+   * The castling rights still held in this position, a combination of the
+   * <code>*_CASTLING</code> flags.
+   */
+  
+  private int castlingRights = 0;
+  
+  
+  
+  /**
+   * The square a pawn which has just made a double push has passed over;
+   * <code>null</code> if the last move wasn't a double pawn push.
    */
   
-  private String positionFEN;
+  private Square enPassantSquare = null;
+  
+  
+  
+  /**
+   * The amount of plies since the last capture or pawn move.
+   */
+  
+  private int halfmoveClock = 0;
+  
+  
+  
+  /**
+   * The number of the current full move, starting at 1 and incremented after
+   * each move by Black.
+   */
+  
+  private int fullmoveNumber = 1;
+  
+  
+  
+  /**
+   * The FEN representation of the position, cached; <code>null</code> if not
+   * computed since the last change.
+   */
+  
+  private String positionFEN = null;
+  
+  
+  
+  /**
+   * The lexigraphic representation of the position, cached;
+   * <code>null</code> if not computed since the last change.
+   */
+  
+  private String lexigraphic = null;
   
   
   
@@ -156,7 +316,7 @@ public final class Position{
    */
   
   public Piece getPieceAt(Square square){
-    return getPieceAt(square.getFile(),square.getRank());
+    return pieces[square.getRank()*8 + square.getFile()];
   }
   
   
@@ -166,7 +326,56 @@ public final class Position{
    */
   
   public Piece getPieceAt(int file, int rank){
-    return pieces[file][rank];
+    if (((file | rank) & ~7) != 0)
+      throw new IllegalArgumentException("Bad file or rank: " + file + ", " + rank);
+    
+    return pieces[rank*8 + file];
+  }
+  
+  
+  
+  /**
+   * Returns the bitboard of the squares occupied by pieces of the specified
+   * color and type (bit <code>rank*8 + file</code> is set for each such
+   * square). Only the regular piece types (1-7) have bitboards of their own.
+   *
+   * @see Piece#getColor()
+   * @see Piece#getType()
+   */
+  
+  public long getBitboard(int color, int type){
+    if ((type < 1) || (type > 7))
+      throw new IllegalArgumentException("Irregular piece type: " + type);
+    
+    return bitboards[color == Piece.WHITE ? type : 8 + type];
+  }
+  
+  
+  
+  /**
+   * Returns the bitboard of the squares occupied by the pieces of the
+   * specified player.
+   */
+  
+  public long getOccupiedSquares(Player player){
+    int offset = player.isWhite() ? 0 : 8;
+    long result = 0;
+    for (int i = offset; i < offset + 8; i++)
+      result |= bitboards[i];
+    
+    return result;
+  }
+  
+  
+  
+  /**
+   * Returns the Zobrist key of this position - a 64 bit hash of the pieces on
+   * the board and the player to move, maintained incrementally. Equal
+   * positions (of the same variant) have equal keys.
+   */
+  
+  public long getZobristKey(){
+    return zobristKey;
   }
   
   
@@ -235,12 +444,123 @@ public final class Position{
   
   
   
+  /**
+   * Returns the castling rights still held in this position, a combination of
+   * the <code>*_CASTLING</code> flags. A right only means that neither the king
+   * nor the rook have moved; whether castling is actually possible right now
+   * depends on the rest of the position.
+   */
+  
+  public int getCastlingRights(){
+    return castlingRights;
+  }
+  
+  
+  
+  /**
+   * Sets the castling rights held in this position to the specified
+   * combination of the <code>*_CASTLING</code> flags.
+   */
+  
+  public void setCastlingRights(int castlingRights){
+    if ((castlingRights & ~ALL_CASTLING) != 0)
+      throw new IllegalArgumentException("Bad castling rights: " + castlingRights);
+    
+    this.castlingRights = castlingRights;
+    positionFEN = null;
+    
+    fireStateChanged();
+  }
+  
+  
+  
+  /**
+   * Returns the square a pawn which has just made a double push has passed
+   * over, or <code>null</code> if the last move wasn't a double pawn push.
+   */
+  
+  public Square getEnPassantSquare(){
+    return enPassantSquare;
+  }
+  
+  
+  
+  /**
+   * Sets the square a pawn which has just made a double push has passed over;
+   * <code>null</code> if the last move wasn't a double pawn push.
+   */
+  
+  public void setEnPassantSquare(Square square){
+    this.enPassantSquare = square;
+    positionFEN = null;
+    
+    fireStateChanged();
+  }
+  
+  
+  
+  /**
+   * Returns the amount of plies made since the last capture or pawn move.
+   */
+  
+  public int getHalfmoveClock(){
+    return halfmoveClock;
+  }
+  
+  
+  
+  /**
+   * Sets the amount of plies made since the last capture or pawn move.
+   */
+  
+  public void setHalfmoveClock(int halfmoveClock){
+    if (halfmoveClock < 0)
+      throw new IllegalArgumentException("Bad halfmove clock: " + halfmoveClock);
+    
+    this.halfmoveClock = halfmoveClock;
+    positionFEN = null;
+    
+    fireStateChanged();
+  }
+  
+  
+  
+  /**
+   * Returns the number of the current full move. It starts at 1 and is
+   * incremented after each move by Black.
+   */
+  
+  public int getFullmoveNumber(){
+    return fullmoveNumber;
+  }
+  
+  
+  
+  /**
+   * Sets the number of the current full move.
+   */
+  
+  public void setFullmoveNumber(int fullmoveNumber){
+    if (fullmoveNumber < 1)
+      throw new IllegalArgumentException("Bad fullmove number: " + fullmoveNumber);
+    
+    this.fullmoveNumber = fullmoveNumber;
+    positionFEN = null;
+    
+    fireStateChanged();
+  }
+  
+  
+  
   /**
    * Sets this Position to represent the position represented by 
    * the given string. The string should represent a position by specifying
    * 64 characters indicating what occupies (-PNBRQKpnbrqk) each square, in 
    * lexigraphic order (a8, b8, ..., h1). The player to move will be
-   * the player with the white pieces.
+   * the player with the white pieces. Since the string says nothing about
+   * castling, castling rights are assumed for every king on its first rank
+   * and rook in the corner of that rank. There is no en-passant square, and
+   * the move clocks are reset.
    *
    * @param pos The string representing the position.
    *
@@ -264,6 +584,7 @@ public final class Position{
       }
     
     setCurrentPlayerImpl(Player.WHITE_PLAYER);
+    setMoveState(getPlacementCastlingRights(), null, 0, 1);
     
     fireStateChanged();
   }
@@ -277,17 +598,20 @@ public final class Position{
    */
   
   public String getLexigraphic(){
-    StringBuffer buf = new StringBuffer(64);
-    for (int rank=7; rank>=0; rank--)
-      for (int file=0; file<8; file++){
-        Piece piece = getPieceAt(Square.getInstance(file, rank));
-        if (piece==null)
-          buf.append("-");
-        else
-          buf.append(piece.toShortColorString());
-      }
+    if (lexigraphic == null){
+      StringBuffer buf = new StringBuffer(64);
+      for (int rank=7; rank>=0; rank--)
+        for (int file=0; file<8; file++){
+          Piece piece = pieces[rank*8 + file];
+          if (piece==null)
+            buf.append("-");
+          else
+            buf.append(piece.toShortColorString());
+        }
+      lexigraphic = buf.toString();
+    }
     
-    return buf.toString();
+    return lexigraphic;
   }
   
   
@@ -297,73 +621,242 @@ public final class Position{
    * in FEN format. The FEN format is described at 
    * <A HREF="http://www.very-best.de/pgn-spec.htm#16.1">http://www.very-best.de/pgn-spec.htm#16.1</A>.
    * The characters describing pieces aren't limited to the chess set (like in
-   * FEN), but are determined by the WildVariant of this position.
+   * FEN), but are determined by the WildVariant of this position. The two move
+   * clock fields may be omitted, in which case they are taken to be 0 and 1.
+   * The string is parsed in a single pass, and each distinct piece character
+   * is parsed by the variant only once.
    *
    * @throws PositionFormatException if the given string is not in the expected
    * format.
    */
   
   public void setFEN(String fen) throws PositionFormatException{
-    StringTokenizer fenTokenizer = new StringTokenizer(fen, " ");
-    if (fenTokenizer.countTokens() != 6)
-      throw new PositionFormatException("Wrong amount of fields");
-    
-    String pos = fenTokenizer.nextToken();
-    StringTokenizer ranks = new StringTokenizer(pos,"/");
-    if (ranks.countTokens() != 8)
-      throw new PositionFormatException("Wrong amount of ranks");
+    int length = fen.length();
+    int index = skipSpaces(fen, 0);
     
-    for (int rank = 7; rank >= 0; rank--){
-      String rankString = ranks.nextToken();
-      int file = 0;
-      for (int i = 0; i < rankString.length(); i++){
+    // Piece placement
+    Piece [] parsedPieces = new Piece[128];
+    int rank = 7;
+    int file = 0;
+    for (; (index < length) && (fen.charAt(index) != ' '); index++){
+      char c = fen.charAt(index);
+      if (c == '/'){
+        if (file != 8)
+          throw new PositionFormatException("Rank " + rank + " is a few files short");
+        if (rank == 0)
+          throw new PositionFormatException("Wrong amount of ranks");
+        
+        rank--;
+        file = 0;
+      }
+      else if ((c >= '0') && (c <= '9')){
+        int emptyFiles = c - '0';
+        if (file + emptyFiles > 8)
+          throw new PositionFormatException("Rank " + rank + " extends beyond the board");
+        
+        while (emptyFiles-- > 0)
+          setPieceAtImpl(null, rank*8 + file++);
+      }
+      else{
         if (file > 7)
           throw new PositionFormatException("Rank " + rank + " extends beyond the board");
         
-        char c = rankString.charAt(i);
-        if (Character.isDigit(c)){
-          int emptyFiles = Character.digit(c, 10);
-          while (emptyFiles-- > 0){
-            setPieceAtImpl(null, Square.getInstance(file, rank));
-            file++;
-          }
-        }
-        else{
+        Piece piece = (c < parsedPieces.length) ? parsedPieces[c] : null;
+        if (piece == null){
           try{
-            setPieceAtImpl(variant.parsePiece(String.valueOf(c)), Square.getInstance(file, rank));
-            file++;
+            piece = variant.parsePiece(String.valueOf(c));
           } catch (IllegalArgumentException e){
               throw new PositionFormatException(e);
             }
+          if (c < parsedPieces.length)
+            parsedPieces[c] = piece;
         }
+        
+        setPieceAtImpl(piece, rank*8 + file++);
       }
-      if (file != 8)
-        throw new PositionFormatException("Rank " + rank + " is a few files short");
     }
+    if (rank != 0)
+      throw new PositionFormatException("Wrong amount of ranks");
+    if (file != 8)
+      throw new PositionFormatException("Rank " + rank + " is a few files short");
     
-    String colorToMove = fenTokenizer.nextToken();
-    if (colorToMove.length() != 1)
-      throw new PositionFormatException("Wrong amount of characters in active color indicator: " + colorToMove);
-    if (colorToMove.equals("w"))
+    // Active color
+    index = skipSpaces(fen, index);
+    if ((index + 1 < length) && (fen.charAt(index + 1) != ' '))
+      throw new PositionFormatException("Wrong amount of characters in active color indicator: " + fen);
+    char colorToMove = (index < length) ? fen.charAt(index++) : ' ';
+    if (colorToMove == 'w')
       setCurrentPlayerImpl(Player.WHITE_PLAYER);
-    else if (colorToMove.equals("b"))
+    else if (colorToMove == 'b')
       setCurrentPlayerImpl(Player.BLACK_PLAYER);
     else
       throw new PositionFormatException("Wrong active color indicator: " + colorToMove);
     
-    this.positionFEN = fen;
+    // Castling availability
+    index = skipSpaces(fen, index);
+    if (index == length)
+      throw new PositionFormatException("Wrong amount of fields");
+    int newCastlingRights = 0;
+    if (fen.charAt(index) == '-')
+      index++;
+    else{
+      for (; (index < length) && (fen.charAt(index) != ' '); index++){
+        switch (fen.charAt(index)){
+          case 'K': newCastlingRights |= WHITE_KINGSIDE_CASTLING; break;
+          case 'Q': newCastlingRights |= WHITE_QUEENSIDE_CASTLING; break;
+          case 'k': newCastlingRights |= BLACK_KINGSIDE_CASTLING; break;
+          case 'q': newCastlingRights |= BLACK_QUEENSIDE_CASTLING; break;
+          default:
+            throw new PositionFormatException("Wrong castling availability: " + fen);
+        }
+      }
+    }
+    
+    // En-passant target square
+    index = skipSpaces(fen, index);
+    if (index == length)
+      throw new PositionFormatException("Wrong amount of fields");
+    Square newEnPassantSquare = null;
+    if (fen.charAt(index) == '-')
+      index++;
+    else{
+      if ((index + 2 > length) || ((index + 2 < length) && (fen.charAt(index + 2) != ' ')))
+        throw new PositionFormatException("Wrong en-passant target square: " + fen);
+      newEnPassantSquare = Square.getInstanceNonStrict(fen.charAt(index) - 'a', fen.charAt(index + 1) - '1');
+      if (newEnPassantSquare == null)
+        throw new PositionFormatException("Wrong en-passant target square: " + fen);
+      index += 2;
+    }
+    
+    // Halfmove clock and fullmove number
+    int newHalfmoveClock = 0;
+    int newFullmoveNumber = 1;
+    index = skipSpaces(fen, index);
+    if (index < length){
+      int fieldEnd = fieldEnd(fen, index);
+      newHalfmoveClock = parseNumber(fen, index, fieldEnd);
+      
+      index = skipSpaces(fen, fieldEnd);
+      if (index == length)
+        throw new PositionFormatException("Wrong amount of fields");
+      fieldEnd = fieldEnd(fen, index);
+      newFullmoveNumber = Math.max(1, parseNumber(fen, index, fieldEnd));
+      
+      if (skipSpaces(fen, fieldEnd) != length)
+        throw new PositionFormatException("Wrong amount of fields");
+    }
+    
+    setMoveState(newCastlingRights, newEnPassantSquare, newHalfmoveClock, newFullmoveNumber);
+  }
+  
+  
+  
+  /**
+   * Returns the index of the first non-space character in the specified string
+   * at or after the specified index.
+   */
+  
+  private static int skipSpaces(String s, int index){
+    int length = s.length();
+    while ((index < length) && (s.charAt(index) == ' '))
+      index++;
+    
+    return index;
+  }
+  
+  
+  
+  /**
+   * Returns the index of the first space character in the specified string at
+   * or after the specified index, or the length of the string if none.
+   */
+  
+  private static int fieldEnd(String s, int index){
+    int length = s.length();
+    while ((index < length) && (s.charAt(index) != ' '))
+      index++;
+    
+    return index;
   }
   
   
   
   /**
-   * Returns the FEN representation of this Position. May return
-   * <code>null</code> if the current position wasn't set via the setFEN method.
-   * Note that as soon as the position is changed after setFEN was called, this
-   * method will return <code>null</code>.
+   * Parses the non-negative decimal number in the specified range of the
+   * specified FEN string.
+   */
+  
+  private static int parseNumber(String fen, int start, int end) throws PositionFormatException{
+    if ((start == end) || (end - start > 9))
+      throw new PositionFormatException("Bad number in FEN: " + fen);
+    
+    int result = 0;
+    for (int i = start; i < end; i++){
+      char c = fen.charAt(i);
+      if ((c < '0') || (c > '9'))
+        throw new PositionFormatException("Bad number in FEN: " + fen);
+      result = result*10 + (c - '0');
+    }
+    
+    return result;
+  }
+  
+  
+  
+  /**
+   * Returns the FEN representation of this Position. The pieces are written
+   * as returned by <code>toShortColorString()</code>. The string is computed
+   * once and cached until the position changes.
    */
   
   public String getFEN(){
+    if (positionFEN == null){
+      StringBuffer buf = new StringBuffer(90);
+      for (int rank = 7; rank >= 0; rank--){
+        int emptyFiles = 0;
+        for (int file = 0; file < 8; file++){
+          Piece piece = pieces[rank*8 + file];
+          if (piece == null)
+            emptyFiles++;
+          else{
+            if (emptyFiles != 0)
+              buf.append(emptyFiles);
+            emptyFiles = 0;
+            buf.append(piece.toShortColorString());
+          }
+        }
+        if (emptyFiles != 0)
+          buf.append(emptyFiles);
+        if (rank != 0)
+          buf.append('/');
+      }
+      
+      buf.append(currentPlayer.isWhite() ? " w " : " b ");
+      
+      if (castlingRights == 0)
+        buf.append('-');
+      else{
+        if ((castlingRights & WHITE_KINGSIDE_CASTLING) != 0)
+          buf.append('K');
+        if ((castlingRights & WHITE_QUEENSIDE_CASTLING) != 0)
+          buf.append('Q');
+        if ((castlingRights & BLACK_KINGSIDE_CASTLING) != 0)
+          buf.append('k');
+        if ((castlingRights & BLACK_QUEENSIDE_CASTLING) != 0)
+          buf.append('q');
+      }
+      
+      buf.append(' ');
+      if (enPassantSquare == null)
+        buf.append('-');
+      else
+        buf.append(enPassantSquare.toString());
+      
+      buf.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+      
+      positionFEN = buf.toString();
+    }
+    
     return positionFEN;
   }
   
@@ -381,7 +874,8 @@ public final class Position{
   
   /**
    * Clears this position of any pieces. The current player is set to the
-   * player with the White pieces.
+   * player with the White pieces, there are no castling rights or en-passant
+   * square, and the move clocks are reset.
    */
   
   public void clear(){
@@ -389,6 +883,7 @@ public final class Position{
       for (int rank=0;rank<8;rank++)
         setPieceAtImpl(null,Square.getInstance(file,rank));
     setCurrentPlayerImpl(Player.WHITE_PLAYER);
+    setMoveState(0, null, 0, 1);
     
     fireStateChanged();
   }
@@ -397,7 +892,8 @@ public final class Position{
   
   /**
    * Makes the given Move on this position. This method first fires a MoveEvent
-   * and then a ChangeEvent.
+   * and then a ChangeEvent. Besides the changes made by the variant, the
+   * castling rights, the en-passant square and the move clocks are updated.
    * 
    * @param move The move to make.
    *
@@ -406,13 +902,43 @@ public final class Position{
    */
   
   public void makeMove(Move move){
+    Square startingSquare = move.getStartingSquare();
+    Piece movingPiece = (startingSquare == null) ? null : getPieceAt(startingSquare);
+    
     variant.makeMove(move, this, modifier);
+    updateMoveState(move, movingPiece);
     fireMoveMade(move);
     fireStateChanged();
   }
   
   
   
+  /**
+   * Makes the specified moves, in order, on this position as a single change:
+   * no MoveEvents are fired and a single ChangeEvent is fired once all the
+   * moves have been made. This is meant for bringing a position up to date
+   * with a list of moves received in bulk, when listeners are only interested
+   * in the end result.
+   *
+   * @throws IllegalArgumentException if one of the moves is incompatible with
+   * the wild variant of this Position.
+   */
+  
+  public void makeMoves(Move [] moves){
+    for (int i = 0; i < moves.length; i++){
+      Move move = moves[i];
+      Square startingSquare = move.getStartingSquare();
+      Piece movingPiece = (startingSquare == null) ? null : getPieceAt(startingSquare);
+      
+      variant.makeMove(move, this, modifier);
+      updateMoveState(move, movingPiece);
+    }
+    
+    fireStateChanged();
+  }
+  
+  
+  
   /**
    * Makes this position a copy of the given position by setting it to
    * the same state. The WildVariants of the Positions must match.
@@ -424,15 +950,18 @@ public final class Position{
     if (!variant.equals(position.variant))
       throw new IllegalArgumentException("The WildVariants of the positions don't match");
     
-    for (int file = 0; file < pieces.length; file++){
-      for (int rank = 0; rank < pieces[file].length; rank++){
-        pieces[file][rank] = position.pieces[file][rank];
-      }
-    }
-    
-    setCurrentPlayerImpl(position.getCurrentPlayer());
+    System.arraycopy(position.pieces, 0, pieces, 0, pieces.length);
+    System.arraycopy(position.bitboards, 0, bitboards, 0, bitboards.length);
+    this.irregularPieceCount = position.irregularPieceCount;
+    this.zobristKey = position.zobristKey;
+    this.currentPlayer = position.currentPlayer;
+    this.castlingRights = position.castlingRights;
+    this.enPassantSquare = position.enPassantSquare;
+    this.halfmoveClock = position.halfmoveClock;
+    this.fullmoveNumber = position.fullmoveNumber;
     
     this.positionFEN = position.positionFEN;
+    this.lexigraphic = position.lexigraphic;
     
     fireStateChanged();
   }
@@ -452,8 +981,66 @@ public final class Position{
    */
   
   private void setPieceAtImpl(Piece piece, Square square){
-    pieces[square.getFile()][square.getRank()] = piece;
+    setPieceAtImpl(piece, square.getRank()*8 + square.getFile());
+  }
+  
+  
+  
+  /**
+   * Puts the given piece at the square with the given index
+   * (<code>rank*8 + file</code>), without firing a ChangeEvent.
+   */
+  
+  private void setPieceAtImpl(Piece piece, int squareIndex){
+    long squareBit = 1L << squareIndex;
+    
+    Piece oldPiece = pieces[squareIndex];
+    if (oldPiece != null){
+      int index = bitboardIndex(oldPiece);
+      bitboards[index] &= ~squareBit;
+      zobristKey ^= PIECE_KEYS[index*64 + squareIndex];
+      if (!isRegularPiece(oldPiece))
+        irregularPieceCount--;
+    }
+    
+    if (piece != null){
+      int index = bitboardIndex(piece);
+      bitboards[index] |= squareBit;
+      zobristKey ^= PIECE_KEYS[index*64 + squareIndex];
+      if (!isRegularPiece(piece))
+        irregularPieceCount++;
+    }
+    
+    pieces[squareIndex] = piece;
     positionFEN = null;
+    lexigraphic = null;
+  }
+  
+  
+  
+  /**
+   * Returns whether the specified piece is a regular piece - a
+   * <code>ChessPiece</code> of one of the types 1-7. Regular pieces on the same
+   * bitboard are always equal to each other.
+   */
+  
+  private static boolean isRegularPiece(Piece piece){
+    int type = piece.getType();
+    return (piece.getClass() == ChessPiece.class) && (type >= 1) && (type <= 7);
+  }
+  
+  
+  
+  /**
+   * Returns the index of the bitboard of the specified piece. White pieces
+   * occupy indices 0-7 and black pieces 8-15; irregular pieces go to index 0
+   * (or 8).
+   */
+  
+  private static int bitboardIndex(Piece piece){
+    int type = piece.getType();
+    int offset = piece.isWhite() ? 0 : 8;
+    return isRegularPiece(piece) ? offset + type : offset;
   }
   
   
@@ -468,12 +1055,114 @@ public final class Position{
    */
   
   private void setCurrentPlayerImpl(Player player){
+    boolean wasBlack = (currentPlayer != null) && currentPlayer.isBlack();
+    boolean isBlack = (player != null) && player.isBlack();
+    if (wasBlack != isBlack)
+      zobristKey ^= BLACK_TO_MOVE_KEY;
+    
     this.currentPlayer = player;
     positionFEN = null;
   }
   
   
   
+  /**
+   * Sets the castling rights, the en-passant square and the move clocks,
+   * without firing a ChangeEvent.
+   */
+  
+  private void setMoveState(int castlingRights, Square enPassantSquare, int halfmoveClock, int fullmoveNumber){
+    this.castlingRights = castlingRights;
+    this.enPassantSquare = enPassantSquare;
+    this.halfmoveClock = halfmoveClock;
+    this.fullmoveNumber = fullmoveNumber;
+    positionFEN = null;
+  }
+  
+  
+  
+  /**
+   * Updates the castling rights, the en-passant square and the move clocks
+   * after the specified move, made by the specified piece, has been made.
+   * Castling rights are lost when the king moves, when a rook moves from its
+   * corner and whenever the king or the rook are no longer where they need to
+   * be (a rook captured in its corner, for example).
+   */
+  
+  private void updateMoveState(Move move, Piece movingPiece){
+    ChessMove cmove = (move instanceof ChessMove) ? (ChessMove)move : null;
+    ChessPiece movingChessPiece = (movingPiece instanceof ChessPiece) ? (ChessPiece)movingPiece : null;
+    boolean isWhiteMove = move.getPlayer().isWhite();
+    
+    int newCastlingRights = castlingRights & getPlacementCastlingRights();
+    if ((movingChessPiece != null) && movingChessPiece.isKing())
+      newCastlingRights &= isWhiteMove ? ~(WHITE_KINGSIDE_CASTLING | WHITE_QUEENSIDE_CASTLING) :
+        ~(BLACK_KINGSIDE_CASTLING | BLACK_QUEENSIDE_CASTLING);
+    Square startingSquare = move.getStartingSquare();
+    if (startingSquare != null)
+      newCastlingRights &= ~getCornerCastlingRight(startingSquare);
+    
+    int doublePawnPushFile = (cmove == null) ? -1 : cmove.getDoublePawnPushFile();
+    Square newEnPassantSquare = (doublePawnPushFile == -1) ? null :
+      Square.getInstance(doublePawnPushFile, isWhiteMove ? 2 : 5);
+    
+    boolean isPawnMove = (movingChessPiece != null) && movingChessPiece.isPawn();
+    boolean isCapture = (cmove != null) && cmove.isCapture();
+    int newHalfmoveClock = (isPawnMove || isCapture) ? 0 : halfmoveClock + 1;
+    
+    int newFullmoveNumber = isWhiteMove ? fullmoveNumber : fullmoveNumber + 1;
+    
+    setMoveState(newCastlingRights, newEnPassantSquare, newHalfmoveClock, newFullmoveNumber);
+  }
+  
+  
+  
+  /**
+   * Returns the castling right which depends on a rook in the specified
+   * square, or 0 if the square isn't a corner.
+   */
+  
+  private static int getCornerCastlingRight(Square square){
+    switch (square.getRank()*8 + square.getFile()){
+      case 0: return WHITE_QUEENSIDE_CASTLING;
+      case 7: return WHITE_KINGSIDE_CASTLING;
+      case 56: return BLACK_QUEENSIDE_CASTLING;
+      case 63: return BLACK_KINGSIDE_CASTLING;
+      default: return 0;
+    }
+  }
+  
+  
+  
+  /**
+   * Returns the castling rights allowed by the placement of the pieces - a
+   * right for each corner rook with a king of the same color on its rank.
+   */
+  
+  private int getPlacementCastlingRights(){
+    int rights = 0;
+    
+    long whiteRooks = bitboards[ChessPiece.ROOK];
+    if ((bitboards[ChessPiece.KING] & 0xffL) != 0){
+      if ((whiteRooks & (1L << 7)) != 0)
+        rights |= WHITE_KINGSIDE_CASTLING;
+      if ((whiteRooks & 1L) != 0)
+        rights |= WHITE_QUEENSIDE_CASTLING;
+    }
+    
+    long blackRooks = bitboards[8 + ChessPiece.ROOK];
+    if ((bitboards[8 + ChessPiece.KING] & 0xff00000000000000L) != 0){
+      if ((blackRooks & (1L << 63)) != 0)
+        rights |= BLACK_KINGSIDE_CASTLING;
+      if ((blackRooks & (1L << 56)) != 0)
+        rights |= BLACK_QUEENSIDE_CASTLING;
+    }
+    
+    return rights;
+  }
+  
+  
+  
   /**
    * Adds a ChangeListener.  The change listeners are run each
    * time the Position changes.
@@ -595,7 +1284,7 @@ public final class Position{
   
   /**
    * Returns true iff the specified <code>Position</code> is the same as this
-   * one.
+   * one. Only the variant, the pieces and the player to move are compared.
    */
   
   public boolean equals(Position pos){
@@ -605,10 +1294,19 @@ public final class Position{
     if (!currentPlayer.equals(pos.currentPlayer))
       return false;
     
-    for (int file = 0; file < pieces.length; file++)
-      for (int rank = 0; rank < pieces[file].length; rank++)
-        if (!Utilities.areEqual(pieces[file][rank], pos.pieces[file][rank]))
+    if (zobristKey != pos.zobristKey)
+      return false;
+    
+    for (int i = 0; i < bitboards.length; i++)
+      if (bitboards[i] != pos.bitboards[i])
+        return false;
+    
+    // Regular pieces on the same bitboards are equal; irregular ones need to be compared
+    if ((irregularPieceCount != 0) || (pos.irregularPieceCount != 0)){
+      for (int i = 0; i < pieces.length; i++)
+        if (!Utilities.areEqual(pieces[i], pos.pieces[i]))
           return false;
+    }
     
     return true;
   }
@@ -638,13 +1336,7 @@ public final class Position{
   public int hashCode(){
     int result = 17;
     result = 37*result + variant.hashCode();
-    result = 37*result + currentPlayer.hashCode();
-    for (int file = 0; file < pieces.length; file++)
-      for (int rank = 0; rank < pieces[file].length; rank++){
-        Piece piece = pieces[file][rank];
-        int c = (piece == null) ? 0 : piece.hashCode();
-        result = 37*result + c;
-      }
+    result = 37*result + (int)(zobristKey ^ (zobristKey >>> 32));
     
     return result;
   }
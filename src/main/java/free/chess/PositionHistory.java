@@ -0,0 +1,328 @@
+/**
+ * The chess framework library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the chess framework library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package free.chess;
+
+
+/**
+ * The moves made in a game from some initial position, indexed by ply, from
+ * which the position after any ply can be obtained quickly. Besides the moves,
+ * a full snapshot of the position is kept every <code>checkpointInterval</code>
+ * plies, so obtaining the position after a given ply only requires restoring
+ * the nearest preceding snapshot and making fewer than
+ * <code>checkpointInterval</code> moves on it - the cost doesn't grow with the
+ * length of the game.
+ * <P>The amount of snapshots is bounded: whenever it would exceed the maximum,
+ * every other snapshot is dropped and the interval is doubled. Memory use is
+ * thus a reference per move plus at most <code>maxCheckpointCount</code>
+ * positions, at the cost of longer replays in very long games.
+ * <B>IMPORTANT:</B> This class is not thread safe.
+ */
+
+public final class PositionHistory{
+
+
+
+  /**
+   * The default amount of plies between snapshots.
+   */
+
+  public static final int DEFAULT_CHECKPOINT_INTERVAL = 8;
+
+
+
+  /**
+   * The default maximum amount of snapshots.
+   */
+
+  public static final int DEFAULT_MAX_CHECKPOINT_COUNT = 64;
+
+
+
+  /**
+   * The maximum amount of snapshots.
+   */
+
+  private final int maxCheckpointCount;
+
+
+
+  /**
+   * The amount of plies between snapshots we start with.
+   */
+
+  private final int initialCheckpointInterval;
+
+
+
+  /**
+   * The current amount of plies between snapshots.
+   */
+
+  private int checkpointInterval;
+
+
+
+  /**
+   * The snapshots; the one at index <code>i</code> is the position after
+   * <code>i*checkpointInterval</code> plies.
+   */
+
+  private final Position [] checkpoints;
+
+
+
+  /**
+   * The amount of snapshots.
+   */
+
+  private int checkpointCount = 0;
+
+
+
+  /**
+   * The moves, indexed by ply.
+   */
+
+  private Move [] moves = new Move[64];
+
+
+
+  /**
+   * The amount of moves.
+   */
+
+  private int plyCount = 0;
+
+
+
+  /**
+   * The position after the last move.
+   */
+
+  private final Position lastPosition;
+
+
+
+  /**
+   * Creates a new <code>PositionHistory</code> with no moves, starting at the
+   * specified position, with the default checkpoint interval and maximum
+   * amount of snapshots.
+   */
+
+  public PositionHistory(Position initialPosition){
+    this(initialPosition, DEFAULT_CHECKPOINT_INTERVAL, DEFAULT_MAX_CHECKPOINT_COUNT);
+  }
+
+
+
+  /**
+   * Creates a new <code>PositionHistory</code> with no moves, starting at the
+   * specified position, keeping a snapshot every
+   * <code>checkpointInterval</code> plies, and at most
+   * <code>maxCheckpointCount</code> snapshots.
+   */
+
+  public PositionHistory(Position initialPosition, int checkpointInterval, int maxCheckpointCount){
+    if (checkpointInterval < 1)
+      throw new IllegalArgumentException("Bad checkpoint interval: " + checkpointInterval);
+    if (maxCheckpointCount < 2)
+      throw new IllegalArgumentException("Bad maximum checkpoint count: " + maxCheckpointCount);
+
+    this.initialCheckpointInterval = checkpointInterval;
+    this.checkpointInterval = checkpointInterval;
+    this.maxCheckpointCount = maxCheckpointCount;
+    this.checkpoints = new Position[maxCheckpointCount];
+    this.lastPosition = new Position(initialPosition);
+
+    checkpoints[checkpointCount++] = new Position(initialPosition);
+  }
+
+
+
+  /**
+   * Removes all the moves and sets the initial position to the specified
+   * one.
+   */
+
+  public void reset(Position initialPosition){
+    for (int i = 1; i < checkpointCount; i++)
+      checkpoints[i] = null;
+    for (int i = 0; i < plyCount; i++)
+      moves[i] = null;
+
+    checkpointCount = 1;
+    checkpointInterval = initialCheckpointInterval;
+    plyCount = 0;
+    checkpoints[0].copyFrom(initialPosition);
+    lastPosition.copyFrom(initialPosition);
+  }
+
+
+
+  /**
+   * Returns the amount of moves (plies).
+   */
+
+  public int getPlyCount(){
+    return plyCount;
+  }
+
+
+
+  /**
+   * Returns the move made at the specified ply (the first move is at ply 0).
+   */
+
+  public Move getMove(int ply){
+    if ((ply < 0) || (ply >= plyCount))
+      throw new IndexOutOfBoundsException("Bad ply: " + ply);
+
+    return moves[ply];
+  }
+
+
+
+  /**
+   * Returns the current amount of plies between snapshots.
+   */
+
+  public int getCheckpointInterval(){
+    return checkpointInterval;
+  }
+
+
+
+  /**
+   * Returns the current amount of snapshots.
+   */
+
+  public int getCheckpointCount(){
+    return checkpointCount;
+  }
+
+
+
+  /**
+   * Makes the specified move on the position after the last move, and adds it
+   * to the history.
+   */
+
+  public void addMove(Move move){
+    lastPosition.makeMove(move);
+
+    if (plyCount == moves.length){
+      Move [] newMoves = new Move[moves.length * 2];
+      System.arraycopy(moves, 0, newMoves, 0, plyCount);
+      moves = newMoves;
+    }
+    moves[plyCount++] = move;
+
+    if (plyCount % checkpointInterval == 0){
+      if (checkpointCount == maxCheckpointCount)
+        dropAlternateCheckpoints();
+      if (plyCount % checkpointInterval == 0)
+        checkpoints[checkpointCount++] = new Position(lastPosition);
+    }
+  }
+
+
+
+  /**
+   * Drops every other snapshot and doubles the checkpoint interval.
+   */
+
+  private void dropAlternateCheckpoints(){
+    int newCount = (checkpointCount + 1) / 2;
+    for (int i = 1; i < newCount; i++)
+      checkpoints[i] = checkpoints[i*2];
+    for (int i = newCount; i < checkpointCount; i++)
+      checkpoints[i] = null;
+
+    checkpointCount = newCount;
+    checkpointInterval *= 2;
+  }
+
+
+
+  /**
+   * Removes the moves after the specified amount of plies, as when moves are
+   * taken back.
+   */
+
+  public void truncate(int newPlyCount){
+    if ((newPlyCount < 0) || (newPlyCount > plyCount))
+      throw new IndexOutOfBoundsException("Bad ply count: " + newPlyCount);
+
+    if (newPlyCount == plyCount)
+      return;
+
+    int newCheckpointCount = newPlyCount / checkpointInterval + 1;
+    for (int i = newCheckpointCount; i < checkpointCount; i++)
+      checkpoints[i] = null;
+    checkpointCount = newCheckpointCount;
+
+    getPosition(newPlyCount, lastPosition);
+
+    for (int i = newPlyCount; i < plyCount; i++)
+      moves[i] = null;
+    plyCount = newPlyCount;
+  }
+
+
+
+  /**
+   * Sets the specified position to the position after the specified amount of
+   * plies; 0 for the initial position. The position must be of the same
+   * variant.
+   */
+
+  public void getPosition(int ply, Position position){
+    if ((ply < 0) || (ply > plyCount))
+      throw new IndexOutOfBoundsException("Bad ply: " + ply);
+
+    if (ply == plyCount)
+      position.copyFrom(lastPosition);
+    else{
+      int checkpointIndex = ply / checkpointInterval;
+      position.copyFrom(checkpoints[checkpointIndex]);
+      for (int i = checkpointIndex * checkpointInterval; i < ply; i++)
+        position.makeMove(moves[i]);
+    }
+  }
+
+
+
+  /**
+   * Returns the position after the specified amount of plies; 0 for the
+   * initial position.
+   */
+
+  public Position getPosition(int ply){
+    Position position = new Position(lastPosition);
+    getPosition(ply, position);
+    return position;
+  }
+
+
+
+}
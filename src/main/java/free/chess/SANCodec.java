@@ -0,0 +1,378 @@
+/**
+ * The chess framework library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The chess framework library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The chess framework library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the chess framework library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package free.chess;
+
+
+/**
+ * Converts between packed moves (see {@link PackedMove}) and Standard
+ * Algebraic Notation, for <code>ChesslikeGenericVariant</code>s with chess
+ * move rules. Moves are encoded with the minimal disambiguation (file, then
+ * rank, then both), a capture mark, the promotion target and a check or mate
+ * suffix. Decoding accepts the same, as well as the common deviations from
+ * it: a redundant or missing disambiguation where unambiguous, a missing
+ * capture mark, a promotion without the '=', zeros in castling and
+ * annotation marks ('!', '?'). Decoded moves are resolved against the legal
+ * moves of the position, as generated by {@link ChessMoveGenerator}.
+ * <P>A <code>SANCodec</code> keeps buffers which it reuses between calls, so
+ * an instance should only be used by one thread at a time.
+ */
+
+public final class SANCodec{
+
+
+
+  /**
+   * The SAN letters of the piece types, indexed by type.
+   */
+
+  private static final String PIECE_LETTERS = " PNBRQK";
+
+
+
+  /**
+   * The move generator.
+   */
+
+  private final ChessMoveGenerator generator = new ChessMoveGenerator();
+
+
+
+  /**
+   * The buffer into which we generate the legal moves of the position whose
+   * moves we encode or decode.
+   */
+
+  private final int [] moves = new int[ChessMoveGenerator.MAX_MOVE_COUNT];
+
+
+
+  /**
+   * The buffer into which we generate the legal replies to the move we're
+   * encoding, to tell a check from a mate.
+   */
+
+  private final int [] replies = new int[ChessMoveGenerator.MAX_MOVE_COUNT];
+
+
+
+  /**
+   * The position on which we make the move we're encoding, to determine
+   * whether it's a check or a mate; <code>null</code> until first needed.
+   */
+
+  private Position scratchPosition = null;
+
+
+
+  /**
+   * The buffer in which we build the move strings.
+   */
+
+  private final StringBuffer buf = new StringBuffer(8);
+
+
+
+  /**
+   * Returns the SAN of the specified packed move in the specified position.
+   *
+   * @throws IllegalArgumentException if the move isn't legal in the position,
+   * or if the variant of the position isn't a
+   * <code>ChesslikeGenericVariant</code> with chess move rules.
+   */
+
+  public String toSAN(Position pos, int move){
+    int moveCount = generator.generateLegalMoves(pos, 1L << PackedMove.getEndingSquare(move), moves);
+
+    boolean isLegal = false;
+    for (int i = 0; (i < moveCount) && !isLegal; i++)
+      isLegal = (moves[i] == move);
+    if (!isLegal)
+      throw new IllegalArgumentException("Illegal move: " + PackedMove.toMove(pos, move));
+
+    buf.setLength(0);
+
+    if (PackedMove.isShortCastling(move))
+      buf.append("O-O");
+    else if (PackedMove.isLongCastling(move))
+      buf.append("O-O-O");
+    else{
+      int from = PackedMove.getStartingSquare(move);
+      int to = PackedMove.getEndingSquare(move);
+      int pieceType = PackedMove.getPieceType(move);
+      boolean isCapture = PackedMove.isCapture(move);
+
+      if (pieceType == ChessPiece.PAWN){
+        if (isCapture)
+          buf.append((char)('a' + (from & 7)));
+      }
+      else{
+        buf.append(PIECE_LETTERS.charAt(pieceType));
+        appendDisambiguation(move, moveCount);
+      }
+
+      if (isCapture)
+        buf.append('x');
+      buf.append((char)('a' + (to & 7))).append((char)('1' + (to >> 3)));
+
+      int promotionType = PackedMove.getPromotionType(move);
+      if (promotionType != 0)
+        buf.append('=').append(PIECE_LETTERS.charAt(promotionType));
+    }
+
+    appendCheckSuffix(pos, move);
+
+    return buf.toString();
+  }
+
+
+
+  /**
+   * Returns the SAN of the specified move in the specified position.
+   *
+   * @throws IllegalArgumentException if the move isn't legal in the position,
+   * can't be packed, or if the variant of the position isn't a
+   * <code>ChesslikeGenericVariant</code> with chess move rules.
+   */
+
+  public String toSAN(Position pos, Move move){
+    return toSAN(pos, PackedMove.pack(pos, move));
+  }
+
+
+
+  /**
+   * Appends to the buffer whatever is needed to tell the specified (non-pawn,
+   * non-castling) move from other legal moves of the same piece type to the
+   * same square, among the specified amount of moves in the move buffer (all
+   * of which end on that square).
+   */
+
+  private void appendDisambiguation(int move, int moveCount){
+    int from = PackedMove.getStartingSquare(move);
+    int pieceType = PackedMove.getPieceType(move);
+
+    boolean isAmbiguous = false, isFileShared = false, isRankShared = false;
+    for (int i = 0; i < moveCount; i++){
+      int other = moves[i];
+      int otherFrom = PackedMove.getStartingSquare(other);
+      if ((otherFrom == from) || (PackedMove.getPieceType(other) != pieceType) ||
+          PackedMove.isShortCastling(other) || PackedMove.isLongCastling(other))
+        continue;
+
+      isAmbiguous = true;
+      if ((otherFrom & 7) == (from & 7))
+        isFileShared = true;
+      if ((otherFrom >> 3) == (from >> 3))
+        isRankShared = true;
+    }
+
+    if (!isAmbiguous)
+      return;
+
+    if (!isFileShared)
+      buf.append((char)('a' + (from & 7)));
+    else if (!isRankShared)
+      buf.append((char)('1' + (from >> 3)));
+    else
+      buf.append((char)('a' + (from & 7))).append((char)('1' + (from >> 3)));
+  }
+
+
+
+  /**
+   * Appends '+' to the buffer if the specified move gives check, or '#' if
+   * it mates.
+   */
+
+  private void appendCheckSuffix(Position pos, int move){
+    if ((scratchPosition == null) || (scratchPosition.getVariant() != pos.getVariant()))
+      scratchPosition = new Position(pos);
+    else
+      scratchPosition.copyFrom(pos);
+
+    scratchPosition.makeMove(PackedMove.toMove(scratchPosition, move));
+    if (generator.isInCheck(scratchPosition))
+      buf.append(generator.generateLegalMoves(scratchPosition, replies) == 0 ? '#' : '+');
+  }
+
+
+
+  /**
+   * Returns the packed legal move in the specified position described by the
+   * specified SAN.
+   *
+   * @throws MoveFormatException if the SAN is malformed, or doesn't describe
+   * exactly one legal move in the position.
+   * @throws IllegalArgumentException if the variant of the position isn't a
+   * <code>ChesslikeGenericVariant</code> with chess move rules.
+   */
+
+  public int parseSAN(Position pos, String san) throws MoveFormatException{
+    int end = san.length();
+    while ((end > 0) && ("+#!?".indexOf(san.charAt(end - 1)) != -1))
+      end--;
+    if (end == 0)
+      throw new MoveFormatException("Empty move: \"" + san + "\"");
+
+    if (isCastling(san, end, 3))
+      return findCastling(pos, san, PackedMove.SHORT_CASTLING);
+    else if (isCastling(san, end, 5))
+      return findCastling(pos, san, PackedMove.LONG_CASTLING);
+
+    int start = 0;
+    int pieceType = ChessPiece.PAWN;
+    int letterIndex = PIECE_LETTERS.indexOf(san.charAt(0));
+    if (letterIndex > 0){
+      pieceType = letterIndex;
+      start = 1;
+    }
+
+    int promotionType = 0;
+    char c = Character.toUpperCase(san.charAt(end - 1));
+    if ((end - start > 2) && ("NBRQ".indexOf(c) != -1)){
+      promotionType = PIECE_LETTERS.indexOf(c);
+      end--;
+      if (san.charAt(end - 1) == '=')
+        end--;
+    }
+
+    if (end - start < 2)
+      throw new MoveFormatException("Missing destination square: \"" + san + "\"");
+    int toFile = san.charAt(end - 2) - 'a';
+    int toRank = san.charAt(end - 1) - '1';
+    if ((toFile < 0) || (toFile > 7) || (toRank < 0) || (toRank > 7))
+      throw new MoveFormatException("Bad destination square: \"" + san + "\"");
+    end -= 2;
+
+    if ((end > start) && ((san.charAt(end - 1) == 'x') || (san.charAt(end - 1) == ':')))
+      end--;
+
+    int fromFile = -1, fromRank = -1;
+    for (int i = start; i < end; i++){
+      c = san.charAt(i);
+      if ((c >= 'a') && (c <= 'h') && (fromFile == -1) && (fromRank == -1))
+        fromFile = c - 'a';
+      else if ((c >= '1') && (c <= '8') && (fromRank == -1))
+        fromRank = c - '1';
+      else
+        throw new MoveFormatException("Bad starting square: \"" + san + "\"");
+    }
+
+    int to = toRank * 8 + toFile;
+    int moveCount = generator.generateLegalMoves(pos, 1L << to, moves);
+    int result = 0;
+    boolean isFound = false;
+    for (int i = 0; i < moveCount; i++){
+      int move = moves[i];
+      int from = PackedMove.getStartingSquare(move);
+      if ((PackedMove.getPieceType(move) != pieceType) ||
+          (PackedMove.getPromotionType(move) != promotionType) ||
+          PackedMove.isShortCastling(move) || PackedMove.isLongCastling(move) ||
+          ((fromFile != -1) && ((from & 7) != fromFile)) || ((fromRank != -1) && ((from >> 3) != fromRank)))
+        continue;
+
+      if (isFound)
+        throw new MoveFormatException("Ambiguous move: \"" + san + "\"");
+      result = move;
+      isFound = true;
+    }
+
+    if (!isFound)
+      throw new MoveFormatException("Illegal move: \"" + san + "\"");
+
+    return result;
+  }
+
+
+
+  /**
+   * Returns the legal move in the specified position described by the
+   * specified SAN, as a <code>Move</code> whose move string is the specified
+   * SAN.
+   *
+   * @throws MoveFormatException if the SAN is malformed, or doesn't describe
+   * exactly one legal move in the position.
+   * @throws IllegalArgumentException if the variant of the position isn't a
+   * <code>ChesslikeGenericVariant</code> with chess move rules.
+   */
+
+  public Move parseMove(Position pos, String san) throws MoveFormatException{
+    int move = parseSAN(pos, san);
+    WildVariant variant = pos.getVariant();
+    if (PackedMove.isShortCastling(move))
+      return variant.createShortCastling(pos);
+    else if (PackedMove.isLongCastling(move))
+      return variant.createLongCastling(pos);
+
+    int promotionType = PackedMove.getPromotionType(move);
+    Piece promotionTarget = promotionType == 0 ? null :
+      PackedMove.getPiece(pos.getCurrentPlayer().getPieceColor(), promotionType);
+
+    return variant.createMove(pos, PackedMove.getSquare(PackedMove.getStartingSquare(move)),
+      PackedMove.getSquare(PackedMove.getEndingSquare(move)), promotionTarget, san);
+  }
+
+
+
+  /**
+   * Returns whether the specified SAN, up to the specified index, is a
+   * castling of the specified length ("O-O" or "O-O-O", written with either
+   * the letter O or zeros).
+   */
+
+  private static boolean isCastling(String san, int end, int length){
+    if (end != length)
+      return false;
+
+    char o = san.charAt(0);
+    if ((o != 'O') && (o != '0'))
+      return false;
+
+    for (int i = 1; i < length; i++){
+      char c = san.charAt(i);
+      if (c != ((i % 2 == 0) ? o : '-'))
+        return false;
+    }
+
+    return true;
+  }
+
+
+
+  /**
+   * Returns the legal castling move with the specified flag in the specified
+   * position.
+   */
+
+  private int findCastling(Position pos, String san, int flag) throws MoveFormatException{
+    int moveCount = generator.generateLegalMoves(pos, moves);
+    for (int i = 0; i < moveCount; i++)
+      if ((moves[i] & flag) != 0)
+        return moves[i];
+
+    throw new MoveFormatException("Illegal move: \"" + san + "\"");
+  }
+
+
+
+}
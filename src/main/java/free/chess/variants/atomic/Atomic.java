@@ -137,4 +137,18 @@ public class Atomic extends ChesslikeGenericVariant{
       modifier.setPieceAt(null, square);
   }
 
+
+
+  /**
+   * Returns <code>false</code>, as captures in atomic chess explode the
+   * surrounding pieces, which changes what leaves a king in check.
+   */
+
+  @Override
+  public boolean hasChessMoveRules(){
+    return false;
+  }
+
+
+
 }
@@ -504,4 +504,18 @@ public class FischerRandom extends ChesslikeGenericVariant{
       super.makeMove(move, pos, modifier);
   }
 
+
+
+  /**
+   * Returns <code>false</code>, as castling in Fischer random chess may
+   * involve the king moving onto its own rook.
+   */
+
+  @Override
+  public boolean hasChessMoveRules(){
+    return false;
+  }
+
+
+
 }
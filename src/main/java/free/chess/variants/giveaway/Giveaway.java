@@ -120,4 +120,17 @@ public class Giveaway extends ChesslikeGenericVariant{
   }
 
 
+
+  /**
+   * Returns <code>false</code>, as captures are compulsory in giveaway chess
+   * and the king is an ordinary piece.
+   */
+
+  @Override
+  public boolean hasChessMoveRules(){
+    return false;
+  }
+
+
+
 }
@@ -299,7 +299,7 @@ public class Kriegspiel implements WildVariant{
   public Collection getTargetSquares(Position pos, Square square){
     checkPosition(pos);
     
-    return Chess.getInstance().getTargetSquares(pos, square);
+    return Chess.getInstance().getChessTargetSquares(pos, square);
   }
   
   
@@ -226,7 +226,18 @@ public class Shatranj extends NoCastlingVariant{
     
     return getShatranjPawnTargetSquares(pos, square);
   }
-  
-  
-  
+
+
+
+  /**
+   * Returns <code>false</code>, as shatranj pieces move differently.
+   */
+
+  @Override
+  public boolean hasChessMoveRules(){
+    return false;
+  }
+
+
+
 }
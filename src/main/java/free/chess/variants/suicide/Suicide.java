@@ -113,4 +113,17 @@ public class Suicide extends NoCastlingVariant{
   }
 
 
+
+  /**
+   * Returns <code>false</code>, as captures are compulsory in suicide chess
+   * and the king is an ordinary piece.
+   */
+
+  @Override
+  public boolean hasChessMoveRules(){
+    return false;
+  }
+
+
+
 }
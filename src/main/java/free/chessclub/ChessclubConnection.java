@@ -22,27 +22,23 @@
 
 package free.chessclub;
 
-import java.io.BufferedInputStream;
-import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.PrintStream;
-import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
 import java.util.BitSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.List;
-import java.util.StringTokenizer;
 
 import free.chessclub.level1.Packet;
 import free.chessclub.level2.Datagram;
 import free.chessclub.level2.DatagramEvent;
 import free.chessclub.level2.DatagramListener;
+import free.chessclub.level2.DatagramSchema;
 import free.util.Connection;
 import free.util.EventListenerList;
-import free.util.FormatException;
+import free.util.FlightRecorderEventType;
 
 
 /**
@@ -59,47 +55,6 @@ public class ChessclubConnection extends free.util.Connection{
   
   
   
-  /**
-   * The standard delimiter, used to delimit both level1 and level2.
-   */
-  
-  private static final char STANDARD_DELIMITER = '\u0019';
-  
-  
-  
-  /**
-   * The start-of-level1-packet delimiter.
-   */
-  
-  private static final char PACKET_START_DELIMITER = '[';
-  
-  
-  
-  /**
-   * The end-of-level1-packet delimiter.
-   */
-  
-  private static final char PACKET_END_DELIMITER = ']';
-  
-  
-  
-  /**
-   * The start-of-level2-datagram delimiter.
-   */
-  
-  private static final char DATAGRAM_START_DELIMITER = '('; 
-  
-  
-  
-  /**
-   * The end-of-datagram delimiter.
-   */
-  
-  private static final char DATAGRAM_END_DELIMITER = ')';
-  
-  
-  
-  
   /**
    * Maps rating keys to their english names.
    */
@@ -203,6 +158,23 @@ public class ChessclubConnection extends free.util.Connection{
   
   
   
+  /**
+   * The schemas of datagrams with optional fields, indexed by datagram id.
+   */
+  
+  private final DatagramSchema [] datagramSchemas = new DatagramSchema[Datagram.MAX_DG_ID + 1];
+  
+  
+  
+  /**
+   * The layouts of the datagrams in <code>datagramSchemas</code> under the
+   * current level2 settings, indexed by datagram id.
+   */
+  
+  private final int [][] datagramLayouts = new int[Datagram.MAX_DG_ID + 1][];
+  
+  
+  
   /**
    * Creates a new ChessclubConnection with a chessclub.com server, the 
    * ChessclubConnection is initially unconnected. After creating the 
@@ -391,6 +363,7 @@ public class ChessclubConnection extends free.util.Connection{
         level2Settings.set(dgNumber);
       else
         level2Settings.clear(dgNumber);
+      updateDatagramLayouts();
     }
     
     return true;
@@ -398,6 +371,48 @@ public class ChessclubConnection extends free.util.Connection{
   
   
   
+  /**
+   * Registers the specified schema of a datagram with optional fields. The
+   * layout of the datagram under the current level2 settings is then available
+   * via {@link #getDatagramLayout(int)}, and is kept up to date as datagrams
+   * are turned on and off.
+   */
+  
+  protected final synchronized void addDatagramSchema(DatagramSchema schema){
+    int id = schema.getId();
+    datagramSchemas[id] = schema;
+    datagramLayouts[id] = schema.layout(level2Settings);
+  }
+  
+  
+  
+  /**
+   * Returns the layout, under the current level2 settings, of the datagram
+   * with the specified id, as computed by its schema. Returns
+   * <code>null</code> if no schema has been registered for that datagram.
+   *
+   * @see DatagramSchema#layout(BitSet)
+   */
+  
+  protected final synchronized int [] getDatagramLayout(int dgId){
+    return datagramLayouts[dgId];
+  }
+  
+  
+  
+  /**
+   * Recomputes the layouts of the datagrams whose schemas have been
+   * registered. Invoked whenever the level2 settings change.
+   */
+  
+  private synchronized void updateDatagramLayouts(){
+    for (int i = 0; i < datagramSchemas.length; i++)
+      if (datagramSchemas[i] != null)
+        datagramLayouts[i] = datagramSchemas[i].layout(level2Settings);
+  }
+  
+  
+  
   
   
   /**
@@ -607,15 +622,10 @@ public class ChessclubConnection extends free.util.Connection{
   
   
   /**
-   * Overrides {@link Connection#createInputStream(InputStream)} to wrap the
-   * specified <code>InputStream</code> in a <code>BufferedInputStream</code>
-   * and a <code>PushbackInputStream</code>.
+   * The framer which splits the data sent by the server into messages.
    */
   
-  @Override
-  protected InputStream createInputStream(InputStream in){
-    return new PushbackInputStream(new BufferedInputStream(in), 2);
-  }
+  private final MessageFramer messageFramer = new MessageFramer();
   
   
   
@@ -626,197 +636,37 @@ public class ChessclubConnection extends free.util.Connection{
   
   @Override
   protected Object readMessage(InputStream in) throws IOException{
-    PushbackInputStream pin = (PushbackInputStream)in;
-    
-    while (true){
-      int b = pin.read();
-      
-      if (b < 0) // Clean disconnection
-        return null;
-      
-      if (b == STANDARD_DELIMITER){ // May be a level1 packet or datagram (but may also be just a line with this character
-        int next = pin.read();
-        if (next < 0)
-          throw new EOFException("EOF after STANDARD_DELIMITER");
-        
-        pin.unread(next);
-        pin.unread(b);
-        
-        if (next == PACKET_START_DELIMITER)
-          return readPacket(pin);
-        else if (next == DATAGRAM_START_DELIMITER)
-          return readDatagram(pin);
-        else if (next == PACKET_END_DELIMITER) // This means a clean logout
-          return null;
-      }
-      else{
-        pin.unread(b);
-        String line = readLine(pin);
-        return filterLine(line);
-      }
-    }
-  }
-  
-  
-  
-  /**
-   * Reads and parses a level1 packet from the specified input stream.
-   * 
-   * @throws IOException if an I/O error occurs while reading the datagram
-   */
-  
-  private Packet readPacket(PushbackInputStream in) throws IOException{
-    StringBuffer header = new StringBuffer();
-    
-    // Read until the newline
-    while (true){
-      int b = in.read();
-      if (b < 0)
-        throw new EOFException("EOF in a packet");
-      
-      if (b == '\n')
-        break;
-      
-      header.append((char)b);
-    }
-    
-    // In contradiction to formats.txt, the servers seems to end the header line with \r\n
-    int len = header.length();
-    if (header.charAt(len - 1) == '\r')
-      header.setLength(len - 1);
-    
-    StringTokenizer tokenizer = new StringTokenizer(header.substring(2), " ");
-    int commandCode = Integer.parseInt(tokenizer.nextToken());
-    String playerName = tokenizer.nextToken();
-    String clientTag = tokenizer.hasMoreTokens() ? tokenizer.nextToken() : null;
-    
-    List items = new LinkedList();
-    // Read until the matching ^Y]
-    while (true){
-      int first = in.read();
-      if (first < 0)
-        throw new EOFException("EOF in a packet");
-      
-      int second = in.read();
-      if (second < 0)
-        throw new EOFException("EOF in a packet");
-      
-      if ((first == STANDARD_DELIMITER) && (second == PACKET_END_DELIMITER))
-        break;
-      
-      in.unread(second);
-      in.unread(first);
-      
-      items.add(readMessage(in));
-    }
-    
-    return new Packet(commandCode, playerName, clientTag, items.toArray(new Object[items.size()]));
-  }
-  
-  
-  /**
-   * Reads and parses a level2 datagram from the specified input stream.
-   * 
-   * @throws IOException if an I/O error occurs while reading the datagram
-   * @throws FormatException if the data read from the input stream can't be parsed as a datagram. 
-   */
-  
-  private Datagram readDatagram(InputStream in) throws IOException{
-    StringBuffer buf = new StringBuffer();
-    
-    int lastChar = -1;
-    
-    // Read until ^Y) is encountered
-    while (true){
-      int b = in.read(); 
-      if (b < 0)
-        throw new EOFException("EOF in a datagram");
-      
-      buf.append((char)b);
-      
-      if ((lastChar == STANDARD_DELIMITER) && (b == DATAGRAM_END_DELIMITER))
-        return Datagram.parseDatagram(buf.substring(2, buf.length() - 2)); // Strip off the delimiters
-      
-      lastChar = b;
-    }
+    return framed(messageFramer.readMessage(in));
   }
   
   
   
   /**
-   * Read a line of plain text from the server.
+   * Frames either a line of plain text, a level1 packet or a level2 datagram
+   * out of the specified buffer, when we're served by a
+   * {@link free.util.SelectorThread}.
    */
   
-  private String readLine(PushbackInputStream in) throws IOException{
-    StringBuffer buf = new StringBuffer();
-    
-    while (true){
-      int b = in.read();
-      
-      if (b < 0)
-        break;
-      
-      // End of line
-      if (b == '\n')
-        break;
-      
-      // '\r' is also a line delimiter
-      if (b == '\r'){
-        b = in.read(); // Eat the following '\n', if any
-        if ((b > 0) && (b != '\n'))
-          in.unread(b);
-        break;
-      }
-      
-      // Don't read any datagrams
-      if (b == STANDARD_DELIMITER){
-        in.unread(b);
-        break;
-      }
-      
-      buf.append((char)b);
-    }
-    
-    return buf.toString();
+  @Override
+  protected Object readMessage(ByteBuffer buffer){
+    return framed(messageFramer.nextMessage(buffer));
   }
   
   
   
   /**
-   * Filters certain characters and character sequences (such as BEL and the prompt) from plain lines of text. Returns
-   * the string after filter, or <code>null</code> if the line should be completely ignored. 
+   * Notes that the specified message (possibly <code>null</code>) has been
+   * framed by the message framer, and returns it.
    */
   
-  private String filterLine(String line){
-    int len = line.length();
-    
-    // Keep initially empty lines.
-    if (len == 0)
-      return "";
-    
-    StringBuffer buf = new StringBuffer();
-    
-    int i = 0;
-    
-    // Skip leading prompt
-    while (line.startsWith("aics% ", i))
-      i += "aics% ".length();
-    
-    for (; i < len; i++){
-      char c = line.charAt(i);
-      
-      // Ignore BEL
-      if (c == 7)
-        continue;
-      
-      buf.append(c);
+  private Object framed(Object message){
+    if (message != null){
+      String type = (message instanceof Datagram) ? "datagram" :
+        ((message instanceof Packet) ? "packet" : "line");
+      messageFramed(messageFramer.getLastMessageSize(), type);
     }
     
-    // Ignore lines which have been completely filtered out
-    if (buf.length() == 0)
-      return null;
-    
-    return buf.toString();
+    return message;
   }
   
   
@@ -842,11 +692,27 @@ public class ChessclubConnection extends free.util.Connection{
    * we tag the command; <code>null</code> if none.
    */
   
-  public synchronized void sendCommand(String command, boolean whenLoggedIn, boolean avoidAliasing, String tag){
+  public void sendCommand(String command, boolean whenLoggedIn, boolean avoidAliasing, String tag){
+    sendCommand(command, whenLoggedIn, avoidAliasing, tag, NORMAL_PRIORITY);
+  }
+  
+  
+  
+  /**
+   * Sends a command to the server with the specified options and the specified
+   * priority, either {@link #HIGH_PRIORITY} or {@link #NORMAL_PRIORITY}. Time
+   * critical commands, such as moves, should be sent with high priority, so
+   * that they aren't held back by other commands waiting to be sent. Commands
+   * queued until login are always sent with normal priority.
+   * 
+   * @see #sendCommand(String, boolean, boolean, String)
+   */
+  
+  public synchronized void sendCommand(String command, boolean whenLoggedIn, boolean avoidAliasing, String tag, int priority){
     command = makeCommand(command, avoidAliasing, tag);
     
     if (isLoggedIn() || !whenLoggedIn)
-      sendCommandImpl(command, true);
+      sendCommandImpl(command, true, priority);
     else
       onLoginCommandQueue.addLast(command);
   }
@@ -879,7 +745,18 @@ public class ChessclubConnection extends free.util.Connection{
    * Sends the given command to the server, optionally logging it to the log stream.
    */
   
-  private synchronized void sendCommandImpl(String command, boolean log){
+  private void sendCommandImpl(String command, boolean log){
+    sendCommandImpl(command, log, NORMAL_PRIORITY);
+  }
+  
+  
+  
+  /**
+   * Queues the given command to be sent to the server with the given priority,
+   * optionally logging it to the log stream.
+   */
+  
+  private synchronized void sendCommandImpl(String command, boolean log, int priority){
     if (!isConnected())
       throw new IllegalStateException("Not connected");
     
@@ -887,10 +764,11 @@ public class ChessclubConnection extends free.util.Connection{
       logStream.println("SENDING COMMAND: " + command);
     
     try{
-      OutputStream out = getOutputStream();
-      out.write(command.getBytes("ISO8859_1"));
-      out.write('\n');
-      out.flush();
+      byte [] commandBytes = command.getBytes("ISO8859_1");
+      byte [] data = new byte[commandBytes.length + 1];
+      System.arraycopy(commandBytes, 0, data, 0, commandBytes.length);
+      data[commandBytes.length] = '\n';
+      sendData(data, priority);
     } catch (IOException e){
         connectionInterrupted(e);
       }
@@ -969,6 +847,17 @@ public class ChessclubConnection extends free.util.Connection{
   
   
   
+  /**
+   * The flight recorder event type of level2 datagrams handled.
+   */
+  
+  private static final FlightRecorderEventType DATAGRAM_HANDLED_EVENT = new FlightRecorderEventType(
+      "free.chessclub.DatagramHandled", "Datagram Handled", new String[]{"Jin", "Protocol"},
+      "A level2 datagram handled, including firing it to the datagram listeners",
+      new String[]{"datagramId"}, new String[]{"Datagram ID"}, new Class[]{int.class});
+  
+  
+  
   /**
    * This method is called when a new level2 datagram arrives from the server.
    *
@@ -979,6 +868,8 @@ public class ChessclubConnection extends free.util.Connection{
    */
   
   private final void handleDatagram(Datagram datagram, String clientTag){
+    Object flightEvent = DATAGRAM_HANDLED_EVENT.begin();
+    
     if (logStream != null)
       logStream.println(datagram);
     
@@ -1000,13 +891,19 @@ public class ChessclubConnection extends free.util.Connection{
     else if (id == Datagram.DG_SET2){
       int dgType = datagram.getInteger(0);
       boolean state = datagram.getBoolean(1);
-      if (state)
-        level2Settings.set(dgType);
-      else
-        level2Settings.clear(dgType);
+      synchronized(this){
+        if (state)
+          level2Settings.set(dgType);
+        else
+          level2Settings.clear(dgType);
+        updateDatagramLayouts();
+      }
     }
     
     fireDatagramEvent(datagram, clientTag);
+    
+    if (flightEvent != null)
+      DATAGRAM_HANDLED_EVENT.commit(flightEvent, new Object[]{new Integer(id)});
   }
   
   
@@ -0,0 +1,587 @@
+/**
+ * The chessclub.com connection library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The chessclub.com connection library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The chessclub.com connection library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the chessclub.com connection library; if not, write to the Free
+ * Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package free.chessclub;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import free.chessclub.level1.Packet;
+import free.chessclub.level2.Datagram;
+import free.util.FormatException;
+
+
+/**
+ * Splits the data sent by a chessclub.com server into lines of plain text,
+ * level1 packets and level2 datagrams. The boundaries of packets and datagrams
+ * are found directly in the byte buffer holding the data, and their contents
+ * are parsed in place, so no pushback or intermediate copies are needed.
+ * <P>Lines of plain text are filtered: the "aics% " prompt and BEL
+ * characters are removed, and lines which consist of nothing else are
+ * dropped.
+ * <P>A <code>MessageFramer</code> keeps state between invocations, so a single
+ * instance must be used for the entire data stream of a connection.
+ */
+
+public final class MessageFramer{
+
+
+
+  /**
+   * The standard delimiter, used to delimit both level1 and level2.
+   */
+
+  private static final byte STANDARD_DELIMITER = '\u0019';
+
+
+
+  /**
+   * The start-of-level1-packet delimiter.
+   */
+
+  private static final byte PACKET_START_DELIMITER = '[';
+
+
+
+  /**
+   * The end-of-level1-packet delimiter.
+   */
+
+  private static final byte PACKET_END_DELIMITER = ']';
+
+
+
+  /**
+   * The start-of-level2-datagram delimiter.
+   */
+
+  private static final byte DATAGRAM_START_DELIMITER = '(';
+
+
+
+  /**
+   * The end-of-datagram delimiter.
+   */
+
+  private static final byte DATAGRAM_END_DELIMITER = ')';
+
+
+
+  /**
+   * The prompt, as it is sent by the server.
+   */
+
+  private static final byte [] PROMPT = {'a', 'i', 'c', 's', '%', ' '};
+
+
+
+  /**
+   * The initial capacity of the buffer we use when reading from an
+   * <code>InputStream</code>.
+   */
+
+  private static final int INITIAL_BUFFER_CAPACITY = 16 * 1024;
+
+
+
+  /**
+   * Set when the last line ended with a '\r' which was the last byte in the
+   * buffer, so we don't yet know whether it is followed by a '\n' we must eat.
+   */
+
+  private boolean eatLineFeed = false;
+
+
+
+  /**
+   * Set once the server sends an unmatched end-of-packet delimiter, which
+   * means a clean logout.
+   */
+
+  private boolean isLoggedOut = false;
+
+
+
+  /**
+   * The buffer we read into when reading from an <code>InputStream</code>,
+   * lazily created. Between invocations of {@link #readMessage(InputStream)}
+   * it is ready for reading.
+   */
+
+  private ByteBuffer streamBuffer = null;
+
+
+
+  /**
+   * A scratch array into which we decode text.
+   */
+
+  private char [] scratch = new char[256];
+
+
+
+  /**
+   * The size, in bytes, of the last message framed, including its delimiters
+   * but not the end-of-line marker of lines.
+   */
+
+  private int lastMessageSize = 0;
+
+
+
+  /**
+   * Returns whether the server has indicated a clean logout.
+   */
+
+  public boolean isLoggedOut(){
+    return isLoggedOut;
+  }
+
+
+
+  /**
+   * Returns the size, in bytes, of the last message framed, including its
+   * delimiters but not the end-of-line marker of lines.
+   */
+
+  public int getLastMessageSize(){
+    return lastMessageSize;
+  }
+
+
+
+  /**
+   * Reads either a line of plain text, a level1 packet or a level2 datagram
+   * from the specified <code>InputStream</code>, blocking until a complete
+   * message arrives. Data is read from the stream in bulk, so the stream need
+   * not be buffered. Returns <code>null</code> if the end of the stream is
+   * reached or the server logs us out.
+   *
+   * @throws FormatException if a datagram or packet cannot be parsed.
+   */
+
+  public Object readMessage(InputStream in) throws IOException{
+    if (streamBuffer == null){
+      streamBuffer = ByteBuffer.allocate(INITIAL_BUFFER_CAPACITY);
+      streamBuffer.flip();
+    }
+
+    while (true){
+      Object message = nextMessage(streamBuffer);
+      if (message != null)
+        return message;
+      if (isLoggedOut)
+        return null;
+
+      // Not a complete message, read more
+      streamBuffer.compact();
+      if (!streamBuffer.hasRemaining()){
+        ByteBuffer newBuffer = ByteBuffer.allocate(streamBuffer.capacity() * 2);
+        streamBuffer.flip();
+        newBuffer.put(streamBuffer);
+        streamBuffer = newBuffer;
+      }
+
+      int position = streamBuffer.position();
+      int count = in.read(streamBuffer.array(), streamBuffer.arrayOffset() + position, streamBuffer.remaining());
+      if (count > 0)
+        streamBuffer.position(position + count);
+      streamBuffer.flip();
+
+      if (count < 0)
+        return lastMessage(streamBuffer);
+    }
+  }
+
+
+
+  /**
+   * Frames either a line of plain text, a level1 packet or a level2 datagram
+   * out of the specified buffer, which must be ready for reading. If the buffer
+   * contains a complete message, the buffer's position is advanced past it and
+   * the message is returned. Otherwise, returns <code>null</code>, leaving the
+   * incomplete message in the buffer.
+   *
+   * @throws FormatException if a datagram or packet cannot be parsed.
+   */
+
+  public Object nextMessage(ByteBuffer buffer){
+    while (true){
+      if (eatLineFeed && buffer.hasRemaining()){
+        if (buffer.get(buffer.position()) == '\n')
+          buffer.get();
+        eatLineFeed = false;
+      }
+
+      int start = buffer.position();
+      int limit = buffer.limit();
+      if (start == limit)
+        return null;
+
+      if (buffer.get(start) == STANDARD_DELIMITER){
+        if (limit - start < 2) // We need the next byte to tell what's coming
+          return null;
+
+        byte next = buffer.get(start + 1);
+        if ((next == DATAGRAM_START_DELIMITER) || (next == PACKET_START_DELIMITER)){
+          int end = findDelimitedEnd(buffer, start, limit);
+          if (end == -1)
+            return null;
+
+          buffer.position(end);
+          lastMessageSize = end - start;
+          return (next == DATAGRAM_START_DELIMITER) ?
+              (Object)parseDatagram(buffer, start, end) : (Object)parsePacket(buffer, start, end);
+        }
+        else if (next == PACKET_END_DELIMITER){ // A clean logout; the server will close the connection
+          buffer.position(start + 2);
+          isLoggedOut = true;
+          continue;
+        }
+      }
+
+      int end = findLineEnd(buffer, start, limit);
+      if (end == limit) // No complete line yet
+        return null;
+
+      int next = skipLineTerminator(buffer, end, limit);
+      buffer.position(next);
+      if ((next == limit) && (next == end + 1) && (buffer.get(end) == '\r'))
+        eatLineFeed = true;
+
+      String line = decodeLine(buffer, start, end);
+      if (line != null){
+        lastMessageSize = end - start;
+        return line;
+      }
+    }
+  }
+
+
+
+  /**
+   * Returns the remaining, unterminated, line in the specified buffer, once
+   * the end of the stream has been reached. Returns <code>null</code> if there
+   * is no such line (an incomplete packet or datagram is dropped).
+   */
+
+  private String lastMessage(ByteBuffer buffer){
+    int start = buffer.position();
+    int end = buffer.limit();
+    buffer.position(end);
+
+    if ((start == end) || (buffer.get(start) == STANDARD_DELIMITER))
+      return null;
+
+    lastMessageSize = end - start;
+    return decodeLine(buffer, start, end);
+  }
+
+
+
+  /**
+   * Returns the index of the byte terminating the line which starts at the
+   * specified index, or <code>limit</code> if the line is not terminated. A
+   * line ends with '\n', '\r' or right before a STANDARD_DELIMITER (except
+   * one at the very beginning of the line, which is then just a character).
+   */
+
+  private static int findLineEnd(ByteBuffer buffer, int start, int limit){
+    int end = start;
+    while (end < limit){
+      byte b = buffer.get(end);
+      if ((b == '\n') || (b == '\r') || ((b == STANDARD_DELIMITER) && (end != start)))
+        break;
+      end++;
+    }
+
+    return end;
+  }
+
+
+
+  /**
+   * Returns the index right after the line terminator at the specified index.
+   * A '\r' followed by '\n' is a single terminator, while a
+   * STANDARD_DELIMITER isn't part of the line at all.
+   */
+
+  private static int skipLineTerminator(ByteBuffer buffer, int end, int limit){
+    byte terminator = buffer.get(end);
+    if (terminator == STANDARD_DELIMITER)
+      return end;
+    else if ((terminator == '\r') && (end + 1 < limit) && (buffer.get(end + 1) == '\n'))
+      return end + 2;
+    else
+      return end + 1;
+  }
+
+
+
+  /**
+   * Returns the index right after the delimiter which closes the packet or
+   * datagram starting at the specified index. Nested packets are skipped.
+   * Returns -1 if the closing delimiter is not found before the specified
+   * limit.
+   */
+
+  private static int findDelimitedEnd(ByteBuffer buffer, int start, int limit){
+    byte startDelimiter = buffer.get(start + 1);
+    byte endDelimiter = (startDelimiter == PACKET_START_DELIMITER) ? PACKET_END_DELIMITER : DATAGRAM_END_DELIMITER;
+
+    int depth = 0;
+    for (int i = start; i < limit - 1; i++){
+      if (buffer.get(i) != STANDARD_DELIMITER)
+        continue;
+
+      byte next = buffer.get(i + 1);
+      if (next == startDelimiter)
+        depth++;
+      else if ((next == endDelimiter) && (--depth == 0))
+        return i + 2;
+      i++;
+    }
+
+    return -1;
+  }
+
+
+
+  /**
+   * Parses the datagram between the specified indices, delimiters included.
+   */
+
+  private Datagram parseDatagram(ByteBuffer buffer, int start, int end){
+    start += 2; // Strip off the delimiters
+    end -= 2;
+
+    return Datagram.parseDatagram(decodeChars(buffer, start, end), 0, end - start);
+  }
+
+
+
+  /**
+   * Parses the level1 packet between the specified indices, delimiters
+   * included.
+   */
+
+  private Packet parsePacket(ByteBuffer buffer, int start, int end){
+    int itemsEnd = end - 2; // Before the closing ^Y]
+
+    int headerEnd = start + 2;
+    while ((headerEnd < itemsEnd) && (buffer.get(headerEnd) != '\n'))
+      headerEnd++;
+    if (headerEnd == itemsEnd)
+      throw new FormatException("Unterminated packet header");
+
+    // In contradiction to formats.txt, the servers seems to end the header line with \r\n
+    int headerLimit = (buffer.get(headerEnd - 1) == '\r') ? headerEnd - 1 : headerEnd;
+
+    int index = skipSpaces(buffer, start + 2, headerLimit);
+    int tokenEnd = findSpace(buffer, index, headerLimit);
+    int commandCode = parseInt(buffer, index, tokenEnd);
+
+    index = skipSpaces(buffer, tokenEnd, headerLimit);
+    tokenEnd = findSpace(buffer, index, headerLimit);
+    if (index == tokenEnd)
+      throw new FormatException("No player name in packet header");
+    String playerName = decode(buffer, index, tokenEnd);
+
+    index = skipSpaces(buffer, tokenEnd, headerLimit);
+    tokenEnd = findSpace(buffer, index, headerLimit);
+    String clientTag = (index == tokenEnd) ? null : decode(buffer, index, tokenEnd);
+
+    List items = new ArrayList();
+    int itemStart = headerEnd + 1;
+    while (itemStart < itemsEnd){
+      byte next = (itemStart + 1 < itemsEnd) ? buffer.get(itemStart + 1) : 0;
+      if ((buffer.get(itemStart) == STANDARD_DELIMITER) &&
+          ((next == DATAGRAM_START_DELIMITER) || (next == PACKET_START_DELIMITER))){
+        int itemEnd = findDelimitedEnd(buffer, itemStart, itemsEnd);
+        if (itemEnd == -1)
+          throw new FormatException("Unterminated item in packet");
+
+        items.add((next == DATAGRAM_START_DELIMITER) ?
+            (Object)parseDatagram(buffer, itemStart, itemEnd) : (Object)parsePacket(buffer, itemStart, itemEnd));
+        itemStart = itemEnd;
+      }
+      else{
+        int lineEnd = findLineEnd(buffer, itemStart, itemsEnd);
+        String line = decodeLine(buffer, itemStart, lineEnd);
+        if (line != null)
+          items.add(line);
+        itemStart = (lineEnd == itemsEnd) ? itemsEnd : skipLineTerminator(buffer, lineEnd, itemsEnd);
+      }
+    }
+
+    return new Packet(commandCode, playerName, clientTag, items.toArray());
+  }
+
+
+
+  /**
+   * Returns the index of the first non-space byte at or after the specified
+   * index.
+   */
+
+  private static int skipSpaces(ByteBuffer buffer, int index, int limit){
+    while ((index < limit) && (buffer.get(index) == ' '))
+      index++;
+    return index;
+  }
+
+
+
+  /**
+   * Returns the index of the first space at or after the specified index, or
+   * <code>limit</code> if there is none.
+   */
+
+  private static int findSpace(ByteBuffer buffer, int index, int limit){
+    while ((index < limit) && (buffer.get(index) != ' '))
+      index++;
+    return index;
+  }
+
+
+
+  /**
+   * Parses the decimal integer between the specified indices.
+   */
+
+  private static int parseInt(ByteBuffer buffer, int start, int end){
+    if (start == end)
+      throw new FormatException("Missing integer");
+
+    int result = 0;
+    for (int i = start; i < end; i++){
+      int digit = buffer.get(i) - '0';
+      if ((digit < 0) || (digit > 9))
+        throw new FormatException("Bad integer");
+      result = result * 10 + digit;
+    }
+
+    return result;
+  }
+
+
+
+  /**
+   * Decodes the bytes between the specified indices into a string. The server
+   * sends 8-bit characters, each byte is mapped to the character with the
+   * same value.
+   */
+
+  private String decode(ByteBuffer buffer, int start, int end){
+    return new String(decodeChars(buffer, start, end), 0, end - start);
+  }
+
+
+
+  /**
+   * Decodes the bytes between the specified indices into the beginning of the
+   * scratch array, and returns it. The array is only valid until the next
+   * decoding.
+   */
+
+  private char [] decodeChars(ByteBuffer buffer, int start, int end){
+    int length = end - start;
+    char [] chars = scratchFor(length);
+    for (int i = 0; i < length; i++)
+      chars[i] = (char)(buffer.get(start + i) & 0xff);
+
+    return chars;
+  }
+
+
+
+  /**
+   * Decodes the line of plain text between the specified indices, filtering out
+   * the leading prompt and BEL characters. Returns <code>null</code> if the line
+   * should be ignored completely. Initially empty lines are kept.
+   */
+
+  private String decodeLine(ByteBuffer buffer, int start, int end){
+    if (start == end)
+      return "";
+
+    // Skip leading prompt
+    while (startsWithPrompt(buffer, start, end))
+      start += PROMPT.length;
+
+    char [] chars = scratchFor(end - start);
+    int length = 0;
+    for (int i = start; i < end; i++){
+      byte b = buffer.get(i);
+
+      // Ignore BEL
+      if (b == 7)
+        continue;
+
+      chars[length++] = (char)(b & 0xff);
+    }
+
+    // Ignore lines which have been completely filtered out
+    if (length == 0)
+      return null;
+
+    return new String(chars, 0, length);
+  }
+
+
+
+  /**
+   * Returns whether the bytes between the specified indices start with the
+   * prompt.
+   */
+
+  private static boolean startsWithPrompt(ByteBuffer buffer, int start, int end){
+    if (end - start < PROMPT.length)
+      return false;
+
+    for (int i = 0; i < PROMPT.length; i++)
+      if (buffer.get(start + i) != PROMPT[i])
+        return false;
+
+    return true;
+  }
+
+
+
+  /**
+   * Returns the scratch array, making sure it can hold at least the specified
+   * amount of characters.
+   */
+
+  private char [] scratchFor(int length){
+    if (scratch.length < length)
+      scratch = new char[Math.max(length, scratch.length * 2)];
+
+    return scratch;
+  }
+
+
+
+}
@@ -22,9 +22,6 @@
 
 package free.chessclub.level2;
 
-import java.util.LinkedList;
-import java.util.List;
-
 import free.util.FormatException;
 
 
@@ -33,7 +30,9 @@ import free.util.FormatException;
  * described at
  * <code>ftp://ftp.chessclub.com/pub/icc/formats/formats.txt</code>.
  * This class defines methods useful for parsing a datagram and retrieving
- * arguments from it.
+ * arguments from it. A parsed datagram only records where each field is; the
+ * fields are decoded into strings and integers when first asked for, which
+ * makes datagrams unsafe for concurrent use by several threads.
  */
 
 public class Datagram{
@@ -188,10 +187,47 @@ public class Datagram{
   
   
   /**
-   * An array holding the datagram fields.
+   * The characters of the datagram, from which the fields are decoded.
+   */
+
+  private final char [] chars;
+
+
+
+  /**
+   * The bounds of the fields within <code>chars</code>; the field with index
+   * <code>i</code> starts at <code>bounds[2*i]</code> and ends (exclusive) at
+   * <code>bounds[2*i + 1]</code>.
+   */
+
+  private final int [] bounds;
+
+
+
+  /**
+   * The fields that have been asked for as strings so far, indexed by field
+   * index. Created lazily.
+   */
+
+  private String [] strings = null;
+
+
+
+  /**
+   * The fields that have been parsed as integers so far, indexed by field
+   * index. Created lazily, together with <code>isIntegerParsed</code>.
+   */
+
+  private int [] integers = null;
+
+
+
+  /**
+   * Whether the field with the corresponding index has been parsed into
+   * <code>integers</code>.
    */
 
-  private final String [] fields; 
+  private boolean [] isIntegerParsed = null;
 
   
   
@@ -204,8 +240,37 @@ public class Datagram{
     if (fields == null)
       throw new IllegalArgumentException("Datagram fields may not be null");
     
+    int length = 0;
+    for (int i = 0; i < fields.length; i++)
+      length += fields[i].length();
+    
     this.id = id;
-    this.fields = fields;
+    this.chars = new char[length];
+    this.bounds = new int[fields.length * 2];
+    this.strings = fields;
+    
+    int index = 0;
+    for (int i = 0; i < fields.length; i++){
+      String field = fields[i];
+      field.getChars(0, field.length(), chars, index);
+      bounds[2*i] = index;
+      index += field.length();
+      bounds[2*i + 1] = index;
+    }
+  }
+
+
+
+  /**
+   * Creates a new <code>Datagram</code> with the specified id, whose fields
+   * are at the specified bounds in the specified character array. The array
+   * is not copied.
+   */
+
+  private Datagram(int id, char [] chars, int [] bounds){
+    this.id = id;
+    this.chars = chars;
+    this.bounds = bounds;
   }
 
   
@@ -224,17 +289,30 @@ public class Datagram{
    */
 
   public int getFieldCount(){
-    return fields.length;
+    return bounds.length / 2;
   }
 
 
   
   /**
-   * Returns the specified field, unparsed.
+   * Returns the specified field, unparsed. The string is created on the first
+   * invocation and cached afterwards.
    */ 
 
   public String getField(int fieldIndex){
-    return fields[fieldIndex];
+    int start = bounds[2*fieldIndex];
+    int end = bounds[2*fieldIndex + 1];
+
+    if (strings == null)
+      strings = new String[bounds.length / 2];
+
+    String field = strings[fieldIndex];
+    if (field == null){
+      field = new String(chars, start, end - start);
+      strings[fieldIndex] = field;
+    }
+
+    return field;
   }
 
 
@@ -250,11 +328,25 @@ public class Datagram{
 
 
   /**
-   * Returns the specified field parsed as an integer.
+   * Returns the specified field parsed as an integer. The field is parsed
+   * directly from the datagram's characters, on the first invocation only.
    */
 
   public int getInteger(int fieldIndex){
-    return Integer.parseInt(getField(fieldIndex));
+    int start = bounds[2*fieldIndex];
+    int end = bounds[2*fieldIndex + 1];
+
+    if (integers == null){
+      integers = new int[bounds.length / 2];
+      isIntegerParsed = new boolean[bounds.length / 2];
+    }
+
+    if (!isIntegerParsed[fieldIndex]){
+      integers[fieldIndex] = parseInteger(chars, start, end);
+      isIntegerParsed[fieldIndex] = true;
+    }
+
+    return integers[fieldIndex];
   }
 
 
@@ -276,7 +368,54 @@ public class Datagram{
    */
 
   public boolean getBoolean(int fieldIndex){
-    return getField(fieldIndex).equals("1");
+    int start = bounds[2*fieldIndex];
+    int end = bounds[2*fieldIndex + 1];
+
+    return (end - start == 1) && (chars[start] == '1');
+  }
+
+
+
+  /**
+   * Parses the integer in the specified range of the specified character
+   * array. Plain decimal numbers are parsed in place; anything else is
+   * delegated to <code>Integer.parseInt</code>, so that the result (or the
+   * exception thrown) is the same.
+   */
+
+  private static int parseInteger(char [] chars, int start, int end){
+    int index = start;
+    boolean isNegative = (index < end) && (chars[index] == '-');
+    if (isNegative)
+      index++;
+
+    if ((index == end) || (end - index > 9)) // Empty, or may overflow
+      return Integer.parseInt(new String(chars, start, end - start));
+
+    int value = 0;
+    for (; index < end; index++){
+      int digit = chars[index] - '0';
+      if ((digit < 0) || (digit > 9))
+        return Integer.parseInt(new String(chars, start, end - start));
+      value = value * 10 + digit;
+    }
+
+    return isNegative ? -value : value;
+  }
+
+
+
+  /**
+   * Returns the index of the first occurrence of the specified character in
+   * the specified range of the specified array, or -1 if none.
+   */
+
+  private static int indexOf(char [] chars, char c, int start, int end){
+    for (int i = start; i < end; i++)
+      if (chars[i] == c)
+        return i;
+
+    return -1;
   }
   
   
@@ -292,52 +431,99 @@ public class Datagram{
    */
 
   public static Datagram parseDatagram(String dgString) throws FormatException{
+    return parseDatagram(dgString.toCharArray());
+  }
+
+
+
+  /**
+   * Parses the specified range of the specified character array and returns
+   * a <code>Datagram</code> object corresponding to the datagram represented by
+   * it. The range should be the contents of the datagram, without the
+   * surrounding delimiters. The characters are copied, so the array may be
+   * reused afterwards.
+   *
+   * @throws FormatException if the specified characters cannot be parsed as a
+   * datagram because they are not in the proper format.
+   */
+
+  public static Datagram parseDatagram(char [] chars, int offset, int length) throws FormatException{
+    char [] dgChars = new char[length];
+    System.arraycopy(chars, offset, dgChars, 0, length);
+
+    return parseDatagram(dgChars);
+  }
+
+
+
+  /**
+   * Parses the specified characters, which become owned by the returned
+   * datagram. Only the bounds of the fields are determined here; the fields
+   * themselves are decoded lazily, when asked for.
+   */
+
+  private static Datagram parseDatagram(char [] chars) throws FormatException{
+    int length = chars.length;
+    int index = indexOf(chars, ' ', 0, length);
+    if (index == -1) // No arguments in the datagram
+      index = length;
+
+    int id;
     try{
-      int index = dgString.indexOf(' ');
-      if (index == -1) // No arguments in the datagram
-        index = dgString.length();
-      int id = Integer.parseInt(dgString.substring(0, index));
-      
-      dgString += " "; // So that each field is suffixed with a space
-      
-      List fields = new LinkedList();
-      
-      index++;
-      int dgLength = dgString.length();
-      while (index < dgLength){
-        int startIndex, endIndex;
-        char firstChar = dgString.charAt(index); 
-        if (firstChar == '{'){ // The delimiters are { and }
-          startIndex = index + 1;
-          endIndex = dgString.indexOf('}', startIndex);
-          index = endIndex + 2; // "} "
-        }
-        else if (firstChar == SPECIAL_STRING_DELIM_START){ // The delimiters are ^Y{ and ^Y}
-          startIndex = index + 2;
-          endIndex = dgString.indexOf(SPECIAL_STRING_DELIM_START, startIndex);
-          index = endIndex + 3; // "^Y} "
-        }
-        else{ 
-          while (firstChar == ' '){ // Skip any extra spaces just in case
-            index++;
-            firstChar = dgString.charAt(index);
-          }
-          
-          startIndex = index;
-          endIndex = dgString.indexOf(' ', startIndex);
-          index = endIndex + 1;
-        }
-        
-        fields.add(dgString.substring(startIndex, endIndex));
-      }
-  
-      return new Datagram(id, (String[])fields.toArray(new String[fields.size()]));
+      id = parseInteger(chars, 0, index);
     } catch (NumberFormatException e){
         throw new FormatException(e);
       }
-      catch (StringIndexOutOfBoundsException e){
-        throw new FormatException(e);
+
+    int [] bounds = new int[32];
+    int fieldCount = 0;
+
+    index++;
+    while (index < length){
+      int startIndex, endIndex;
+      char firstChar = chars[index];
+      if (firstChar == ' '){ // Skip any extra spaces just in case
+        index++;
+        continue;
+      }
+      else if (firstChar == '{'){ // The delimiters are { and }
+        startIndex = index + 1;
+        endIndex = indexOf(chars, '}', startIndex, length);
+        index = endIndex + 2; // "} "
+      }
+      else if (firstChar == SPECIAL_STRING_DELIM_START){ // The delimiters are ^Y{ and ^Y}
+        startIndex = index + 2;
+        endIndex = indexOf(chars, SPECIAL_STRING_DELIM_START, startIndex, length);
+        index = endIndex + 3; // "^Y} "
+      }
+      else{
+        startIndex = index;
+        endIndex = indexOf(chars, ' ', startIndex, length);
+        if (endIndex == -1) // The last field
+          endIndex = length;
+        index = endIndex + 1;
+      }
+
+      if (endIndex == -1)
+        throw new FormatException("Unterminated field at index " + startIndex + " of datagram " + id);
+
+      if (bounds.length == 2*fieldCount){
+        int [] newBounds = new int[bounds.length * 2];
+        System.arraycopy(bounds, 0, newBounds, 0, bounds.length);
+        bounds = newBounds;
       }
+      bounds[2*fieldCount] = startIndex;
+      bounds[2*fieldCount + 1] = endIndex;
+      fieldCount++;
+    }
+
+    if (bounds.length != 2*fieldCount){
+      int [] trimmedBounds = new int[2*fieldCount];
+      System.arraycopy(bounds, 0, trimmedBounds, 0, trimmedBounds.length);
+      bounds = trimmedBounds;
+    }
+
+    return new Datagram(id, chars, bounds);
   }
   
   
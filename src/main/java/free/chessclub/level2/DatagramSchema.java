@@ -0,0 +1,127 @@
+/**
+ * The chessclub.com connection library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The chessclub.com connection library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The chessclub.com connection library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the chessclub.com connection library; if not, write to the Free
+ * Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package free.chessclub.level2;
+
+import java.util.BitSet;
+
+
+/**
+ * Describes the fields of a datagram whose layout depends on which other
+ * datagrams are on. Some datagrams act as flags for the optional fields of
+ * another (DG_MOVE_CLOCK, for example, adds a field to DG_SEND_MOVES), so the
+ * index of a field within a datagram depends on the current level2 settings.
+ * A schema lists the fields a datagram may have, in order, each with the flag
+ * datagram it depends on, and computes, for a given set of level2 settings,
+ * the index of each field within the datagram - a layout. Layouts only change
+ * when the level2 settings do, so they are computed then, rather than each
+ * time a datagram is received.
+ */
+
+public final class DatagramSchema{
+
+
+
+  /**
+   * The condition of fields which are always sent.
+   */
+
+  public static final int ALWAYS = -1;
+
+
+
+  /**
+   * The id of the datagram described by this schema.
+   */
+
+  private final int id;
+
+
+
+  /**
+   * The ids of the datagrams which must be on for each field to be sent, or
+   * <code>ALWAYS</code> for fields which are always sent.
+   */
+
+  private final int [] conditions;
+
+
+
+  /**
+   * Creates a new <code>DatagramSchema</code> for the datagram with the
+   * specified id, whose fields are sent when the datagrams with the specified
+   * ids are on. Use <code>ALWAYS</code> for fields which are always sent.
+   */
+
+  public DatagramSchema(int id, int [] conditions){
+    if (conditions == null)
+      throw new IllegalArgumentException("conditions may not be null");
+
+    this.id = id;
+    this.conditions = (int[])conditions.clone();
+  }
+
+
+
+  /**
+   * Returns the id of the datagram described by this schema.
+   */
+
+  public int getId(){
+    return id;
+  }
+
+
+
+  /**
+   * Returns the amount of fields the datagram may have.
+   */
+
+  public int getFieldCount(){
+    return conditions.length;
+  }
+
+
+
+  /**
+   * Returns the layout of the datagram under the specified level2 settings.
+   * The element at index <code>i</code> of the returned array is the index of
+   * field <code>i</code> within the datagram, or -1 if it isn't sent.
+   */
+
+  public int [] layout(BitSet level2Settings){
+    int [] layout = new int[conditions.length];
+    int index = 0;
+    for (int i = 0; i < conditions.length; i++){
+      int condition = conditions[i];
+      if ((condition == ALWAYS) || level2Settings.get(condition))
+        layout[i] = index++;
+      else
+        layout[i] = -1;
+    }
+
+    return layout;
+  }
+
+
+
+}
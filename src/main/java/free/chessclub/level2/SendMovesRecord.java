@@ -0,0 +1,248 @@
+/**
+ * The chessclub.com connection library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The chessclub.com connection library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The chessclub.com connection library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the chessclub.com connection library; if not, write to the Free
+ * Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package free.chessclub.level2;
+
+
+/**
+ * The decoded fields of a DG_SEND_MOVES datagram. The datagram's optional
+ * fields (those enabled by DG_MOVE_ALGEBRAIC, DG_MOVE_SMITH, DG_MOVE_TIME,
+ * DG_MOVE_CLOCK and DG_IS_VARIATION) are located via a layout of
+ * {@link #SCHEMA}, computed for the current level2 settings.
+ */
+
+public final class SendMovesRecord{
+
+
+
+  /**
+   * The index of the game number field in the schema.
+   */
+
+  public static final int GAME_NUMBER = 0;
+
+
+
+  /**
+   * The index of the algebraic move field in the schema.
+   */
+
+  public static final int ALGEBRAIC_MOVE = 1;
+
+
+
+  /**
+   * The index of the Smith move field in the schema.
+   */
+
+  public static final int SMITH_MOVE = 2;
+
+
+
+  /**
+   * The index of the move time field in the schema.
+   */
+
+  public static final int MOVE_TIME = 3;
+
+
+
+  /**
+   * The index of the clock field in the schema.
+   */
+
+  public static final int MOVE_CLOCK = 4;
+
+
+
+  /**
+   * The index of the variation code field in the schema.
+   */
+
+  public static final int VARIATION_CODE = 5;
+
+
+
+  /**
+   * The schema of DG_SEND_MOVES.
+   */
+
+  public static final DatagramSchema SCHEMA = new DatagramSchema(Datagram.DG_SEND_MOVES, new int[]{
+    DatagramSchema.ALWAYS, Datagram.DG_MOVE_ALGEBRAIC, Datagram.DG_MOVE_SMITH, Datagram.DG_MOVE_TIME,
+    Datagram.DG_MOVE_CLOCK, Datagram.DG_IS_VARIATION});
+
+
+
+  /**
+   * The game number.
+   */
+
+  private final int gameNumber;
+
+
+
+  /**
+   * The move in algebraic format, or <code>null</code> if not sent.
+   */
+
+  private final String algebraicMove;
+
+
+
+  /**
+   * The move in Smith format, or <code>null</code> if not sent.
+   */
+
+  private final String smithMove;
+
+
+
+  /**
+   * The amount of seconds the move took, or -1 if not sent.
+   */
+
+  private final int moveTime;
+
+
+
+  /**
+   * The amount of seconds left on the clock of the player who made the move,
+   * or -1 if not sent.
+   */
+
+  private final int moveClock;
+
+
+
+  /**
+   * The variation code, or -1 if not sent.
+   */
+
+  private final int variationCode;
+
+
+
+  /**
+   * Creates a new <code>SendMovesRecord</code> with the specified values.
+   */
+
+  private SendMovesRecord(int gameNumber, String algebraicMove, String smithMove, int moveTime, int moveClock,
+      int variationCode){
+    this.gameNumber = gameNumber;
+    this.algebraicMove = algebraicMove;
+    this.smithMove = smithMove;
+    this.moveTime = moveTime;
+    this.moveClock = moveClock;
+    this.variationCode = variationCode;
+  }
+
+
+
+  /**
+   * Decodes the specified DG_SEND_MOVES datagram, using the specified layout
+   * of {@link #SCHEMA}.
+   */
+
+  public static SendMovesRecord decode(Datagram dg, int [] layout){
+    if (dg.getId() != Datagram.DG_SEND_MOVES)
+      throw new IllegalArgumentException("Not a DG_SEND_MOVES datagram: " + dg);
+
+    int algebraicIndex = layout[ALGEBRAIC_MOVE];
+    int smithIndex = layout[SMITH_MOVE];
+    int timeIndex = layout[MOVE_TIME];
+    int clockIndex = layout[MOVE_CLOCK];
+    int variationIndex = layout[VARIATION_CODE];
+
+    return new SendMovesRecord(
+      dg.getInteger(layout[GAME_NUMBER]),
+      algebraicIndex == -1 ? null : dg.getString(algebraicIndex),
+      smithIndex == -1 ? null : dg.getString(smithIndex),
+      timeIndex == -1 ? -1 : dg.getInteger(timeIndex),
+      clockIndex == -1 ? -1 : dg.getInteger(clockIndex),
+      variationIndex == -1 ? -1 : dg.getInteger(variationIndex));
+  }
+
+
+
+  /**
+   * Returns the game number.
+   */
+
+  public int getGameNumber(){
+    return gameNumber;
+  }
+
+
+
+  /**
+   * Returns the move in algebraic format, or <code>null</code> if it wasn't
+   * sent.
+   */
+
+  public String getAlgebraicMove(){
+    return algebraicMove;
+  }
+
+
+
+  /**
+   * Returns the move in Smith format, or <code>null</code> if it wasn't sent.
+   */
+
+  public String getSmithMove(){
+    return smithMove;
+  }
+
+
+
+  /**
+   * Returns the amount of seconds the move took, or -1 if it wasn't sent.
+   */
+
+  public int getMoveTime(){
+    return moveTime;
+  }
+
+
+
+  /**
+   * Returns the amount of seconds left on the clock of the player who made
+   * the move, or -1 if it wasn't sent.
+   */
+
+  public int getMoveClock(){
+    return moveClock;
+  }
+
+
+
+  /**
+   * Returns the variation code, or -1 if it wasn't sent.
+   */
+
+  public int getVariationCode(){
+    return variationCode;
+  }
+
+
+
+}
@@ -24,15 +24,61 @@ package free.freechess;
 
 import java.util.StringTokenizer;
 
-import free.util.Struct;
-
 
 /**
  * A container for delta board information. More information is available by
  * issuing "help iv_compressmoves" on freechess.org
  */
 
-public class DeltaBoardStruct extends Struct{
+public class DeltaBoardStruct{
+
+
+
+  /**
+   * The game number.
+   */
+
+  private final int gameNumber;
+
+
+
+  /**
+   * The amount of plies played.
+   */
+
+  private final int pliesPlayedCount;
+
+
+
+  /**
+   * The move in algebraic format.
+   */
+
+  private final String moveAlgebraic;
+
+
+
+  /**
+   * The move in Smith-Warren format.
+   */
+
+  private final String moveSmith;
+
+
+
+  /**
+   * The amount of time taken to make the move, in milliseconds.
+   */
+
+  private final int takenTime;
+
+
+
+  /**
+   * The amount of time remaining, in milliseconds.
+   */
+
+  private final int remainingTime;
 
 
 
@@ -63,12 +109,12 @@ public class DeltaBoardStruct extends Struct{
     if (takenTime < 0)
       throw new IllegalArgumentException("The time taken to make the move ("+takenTime+") may not be negative");
 
-    setIntegerProperty("GameNumber", gameNumber);
-    setIntegerProperty("PliesPlayedCount", pliesPlayedCount);
-    setStringProperty("MoveAlgebraic", moveAlgebraic);
-    setStringProperty("MoveSmith", moveSmith);
-    setIntegerProperty("TakenTime", takenTime);
-    setIntegerProperty("RemainingTime", remainingTime);
+    this.gameNumber = gameNumber;
+    this.pliesPlayedCount = pliesPlayedCount;
+    this.moveAlgebraic = moveAlgebraic;
+    this.moveSmith = moveSmith;
+    this.takenTime = takenTime;
+    this.remainingTime = remainingTime;
   }
 
 
@@ -106,7 +152,7 @@ public class DeltaBoardStruct extends Struct{
    */
 
   public int getGameNumber(){
-    return getIntegerProperty("GameNumber");
+    return gameNumber;
   }
 
 
@@ -116,7 +162,7 @@ public class DeltaBoardStruct extends Struct{
    */
 
   public int getPliesPlayedCount(){
-    return getIntegerProperty("PliesPlayedCount");
+    return pliesPlayedCount;
   }
 
 
@@ -126,7 +172,7 @@ public class DeltaBoardStruct extends Struct{
    */
 
   public String getMoveAlgebraic(){
-    return getStringProperty("MoveAlgebraic");
+    return moveAlgebraic;
   }
 
 
@@ -136,7 +182,7 @@ public class DeltaBoardStruct extends Struct{
    */
 
   public String getMoveSmith(){
-    return getStringProperty("MoveSmith");
+    return moveSmith;
   }
 
 
@@ -146,7 +192,7 @@ public class DeltaBoardStruct extends Struct{
    */
 
   public int getTakenTime(){
-    return getIntegerProperty("TakenTime");
+    return takenTime;
   }
 
 
@@ -156,7 +202,7 @@ public class DeltaBoardStruct extends Struct{
    */
 
   public int getRemainingTime(){
-    return getIntegerProperty("RemainingTime");
+    return remainingTime;
   }
 
 
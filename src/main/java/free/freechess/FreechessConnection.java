@@ -22,12 +22,10 @@
 
 package free.freechess;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.PrintStream;
-import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
 import java.util.BitSet;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -37,6 +35,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import free.util.Connection;
+import free.util.FlightRecorderEventType;
 
 
 /**
@@ -150,6 +149,8 @@ public class FreechessConnection extends Connection{
     setIvarState(Ivar.DEFPROMPT, true); // Sets it to the default, which we filter out.
     setIvarState(Ivar.MS, true);
     setIvarState(Ivar.NOHIGHLIGHT, true);
+
+    registerLineHandlers();
   }
 
 
@@ -391,11 +392,27 @@ public class FreechessConnection extends Connection{
    * command.
    */
   
-  public synchronized void sendCommand(String command, boolean whenLoggedIn, boolean avoidAliasing, boolean avoidUnidling){
+  public void sendCommand(String command, boolean whenLoggedIn, boolean avoidAliasing, boolean avoidUnidling){
+    sendCommand(command, whenLoggedIn, avoidAliasing, avoidUnidling, NORMAL_PRIORITY);
+  }
+  
+  
+  
+  /**
+   * Sends a command to the server with the specified options and the specified
+   * priority, either {@link #HIGH_PRIORITY} or {@link #NORMAL_PRIORITY}. Time
+   * critical commands, such as moves, should be sent with high priority, so
+   * that they aren't held back by other commands waiting to be sent. Commands
+   * queued until login are always sent with normal priority.
+   * 
+   * @see #sendCommand(String, boolean, boolean, boolean)
+   */
+  
+  public synchronized void sendCommand(String command, boolean whenLoggedIn, boolean avoidAliasing, boolean avoidUnidling, int priority){
     command = makeCommand(command, avoidAliasing, avoidUnidling);
     
     if (isLoggedIn() || !whenLoggedIn)
-      sendCommandImpl(command, true);
+      sendCommandImpl(command, true, priority);
     else
       onLoginCommandQueue.addLast(command);
   }
@@ -423,7 +440,18 @@ public class FreechessConnection extends Connection{
    * Sends the given command to the server, optionally echoing it to System.out.
    */
 
-  private synchronized void sendCommandImpl(String command, boolean echo){
+  private void sendCommandImpl(String command, boolean echo){
+    sendCommandImpl(command, echo, NORMAL_PRIORITY);
+  }
+  
+  
+  
+  /**
+   * Queues the given command to be sent to the server with the given priority,
+   * optionally echoing it to System.out.
+   */
+
+  private synchronized void sendCommandImpl(String command, boolean echo, int priority){
     if (!isConnected())
       throw new IllegalStateException("Not connected");
 
@@ -431,10 +459,11 @@ public class FreechessConnection extends Connection{
       System.out.println("SENDING COMMAND: " + command);
 
     try{
-      OutputStream out = getOutputStream();
-      out.write(command.getBytes("ASCII"));
-      out.write('\n');
-      out.flush();
+      byte [] commandBytes = command.getBytes("ASCII");
+      byte [] data = new byte[commandBytes.length + 1];
+      System.arraycopy(commandBytes, 0, data, 0, commandBytes.length);
+      data[commandBytes.length] = '\n';
+      sendData(data, priority);
     } catch (IOException e){
         connectionInterrupted(e);
       }
@@ -461,15 +490,10 @@ public class FreechessConnection extends Connection{
   
   
   /**
-   * Overrides {@link Connection#createInputStream(InputStream)} to wrap the
-   * specified <code>InputStream</code> in a <code>BufferedInputStream</code>
-   * and a <code>PushbackInputStream</code>.
+   * The framer which splits the data sent by the server into lines.
    */
   
-  @Override
-  protected InputStream createInputStream(InputStream in){
-    return new PushbackInputStream(new BufferedInputStream(in));
-  }
+  private final LineFramer lineFramer = new LineFramer();
 
 
 
@@ -479,140 +503,382 @@ public class FreechessConnection extends Connection{
   
   @Override
   protected Object readMessage(InputStream inputStream) throws IOException{
-    PushbackInputStream pin = (PushbackInputStream)inputStream;
-    StringBuffer buf = new StringBuffer();
+    return framed(lineFramer.readLine(inputStream));
+  }
+  
+  
+  
+  /**
+   * Frames a single line out of the specified buffer, when we're served by a
+   * {@link free.util.SelectorThread}.
+   */
+  
+  @Override
+  protected Object readMessage(ByteBuffer buffer){
+    return framed(lineFramer.nextLine(buffer));
+  }
+  
+  
+  
+  /**
+   * Notes that the specified line (possibly <code>null</code>) has been framed
+   * by the line framer, and returns it.
+   */
+  
+  private String framed(String line){
+    if (line != null)
+      messageFramed(lineFramer.getLastLineSize(), "line");
     
-    boolean lineStartsWithPrompt = false;
-    while (true){
-      int b = pin.read();
-      
-      if (b < 0){
-        if (buf.length() == 0) // Clean disconnection
-          return null;
-        break;
+    return line;
+  }
+  
+  
+  
+  /**
+   * The dispatcher routing lines sent by the server to their handlers.
+   */
+
+  private final LineDispatcher lineDispatcher = new LineDispatcher();
+
+
+
+  /**
+   * Registers the handlers of all the kinds of lines we know, each under the
+   * cheapest feature identifying the lines it handles. Handlers of lines which
+   * share a feature are registered in the order they should be tried.
+   */
+
+  private void registerLineHandlers(){
+    lineDispatcher.addByFirstToken("<g1>", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleGameInfo(line);
       }
-            
-      // End of line
-      if (b == '\n'){
-        // FICS uses \n\r for an end-of-line marker!?
-        // Eat the following '\r', if there is one
-        b = pin.read();
-        if ((b > 0) && (b != '\r'))
-          pin.unread(b);
-        
-        // Ignore all-prompt lines
-        if (lineStartsWithPrompt && (buf.length() == 0)){
-          lineStartsWithPrompt = false;
-          continue;
-        }
-        else
-          break;
+    });
+    lineDispatcher.addByFirstToken("<12>", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleStyle12(line);
       }
-      
-      buf.append((char)b);
-      
-      // Filter out the prompt
-      if (buf.toString().equals("fics% ")){
-        buf.setLength(0);
-        lineStartsWithPrompt = true;
+    });
+    lineDispatcher.addByFirstToken("<d1>", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleDeltaBoard(line);
       }
-    }
-    
-    return buf.toString();
+    });
+    lineDispatcher.addByFirstToken("<sc>", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleSeeksCleared(line);
+      }
+    });
+    LineHandler seekAddedHandler = new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleSeekAdded(line);
+      }
+    };
+    lineDispatcher.addByFirstToken("<s>", seekAddedHandler);
+    lineDispatcher.addByFirstToken("<sn>", seekAddedHandler);
+    lineDispatcher.addByFirstToken("<sr>", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleSeeksRemoved(line);
+      }
+    });
+    lineDispatcher.addByFirstToken("<b1>", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleBughouseHoldings(line);
+      }
+    });
+    lineDispatcher.addByFirstToken("{Game", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleGameEnd(line);
+      }
+    });
+    lineDispatcher.addByFirstToken("Removing", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleStoppedObserving(line);
+      }
+    });
+    lineDispatcher.addByFirstToken("You", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleStoppedExamining(line);
+      }
+    });
+    lineDispatcher.addByFirstToken("Entering", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleEnteredBSetupMode(line);
+      }
+    });
+    lineDispatcher.addByFirstToken("Game", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleExitedBSetupMode(line);
+      }
+    });
+    LineHandler illegalMoveHandler = new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleIllegalMove(line);
+      }
+    };
+    lineDispatcher.addByFirstToken("Illegal", illegalMoveHandler);
+    lineDispatcher.addByFirstToken("It", illegalMoveHandler);
+    lineDispatcher.addByFirstToken("The", illegalMoveHandler);
+    lineDispatcher.addByVerb("", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleChannelTell(line);
+      }
+    });
+    lineDispatcher.addByFirstToken("****", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleLogin(line);
+      }
+    });
+    LineHandler ivarStateChangedHandler = new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleIvarStateChanged(line);
+      }
+    };
+    for (int i = 0; Ivar.getByIndex(i) != null; i++)
+      lineDispatcher.addByFirstToken(Ivar.getByIndex(i).getName(), ivarStateChangedHandler);
+    lineDispatcher.addByVerb("you", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handlePersonalTell(line);
+      }
+    });
+    lineDispatcher.addByVerb("says", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleSayTell(line);
+      }
+    });
+    lineDispatcher.addByVerb("you", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handlePTell(line);
+      }
+    });
+    lineDispatcher.addByVerb("shouts", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleShout(line);
+      }
+    });
+    lineDispatcher.addByFirstToken("-->", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleIShout(line);
+      }
+    });
+    lineDispatcher.addByFirstChar(':', new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleTShout(line);
+      }
+    });
+    lineDispatcher.addByVerb("c-shouts", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleCShout(line);
+      }
+    });
+    lineDispatcher.addByFirstChar(' ', new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleAnnouncement(line);
+      }
+    });
+    lineDispatcher.addByVerb("kibitzes", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleKibitz(line);
+      }
+    });
+    lineDispatcher.addByVerb("whispers", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleWhisper(line);
+      }
+    });
+    lineDispatcher.addByFirstChar(':', new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleQTell(line);
+      }
+    });
+    LineHandler offerHandler = new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleOffer(line);
+      }
+    };
+    lineDispatcher.addByFirstToken("<pt>", offerHandler);
+    lineDispatcher.addByFirstToken("<pf>", offerHandler);
+    lineDispatcher.addByFirstToken("<pr>", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleOfferRemoved(line);
+      }
+    });
+    lineDispatcher.addByFirstToken("Game", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handlePlayerOffered(line);
+      }
+    });
+    lineDispatcher.addByFirstToken("Game", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handlePlayerDeclined(line);
+      }
+    });
+    lineDispatcher.addByFirstToken("Game", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handlePlayerWithdrew(line);
+      }
+    });
+    lineDispatcher.addByFirstToken("Game", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handlePlayerCounteredTakebackOffer(line);
+      }
+    });
+    lineDispatcher.addByFirstToken("You", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handleSimulCurrentBoardChanged(line);
+      }
+    });
+    lineDispatcher.addByFirstToken("Your", new LineHandler(){
+      @Override
+      public boolean handleLine(String line){
+        return handlePrimaryGameChanged(line);
+      }
+    });
+  }
+
+
+
+  /**
+   * Registers the specified handler to be offered lines whose first token (the
+   * text up to the first space) is the specified one. For tagged lines such as
+   * "&lt;12&gt; ...", the first token is the tag. Handlers registered by
+   * subclasses are offered lines after the handlers of this class.
+   */
+
+  protected final void addLineHandlerByFirstToken(String firstToken, LineHandler handler){
+    lineDispatcher.addByFirstToken(firstToken, handler);
   }
+
+
+
+  /**
+   * Registers the specified handler to be offered lines which start with the
+   * specified character.
+   */
+
+  protected final void addLineHandlerByFirstChar(char firstChar, LineHandler handler){
+    lineDispatcher.addByFirstChar(firstChar, handler);
+  }
+
+
+
+  /**
+   * Registers the specified handler to be offered lines whose verb is the
+   * specified one. The verb is the word right before the first ": " in the
+   * line, ignoring anything up to and including a closing parenthesis. For
+   * example, the verb of "Name(TD) shouts: Hi" is "shouts", and the verb of
+   * the channel tell "Name(50): Hi" is the empty string.
+   */
+
+  protected final void addLineHandlerByVerb(String verb, LineHandler handler){
+    lineDispatcher.addByVerb(verb, handler);
+  }
+
+
+
+  /**
+   * Registers the specified handler to be offered every line not handled by
+   * the handlers registered under a specific feature of the line. This is
+   * relatively expensive, so it should only be used for lines with no such
+   * feature.
+   */
+
+  protected final void addLineHandler(LineHandler handler){
+    lineDispatcher.add(handler);
+  }
+
+
+
+  /**
+   * Returns the dispatcher routing lines to their handlers.
+   */
+
+  LineDispatcher getLineDispatcher(){
+    return lineDispatcher;
+  }
+
+
+
+  /**
+   * The flight recorder event type of lines handled.
+   */
+  
+  private static final FlightRecorderEventType LINE_HANDLED_EVENT = new FlightRecorderEventType(
+      "free.freechess.LineHandled", "Line Handled", new String[]{"Jin", "Protocol"},
+      "A line sent by the server handled",
+      new String[]{"handler"}, new String[]{"Handler"}, new Class[]{String.class});
   
   
   
   /**
    * The method is responsible for determining the type of the
-   * information, parsing it and sending it for further processing.
+   * information, parsing it and sending it for further processing. The line is
+   * offered to the handlers registered under its features, and if none of them
+   * handles it, to <code>processLine</code> (unless it's to be filtered).
    */
 
   @Override
   protected void handleMessage(Object lineObj){
     String line = (String)lineObj;
+    Object flightEvent = LINE_HANDLED_EVENT.begin();
     
     if (logStream != null)
       logStream.println(line);
     
-    if (handleGameInfo(line))
-      return;
-    if (handleStyle12(line))
-      return;
-    if (handleDeltaBoard(line))
-      return;
-    if (handleSeeksCleared(line))
-      return;
-    if (handleSeekAdded(line))
-      return;
-    if (handleSeeksRemoved(line))
-      return;
-    if (handleBughouseHoldings(line))
-      return;
-    if (handleGameEnd(line))
-      return;
-    if (handleStoppedObserving(line))
-      return;
-    if (handleStoppedExamining(line))
-      return;
-    if (handleEnteredBSetupMode(line))
-      return;
-    if (handleExitedBSetupMode(line))
-      return;
-    if (handleIllegalMove(line))
-      return;
-    if (handleChannelTell(line))
-      return;
-    if (handleLogin(line))
-      return;
-    if (handleIvarStateChanged(line))
-      return;
-    if (handlePersonalTell(line))
-      return;
-    if (handleSayTell(line))
-      return;
-    if (handlePTell(line))
-      return;
-    if (handleShout(line))
-      return;
-    if (handleIShout(line))
-      return;
-    if (handleTShout(line))
-      return;
-    if (handleCShout(line))
-      return;
-    if (handleAnnouncement(line))
-      return;
-    if (handleKibitz(line))
-      return;
-    if (handleWhisper(line))
-      return;
-    if (handleQTell(line))
-      return;
-    if (handleOffer(line))
-      return;
-    if (handleOfferRemoved(line))
-      return;
-    if (handlePlayerOffered(line))                    //
-      return;                                         // We have to handle these
-    if (handlePlayerDeclined(line))                   // "manually", since the  
-      return;                                         // server currently does  
-    if (handlePlayerWithdrew(line))                   // not inform us of offers
-      return;                                         // in games we're         
-    if (handlePlayerCounteredTakebackOffer(line))     // observing.             
-      return;                                         // 
-    if (handleSimulCurrentBoardChanged(line))
-      return;
-    if (handlePrimaryGameChanged(line))
-      return;
+    String handler;
+    if (lineDispatcher.dispatch(line))
+      handler = lineDispatcher.getLastHandlerDescription();
+    else{
+      Integer filterCount = (Integer)linesToFilter.get(line);
+      if (filterCount == null){
+        processLine(line);
+        handler = "processLine";
+      }
+      else{
+        if (filterCount.intValue() == 1)
+          linesToFilter.remove(line);
+        else
+          linesToFilter.put(line, new Integer(filterCount.intValue() - 1));
+        handler = "filtered";
+      }
+    }
     
-    Integer filterCount = (Integer)linesToFilter.get(line);
-    if (filterCount == null)
-      processLine(line);
-    else if (filterCount.intValue() == 1)
-      linesToFilter.remove(line);
-    else
-      linesToFilter.put(line, new Integer(filterCount.intValue() - 1));
+    if (flightEvent != null)
+      LINE_HANDLED_EVENT.commit(flightEvent, new Object[]{handler});
   }
 
 
@@ -24,8 +24,6 @@ package free.freechess;
 
 import java.util.StringTokenizer;
 
-import free.util.Struct;
-
 
 /**
  * A structure holding parsed information from a gameinfo line.
@@ -33,8 +31,144 @@ import free.util.Struct;
  * the format.
  */
 
-public class GameInfoStruct extends Struct{
+public class GameInfoStruct{
+
+
+
+
+  /**
+   * The game number.
+   */
+
+  private final int gameNumber;
+
+
+
+  /**
+   * Whether the game is private.
+   */
+
+  private final boolean isGamePrivate;
+
+
+
+  /**
+   * The game category - rating type or wild variant name.
+   */
+
+  private final String gameCategory;
+
+
+
+  /**
+   * Whether the game is rated.
+   */
+
+  private final boolean isGameRated;
+
+
+
+  /**
+   * Whether the white player is registered.
+   */
+
+  private final boolean isWhiteRegistered;
+
+
+
+  /**
+   * Whether the black player is registered.
+   */
+
+  private final boolean isBlackRegistered;
+
+
+
+  /**
+   * The initial time on white's clock, in seconds.
+   */
+
+  private final int whiteTime;
+
+
+
+  /**
+   * White's increment, in seconds.
+   */
+
+  private final int whiteInc;
+
+
 
+  /**
+   * The initial time on black's clock, in seconds.
+   */
+
+  private final int blackTime;
+
+
+
+  /**
+   * Black's increment, in seconds.
+   */
+
+  private final int blackInc;
+
+
+
+  /**
+   * The bughouse partner's game number, or 0 if none.
+   */
+
+  private final int partnerGameNumber;
+
+
+
+  /**
+   * White's rating.
+   */
+
+  private final int whiteRating;
+
+
+
+  /**
+   * White's rating provshow character.
+   */
+
+  private final char whiteProvShow;
+
+
+
+  /**
+   * Black's rating.
+   */
+
+  private final int blackRating;
+
+
+
+  /**
+   * Black's rating provshow character.
+   */
+
+  private final char blackProvShow;
+
+
+
+  /**
+   * Whether white is using timeseal.
+   */
+
+  private final boolean isWhiteTimesealed;
+
+
+
+  /**
+   * Whether black is using timeseal.
+   */
+
+  private final boolean isBlackTimesealed;
 
 
 
@@ -73,8 +207,6 @@ public class GameInfoStruct extends Struct{
       int whiteRating, char whiteProvShow, int blackRating, char blackProvShow, 
       boolean isWhiteTimesealed, boolean isBlackTimesealed){
 
-    super(20);
-
     if (whiteTime < 0)
       throw new IllegalArgumentException("White's initial time ("+whiteTime+") may not be negative");
 
@@ -87,23 +219,23 @@ public class GameInfoStruct extends Struct{
     if (blackInc < 0)
       throw new IllegalArgumentException("Black's increment ("+blackInc+") may not be negative");
 
-    setIntegerProperty("GameNumber", gameNumber);
-    setBooleanProperty("IsGamePrivate", isGamePrivate);
-    setStringProperty("GameCategory", gameCategory);
-    setBooleanProperty("IsGameRated", isGameRated);
-    setBooleanProperty("IsWhiteRegistered", isWhiteRegistered);
-    setBooleanProperty("IsBlackRegistered", isBlackRegistered);
-    setIntegerProperty("WhiteTime", whiteTime);
-    setIntegerProperty("WhiteInc", whiteInc);
-    setIntegerProperty("BlackTime", blackTime);
-    setIntegerProperty("BlackInc", blackInc);
-    setIntegerProperty("PartnerGameNumber", partnerGameNumber);
-    setIntegerProperty("WhiteRating", whiteRating);
-    setCharProperty("WhiteProvShow", whiteProvShow);
-    setIntegerProperty("BlackRating", blackRating);
-    setCharProperty("BlackProvShow", blackProvShow);
-    setBooleanProperty("IsWhiteTimesealed", isWhiteTimesealed);
-    setBooleanProperty("IsBlackTimesealed", isBlackTimesealed);
+    this.gameNumber = gameNumber;
+    this.isGamePrivate = isGamePrivate;
+    this.gameCategory = gameCategory;
+    this.isGameRated = isGameRated;
+    this.isWhiteRegistered = isWhiteRegistered;
+    this.isBlackRegistered = isBlackRegistered;
+    this.whiteTime = whiteTime;
+    this.whiteInc = whiteInc;
+    this.blackTime = blackTime;
+    this.blackInc = blackInc;
+    this.partnerGameNumber = partnerGameNumber;
+    this.whiteRating = whiteRating;
+    this.whiteProvShow = whiteProvShow;
+    this.blackRating = blackRating;
+    this.blackProvShow = blackProvShow;
+    this.isWhiteTimesealed = isWhiteTimesealed;
+    this.isBlackTimesealed = isBlackTimesealed;
   }
 
 
@@ -211,7 +343,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public int getGameNumber(){
-    return getIntegerProperty("GameNumber");
+    return gameNumber;
   }
 
 
@@ -223,7 +355,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public boolean isGamePrivate(){
-    return getBooleanProperty("IsGamePrivate");
+    return isGamePrivate;
   }
 
 
@@ -235,7 +367,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public String getGameCategory(){
-    return getStringProperty("GameCategory");
+    return gameCategory;
   }
 
 
@@ -247,7 +379,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public boolean isGameRated(){
-    return getBooleanProperty("IsGameRated");
+    return isGameRated;
   }
 
 
@@ -259,7 +391,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public boolean isWhiteRegistered(){
-    return getBooleanProperty("IsWhiteRegistered");
+    return isWhiteRegistered;
   }
 
 
@@ -271,7 +403,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public boolean isBlackRegistered(){
-    return getBooleanProperty("IsBlackRegistered");
+    return isBlackRegistered;
   }
 
 
@@ -282,7 +414,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public int getWhiteTime(){
-    return getIntegerProperty("WhiteTime");
+    return whiteTime;
   }
 
 
@@ -293,7 +425,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public int getBlackTime(){
-    return getIntegerProperty("BlackTime");
+    return blackTime;
   }
 
 
@@ -305,7 +437,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public int getWhiteInc(){
-    return getIntegerProperty("WhiteInc");
+    return whiteInc;
   }
 
 
@@ -317,7 +449,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public int getBlackInc(){
-    return getIntegerProperty("BlackInc");
+    return blackInc;
   }
 
 
@@ -328,7 +460,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public int getPartnerGameNumber(){
-    return getIntegerProperty("PartnerGameNumber");
+    return partnerGameNumber;
   }
 
 
@@ -339,7 +471,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public int getWhiteRating(){
-    return getIntegerProperty("WhiteRating");
+    return whiteRating;
   }
 
 
@@ -351,7 +483,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public char getWhiteProvShow(){
-    return getCharProperty("WhiteProvShow");
+    return whiteProvShow;
   }
 
 
@@ -362,7 +494,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public int getBlackRating(){
-    return getIntegerProperty("BlackRating");
+    return blackRating;
   }
 
 
@@ -374,7 +506,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public char getBlackProvShow(){
-    return getCharProperty("BlackProvShow");
+    return blackProvShow;
   }
 
 
@@ -386,7 +518,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public boolean isWhiteTimesealed(){
-    return getBooleanProperty("IsWhiteTimesealed");
+    return isWhiteTimesealed;
   }
 
 
@@ -398,7 +530,7 @@ public class GameInfoStruct extends Struct{
    */
 
   public boolean isBlackTimesealed(){
-    return getBooleanProperty("IsBlackTimesealed");
+    return isBlackTimesealed;
   }
 
 
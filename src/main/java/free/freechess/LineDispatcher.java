@@ -0,0 +1,429 @@
+/**
+ * The freechess.org connection library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002, 2003 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The freechess.org connection library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The freechess.org connection library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the freechess.org connection library; if not, write to the Free
+ * Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package free.freechess;
+
+import java.util.Vector;
+
+
+/**
+ * Routes lines sent by the server to the {@link LineHandler}s which may be
+ * interested in them. Handlers are registered under one of several cheap
+ * features of the lines they handle:
+ * <UL>
+ *   <LI>The first token of the line - the text up to the first space. For tagged
+ *       lines, such as "&lt;12&gt; ...", this is the tag.
+ *   <LI>The first character of the line.
+ *   <LI>The verb - the word right before the first ": " in the line, ignoring
+ *       anything up to and including a closing parenthesis. This identifies
+ *       messages such as "Name(TD) shouts: ...", whose first token is the
+ *       name of the sender. Channel tells, such as "Name(50): ...", have an
+ *       empty verb.
+ * </UL>
+ * Handlers may also be registered without a key, in which case they are
+ * offered every line not handled by a keyed handler.
+ * <P>A line is offered to the matching handlers in the order of the features
+ * above, and for each feature in the order of registration, until one of them
+ * handles it. A handler registered under several features matching the same
+ * line may be offered it more than once.
+ * <P>The dispatcher also counts the lines and the handler invocations, as well
+ * as the invocations it would take to offer each line to all the handlers in
+ * the order of their registration, for comparison.
+ */
+
+final class LineDispatcher{
+
+
+
+  /**
+   * The amount of buckets in each of the tables. Keys are bucketed by their
+   * first character (modulo the amount of buckets); the empty key is in the
+   * first bucket.
+   */
+
+  private static final int BUCKET_COUNT = 128;
+
+
+
+  /**
+   * All the distinct handlers, in the order of their registration.
+   */
+
+  private final Vector handlers = new Vector();
+
+
+
+  /**
+   * The entries of handlers registered under the first token.
+   */
+
+  private final Entry [][] firstTokenTable = new Entry[BUCKET_COUNT][];
+
+
+
+  /**
+   * The entries of handlers registered under the first character.
+   */
+
+  private final Entry [][] firstCharTable = new Entry[BUCKET_COUNT][];
+
+
+
+  /**
+   * The entries of handlers registered under the verb.
+   */
+
+  private final Entry [][] verbTable = new Entry[BUCKET_COUNT][];
+
+
+
+  /**
+   * The entries of handlers registered without a key.
+   */
+
+  private Entry [] unkeyedEntries = new Entry[0];
+
+
+
+  /**
+   * The amount of lines dispatched.
+   */
+
+  private long lineCount = 0;
+
+
+
+  /**
+   * The amount of handler invocations made.
+   */
+
+  private long invocationCount = 0;
+
+
+
+  /**
+   * The amount of handler invocations which would have been made had every
+   * line been offered to all the handlers in the order of their registration.
+   */
+
+  private long sequentialInvocationCount = 0;
+
+
+
+  /**
+   * The entry of the handler which handled the last line dispatched;
+   * <code>null</code> if none did.
+   */
+
+  private Entry lastHandlerEntry = null;
+
+
+
+  /**
+   * Registers the specified handler to be offered lines whose first token is
+   * the specified one.
+   */
+
+  public void addByFirstToken(String firstToken, LineHandler handler){
+    add(firstTokenTable, firstToken, handler);
+  }
+
+
+
+  /**
+   * Registers the specified handler to be offered lines which start with the
+   * specified character.
+   */
+
+  public void addByFirstChar(char firstChar, LineHandler handler){
+    add(firstCharTable, String.valueOf(firstChar), handler);
+  }
+
+
+
+  /**
+   * Registers the specified handler to be offered lines with the specified
+   * verb.
+   */
+
+  public void addByVerb(String verb, LineHandler handler){
+    add(verbTable, verb, handler);
+  }
+
+
+
+  /**
+   * Registers the specified handler to be offered all lines not handled by
+   * keyed handlers.
+   */
+
+  public void add(LineHandler handler){
+    unkeyedEntries = append(unkeyedEntries, new Entry(null, handler, ordinalOf(handler)));
+  }
+
+
+
+  /**
+   * Adds an entry for the specified handler with the specified key to the
+   * specified table.
+   */
+
+  private void add(Entry [][] table, String key, LineHandler handler){
+    if (key == null)
+      throw new IllegalArgumentException("key may not be null");
+    if (handler == null)
+      throw new IllegalArgumentException("handler may not be null");
+
+    int bucket = bucketOf(key, 0, key.length());
+    Entry [] entries = table[bucket] == null ? new Entry[0] : table[bucket];
+    table[bucket] = append(entries, new Entry(key, handler, ordinalOf(handler)));
+  }
+
+
+
+  /**
+   * Returns the registration ordinal of the specified handler, registering it
+   * if it's a new one.
+   */
+
+  private int ordinalOf(LineHandler handler){
+    int ordinal = handlers.indexOf(handler);
+    if (ordinal == -1){
+      ordinal = handlers.size();
+      handlers.addElement(handler);
+    }
+
+    return ordinal;
+  }
+
+
+
+  /**
+   * Returns a new array with the specified entry appended to the specified
+   * array.
+   */
+
+  private static Entry [] append(Entry [] entries, Entry entry){
+    Entry [] newEntries = new Entry[entries.length + 1];
+    System.arraycopy(entries, 0, newEntries, 0, entries.length);
+    newEntries[entries.length] = entry;
+    return newEntries;
+  }
+
+
+
+  /**
+   * Returns the bucket of the key occupying the specified range of the
+   * specified string.
+   */
+
+  private static int bucketOf(String s, int start, int end){
+    return start == end ? 0 : s.charAt(start) % BUCKET_COUNT;
+  }
+
+
+
+  /**
+   * Offers the specified line to the handlers registered under its features,
+   * until one of them handles it. Returns whether the line was handled.
+   */
+
+  public boolean dispatch(String line){
+    lineCount++;
+    lastHandlerEntry = null;
+
+    int ordinal = dispatchImpl(line);
+    sequentialInvocationCount += (ordinal == -1) ? handlers.size() : ordinal + 1;
+
+    return ordinal != -1;
+  }
+
+
+
+  /**
+   * Offers the specified line to the handlers registered under its features
+   * until one of them handles it, and returns the ordinal of that handler, or
+   * -1 if none did.
+   */
+
+  private int dispatchImpl(String line){
+    int length = line.length();
+    int ordinal;
+
+    int firstSpace = line.indexOf(' ');
+    int firstTokenEnd = firstSpace == -1 ? length : firstSpace;
+    if ((ordinal = offer(firstTokenTable, line, 0, firstTokenEnd)) != -1)
+      return ordinal;
+
+    if ((length != 0) && ((ordinal = offer(firstCharTable, line, 0, 1)) != -1))
+      return ordinal;
+
+    int verbEnd = line.indexOf(": ");
+    if (verbEnd != -1){
+      int verbStart = Math.max(line.lastIndexOf(' ', verbEnd - 1), line.lastIndexOf(')', verbEnd - 1)) + 1;
+      if ((ordinal = offer(verbTable, line, verbStart, verbEnd)) != -1)
+        return ordinal;
+    }
+
+    return offer(unkeyedEntries, line, 0, 0);
+  }
+
+
+
+  /**
+   * Offers the specified line to the handlers in the specified table whose
+   * key is the specified range of the line. Returns the ordinal of the handler
+   * which handled it, or -1 if none did.
+   */
+
+  private int offer(Entry [][] table, String line, int keyStart, int keyEnd){
+    Entry [] entries = table[bucketOf(line, keyStart, keyEnd)];
+    return entries == null ? -1 : offer(entries, line, keyStart, keyEnd);
+  }
+
+
+
+  /**
+   * Offers the specified line to the specified handler entries whose key is
+   * either <code>null</code> or the specified range of the line. Returns the
+   * ordinal of the handler which handled it, or -1 if none did.
+   */
+
+  private int offer(Entry [] entries, String line, int keyStart, int keyEnd){
+    int keyLength = keyEnd - keyStart;
+    for (int i = 0; i < entries.length; i++){
+      Entry entry = entries[i];
+      String key = entry.key;
+      if ((key != null) && ((key.length() != keyLength) || !line.regionMatches(keyStart, key, 0, keyLength)))
+        continue;
+
+      invocationCount++;
+      if (entry.handler.handleLine(line)){
+        lastHandlerEntry = entry;
+        return entry.ordinal;
+      }
+    }
+
+    return -1;
+  }
+
+
+
+  /**
+   * Returns the amount of lines dispatched so far.
+   */
+
+  public long getLineCount(){
+    return lineCount;
+  }
+
+
+
+  /**
+   * Returns the amount of handler invocations made so far.
+   */
+
+  public long getInvocationCount(){
+    return invocationCount;
+  }
+
+
+
+  /**
+   * Returns the amount of handler invocations which would have been made so
+   * far had every line been offered to all the handlers in the order of their
+   * registration, until one of them handled it.
+   */
+
+  public long getSequentialInvocationCount(){
+    return sequentialInvocationCount;
+  }
+
+
+
+  /**
+   * Returns a short description of the handler which handled the last line
+   * dispatched - the key it is registered under, or its registration ordinal,
+   * prefixed with '#', if it's registered without a key. Returns
+   * <code>null</code> if no handler handled the last line.
+   */
+
+  public String getLastHandlerDescription(){
+    Entry entry = lastHandlerEntry;
+    if (entry == null)
+      return null;
+
+    return ((entry.key == null) || (entry.key.length() == 0)) ? "#" + entry.ordinal : entry.key;
+  }
+
+
+
+  /**
+   * A handler registered under a certain key.
+   */
+
+  private static final class Entry{
+
+
+
+    /**
+     * The key; <code>null</code> if none.
+     */
+
+    public final String key;
+
+
+
+    /**
+     * The handler.
+     */
+
+    public final LineHandler handler;
+
+
+
+    /**
+     * The registration ordinal of the handler.
+     */
+
+    public final int ordinal;
+
+
+
+    /**
+     * Creates a new <code>Entry</code> with the specified key, handler and
+     * handler ordinal.
+     */
+
+    public Entry(String key, LineHandler handler, int ordinal){
+      this.key = key;
+      this.handler = handler;
+      this.ordinal = ordinal;
+    }
+
+
+
+  }
+
+
+
+}
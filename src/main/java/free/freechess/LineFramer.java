@@ -0,0 +1,274 @@
+/**
+ * The freechess.org connection library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002, 2003 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The freechess.org connection library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The freechess.org connection library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the freechess.org connection library; if not, write to the Free
+ * Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package free.freechess;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+
+/**
+ * Splits the data sent by a freechess.org server into lines. Lines are
+ * terminated by "\n\r" (or just "\n"), the "fics% " prompt is stripped off the
+ * beginning of lines and lines consisting only of the prompt are ignored.
+ * Each byte is examined once, and each line is decoded into a string with a
+ * single decoding operation.
+ * <P>A <code>LineFramer</code> keeps state between invocations, so a single
+ * instance must be used for the entire data stream of a connection.
+ */
+
+public final class LineFramer{
+
+
+
+  /**
+   * The prompt, as it is sent by the server.
+   */
+
+  private static final byte [] PROMPT = {'f', 'i', 'c', 's', '%', ' '};
+
+
+
+  /**
+   * The charset we decode lines with. The server doesn't support 8-bit
+   * characters, so this merely maps each byte to the character with the same
+   * value.
+   */
+
+  private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+
+
+  /**
+   * The initial capacity of the buffer we use when reading from an
+   * <code>InputStream</code>.
+   */
+
+  private static final int INITIAL_BUFFER_CAPACITY = 8 * 1024;
+
+
+
+  /**
+   * Set when the last line ended with a '\n' which was the last byte in the
+   * buffer, so we don't yet know whether it is followed by the '\r' we must
+   * eat.
+   */
+
+  private boolean eatCarriageReturn = false;
+
+
+
+  /**
+   * The buffer we read into when reading from an <code>InputStream</code>,
+   * lazily created. Between invocations of {@link #readLine(InputStream)} it
+   * is ready for reading.
+   */
+
+  private ByteBuffer streamBuffer = null;
+
+
+
+  /**
+   * A scratch array used to decode lines out of direct buffers.
+   */
+
+  private byte [] scratch = new byte[256];
+
+
+
+  /**
+   * The size, in bytes, of the last line framed, not including the
+   * end-of-line marker.
+   */
+
+  private int lastLineSize = 0;
+
+
+
+  /**
+   * Returns the size, in bytes, of the last line framed, not including the
+   * end-of-line marker.
+   */
+
+  public int getLastLineSize(){
+    return lastLineSize;
+  }
+
+
+
+  /**
+   * Reads a single line from the specified <code>InputStream</code>, blocking
+   * until a complete line arrives. Data is read from the stream in bulk, so
+   * the stream need not be buffered. Returns <code>null</code> if the end of
+   * the stream is reached.
+   */
+
+  public String readLine(InputStream in) throws IOException{
+    if (streamBuffer == null){
+      streamBuffer = ByteBuffer.allocate(INITIAL_BUFFER_CAPACITY);
+      streamBuffer.flip();
+    }
+
+    while (true){
+      String line = nextLine(streamBuffer);
+      if (line != null)
+        return line;
+
+      // Not a complete line, read more
+      streamBuffer.compact();
+      if (!streamBuffer.hasRemaining()){
+        ByteBuffer newBuffer = ByteBuffer.allocate(streamBuffer.capacity() * 2);
+        streamBuffer.flip();
+        newBuffer.put(streamBuffer);
+        streamBuffer = newBuffer;
+      }
+
+      int position = streamBuffer.position();
+      int count = in.read(streamBuffer.array(), streamBuffer.arrayOffset() + position, streamBuffer.remaining());
+      if (count > 0)
+        streamBuffer.position(position + count);
+      streamBuffer.flip();
+
+      if (count < 0)
+        return lastLine(streamBuffer);
+    }
+  }
+
+
+
+  /**
+   * Frames a single line out of the specified buffer, which must be ready for
+   * reading. If the buffer contains a complete line, the buffer's position is
+   * advanced past it and the line is returned (without the end-of-line
+   * marker). Otherwise, returns <code>null</code>, leaving the incomplete line
+   * in the buffer.
+   */
+
+  public String nextLine(ByteBuffer buffer){
+    while (true){
+      if (eatCarriageReturn && buffer.hasRemaining()){
+        if (buffer.get(buffer.position()) == '\r')
+          buffer.get();
+        eatCarriageReturn = false;
+      }
+
+      int start = buffer.position();
+      int limit = buffer.limit();
+      int end = start;
+      while ((end < limit) && (buffer.get(end) != '\n'))
+        end++;
+
+      if (end == limit) // No complete line yet
+        return null;
+
+      // FICS uses \n\r for an end-of-line marker!?
+      buffer.position(end + 1);
+      if (!buffer.hasRemaining())
+        eatCarriageReturn = true;
+      else if (buffer.get(end + 1) == '\r')
+        buffer.get();
+
+      String line = decodeLine(buffer, start, end);
+      if (line != null){
+        lastLineSize = end - start;
+        return line;
+      }
+    }
+  }
+
+
+
+  /**
+   * Returns the remaining, unterminated, line in the specified buffer, once
+   * the end of the stream has been reached. Returns <code>null</code> if there
+   * is no such line.
+   */
+
+  public String lastLine(ByteBuffer buffer){
+    int start = buffer.position();
+    int end = buffer.limit();
+    buffer.position(end);
+
+    if (start == end)
+      return null;
+
+    lastLineSize = end - start;
+    return decodeLine(buffer, start, end);
+  }
+
+
+
+  /**
+   * Strips the prompt off the line between the specified indices in the
+   * specified buffer and decodes it. Returns <code>null</code> if the line
+   * consists of nothing but the prompt.
+   */
+
+  private String decodeLine(ByteBuffer buffer, int start, int end){
+    boolean lineStartsWithPrompt = false;
+    while (startsWithPrompt(buffer, start, end)){
+      start += PROMPT.length;
+      lineStartsWithPrompt = true;
+    }
+
+    // Ignore all-prompt lines
+    if (lineStartsWithPrompt && (start == end))
+      return null;
+
+    if (buffer.hasArray())
+      return new String(buffer.array(), buffer.arrayOffset() + start, end - start, CHARSET);
+
+    int length = end - start;
+    if (scratch.length < length)
+      scratch = new byte[Math.max(length, scratch.length * 2)];
+
+    int position = buffer.position();
+    buffer.position(start);
+    buffer.get(scratch, 0, length);
+    buffer.position(position);
+
+    return new String(scratch, 0, length, CHARSET);
+  }
+
+
+
+  /**
+   * Returns whether the bytes of the specified buffer between the specified
+   * indices start with the prompt.
+   */
+
+  private static boolean startsWithPrompt(ByteBuffer buffer, int start, int end){
+    if (end - start < PROMPT.length)
+      return false;
+
+    for (int i = 0; i < PROMPT.length; i++)
+      if (buffer.get(start + i) != PROMPT[i])
+        return false;
+
+    return true;
+  }
+
+
+
+}
@@ -0,0 +1,49 @@
+/**
+ * The freechess.org connection library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002, 2003 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The freechess.org connection library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The freechess.org connection library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with the freechess.org connection library; if not, write to the Free
+ * Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package free.freechess;
+
+
+/**
+ * Handles lines of a certain kind sent by the freechess.org server. Handlers
+ * are registered with a {@link FreechessConnection} under cheap features of
+ * the lines they handle (see {@link FreechessConnection#addLineHandler(String,
+ * LineHandler)} and its siblings), so that each line is only offered to the
+ * few handlers which may be interested in it.
+ */
+
+public interface LineHandler{
+
+
+
+  /**
+   * Checks whether the specified line is of the kind this handler handles,
+   * and if so, processes it. Returns <code>true</code> if the line has been
+   * handled and should not be offered to any other handlers;
+   * <code>false</code> otherwise.
+   */
+
+  boolean handleLine(String line);
+
+
+
+}
@@ -24,8 +24,6 @@ package free.freechess;
 
 import java.util.StringTokenizer;
 
-import free.util.Struct;
-
 
 /**
  * A structure holding parsed information from a seekinfo line. More information
@@ -33,7 +31,7 @@ import free.util.Struct;
  * Internet Chess Server (http://www.freechess.org).
  */
 
-public class SeekInfoStruct extends Struct{
+public class SeekInfoStruct{
 
 
 
@@ -109,6 +107,126 @@ public class SeekInfoStruct extends Struct{
 
 
   
+  /**
+   * Whether the user can accept the seek.
+   */
+
+  private final boolean canAcceptSeek;
+
+
+
+  /**
+   * The seek index.
+   */
+
+  private final int index;
+
+
+
+  /**
+   * The handle of the seeking player.
+   */
+
+  private final String name;
+
+
+
+  /**
+   * The titles of the seeking player, ORed into an int.
+   */
+
+  private final int titles;
+
+
+
+  /**
+   * The seeker's rating.
+   */
+
+  private final int rating;
+
+
+
+  /**
+   * The seeker's rating provshow character.
+   */
+
+  private final char provShow;
+
+
+
+  /**
+   * The initial time of the sought game, in minutes.
+   */
+
+  private final int time;
+
+
+
+  /**
+   * The increment of the sought game, in seconds.
+   */
+
+  private final int inc;
+
+
+
+  /**
+   * Whether the sought game is rated.
+   */
+
+  private final boolean isRated;
+
+
+
+  /**
+   * The type of the sought match.
+   */
+
+  private final String matchType;
+
+
+
+  /**
+   * The requested color - 'W', 'B' or '?'.
+   */
+
+  private final char color;
+
+
+
+  /**
+   * The minimum rating of the sought opponent.
+   */
+
+  private final int minRating;
+
+
+
+  /**
+   * The maximum rating of the sought opponent.
+   */
+
+  private final int maxRating;
+
+
+
+  /**
+   * Whether the seek is accepted automatically.
+   */
+
+  private final boolean isAutomaticAccept;
+
+
+
+  /**
+   * Whether one must pass the seeker's formula to accept the seek.
+   */
+
+  private final boolean isFormulaUsed;
+
+
+
   /**
    * Creates a new SeekInfoStruct with the specified arguments.
    *
@@ -154,21 +272,21 @@ public class SeekInfoStruct extends Struct{
         throw new IllegalArgumentException("Bad color character: "+color);
     }
 
-    setBooleanProperty("CanAcceptSeek", canAcceptSeek);
-    setIntegerProperty("Index", index);
-    setStringProperty("Name", name);
-    setIntegerProperty("Titles", titles);
-    setIntegerProperty("Rating", rating);
-    setCharProperty("ProvShow", provshow);
-    setIntegerProperty("Time", time);
-    setIntegerProperty("Increment", inc);
-    setBooleanProperty("IsRated", isRated);
-    setStringProperty("MatchType", matchType);
-    setCharProperty("RequestedColor", color);
-    setIntegerProperty("MinRating", minRating);
-    setIntegerProperty("MaxRating", maxRating);
-    setBooleanProperty("IsAutomaticAccept", isAutomaticAccept);
-    setBooleanProperty("IsFormulaUsed", isFormulaUsed);
+    this.canAcceptSeek = canAcceptSeek;
+    this.index = index;
+    this.name = name;
+    this.titles = titles;
+    this.rating = rating;
+    this.provShow = provshow;
+    this.time = time;
+    this.inc = inc;
+    this.isRated = isRated;
+    this.matchType = matchType;
+    this.color = color;
+    this.minRating = minRating;
+    this.maxRating = maxRating;
+    this.isAutomaticAccept = isAutomaticAccept;
+    this.isFormulaUsed = isFormulaUsed;
   }
 
 
@@ -267,7 +385,7 @@ public class SeekInfoStruct extends Struct{
    */
 
   public boolean canAcceptSeek(){
-    return getBooleanProperty("CanAcceptSeek");
+    return canAcceptSeek;
   }
 
 
@@ -278,7 +396,7 @@ public class SeekInfoStruct extends Struct{
    */
 
   public int getSeekIndex(){
-    return getIntegerProperty("Index");
+    return index;
   }
 
 
@@ -289,7 +407,7 @@ public class SeekInfoStruct extends Struct{
    */
 
   public String getSeekerHandle(){
-    return getStringProperty("Name");
+    return name;
   }
 
 
@@ -302,7 +420,7 @@ public class SeekInfoStruct extends Struct{
    */
   
   public int getSeekerTitles(){
-    return getIntegerProperty("Titles");
+    return titles;
   }
 
 
@@ -313,7 +431,7 @@ public class SeekInfoStruct extends Struct{
    */
 
   public int getSeekerRating(){
-    return getIntegerProperty("Rating");
+    return rating;
   }
 
 
@@ -325,7 +443,7 @@ public class SeekInfoStruct extends Struct{
    */
 
   public char getSeekerProvShow(){
-    return getCharProperty("ProvShow");
+    return provShow;
   }
 
 
@@ -336,7 +454,7 @@ public class SeekInfoStruct extends Struct{
    */
 
   public int getMatchTime(){
-    return getIntegerProperty("Time");
+    return time;
   }
 
 
@@ -347,7 +465,7 @@ public class SeekInfoStruct extends Struct{
    */
 
   public int getMatchIncrement(){
-    return getIntegerProperty("Increment");
+    return inc;
   }
 
 
@@ -359,7 +477,7 @@ public class SeekInfoStruct extends Struct{
    */
 
   public boolean isMatchRated(){
-    return getBooleanProperty("IsRated");
+    return isRated;
   }
 
 
@@ -372,7 +490,7 @@ public class SeekInfoStruct extends Struct{
    */
 
   public String getMatchType(){
-    return getStringProperty("MatchType");
+    return matchType;
   }
 
 
@@ -384,7 +502,7 @@ public class SeekInfoStruct extends Struct{
    */
 
   public char getSeekerColor(){
-    return getCharProperty("RequestedColor");
+    return color;
   }
 
 
@@ -395,7 +513,7 @@ public class SeekInfoStruct extends Struct{
    */
 
   public int getOpponentMinRating(){
-    return getIntegerProperty("MinRating");
+    return minRating;
   }
 
 
@@ -406,7 +524,7 @@ public class SeekInfoStruct extends Struct{
    */
 
   public int getOpponentMaxRating(){
-    return getIntegerProperty("MaxRating");
+    return maxRating;
   }
 
 
@@ -418,7 +536,7 @@ public class SeekInfoStruct extends Struct{
    */
 
   public boolean isAutomaticAccept(){
-    return getBooleanProperty("IsAutomaticAccept");
+    return isAutomaticAccept;
   }
 
 
@@ -430,7 +548,7 @@ public class SeekInfoStruct extends Struct{
    */
 
   public boolean isFormulaUsed(){
-    return getBooleanProperty("IsFormulaUsed");
+    return isFormulaUsed;
   }
 
 
@@ -22,10 +22,6 @@
 
 package free.freechess;
 
-import java.util.StringTokenizer;
-
-import free.util.Struct;
-
 
 /**
  * A structure holding parsed information from a style12 line.
@@ -33,7 +29,7 @@ import free.util.Struct;
  * or the "help style12" helpfile on freechess.org for information about the format.
  */
 
-public class Style12Struct extends Struct{
+public class Style12Struct{
 
 
 
@@ -61,6 +57,178 @@ public class Style12Struct extends Struct{
 
 
 
+  /**
+   * The current board, in lexigraphic format.
+   */
+
+  private final char [] board = new char[64];
+
+
+
+  /**
+   * The current board, in lexigraphic format, as a string. Created lazily.
+   */
+
+  private String boardLexigraphic = null;
+
+
+
+  /**
+   * Whether it's white's turn to move.
+   */
+
+  private boolean isWhiteToMove;
+
+
+
+  /**
+   * The file of the double pawn push on the last move, or -1 if none.
+   */
+
+  private int doublePawnPushFile;
+
+
+
+  /**
+   * The castling rights.
+   */
+
+  private boolean canWhiteCastleKingside, canWhiteCastleQueenside,
+                  canBlackCastleKingside, canBlackCastleQueenside;
+
+
+
+  /**
+   * The number of half moves made since the last irreversible move.
+   */
+
+  private int pliesSinceIrreversible;
+
+
+
+  /**
+   * The game number.
+   */
+
+  private int gameNumber;
+
+
+
+  /**
+   * The players' nicknames.
+   */
+
+  private String whiteName, blackName;
+
+
+
+  /**
+   * The game type.
+   */
+
+  private int gameType;
+
+
+
+  /**
+   * Whether the game is a played game (as opposed to an examined one).
+   */
+
+  private boolean isPlayedGame;
+
+
+
+  /**
+   * Whether it's the user's turn.
+   */
+
+  private boolean isMyTurn;
+
+
+
+  /**
+   * The initial time, in seconds, and the increment, in seconds.
+   */
+
+  private int initTime, increment;
+
+
+
+  /**
+   * The material strength of the players.
+   */
+
+  private int whiteMaterialStrength, blackMaterialStrength;
+
+
+
+  /**
+   * The remaining time of the players, in milliseconds.
+   */
+
+  private int whiteTime, blackTime;
+
+
+
+  /**
+   * The number of the next move.
+   */
+
+  private int nextMoveNumber;
+
+
+
+  /**
+   * The last move, in verbose and SAN formats; <code>null</code> if none.
+   */
+
+  private String moveVerbose, moveSAN;
+
+
+
+  /**
+   * The amount of time taken to make the last move, in milliseconds.
+   */
+
+  private int moveTime;
+
+
+
+  /**
+   * Whether the board is flipped.
+   */
+
+  private boolean isBoardFlipped;
+
+
+
+  /**
+   * Whether the clock of the player to move is running.
+   */
+
+  private boolean isClockRunning;
+
+
+
+  /**
+   * The lag incurred when making the last move, in milliseconds.
+   */
+
+  private int lag;
+
+
+
+  /**
+   * Creates a new, uninitialized, Style12Struct. Used by
+   * <code>parseStyle12Line</code>.
+   */
+
+  private Style12Struct(){
+    
+  }
+
+
+
 
   /**
    * Creates a new Style12Struct with the specified arguments. You would usually
@@ -118,9 +286,6 @@ public class Style12Struct extends Struct{
       int blackTime, int nextMoveNumber, String moveVerbose, String moveSAN,
       int moveTime, boolean isBoardFlipped, boolean isClockRunning, int lag){
 
-    if ((doublePawnPushFile < -1) || (doublePawnPushFile > 7))
-      throw new IllegalArgumentException("Bad value for double pawn push file: "+doublePawnPushFile);
-
     if (boardLexigraphic == null)
       throw new IllegalArgumentException("Board may not be null");
 
@@ -130,6 +295,50 @@ public class Style12Struct extends Struct{
     if ((currentPlayer == null) || ((!currentPlayer.equals("W")) && (!currentPlayer.equals("B"))))
       throw new IllegalArgumentException("Current player string ("+currentPlayer+") must be either \"W\" or \"B\"");
 
+    boardLexigraphic.getChars(0, 64, board, 0);
+    this.boardLexigraphic = boardLexigraphic;
+    this.isWhiteToMove = currentPlayer.equals("W");
+    this.doublePawnPushFile = doublePawnPushFile;
+    this.canWhiteCastleKingside = canWhiteCastleKingside;
+    this.canWhiteCastleQueenside = canWhiteCastleQueenside;
+    this.canBlackCastleKingside = canBlackCastleKingside;
+    this.canBlackCastleQueenside = canBlackCastleQueenside;
+    this.pliesSinceIrreversible = pliesSinceIrreversible;
+    this.gameNumber = gameNumber;
+    this.whiteName = whiteName;
+    this.blackName = blackName;
+    this.gameType = gameType;
+    this.isPlayedGame = isPlayedGame;
+    this.isMyTurn = isMyTurn;
+    this.initTime = initTime;
+    this.increment = increment;
+    this.whiteMaterialStrength = whiteMaterialStrength;
+    this.blackMaterialStrength = blackMaterialStrength;
+    this.whiteTime = whiteTime;
+    this.blackTime = blackTime;
+    this.nextMoveNumber = nextMoveNumber;
+    this.moveVerbose = moveVerbose;
+    this.moveSAN = moveSAN;
+    this.moveTime = moveTime;
+    this.isBoardFlipped = isBoardFlipped;
+    this.isClockRunning = isClockRunning;
+    this.lag = lag;
+
+    validate();
+  }
+
+
+
+
+  /**
+   * Checks the values of the fields, throwing an
+   * <code>IllegalArgumentException</code> if any of them is invalid.
+   */
+
+  private void validate(){
+    if ((doublePawnPushFile < -1) || (doublePawnPushFile > 7))
+      throw new IllegalArgumentException("Bad value for double pawn push file: "+doublePawnPushFile);
+
     if (pliesSinceIrreversible < 0)
       throw new IllegalArgumentException("Plies since irreversible move ("+pliesSinceIrreversible+") cannot be negative");
 
@@ -168,34 +377,6 @@ public class Style12Struct extends Struct{
 
     if (lag < 0)
       throw new IllegalArgumentException("Lag may not be negative (really, it's against the laws of physics)");
-
-    setStringProperty("BoardLexigraphic", boardLexigraphic);
-    setStringProperty("CurrentPlayer", currentPlayer);
-    setIntegerProperty("DoublePawnPushFile", doublePawnPushFile);
-    setBooleanProperty("CanWhiteCastleKingside", canWhiteCastleKingside);
-    setBooleanProperty("CanWhiteCastleQueenside", canWhiteCastleQueenside);
-    setBooleanProperty("CanBlackCastleKingside", canBlackCastleKingside);
-    setBooleanProperty("CanBlackCastleQueenside", canBlackCastleQueenside);
-    setIntegerProperty("PliesSinceIrreversible", pliesSinceIrreversible);
-    setIntegerProperty("GameNumber", gameNumber);
-    setStringProperty("WhiteName", whiteName);
-    setStringProperty("BlackName", blackName);
-    setIntegerProperty("GameType", gameType);
-    setBooleanProperty("IsPlayedGame", isPlayedGame);
-    setBooleanProperty("IsMyTurn", isMyTurn);
-    setIntegerProperty("InitTime", initTime);
-    setIntegerProperty("Increment", increment);
-    setIntegerProperty("WhiteMaterialStrength", whiteMaterialStrength);
-    setIntegerProperty("BlackMaterialStrength", blackMaterialStrength);
-    setIntegerProperty("WhiteTime", whiteTime);
-    setIntegerProperty("BlackTime", blackTime);
-    setIntegerProperty("NextMoveNumber", nextMoveNumber);
-    setStringProperty("MoveVerbose", moveVerbose);
-    setStringProperty("MoveSAN", moveSAN);
-    setIntegerProperty("MoveTime", moveTime);
-    setBooleanProperty("IsBoardFlipped", isBoardFlipped);
-    setBooleanProperty("IsClockRunning", isClockRunning);
-    setIntegerProperty("Lag", lag);
   }
 
 
@@ -203,123 +384,298 @@ public class Style12Struct extends Struct{
 
   /**
    * Parses a style12 line and returns a corresponding Style12Struct object.
+   * The line is scanned in place, reading the fields directly into the
+   * struct, so that the only objects created are the struct itself and the
+   * strings for the player names and the last move.
    */
 
   public static Style12Struct parseStyle12Line(String line){
-    StringTokenizer tokens = new StringTokenizer(line, " ");
-
-    if (!tokens.nextToken().equals("<12>")) // Skip the "<12>" identifier
+    if (!line.startsWith("<12> "))
       throw new IllegalArgumentException("Missing \"<12>\" identifier");
 
-    StringBuffer posBuf = new StringBuffer(64);
-    for (int i = 0; i < 8; i++)
-      posBuf.append(tokens.nextToken()); // The board
-    String positionLexigraphic = posBuf.toString();
+    Style12Struct data = new Style12Struct();
+    Cursor cursor = new Cursor(line, "<12> ".length());
+
+    for (int i = 0; i < 8; i++){ // The board
+      cursor.skipSpaces();
+      if (cursor.position + 8 > line.length())
+        throw new IllegalArgumentException("Truncated board: "+line);
+      line.getChars(cursor.position, cursor.position + 8, data.board, i*8);
+      cursor.position += 8;
+    }
 
-    String currentPlayer = tokens.nextToken(); // The color string, either "B" or "W"
+    char currentPlayer = cursor.nextChar(); // The color, either 'B' or 'W'
+    if ((currentPlayer != 'W') && (currentPlayer != 'B'))
+      throw new IllegalArgumentException("Current player ("+currentPlayer+") must be either \"W\" or \"B\"");
+    data.isWhiteToMove = currentPlayer == 'W';
 
-    int doublePawnPushFile = Integer.parseInt(tokens.nextToken()); // The double pawn push file
+    data.doublePawnPushFile = cursor.nextInt(); // The double pawn push file
 
-    boolean canWhiteCastleKingside = parseBoolean(tokens.nextToken()); // Can white castle kingside
-    boolean canWhiteCastleQueenside = parseBoolean(tokens.nextToken()); // Can white castle queenside
-    boolean canBlackCastleKingside = parseBoolean(tokens.nextToken()); // Can black castle kingside
-    boolean canBlackCastleQueenside = parseBoolean(tokens.nextToken()); // Can black castle queenside
+    data.canWhiteCastleKingside = cursor.nextBoolean(); // Can white castle kingside
+    data.canWhiteCastleQueenside = cursor.nextBoolean(); // Can white castle queenside
+    data.canBlackCastleKingside = cursor.nextBoolean(); // Can black castle kingside
+    data.canBlackCastleQueenside = cursor.nextBoolean(); // Can black castle queenside
 
-    int pliesSinceIrreversible = Integer.parseInt(tokens.nextToken()); // Number of plies since an irreversible move
+    data.pliesSinceIrreversible = cursor.nextInt(); // Number of plies since an irreversible move
 
-    int gameNumber = Integer.parseInt(tokens.nextToken()); // The game number
+    data.gameNumber = cursor.nextInt(); // The game number
 
-    String whiteName = tokens.nextToken(); // White's name
-    String blackName = tokens.nextToken(); // Black's name
+    data.whiteName = cursor.nextToken(); // White's name
+    data.blackName = cursor.nextToken(); // Black's name
 
-    int myRelation = Integer.parseInt(tokens.nextToken()); // My relation to the game
-    int gameType;
-    boolean isPlayedGame;
+    int myRelation = cursor.nextInt(); // My relation to the game
     switch (myRelation){
       case -3:
-        gameType = ISOLATED_BOARD;
-        isPlayedGame = false;
+        data.gameType = ISOLATED_BOARD;
+        data.isPlayedGame = false;
         break;
       case -2:
-        gameType = OBSERVED_GAME;
-        isPlayedGame = false;
+        data.gameType = OBSERVED_GAME;
+        data.isPlayedGame = false;
         break;
       case -1:
       case 1:
-        gameType = MY_GAME;
-        isPlayedGame = true;
+        data.gameType = MY_GAME;
+        data.isPlayedGame = true;
         break;
       case 0:
-        gameType = OBSERVED_GAME;
-        isPlayedGame = true;
+        data.gameType = OBSERVED_GAME;
+        data.isPlayedGame = true;
         break;
       case 2:
-        gameType = MY_GAME;
-        isPlayedGame = false;
+        data.gameType = MY_GAME;
+        data.isPlayedGame = false;
         break;
       default:
         throw new IllegalArgumentException("Bad myRelation value: "+myRelation);
     }
 
-    boolean isMyTurn = myRelation > 0;
+    data.isMyTurn = myRelation > 0;
+
+    data.initTime = 60*cursor.nextInt(); // Initial time
+    data.increment = cursor.nextInt(); // Increment
 
-    int initTime = 60*Integer.parseInt(tokens.nextToken()); // Initial time
-    int increment = Integer.parseInt(tokens.nextToken()); // Increment
+    data.whiteMaterialStrength = cursor.nextInt(); // White's material strength
+    data.blackMaterialStrength = cursor.nextInt(); // Black's material strength
 
-    int whiteMaterialStrength = Integer.parseInt(tokens.nextToken()); // White's material strength
-    int blackMaterialStrength = Integer.parseInt(tokens.nextToken()); // Black's material strength
+    data.whiteTime = cursor.nextInt(); // White's remaining time
+    data.blackTime = cursor.nextInt(); // Black's remaining time
 
-    int whiteTime = Integer.parseInt(tokens.nextToken()); // White's remaining time
-    int blackTime = Integer.parseInt(tokens.nextToken()); // Black's remaining time
+    data.nextMoveNumber = cursor.nextInt(); // The number of the next move
 
-    int nextMoveNumber = Integer.parseInt(tokens.nextToken()); // The number of the next move
+    data.moveVerbose = cursor.nextMove(); // The move in verbose notation
 
-    String moveVerbose = tokens.nextToken(); // The move in verbose notation
-    if (moveVerbose.equals("none"))
-      moveVerbose = null;
+    data.moveTime = cursor.nextMoveTime(); // The amount of time taken for the last move
 
-    String moveTimeString = tokens.nextToken(); // The amount of time taken for the last move
-    moveTimeString = moveTimeString.substring(1, moveTimeString.length() - 1);
-    StringTokenizer timeTokens = new StringTokenizer(moveTimeString, ":.");
-    int minutes = Integer.parseInt(timeTokens.nextToken());
-    int seconds = Integer.parseInt(timeTokens.nextToken());
-    int milliseconds = Integer.parseInt(timeTokens.nextToken());
-    int moveTime = 60*1000*minutes + 1000*seconds + milliseconds;
+    data.moveSAN = cursor.nextMove(); // The move in SAN notation
 
-    String moveSAN = tokens.nextToken(); // The move in SAN notation
-    if (moveSAN.equals("none"))
-      moveSAN = null;
+    data.isBoardFlipped = cursor.nextBoolean(); // Is the board flipped?
 
-    boolean isBoardFlipped = parseBoolean(tokens.nextToken()); // Is the board flipped?
+    data.isClockRunning = cursor.nextBoolean(); // Is the clock of the player to move running?
 
-    boolean isClockRunning = parseBoolean(tokens.nextToken()); // Is the clock of the player to move running?
+    data.lag = cursor.nextInt(); // The lag, in milliseconds.
 
-    int lag = Integer.parseInt(tokens.nextToken()); // The lag, in milliseconds.
+    data.validate();
 
-    return new Style12Struct(positionLexigraphic, currentPlayer, doublePawnPushFile, canWhiteCastleKingside,
-      canWhiteCastleQueenside, canBlackCastleKingside, canBlackCastleQueenside, pliesSinceIrreversible,
-      gameNumber, whiteName, blackName, gameType, isPlayedGame, isMyTurn, initTime, increment,
-      whiteMaterialStrength, blackMaterialStrength, whiteTime, blackTime, nextMoveNumber, moveVerbose,
-      moveSAN, moveTime, isBoardFlipped, isClockRunning, lag);
+    return data;
   }
 
 
 
 
   /**
-   * If the given string is "1", return <code>true</code>. If it's "0", returns
-   * <code>false</code>. Otherwise throws an IllegalArgumentException.
+   * Reads space separated fields from a style12 line, without splitting it
+   * into tokens.
    */
 
-  private static boolean parseBoolean(String val){
-    if (val.equals("1"))
-      return true;
-    else if (val.equals("0"))
-      return false;
-    else
-      throw new IllegalArgumentException("Bad boolean value: "+val);
+  private static final class Cursor{
+
+
+
+    /**
+     * The line we're reading.
+     */
+
+    private final String line;
+
+
+
+    /**
+     * The index of the next character to read.
+     */
+
+    public int position;
+
+
+
+    /**
+     * Creates a new <code>Cursor</code> reading the specified line from the
+     * specified position.
+     */
+
+    public Cursor(String line, int position){
+      this.line = line;
+      this.position = position;
+    }
+
+
+
+    /**
+     * Skips any spaces at the current position.
+     */
+
+    public void skipSpaces(){
+      while ((position < line.length()) && (line.charAt(position) == ' '))
+        position++;
+    }
+
+
+
+    /**
+     * Skips any spaces and returns the index at which the next field ends.
+     */
+
+    private int nextFieldEnd(){
+      skipSpaces();
+      if (position == line.length())
+        throw new IllegalArgumentException("Missing fields in style12 line: "+line);
+
+      int end = position;
+      while ((end < line.length()) && (line.charAt(end) != ' '))
+        end++;
+
+      return end;
+    }
+
+
+
+    /**
+     * Returns the next field as a string.
+     */
+
+    public String nextToken(){
+      int end = nextFieldEnd();
+      String token = line.substring(position, end);
+      position = end;
+      return token;
+    }
+
+
+
+    /**
+     * Returns the next field, which must be a single character.
+     */
+
+    public char nextChar(){
+      int end = nextFieldEnd();
+      if (end != position + 1)
+        throw new IllegalArgumentException("Expected a single character: "+line.substring(position, end));
+
+      return line.charAt(position++);
+    }
+
+
+
+    /**
+     * Returns the next field, parsed as an integer.
+     */
+
+    public int nextInt(){
+      int end = nextFieldEnd();
+      int value = parseInt(position, end);
+      position = end;
+      return value;
+    }
+
+
+
+    /**
+     * Returns the next field, parsed as a boolean. "1" stands for
+     * <code>true</code> and "0" for <code>false</code>.
+     */
+
+    public boolean nextBoolean(){
+      char c = nextChar();
+      if (c == '1')
+        return true;
+      else if (c == '0')
+        return false;
+      else
+        throw new IllegalArgumentException("Bad boolean value: "+c);
+    }
+
+
+
+    /**
+     * Returns the next field, which is a move, or <code>null</code> if it's
+     * "none".
+     */
+
+    public String nextMove(){
+      int end = nextFieldEnd();
+      if (line.startsWith("none", position) && (end == position + 4)){
+        position = end;
+        return null;
+      }
+
+      String move = line.substring(position, end);
+      position = end;
+      return move;
+    }
+
+
+
+    /**
+     * Returns the next field, which is the time taken for a move, in the
+     * "(m:ss.mmm)" format, in milliseconds.
+     */
+
+    public int nextMoveTime(){
+      int end = nextFieldEnd();
+      if ((line.charAt(position) != '(') || (line.charAt(end - 1) != ')'))
+        throw new IllegalArgumentException("Bad move time: "+line.substring(position, end));
+
+      int colon = line.indexOf(':', position);
+      if ((colon == -1) || (colon > end))
+        throw new IllegalArgumentException("Bad move time: "+line.substring(position, end));
+      int dot = line.indexOf('.', colon);
+      if (dot > end)
+        dot = -1;
+
+      int minutes = parseInt(position + 1, colon);
+      int seconds = parseInt(colon + 1, dot == -1 ? end - 1 : dot);
+      int milliseconds = dot == -1 ? 0 : parseInt(dot + 1, end - 1);
+
+      position = end;
+      return 60*1000*minutes + 1000*seconds + milliseconds;
+    }
+
+
+
+    /**
+     * Parses the decimal integer between the specified indices of the line.
+     */
+
+    private int parseInt(int start, int end){
+      boolean negative = (start < end) && (line.charAt(start) == '-');
+      int i = negative ? start + 1 : start;
+      if (i == end)
+        throw new NumberFormatException("Bad integer: "+line.substring(start, end));
+
+      int value = 0;
+      for (; i < end; i++){
+        char c = line.charAt(i);
+        if ((c < '0') || (c > '9'))
+          throw new NumberFormatException("Bad integer: "+line.substring(start, end));
+        value = value*10 + (c - '0');
+      }
+
+      return negative ? -value : value;
+    }
+
+
+
   }
-  
 
 
 
@@ -329,7 +685,9 @@ public class Style12Struct extends Struct{
    */
 
   public String getBoardLexigraphic(){
-    return getStringProperty("BoardLexigraphic");
+    if (boardLexigraphic == null)
+      boardLexigraphic = new String(board);
+    return boardLexigraphic;
   }
 
 
@@ -341,11 +699,10 @@ public class Style12Struct extends Struct{
 
   public String getBoardFEN(){
     StringBuffer buf = new StringBuffer();
-    String boardLexigraphic = getBoardLexigraphic();
     int emptySquareCounter = 0;
     for (int i = 0; i < 8; i++){
       for (int j = 0; j < 8; j++){
-        char c = boardLexigraphic.charAt(j+i*8);
+        char c = board[j+i*8];
         if (c == '-')
           emptySquareCounter++;
         else{
@@ -366,7 +723,7 @@ public class Style12Struct extends Struct{
 
     buf.append(" ");
 
-    buf.append(getCurrentPlayer().toLowerCase());
+    buf.append(isWhiteToMove ? 'w' : 'b');
 
     buf.append(" ");
 
@@ -389,7 +746,7 @@ public class Style12Struct extends Struct{
       enPassantSquare = "-";
     else{
       char file = (char)('a' + getDoublePawnPushFile());
-      char rank = getCurrentPlayer().equals("W") ? '6' : '3';
+      char rank = isWhiteToMove ? '6' : '3';
       enPassantSquare = "" + file + rank;
     }
 
@@ -415,7 +772,7 @@ public class Style12Struct extends Struct{
    */
 
   public String getCurrentPlayer(){
-    return getStringProperty("CurrentPlayer");
+    return isWhiteToMove ? "W" : "B";
   }
 
 
@@ -427,7 +784,7 @@ public class Style12Struct extends Struct{
    */
 
   public int getDoublePawnPushFile(){
-    return getIntegerProperty("DoublePawnPushFile");
+    return doublePawnPushFile;
   }
 
 
@@ -439,7 +796,7 @@ public class Style12Struct extends Struct{
    */
 
   public boolean canWhiteCastleKingside(){
-    return getBooleanProperty("CanWhiteCastleKingside");
+    return canWhiteCastleKingside;
   }
 
 
@@ -451,7 +808,7 @@ public class Style12Struct extends Struct{
    */
 
   public boolean canWhiteCastleQueenside(){
-    return getBooleanProperty("CanWhiteCastleQueenside");
+    return canWhiteCastleQueenside;
   }
 
   
@@ -463,7 +820,7 @@ public class Style12Struct extends Struct{
    */
 
   public boolean canBlackCastleKingside(){
-    return getBooleanProperty("CanBlackCastleKingside");
+    return canBlackCastleKingside;
   }
 
 
@@ -475,7 +832,7 @@ public class Style12Struct extends Struct{
    */
 
   public boolean canBlackCastleQueenside(){
-    return getBooleanProperty("CanBlackCastleQueenside");
+    return canBlackCastleQueenside;
   }
 
 
@@ -487,7 +844,7 @@ public class Style12Struct extends Struct{
    */
 
   public int getPliesSinceIrreversible(){
-    return getIntegerProperty("PliesSinceIrreversible");
+    return pliesSinceIrreversible;
   }
 
 
@@ -498,7 +855,7 @@ public class Style12Struct extends Struct{
    */
 
   public int getGameNumber(){
-    return getIntegerProperty("GameNumber");
+    return gameNumber;
   }
 
 
@@ -509,7 +866,7 @@ public class Style12Struct extends Struct{
    */
 
   public String getWhiteName(){
-    return getStringProperty("WhiteName");
+    return whiteName;
   }
 
 
@@ -520,7 +877,7 @@ public class Style12Struct extends Struct{
    */
 
   public String getBlackName(){
-    return getStringProperty("BlackName");
+    return blackName;
   }
 
 
@@ -532,7 +889,7 @@ public class Style12Struct extends Struct{
    */
 
   public int getGameType(){
-    return getIntegerProperty("GameType");
+    return gameType;
   }
 
 
@@ -544,7 +901,7 @@ public class Style12Struct extends Struct{
    */
 
   public boolean isPlayedGame(){
-    return getBooleanProperty("IsPlayedGame");
+    return isPlayedGame;
   }
 
 
@@ -562,7 +919,7 @@ public class Style12Struct extends Struct{
     if ((getGameType() != MY_GAME) || !isPlayedGame())
       throw new IllegalStateException("Either the game type is not MY_GAME or it's not a played game.");
 
-    return getBooleanProperty("IsMyTurn");
+    return isMyTurn;
   }
 
 
@@ -572,7 +929,7 @@ public class Style12Struct extends Struct{
    */
 
   public int getInitialTime(){
-    return getIntegerProperty("InitTime");
+    return initTime;
   }
 
 
@@ -582,7 +939,7 @@ public class Style12Struct extends Struct{
    */
 
   public int getIncrement(){
-    return getIntegerProperty("Increment");
+    return increment;
   }
 
 
@@ -592,7 +949,7 @@ public class Style12Struct extends Struct{
    */
 
   public int getWhiteMaterialStrength(){
-    return getIntegerProperty("WhiteMaterialStrength");
+    return whiteMaterialStrength;
   }
 
 
@@ -602,7 +959,7 @@ public class Style12Struct extends Struct{
    */
 
   public int getBlackMaterialStrength(){
-    return getIntegerProperty("BlackMaterialStrength");
+    return blackMaterialStrength;
   }
 
 
@@ -612,7 +969,7 @@ public class Style12Struct extends Struct{
    */
 
   public int getWhiteTime(){
-    return getIntegerProperty("WhiteTime");
+    return whiteTime;
   }
 
 
@@ -622,7 +979,7 @@ public class Style12Struct extends Struct{
    */
 
   public int getBlackTime(){
-    return getIntegerProperty("BlackTime");
+    return blackTime;
   }
 
 
@@ -633,7 +990,7 @@ public class Style12Struct extends Struct{
    */
 
   public int getNextMoveNumber(){
-    return getIntegerProperty("NextMoveNumber");
+    return nextMoveNumber;
   }
 
 
@@ -645,7 +1002,7 @@ public class Style12Struct extends Struct{
    */
 
   public int getPlayedPlyCount(){
-    return (getNextMoveNumber()-1)*2 + (getCurrentPlayer().equals("B") ? 1 : 0);
+    return (nextMoveNumber-1)*2 + (isWhiteToMove ? 0 : 1);
   }
 
 
@@ -657,7 +1014,7 @@ public class Style12Struct extends Struct{
    */
 
   public String getMoveVerbose(){
-    return getStringProperty("MoveVerbose");
+    return moveVerbose;
   }
 
 
@@ -668,7 +1025,7 @@ public class Style12Struct extends Struct{
    */
 
   public String getMoveSAN(){
-    return getStringProperty("MoveSAN");
+    return moveSAN;
   }
 
 
@@ -678,7 +1035,7 @@ public class Style12Struct extends Struct{
    */
 
   public int getMoveTime(){
-    return getIntegerProperty("MoveTime");
+    return moveTime;
   }
 
 
@@ -689,7 +1046,7 @@ public class Style12Struct extends Struct{
    */
 
   public boolean isBoardFlipped(){
-    return getBooleanProperty("IsBoardFlipped");
+    return isBoardFlipped;
   }
 
 
@@ -699,7 +1056,7 @@ public class Style12Struct extends Struct{
    */
 
   public boolean isClockRunning(){
-    return getBooleanProperty("IsClockRunning");
+    return isClockRunning;
   }
 
 
@@ -710,7 +1067,7 @@ public class Style12Struct extends Struct{
    */
 
   public int getLag(){
-    return getIntegerProperty("Lag");
+    return lag;
   }
 
 
@@ -24,17 +24,160 @@ package free.jin;
 import free.chess.Player;
 import free.chess.TimeControl;
 import free.chess.WildVariant;
-import free.util.Struct;
 
 
 /**
  * A representation of a seek - a request for a player to play a game
  */
 
-public class Seek extends Struct{
+public class Seek{
   
   
   
+  /**
+   * The ID of the seek.
+   */
+
+  private final String seekID;
+
+
+
+  /**
+   * The player who issued the seek.
+   */
+
+  private final ServerUser seeker;
+
+
+
+  /**
+   * The title of the player who issued the seek.
+   */
+
+  private final String seekerTitle;
+
+
+
+  /**
+   * The rating of the player who issued the seek.
+   */
+
+  private final int rating;
+
+
+
+  /**
+   * Whether the seeker's rating is provisional.
+   */
+
+  private final boolean isProvisional;
+
+
+
+  /**
+   * Whether the seeker is a registered player.
+   */
+
+  private final boolean isRegistered;
+
+
+
+  /**
+   * Whether the seeker has a rating.
+   */
+
+  private final boolean isSeekerRated;
+
+
+
+  /**
+   * Whether the seeker is a computer player.
+   */
+
+  private final boolean isComputer;
+
+
+
+  /**
+   * The variant of the sought game.
+   */
+
+  private final WildVariant variant;
+
+
+
+  /**
+   * The name of the rating category of the sought game.
+   */
+
+  private final String ratingCategoryString;
+
+
+
+  /**
+   * The time control of the sought game.
+   */
+
+  private final TimeControl timeControl;
+
+
+
+  /**
+   * Whether the sought game is rated.
+   */
+
+  private final boolean isRated;
+
+
+
+  /**
+   * The color the seeker wants to play; <code>null</code> for a random color.
+   */
+
+  private final Player color;
+
+
+
+  /**
+   * Whether the seeker limits the rating of his opponents.
+   */
+
+  private final boolean isRatingLimited;
+
+
+
+  /**
+   * The minimum rating of the sought opponent.
+   */
+
+  private final int minRating;
+
+
+
+  /**
+   * The maximum rating of the sought opponent.
+   */
+
+  private final int maxRating;
+
+
+
+  /**
+   * Whether the seeker wants to manually confirm the game.
+   */
+
+  private final boolean isManualAccept;
+
+
+
+  /**
+   * Whether one must pass the seeker's formula to accept the seek.
+   */
+
+  private final boolean isFormula;
+
+
+
   /**
    * Creates a new Seek with the given properties.
    *
@@ -71,25 +214,24 @@ public class Seek extends Struct{
       String ratingCategoryString, TimeControl timeControl, boolean isRated, Player color, boolean isRatingLimited,
       int minRating, int maxRating, boolean isManualAccept, boolean isFormula){
     
-    setStringProperty("SeekID", seekID);
-    setProperty("Seeker", seeker);
-    setStringProperty("SeekerTitle", seekerTitle);
-    setIntegerProperty("SeekerRating", rating);
-    setBooleanProperty("IsProvisional", isProvisional);
-    setBooleanProperty("IsRegistered", isRegistered);
-    setBooleanProperty("IsSeekerRated", isSeekerRated);
-    setBooleanProperty("IsComputer", isComputer);
-    setProperty("Variant", variant);
-    setStringProperty("RatingCategoryString", ratingCategoryString);
-    setProperty("TimeControl", timeControl);
-    setBooleanProperty("IsRated", isRated);
-    if (color != null)
-      setProperty("Color", color);
-    setBooleanProperty("IsRatingLimited", isRatingLimited);
-    setIntegerProperty("MinRating", minRating);
-    setIntegerProperty("MaxRating", maxRating);
-    setBooleanProperty("IsManualAccept", isManualAccept);
-    setBooleanProperty("IsFormula", isFormula);
+    this.seekID = seekID;
+    this.seeker = seeker;
+    this.seekerTitle = seekerTitle;
+    this.rating = rating;
+    this.isProvisional = isProvisional;
+    this.isRegistered = isRegistered;
+    this.isSeekerRated = isSeekerRated;
+    this.isComputer = isComputer;
+    this.variant = variant;
+    this.ratingCategoryString = ratingCategoryString;
+    this.timeControl = timeControl;
+    this.isRated = isRated;
+    this.color = color;
+    this.isRatingLimited = isRatingLimited;
+    this.minRating = minRating;
+    this.maxRating = maxRating;
+    this.isManualAccept = isManualAccept;
+    this.isFormula = isFormula;
   }
   
   
@@ -100,7 +242,7 @@ public class Seek extends Struct{
    */
   
   public String getID(){
-    return getStringProperty("SeekID");
+    return seekID;
   }
   
   
@@ -110,7 +252,7 @@ public class Seek extends Struct{
    */
   
   public ServerUser getSeeker(){
-    return (ServerUser)getProperty("Seeker");
+    return seeker;
   }
   
   
@@ -130,7 +272,7 @@ public class Seek extends Struct{
    */
   
   public String getSeekerTitle(){
-    return getStringProperty("SeekerTitle");
+    return seekerTitle;
   }
   
   
@@ -140,7 +282,7 @@ public class Seek extends Struct{
    */
   
   public int getSeekerRating(){
-    return getIntegerProperty("SeekerRating");
+    return rating;
   }
   
   
@@ -151,7 +293,7 @@ public class Seek extends Struct{
    */
   
   public boolean isSeekerProvisional(){
-    return getBooleanProperty("IsProvisional");
+    return isProvisional;
   }
   
   
@@ -162,7 +304,7 @@ public class Seek extends Struct{
    */
   
   public boolean isSeekerRegistered(){
-    return getBooleanProperty("IsRegistered");
+    return isRegistered;
   }
   
   
@@ -173,7 +315,7 @@ public class Seek extends Struct{
    */
   
   public boolean isSeekerRated(){
-    return getBooleanProperty("IsSeekerRated");
+    return isSeekerRated;
   }
   
   
@@ -184,7 +326,7 @@ public class Seek extends Struct{
    */
   
   public boolean isSeekerComputer(){
-    return getBooleanProperty("IsComputer");
+    return isComputer;
   }
   
   
@@ -194,7 +336,7 @@ public class Seek extends Struct{
    */
   
   public WildVariant getVariant(){
-    return (WildVariant)getProperty("Variant");
+    return variant;
   }
   
   
@@ -205,7 +347,7 @@ public class Seek extends Struct{
    */
   
   public String getRatingCategoryString(){
-    return getStringProperty("RatingCategoryString");
+    return ratingCategoryString;
   }
   
   
@@ -215,7 +357,7 @@ public class Seek extends Struct{
    */
   
   public TimeControl getTimeControl(){
-    return (TimeControl)getProperty("TimeControl");
+    return timeControl;
   }
   
   
@@ -225,7 +367,7 @@ public class Seek extends Struct{
    */
   
   public boolean isRated(){
-    return getBooleanProperty("IsRated");
+    return isRated;
   }
   
   
@@ -236,7 +378,7 @@ public class Seek extends Struct{
    */
   
   public Player getSoughtColor(){
-    return (Player)getProperty("Color");
+    return color;
   }
   
   
@@ -248,7 +390,7 @@ public class Seek extends Struct{
    */
   
   public boolean isRatingLimited(){
-    return getBooleanProperty("IsRatingLimited");
+    return isRatingLimited;
   }
   
   
@@ -259,7 +401,7 @@ public class Seek extends Struct{
    */
   
   public int getMinRating(){
-    return getIntegerProperty("MinRating");
+    return minRating;
   }
   
   
@@ -270,7 +412,7 @@ public class Seek extends Struct{
    */
   
   public int getMaxRating(){
-    return getIntegerProperty("MaxRating");
+    return maxRating;
   }
   
   
@@ -281,7 +423,7 @@ public class Seek extends Struct{
    */
   
   public boolean isManualAccept(){
-    return getBooleanProperty("IsManualAccept");
+    return isManualAccept;
   }
   
   
@@ -292,7 +434,7 @@ public class Seek extends Struct{
    */
   
   public boolean isFormula(){
-    return getBooleanProperty("IsFormula");
+    return isFormula;
   }
   
   
@@ -312,8 +312,10 @@ public class Session{
     for (int i = 0; i < plugins.length; i++)
       plugins[i].saveState();
 
-    for (int i = 0; i < plugins.length; i++)
+    for (int i = 0; i < plugins.length; i++){
       plugins[i].stop();
+      plugins[i].closeEventDeliveryQueue();
+    }
 
     try{
       if (conn.isConnected())
@@ -404,8 +406,10 @@ public class Session{
       if (portIndex == ports.length - 1){ // All ports failed
         
         // Stop plugins
-        for (int i = 0; i < plugins.length; i++)
+        for (int i = 0; i < plugins.length; i++){
           plugins[i].stop();
+          plugins[i].closeEventDeliveryQueue();
+        }
 
         // Create the error message
         StringBuffer errorMessage = new StringBuffer();
@@ -431,8 +435,10 @@ public class Session{
     @Override
     public void loginFailed(Connection conn, String reason){
       // Stop plugins
-      for (int i = 0; i < plugins.length; i++)
+      for (int i = 0; i < plugins.length; i++){
         plugins[i].stop();
+        plugins[i].closeEventDeliveryQueue();
+      }
       
       Jin.getInstance().getConnManager().loginFailed(reason);
     }
@@ -58,6 +58,7 @@ import free.jin.event.GameListener;
 import free.jin.event.GameStartEvent;
 import free.jin.event.IllegalMoveEvent;
 import free.jin.event.ListenerManager;
+import free.jin.event.MoveListLoadedEvent;
 import free.jin.event.MoveMadeEvent;
 import free.jin.event.OfferEvent;
 import free.jin.event.PositionChangedEvent;
@@ -1267,6 +1268,8 @@ public class BoardManager extends Plugin implements GameListener, UserMoveListen
   @Override
   public void moveMade(MoveMadeEvent evt){}
   @Override
+  public void moveListLoaded(MoveListLoadedEvent evt){}
+  @Override
   public void positionChanged(PositionChangedEvent evt){}
   @Override
   public void takebackOccurred(TakebackEvent evt){}
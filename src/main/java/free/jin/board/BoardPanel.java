@@ -70,6 +70,7 @@ import free.chess.JChessClock;
 import free.chess.Move;
 import free.chess.Player;
 import free.chess.Position;
+import free.chess.PositionHistory;
 import free.chess.WildVariant;
 import free.chess.event.MoveEvent;
 import free.chess.event.MoveListener;
@@ -84,6 +85,7 @@ import free.jin.event.GameEndEvent;
 import free.jin.event.GameListener;
 import free.jin.event.GameStartEvent;
 import free.jin.event.IllegalMoveEvent;
+import free.jin.event.MoveListLoadedEvent;
 import free.jin.event.MoveMadeEvent;
 import free.jin.event.OfferEvent;
 import free.jin.event.PositionChangedEvent;
@@ -188,6 +190,15 @@ public class BoardPanel extends FixedJPanel implements MoveListener, GameListene
   
   
   
+  /**
+   * The history of the positions in the game, from which the position after
+   * any of the made moves is obtained when the user browses the game.
+   */
+  
+  private final PositionHistory positionHistory;
+  
+  
+  
   /**
    * The number of the move after which the position displayed on the board 
    * occurs.
@@ -400,6 +411,7 @@ public class BoardPanel extends FixedJPanel implements MoveListener, GameListene
     this.game = game;
     this.boardManager = boardManager;
     this.realPosition = game.getInitialPosition();
+    this.positionHistory = new PositionHistory(realPosition);
     
     boardManager.addPropertyChangeListener(this);
     game.addPropertyChangeListener(this);
@@ -1725,6 +1737,7 @@ public class BoardPanel extends FixedJPanel implements MoveListener, GameListene
     
     madeMoves.addElement(move);
     realPosition.makeMove(move);
+    positionHistory.addMove(move);
     
     // This is not the server echoeing a move made on the board
     // Note that this may still be a move done by the user (from the console).
@@ -1805,6 +1818,45 @@ public class BoardPanel extends FixedJPanel implements MoveListener, GameListene
   
   
   
+  /**
+   * GameListener implementation. Adds the loaded moves to the move list and
+   * brings the board up to date with all of them at once.
+   */
+  
+  @Override
+  public void moveListLoaded(MoveListLoadedEvent evt){
+    if (evt.getGame() != game)
+      return;
+    
+    // The user is looking at a position other than the last one, so we don't
+    // want to update the board.
+    boolean shouldUpdateBoard = (displayedMoveNumber == madeMoves.size());
+    
+    Move [] moves = evt.getMoves();
+    for (int i = 0; i < moves.length; i++){
+      madeMoves.addElement(moves[i]);
+      positionHistory.addMove(moves[i]);
+    }
+    realPosition.makeMoves(moves);
+    
+    if (shouldUpdateBoard){
+      isBoardPositionUpdating = true;
+      board.getPosition().copyFrom(realPosition);
+      isBoardPositionUpdating = false;
+      
+      setDisplayedMove(madeMoves.size());
+      updateMoveHighlighting(false);
+    }
+    
+    updateClockActiveness();
+    updateMoveListTable();
+    
+    whiteMaterialPanel.updateMaterial(realPosition);
+    blackMaterialPanel.updateMaterial(realPosition);
+  }
+  
+  
+  
   /**
    * If the specified move is legal in the specified position, this method
    * returns <code>true</code>. If the specified move is illegal, it may return
@@ -1844,6 +1896,7 @@ public class BoardPanel extends FixedJPanel implements MoveListener, GameListene
     
     madeMoves.removeAllElements();
     realPosition.copyFrom(evt.getPosition());
+    positionHistory.reset(realPosition);
     
     isBoardPositionUpdating = true;
     board.getPosition().copyFrom(realPosition);
@@ -1880,9 +1933,8 @@ public class BoardPanel extends FixedJPanel implements MoveListener, GameListene
     for (int i = madeMoves.size()-1; i >= numMadeMoves; i--)
       madeMoves.removeElementAt(i);
     
-    realPosition.copyFrom(game.getInitialPosition());
-    for (int i = 0; i < numMadeMoves; i++)
-      realPosition.makeMove((Move)madeMoves.elementAt(i));
+    positionHistory.truncate(numMadeMoves);
+    positionHistory.getPosition(numMadeMoves, realPosition);
     
     moveEnRoute = null;
     setQueuedMove(null);
@@ -2118,11 +2170,7 @@ public class BoardPanel extends FixedJPanel implements MoveListener, GameListene
       if (moveNum > madeMoves.size()) // Shouldn't happen
         throw new IllegalStateException();
       
-      Position pos = game.getInitialPosition();
-      for (int i = 0; i < moveNum; i++){
-        Move move = (Move)madeMoves.elementAt(i);
-        pos.makeMove(move);
-      }
+      Position pos = positionHistory.getPosition(moveNum);
       
       board.clearShaded();
       
@@ -34,6 +34,7 @@ import free.jin.chessclub.event.ArrowEvent;
 import free.jin.chessclub.event.ChessclubGameListener;
 import free.jin.chessclub.event.CircleEvent;
 import free.jin.event.IllegalMoveEvent;
+import free.jin.event.MoveListLoadedEvent;
 import free.jin.event.MoveMadeEvent;
 import free.jin.event.PositionChangedEvent;
 import free.jin.event.TakebackEvent;
@@ -120,6 +121,25 @@ public class ChessclubBoardPanel extends BoardPanel implements ChessclubGameList
 
 
 
+  /**
+   * Overrides <code>moveListLoaded(MoveListLoadedEvent)</code> to clear the
+   * board of any arrows/circles.
+   */
+
+  @Override
+  public void moveListLoaded(MoveListLoadedEvent evt){
+    super.moveListLoaded(evt);
+
+    if (evt.getGame() != game)
+      return;
+
+    board.removeAllArrows();
+    board.removeAllCircles();
+  }
+
+
+
+
   /**
    * Overrides positionChanged(PositionChangedEvent) to clear the board of any
    * arrows/circles.
@@ -77,7 +77,7 @@ public class ChessclubListenerManager extends BasicListenerManager{
   public void addChatListener(ChatListener listener){
     super.addChatListener(listener);
     
-    if (listenerList.getListenerCount(ChatListener.class) == 1){
+    if (listenerRegistry.getListenerCount(ChatListener.class) == 1){
       source.addDatagramListener(source, Datagram.DG_PERSONAL_TELL);
       source.addDatagramListener(source, Datagram.DG_PERSONAL_QTELL);
       source.addDatagramListener(source, Datagram.DG_SHOUT);
@@ -99,7 +99,7 @@ public class ChessclubListenerManager extends BasicListenerManager{
   public void removeChatListener(ChatListener listener){
     super.removeChatListener(listener);
     
-    if (listenerList.getListenerCount(ChatListener.class) == 0){
+    if (listenerRegistry.getListenerCount(ChatListener.class) == 0){
       source.removeDatagramListener(source, Datagram.DG_PERSONAL_TELL);
       source.removeDatagramListener(source, Datagram.DG_PERSONAL_QTELL);
       source.removeDatagramListener(source, Datagram.DG_SHOUT);
@@ -123,7 +123,7 @@ public class ChessclubListenerManager extends BasicListenerManager{
   public void addGameListener(GameListener listener){
     super.addGameListener(listener);
     
-    if (listenerList.getListenerCount(GameListener.class) == 1){
+    if (listenerRegistry.getListenerCount(GameListener.class) == 1){
       source.addDatagramListener(source, Datagram.DG_MY_GAME_STARTED);
       source.addDatagramListener(source, Datagram.DG_STARTED_OBSERVING);
       source.addDatagramListener(source, Datagram.DG_ISOLATED_BOARD);
@@ -167,7 +167,7 @@ public class ChessclubListenerManager extends BasicListenerManager{
   public void removeGameListener(GameListener listener){
     super.removeGameListener(listener);
     
-    if (listenerList.getListenerCount(GameListener.class) == 0){
+    if (listenerRegistry.getListenerCount(GameListener.class) == 0){
       source.removeDatagramListener(source, Datagram.DG_MY_GAME_STARTED);
       source.removeDatagramListener(source, Datagram.DG_STARTED_OBSERVING);
       source.removeDatagramListener(source, Datagram.DG_ISOLATED_BOARD);
@@ -210,37 +210,35 @@ public class ChessclubListenerManager extends BasicListenerManager{
     if (!isChessclubSpecificEvent(evt))
       super.fireGameEvent(evt);
     else{
-      Object [] listeners = listenerList.getListenerList();
-      for (int i = 0; i < listeners.length; i += 2){
-        if (listeners[i] == GameListener.class){
-          GameListener listener = (GameListener)listeners[i+1];
-          try{
-            if (listener instanceof ChessclubGameListener){
-              ChessclubGameListener chessclubListener = (ChessclubGameListener)listener;
+      GameListener [] listeners = (GameListener [])listenerRegistry.getListeners(GameListener.class);
+      for (int i = 0; i < listeners.length; i++){
+        GameListener listener = listeners[i];
+        try{
+          if (listener instanceof ChessclubGameListener){
+            ChessclubGameListener chessclubListener = (ChessclubGameListener)listener;
+            
+            if (evt instanceof CircleEvent){
+              CircleEvent cevt = (CircleEvent)evt;
               
-              if (evt instanceof CircleEvent){
-                CircleEvent cevt = (CircleEvent)evt;
-                
-                if (cevt.getId() == CircleEvent.CIRCLE_ADDED)
-                  chessclubListener.circleAdded(cevt);
-                else if (cevt.getId() == CircleEvent.CIRCLE_REMOVED)
-                  chessclubListener.circleRemoved(cevt);
-              }
-              else if (evt instanceof ArrowEvent){
-                ArrowEvent aevt = (ArrowEvent)evt;
-                
-                if (aevt.getId() == ArrowEvent.ARROW_ADDED)
-                  chessclubListener.arrowAdded(aevt);
-                else if (aevt.getId() == ArrowEvent.ARROW_REMOVED)
-                  chessclubListener.arrowRemoved(aevt);
-              }
-              else
-                throw new IllegalArgumentException("Unknown GameEvent type: " + evt.getClass());
+              if (cevt.getId() == CircleEvent.CIRCLE_ADDED)
+                chessclubListener.circleAdded(cevt);
+              else if (cevt.getId() == CircleEvent.CIRCLE_REMOVED)
+                chessclubListener.circleRemoved(cevt);
             }
-          } catch (RuntimeException e){
-              e.printStackTrace();
+            else if (evt instanceof ArrowEvent){
+              ArrowEvent aevt = (ArrowEvent)evt;
+              
+              if (aevt.getId() == ArrowEvent.ARROW_ADDED)
+                chessclubListener.arrowAdded(aevt);
+              else if (aevt.getId() == ArrowEvent.ARROW_REMOVED)
+                chessclubListener.arrowRemoved(aevt);
             }
-        }
+            else
+              throw new IllegalArgumentException("Unknown GameEvent type: " + evt.getClass());
+          }
+        } catch (RuntimeException e){
+            e.printStackTrace();
+          }
       }
     }
   }
@@ -267,7 +265,7 @@ public class ChessclubListenerManager extends BasicListenerManager{
   public void addSeekListener(SeekListener listener){
     super.addSeekListener(listener);
     
-    if (listenerList.getListenerCount(SeekListener.class) == 1){
+    if (listenerRegistry.getListenerCount(SeekListener.class) == 1){
       source.addDatagramListener(source, Datagram.DG_SEEK);
       source.addDatagramListener(source, Datagram.DG_SEEK_REMOVED);
       // Do not add listeners after this one - it marks the end of the
@@ -286,7 +284,7 @@ public class ChessclubListenerManager extends BasicListenerManager{
   public void removeSeekListener(SeekListener listener){
     super.removeSeekListener(listener);
     
-    if (listenerList.getListenerCount(SeekListener.class) == 0){
+    if (listenerRegistry.getListenerCount(SeekListener.class) == 0){
       source.removeDatagramListener(source, Datagram.DG_SEEK);
       source.removeDatagramListener(source, Datagram.DG_SEEK_REMOVED);
       // Do not remove listeners after this one - it marks the end of the
@@ -305,7 +303,7 @@ public class ChessclubListenerManager extends BasicListenerManager{
   public void addGameListListener(GameListListener listener){
     super.addGameListListener(listener);
     
-    if (listenerList.getListenerCount(GameListListener.class) == 1){
+    if (listenerRegistry.getListenerCount(GameListListener.class) == 1){
       source.addDatagramListener(source, Datagram.DG_GAMELIST_BEGIN);
       source.addDatagramListener(source, Datagram.DG_GAMELIST_ITEM);
     }
@@ -322,7 +320,7 @@ public class ChessclubListenerManager extends BasicListenerManager{
   public void removeGameListListener(GameListListener listener){
     super.removeGameListListener(listener);
     
-    if (listenerList.getListenerCount(GameListListener.class) == 0){
+    if (listenerRegistry.getListenerCount(GameListListener.class) == 0){
       source.removeDatagramListener(source, Datagram.DG_GAMELIST_BEGIN);
       source.removeDatagramListener(source, Datagram.DG_GAMELIST_ITEM);
     }
@@ -336,9 +334,9 @@ public class ChessclubListenerManager extends BasicListenerManager{
    */
   
   public void addChessEventListener(ChessEventListener listener){
-    listenerList.add(ChessEventListener.class, listener);
+    listenerRegistry.add(ChessEventListener.class, listener);
     
-    if (listenerList.getListenerCount(ChessEventListener.class) == 1){
+    if (listenerRegistry.getListenerCount(ChessEventListener.class) == 1){
       source.addDatagramListener(source, Datagram.DG_TOURNEY);
       source.addDatagramListener(source, Datagram.DG_REMOVE_TOURNEY);
     }
@@ -352,9 +350,9 @@ public class ChessclubListenerManager extends BasicListenerManager{
    */
   
   public void removeChessEventListener(ChessEventListener listener){
-    listenerList.remove(ChessEventListener.class, listener);
+    listenerRegistry.remove(ChessEventListener.class, listener);
     
-    if (listenerList.getListenerCount(ChessEventListener.class)==0){
+    if (listenerRegistry.getListenerCount(ChessEventListener.class)==0){
       source.removeDatagramListener(source, Datagram.DG_TOURNEY);
       source.removeDatagramListener(source, Datagram.DG_REMOVE_TOURNEY);
     }
@@ -368,23 +366,21 @@ public class ChessclubListenerManager extends BasicListenerManager{
    */
 
   public void fireChessEventEvent(ChessEventEvent evt){
-    Object [] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2){
-      if (listeners[i] == ChessEventListener.class){
-        ChessEventListener listener = (ChessEventListener)listeners[i+1];
-        try{
-          switch (evt.getID()){
-            case ChessEventEvent.EVENT_ADDED:
-              listener.chessEventAdded(evt);
-              break;
-            case ChessEventEvent.EVENT_REMOVED:
-              listener.chessEventRemoved(evt);
-              break;
-          }
-        } catch (RuntimeException e){
-            e.printStackTrace();
-          }
-      }
+    ChessEventListener [] listeners = (ChessEventListener [])listenerRegistry.getListeners(ChessEventListener.class);
+    for (int i = 0; i < listeners.length; i++){
+      ChessEventListener listener = listeners[i];
+      try{
+        switch (evt.getID()){
+          case ChessEventEvent.EVENT_ADDED:
+            listener.chessEventAdded(evt);
+            break;
+          case ChessEventEvent.EVENT_REMOVED:
+            listener.chessEventRemoved(evt);
+            break;
+        }
+      } catch (RuntimeException e){
+          e.printStackTrace();
+        }
     }
   }
   
@@ -399,7 +395,7 @@ public class ChessclubListenerManager extends BasicListenerManager{
   public void addFriendsListener(FriendsListener listener){
     super.addFriendsListener(listener);
 
-    if (listenerList.getListenerCount(FriendsListener.class) == 1){
+    if (listenerRegistry.getListenerCount(FriendsListener.class) == 1){
       source.addDatagramListener(source, Datagram.DG_NOTIFY_ARRIVED);
       source.addDatagramListener(source, Datagram.DG_NOTIFY_LEFT);
       source.addDatagramListener(source, Datagram.DG_NOTIFY_STATE);
@@ -420,7 +416,7 @@ public class ChessclubListenerManager extends BasicListenerManager{
   public void removeFriendsListener(FriendsListener listener){
     super.removeFriendsListener(listener);
 
-    if (listenerList.getListenerCount(FriendsListener.class) == 0){
+    if (listenerRegistry.getListenerCount(FriendsListener.class) == 0){
       source.removeDatagramListener(source, Datagram.DG_NOTIFY_ARRIVED);
       source.removeDatagramListener(source, Datagram.DG_NOTIFY_LEFT);
       source.removeDatagramListener(source, Datagram.DG_NOTIFY_STATE);
@@ -441,7 +437,7 @@ public class ChessclubListenerManager extends BasicListenerManager{
   public void addMatchOfferListener(MatchOfferListener listener){
     super.addMatchOfferListener(listener);
     
-    if (listenerList.getListenerCount(MatchOfferListener.class) == 1){
+    if (listenerRegistry.getListenerCount(MatchOfferListener.class) == 1){
       source.addDatagramListener(source, Datagram.DG_MATCH);
       source.addDatagramListener(source, Datagram.DG_MATCH_REMOVED);
     }
@@ -458,7 +454,7 @@ public class ChessclubListenerManager extends BasicListenerManager{
   public void removeMatchOfferListener(MatchOfferListener listener){
     super.removeMatchOfferListener(listener);
     
-    if (listenerList.getListenerCount(MatchOfferListener.class) == 0){
+    if (listenerRegistry.getListenerCount(MatchOfferListener.class) == 0){
       source.removeDatagramListener(source, Datagram.DG_MATCH);
       source.removeDatagramListener(source, Datagram.DG_MATCH_REMOVED);
     }
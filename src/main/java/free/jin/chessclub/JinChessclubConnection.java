@@ -21,6 +21,7 @@
 
 package free.jin.chessclub;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
@@ -44,6 +45,7 @@ import free.chess.Chess;
 import free.chess.ChessMove;
 import free.chess.ChesslikeGenericVariant;
 import free.chess.FischerTimeControl;
+import free.chess.IntMoveList;
 import free.chess.Move;
 import free.chess.OddsTimeControl;
 import free.chess.Player;
@@ -63,6 +65,7 @@ import free.chessclub.ChessclubConstants;
 import free.chessclub.level2.Datagram;
 import free.chessclub.level2.DatagramEvent;
 import free.chessclub.level2.DatagramListener;
+import free.chessclub.level2.SendMovesRecord;
 import free.jin.Connection;
 import free.jin.FriendsConnection;
 import free.jin.Game;
@@ -99,6 +102,7 @@ import free.jin.event.IllegalMoveEvent;
 import free.jin.event.ListenerManager;
 import free.jin.event.MatchOfferEvent;
 import free.jin.event.MatchOfferListenerManager;
+import free.jin.event.MoveListLoadedEvent;
 import free.jin.event.MoveMadeEvent;
 import free.jin.event.OfferEvent;
 import free.jin.event.PlainTextEvent;
@@ -107,6 +111,9 @@ import free.jin.event.SeekEvent;
 import free.jin.event.SeekListenerManager;
 import free.jin.event.TakebackEvent;
 import free.util.Pair;
+import free.util.ReplaySocket;
+import free.util.SelectorThread;
+import free.util.SessionRecorder;
 import free.util.TextUtilities;
 import free.util.Utilities;
 
@@ -155,6 +162,9 @@ public class JinChessclubConnection extends ChessclubConnection implements Datag
     setDGState(Datagram.DG_DUMMY_RESPONSE, true); // Otherwise setDGOnAgain complains
     addDatagramListener(this, Datagram.DG_DUMMY_RESPONSE);
 
+    // The layout of DG_SEND_MOVES depends on the DG_MOVE_* datagrams
+    addDatagramSchema(SendMovesRecord.SCHEMA);
+
     setInterface(Jin.getAppName() + " " + Jin.getAppVersion() +
       " (" + System.getProperty("java.vendor") + " " + System.getProperty("java.version") +
       ", " + System.getProperty("os.name") + " " + getSafeOSVersion() + ")");
@@ -246,10 +256,34 @@ public class JinChessclubConnection extends ChessclubConnection implements Datag
 
   /**
    * Fires an "attempting" connection event and invokes {@link free.util.Connection#initiateConnect(String, int)}.
+   * <P>If the <code>free.jin.nonBlockingIO</code> system property is set, the connection is read by the shared
+   * {@link SelectorThread} instead of a dedicated reader thread. This is a test and benchmark only option: the
+   * selector needs a plain <code>SocketChannel</code>, while the timestamping library only works over its own
+   * <code>TimestampingSocket</code>, so the property is ignored whenever that library is available - which it always is in
+   * the builds we ship.
    */
   
   @Override
   public void initiateConnectAndLogin(String hostname, int port){
+    String recordFile = System.getProperty("free.jin.recordSession");
+    if (recordFile != null){
+      try{
+        setSessionRecorder(SessionRecorder.createForFile(recordFile));
+      } catch (IOException e){
+          e.printStackTrace(); // Just don't record
+        }
+    }
+    
+    // Test-only; never taken when timestamping is available, see the method's doc
+    if (Boolean.getBoolean("free.jin.nonBlockingIO") && !isTimestampAvailable() &&
+        (System.getProperty("free.jin.replaySession") == null)){
+      try{
+        setSelectorThread(SelectorThread.getSharedInstance());
+      } catch (IOException e){
+          e.printStackTrace(); // Fall back to a dedicated reader thread
+        }
+    }
+    
     listenerManager.fireConnectionAttempted(this, hostname, port);
 
     initiateConnect(hostname, port);
@@ -418,11 +452,33 @@ public class JinChessclubConnection extends ChessclubConnection implements Datag
 
 
   /**
-   * Overrides {@link free.util.Connection#connectImpl(String, int)} to return a timestamping socket.
+   * Returns whether the timestamping socket is available. Timestamping sockets are not
+   * channel based, so they can't be read by a {@link SelectorThread}.
+   */
+  
+  private static boolean isTimestampAvailable(){
+    try{
+      Class.forName("free.chessclub.timestamp.TimestampingSocket");
+      return true;
+    } catch (ClassNotFoundException e){
+        return false;
+      }
+  }
+
+
+
+  /**
+   * Overrides {@link free.util.Connection#connectImpl(String, int)} to return a timestamping socket. If the
+   * <code>free.jin.replaySession</code> system property is set, a {@link ReplaySocket} replaying the session recorded
+   * in the specified file is returned instead.
    */
 
   @Override
   protected Socket connectImpl(String hostname, int port) throws IOException{
+    String replayFile = System.getProperty("free.jin.replaySession");
+    if (replayFile != null)
+      return new ReplaySocket(new FileInputStream(replayFile), getReplaySpeed());
+    
     Socket result = null;
     try{
       Class tsSocketClass = Class.forName("free.chessclub.timestamp.TimestampingSocket");
@@ -454,6 +510,20 @@ public class JinChessclubConnection extends ChessclubConnection implements Datag
 
 
 
+  /**
+   * Returns the speed at which a recorded session is replayed, as specified by the
+   * <code>free.jin.replaySpeed</code> system property; 1 (real time) by default, 0 for as fast as possible.
+   */
+
+  private static double getReplaySpeed(){
+    try{
+      return Double.parseDouble(System.getProperty("free.jin.replaySpeed", "1"));
+    } catch (NumberFormatException e){
+        return 1;
+      }
+  }
+
+
   /**
    * Returns the WildVariant corresponding to the given wild number, or null
    * if that wild variant is not supported.
@@ -1766,9 +1836,10 @@ public class JinChessclubConnection extends ChessclubConnection implements Datag
 
         game.setInitialPosition(newInitPos);
         game.setPliesSinceStart(0);
-        gameInfo.moves.removeAllElements();
+        gameInfo.moves.clear();
         gameInfo.position.copyFrom(game.getInitialPosition());
         gameInfo.numMovesToFollow = numMovesToFollow;
+        gameInfo.loadedMoves.removeAllElements();
 
         fireGameEvent(new PositionChangedEvent(this, clientTag, game, gameInfo.position));
       } catch (NoSuchGameException e){}
@@ -1861,28 +1932,19 @@ public class JinChessclubConnection extends ChessclubConnection implements Datag
    */
    
   private void processSendMovesDG(Datagram dg, String clientTag){
-    int i = 0;
-    
-    int gameNumber = dg.getInteger(i++);
-    String algebraicMove = dg.getString(i++);
+    SendMovesRecord record = SendMovesRecord.decode(dg, getDatagramLayout(Datagram.DG_SEND_MOVES));
 
-    String smithMove = dg.getString(i++);
-
-    if (isDGOn(Datagram.DG_MOVE_TIME)) // skip
-      i++;
-
-    if (isDGOn(Datagram.DG_MOVE_CLOCK)) // skip
-      i++;
-
-    int variationCode = dg.getInteger(i++);
-
-    processSendMoves(clientTag, gameNumber, algebraicMove, smithMove, variationCode);
+    processSendMoves(clientTag, record.getGameNumber(), record.getAlgebraicMove(), record.getSmithMove(),
+      record.getVariationCode());
   }
 
 
 
   /**
-   * Fires the appropriate MoveEvent to all interested GameListeners.
+   * Fires the appropriate MoveEvent to all interested GameListeners. The moves
+   * following a DG_POSITION_BEGIN (the moves made in the game so far) are
+   * instead collected and fired in a single MoveListLoadedEvent once the last
+   * of them arrives.
    */
 
   protected void processSendMoves(String clientTag, int gameNumber, String algebraicMove,
@@ -1893,19 +1955,28 @@ public class JinChessclubConnection extends ChessclubConnection implements Datag
       Position position = gameInfo.position;
       Move move = parseWarrenSmith(smithMove, position, algebraicMove); 
 
+      gameInfo.moves.addMove(position, move);
       position.makeMove(move);
-      gameInfo.moves.addElement(move);
-
-      boolean isNewMove = (variationCode != ChessclubConstants.INITIAL_MOVE) &&
-                          (variationCode != ChessclubConstants.FORWARD_MOVE);
-
-      clearOffers(clientTag, gameInfo, move.getPlayer().getOpponent());
-      fireGameEvent(new MoveMadeEvent(this, clientTag, game, move, isNewMove));
 
       if (gameInfo.numMovesToFollow > 0){
+        gameInfo.loadedMoves.addElement(move);
         gameInfo.numMovesToFollow--;
+        if (gameInfo.numMovesToFollow == 0){
+          Move [] loadedMoves = new Move[gameInfo.loadedMoves.size()];
+          gameInfo.loadedMoves.copyInto(loadedMoves);
+          gameInfo.loadedMoves.removeAllElements();
+
+          clearOffers(clientTag, gameInfo, move.getPlayer().getOpponent());
+          fireGameEvent(new MoveListLoadedEvent(this, clientTag, game, loadedMoves, position));
+        }
       }
       else{
+        boolean isNewMove = (variationCode != ChessclubConstants.INITIAL_MOVE) &&
+                            (variationCode != ChessclubConstants.FORWARD_MOVE);
+
+        clearOffers(clientTag, gameInfo, move.getPlayer().getOpponent());
+        fireGameEvent(new MoveMadeEvent(this, clientTag, game, move, isNewMove));
+
         Vector unechoedGameMoves = (Vector)unechoedMoves.get(game);
         if ((unechoedGameMoves != null) && (unechoedGameMoves.size() != 0)){ // Might be our move.
           Move madeMove = (Move)unechoedGameMoves.elementAt(0);
@@ -1982,15 +2053,13 @@ public class JinChessclubConnection extends ChessclubConnection implements Datag
       GameInfo gameInfo = getGameInfo(gameNumber);
       Game game = gameInfo.game;
       Position pos = gameInfo.position;
-      Vector moves = gameInfo.moves;
+      IntMoveList moves = gameInfo.moves;
 
       int numMadeMoves = moves.size() - backwardCount;
-      for (int i = moves.size() - 1; i >= numMadeMoves; i--)
-        moves.removeElementAt(i);
+      moves.setSize(numMadeMoves);
 
       pos.copyFrom(game.getInitialPosition());
-      for (int i = 0; i < numMadeMoves; i++)
-        pos.makeMove((Move)moves.elementAt(i));
+      moves.makeMoves(pos, 0, numMadeMoves);
 
       fireGameEvent(new TakebackEvent(this, clientTag, game, backwardCount));
     } catch (NoSuchGameException e){}
@@ -2017,15 +2086,13 @@ public class JinChessclubConnection extends ChessclubConnection implements Datag
       GameInfo gameInfo = getGameInfo(gameNumber);
       Game game = gameInfo.game;
       Position pos = gameInfo.position;
-      Vector moves = gameInfo.moves;
+      IntMoveList moves = gameInfo.moves;
 
       int numMadeMoves = moves.size() - takebackCount;
-      for (int i = moves.size() - 1; i >= numMadeMoves; i--)
-        moves.removeElementAt(i);
+      moves.setSize(numMadeMoves);
 
       pos.copyFrom(game.getInitialPosition());
-      for (int i = 0; i < numMadeMoves; i++)
-        pos.makeMove((Move)moves.elementAt(i));
+      moves.makeMoves(pos, 0, numMadeMoves);
 
       fireGameEvent(new TakebackEvent(this, clientTag, game, takebackCount));
       updateTakebackOffer(clientTag, gameInfo, Player.WHITE_PLAYER, 0); // The server seems to only clear
@@ -2465,9 +2532,9 @@ public class JinChessclubConnection extends ChessclubConnection implements Datag
       // It seems that "; goto <gamenum> ; <movestring>" will abort making the
       // move (or whatever other command follows it) if you aren't playing
       // a game with the specified number.
-      sendCommand("multi goto " + game.getID() + " ; chessmove " + moveString, true, true, null);
+      sendCommand("multi goto " + game.getID() + " ; chessmove " + moveString, true, true, null, HIGH_PRIORITY);
     else
-      sendCommand("chessmove " + moveString, true, true, null);
+      sendCommand("chessmove " + moveString, true, true, null, HIGH_PRIORITY);
 
     Vector unechoedGameMoves = (Vector)unechoedMoves.get(game);
     if (unechoedGameMoves == null){
@@ -3098,7 +3165,7 @@ public class JinChessclubConnection extends ChessclubConnection implements Datag
      * The list of moves.
      */
 
-    public final Vector moves;
+    public final IntMoveList moves;
 
 
 
@@ -3111,6 +3178,15 @@ public class JinChessclubConnection extends ChessclubConnection implements Datag
 
 
 
+    /**
+     * The moves which have arrived so far of those following the initial
+     * position. They are fired together once the last of them arrives.
+     */
+
+    public final Vector loadedMoves = new Vector();
+
+
+
 
 
     /**
@@ -3207,7 +3283,7 @@ public class JinChessclubConnection extends ChessclubConnection implements Datag
     public GameInfo(Game game, Position initialPos, int numMovesToFollow){
       this.game = game;
       this.position = initialPos;
-      this.moves = new Vector();
+      this.moves = new IntMoveList();
       this.numMovesToFollow = numMovesToFollow;
       this.isFlipped = game.isBoardInitiallyFlipped();
       
@@ -88,6 +88,7 @@ import free.jin.event.JinEvent;
 import free.jin.event.PlainTextEvent;
 import free.jin.ui.SdiUiProvider;
 import free.util.BrowserControl;
+import free.util.FlightRecorderEventType;
 import free.util.PlatformUtils;
 import free.util.swing.MultiButton;
 
@@ -1032,12 +1033,25 @@ public class Console extends JPanel implements KeyListener{
   
   
   
+  /**
+   * The flight recorder event type of text appended to the console.
+   */
+  
+  private static final FlightRecorderEventType CONSOLE_APPEND_EVENT = new FlightRecorderEventType(
+      "free.jin.ConsoleAppend", "Console Append", new String[]{"Jin", "Console"},
+      "Text appended to the console, including detecting the links in it",
+      new String[]{"chars"}, new String[]{"Characters"}, new Class[]{int.class});
+  
+  
+  
   /**
    * Actually does the work of adding the given text to the output component's
    * Document.
    */
 
   protected void addToOutputImpl(String text, String textType) throws BadLocationException{
+    Object flightEvent = CONSOLE_APPEND_EVENT.begin();
+    
     StyledDocument document = outputComponent.getStyledDocument();
     int oldTextLength = document.getLength();
     
@@ -1110,6 +1124,8 @@ public class Console extends JPanel implements KeyListener{
       }
     }
 
+    if (flightEvent != null)
+      CONSOLE_APPEND_EVENT.commit(flightEvent, new Object[]{new Integer(text.length())});
   }
 
 
@@ -26,14 +26,17 @@ import free.jin.FriendsConnection;
 import free.jin.GameListConnection;
 import free.jin.MatchOfferConnection;
 import free.jin.SeekConnection;
-import free.util.EventListenerList;
+import free.util.FlightRecorderEventType;
+import free.util.LatencyMonitor;
+import free.util.ListenerRegistry;
 import free.util.UnsupportedOperationException;
 
 
 /**
  * A basic implementation of the <code>ListenerManager</code> interface which
- * uses an <code>EventListenerList</code> to hold the listeners. It also
- * provides convenient event firing methods.
+ * uses a <code>ListenerRegistry</code> to hold the listeners, so that firing
+ * an event only involves the listeners interested in it. It also provides
+ * convenient event firing methods.
  */
 
 public class BasicListenerManager implements ListenerManager, SeekListenerManager,
@@ -50,10 +53,22 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
   
   
   /**
-   * The <code>EventListenerList</code> where we keep all of our listeners.
+   * The <code>ListenerRegistry</code> where we keep all of our listeners.
    */
   
-  protected final EventListenerList listenerList = new EventListenerList();
+  protected final ListenerRegistry listenerRegistry = new ListenerRegistry();
+  
+  
+  
+  /**
+   * The flight recorder event type of <code>JinEvent</code>s fired.
+   */
+  
+  private static final FlightRecorderEventType EVENT_FIRED_EVENT = new FlightRecorderEventType(
+      "free.jin.JinEventFired", "Jin Event Fired", new String[]{"Jin", "Dispatch"},
+      "A JinEvent fired to its listeners",
+      new String[]{"eventType", "listenerCount"}, new String[]{"Event Type", "Listener Count"},
+      new Class[]{String.class, int.class});
   
   
   
@@ -68,6 +83,19 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
   
   
   
+  /**
+   * Commits the specified flight recorder event, begun (if not
+   * <code>null</code>) before firing the specified event to the specified
+   * amount of listeners.
+   */
+  
+  private static void eventFired(Object flightEvent, JinEvent evt, int listenerCount){
+    if (flightEvent != null)
+      EVENT_FIRED_EVENT.commit(flightEvent, new Object[]{evt.getClass().getName(), new Integer(listenerCount)});
+  }
+  
+  
+  
   /**
    * Adds the given <code>ConnectionListener</code> to receive connection
    * related events.
@@ -75,7 +103,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
   
   @Override
   public void addConnectionListener(ConnectionListener listener){
-    listenerList.add(ConnectionListener.class, listener);
+    listenerRegistry.add(ConnectionListener.class, listener);
   }
   
   
@@ -87,7 +115,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
   
   @Override
   public void removeConnectionListener(ConnectionListener listener){
-    listenerList.remove(ConnectionListener.class, listener);
+    listenerRegistry.remove(ConnectionListener.class, listener);
   }
   
   
@@ -98,16 +126,14 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
    */
   
   public void fireConnectionAttempted(Connection conn, String hostname, int port){
-    Object [] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2){
-      if (listeners[i] == ConnectionListener.class){
-        ConnectionListener listener = (ConnectionListener)listeners[i+1];
-        try{
-          listener.connectionAttempted(conn, hostname, port);
-        } catch (RuntimeException e){
-            e.printStackTrace();
-          }
-      }
+    ConnectionListener [] listeners = (ConnectionListener [])listenerRegistry.getListeners(ConnectionListener.class);
+    for (int i = 0; i < listeners.length; i++){
+      ConnectionListener listener = listeners[i];
+      try{
+        listener.connectionAttempted(conn, hostname, port);
+      } catch (RuntimeException e){
+          e.printStackTrace();
+        }
     }
   }
   
@@ -119,16 +145,14 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
    */
   
   public void fireConnectionEstablished(Connection conn){
-    Object [] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2){
-      if (listeners[i] == ConnectionListener.class){
-        ConnectionListener listener = (ConnectionListener)listeners[i+1];
-        try{
-          listener.connectionEstablished(conn);
-        } catch (RuntimeException e){
-            e.printStackTrace();
-          }
-      }
+    ConnectionListener [] listeners = (ConnectionListener [])listenerRegistry.getListeners(ConnectionListener.class);
+    for (int i = 0; i < listeners.length; i++){
+      ConnectionListener listener = listeners[i];
+      try{
+        listener.connectionEstablished(conn);
+      } catch (RuntimeException e){
+          e.printStackTrace();
+        }
     }
   }
   
@@ -140,16 +164,14 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
    */
   
   public void fireConnectingFailed(Connection conn, String reason){
-    Object [] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2){
-      if (listeners[i] == ConnectionListener.class){
-        ConnectionListener listener = (ConnectionListener)listeners[i+1];
-        try{
-          listener.connectingFailed(conn, reason);
-        } catch (RuntimeException e){
-            e.printStackTrace();
-          }
-      }
+    ConnectionListener [] listeners = (ConnectionListener [])listenerRegistry.getListeners(ConnectionListener.class);
+    for (int i = 0; i < listeners.length; i++){
+      ConnectionListener listener = listeners[i];
+      try{
+        listener.connectingFailed(conn, reason);
+      } catch (RuntimeException e){
+          e.printStackTrace();
+        }
     }
   }
   
@@ -161,16 +183,14 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
    */
   
   public void fireLoginSucceeded(Connection conn){
-    Object [] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2){
-      if (listeners[i] == ConnectionListener.class){
-        ConnectionListener listener = (ConnectionListener)listeners[i+1];
-        try{
-          listener.loginSucceeded(conn);
-        } catch (RuntimeException e){
-            e.printStackTrace();
-          }
-      }
+    ConnectionListener [] listeners = (ConnectionListener [])listenerRegistry.getListeners(ConnectionListener.class);
+    for (int i = 0; i < listeners.length; i++){
+      ConnectionListener listener = listeners[i];
+      try{
+        listener.loginSucceeded(conn);
+      } catch (RuntimeException e){
+          e.printStackTrace();
+        }
     }
   }
   
@@ -182,16 +202,14 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
    */
   
   public void fireLoginFailed(Connection conn, String reason){
-    Object [] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2){
-      if (listeners[i] == ConnectionListener.class){
-        ConnectionListener listener = (ConnectionListener)listeners[i+1];
-        try{
-          listener.loginFailed(conn, reason);
-        } catch (RuntimeException e){
-            e.printStackTrace();
-          }
-      }
+    ConnectionListener [] listeners = (ConnectionListener [])listenerRegistry.getListeners(ConnectionListener.class);
+    for (int i = 0; i < listeners.length; i++){
+      ConnectionListener listener = listeners[i];
+      try{
+        listener.loginFailed(conn, reason);
+      } catch (RuntimeException e){
+          e.printStackTrace();
+        }
     }
   }
   
@@ -203,16 +221,14 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
    */
   
   public void fireConnectionLost(Connection conn){
-    Object [] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2){
-      if (listeners[i] == ConnectionListener.class){
-        ConnectionListener listener = (ConnectionListener)listeners[i+1];
-        try{
-          listener.connectionLost(conn);
-        } catch (RuntimeException e){
-            e.printStackTrace();
-          }
-      }
+    ConnectionListener [] listeners = (ConnectionListener [])listenerRegistry.getListeners(ConnectionListener.class);
+    for (int i = 0; i < listeners.length; i++){
+      ConnectionListener listener = listeners[i];
+      try{
+        listener.connectionLost(conn);
+      } catch (RuntimeException e){
+          e.printStackTrace();
+        }
     }
   }
   
@@ -225,7 +241,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
   
   @Override
   public void addPlainTextListener(PlainTextListener listener){
-    listenerList.add(PlainTextListener.class, listener);
+    listenerRegistry.add(PlainTextListener.class, listener);
   }
   
   
@@ -238,7 +254,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
   
   @Override
   public void removePlainTextListener(PlainTextListener listener){
-    listenerList.remove(PlainTextListener.class, listener);
+    listenerRegistry.remove(PlainTextListener.class, listener);
   }
   
   
@@ -248,17 +264,18 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
    */
   
   public void firePlainTextEvent(PlainTextEvent evt){
-    Object [] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2){
-      if (listeners[i] == PlainTextListener.class){
-        PlainTextListener listener = (PlainTextListener)listeners[i+1];
-        try{
-          listener.plainTextReceived(evt);
-        } catch (RuntimeException e){
-            e.printStackTrace();
-          }
-      }
+    PlainTextListener [] listeners = (PlainTextListener [])listenerRegistry.getListeners(PlainTextListener.class);
+    Object flightEvent = EVENT_FIRED_EVENT.begin();
+    for (int i = 0; i < listeners.length; i++){
+      PlainTextListener listener = listeners[i];
+      try{
+        listener.plainTextReceived(evt);
+      } catch (RuntimeException e){
+          e.printStackTrace();
+        }
     }
+    
+    eventFired(flightEvent, evt, listeners.length);
   }
   
   
@@ -270,7 +287,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
   
   @Override
   public void addChatListener(ChatListener listener){
-    listenerList.add(ChatListener.class, listener);
+    listenerRegistry.add(ChatListener.class, listener);
   }
   
   
@@ -283,7 +300,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
   
   @Override
   public void removeChatListener(ChatListener listener){
-    listenerList.remove(ChatListener.class, listener);
+    listenerRegistry.remove(ChatListener.class, listener);
   }
   
   
@@ -294,17 +311,18 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
    */
   
   public void fireChatEvent(ChatEvent evt){
-    Object [] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2){
-      if (listeners[i] == ChatListener.class){
-        ChatListener listener = (ChatListener)listeners[i+1];
-        try{
-          listener.chatMessageReceived(evt);
-        } catch (RuntimeException e){
-            e.printStackTrace();
-          }
-      }
+    ChatListener [] listeners = (ChatListener [])listenerRegistry.getListeners(ChatListener.class);
+    Object flightEvent = EVENT_FIRED_EVENT.begin();
+    for (int i = 0; i < listeners.length; i++){
+      ChatListener listener = listeners[i];
+      try{
+        listener.chatMessageReceived(evt);
+      } catch (RuntimeException e){
+          e.printStackTrace();
+        }
     }
+    
+    eventFired(flightEvent, evt, listeners.length);
   }
   
   
@@ -316,7 +334,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
   
   @Override
   public void addGameListener(GameListener listener){
-    listenerList.add(GameListener.class, listener);
+    listenerRegistry.add(GameListener.class, listener);
   }
   
   
@@ -328,7 +346,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
   
   @Override
   public void removeGameListener(GameListener listener){
-    listenerList.remove(GameListener.class, listener);
+    listenerRegistry.remove(GameListener.class, listener);
   }
   
   
@@ -339,36 +357,47 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
    */
   
   public void fireGameEvent(GameEvent evt){
-    Object [] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2){
-      if (listeners[i] == GameListener.class){
-        GameListener listener = (GameListener)listeners[i+1];
-        try{
-          if (evt instanceof GameStartEvent)
-            listener.gameStarted((GameStartEvent)evt);
-          else if (evt instanceof GameEndEvent)
-            listener.gameEnded((GameEndEvent)evt);
-          else if (evt instanceof MoveMadeEvent)
-            listener.moveMade((MoveMadeEvent)evt);
-          else if (evt instanceof PositionChangedEvent)
-            listener.positionChanged((PositionChangedEvent)evt);  
-          else if (evt instanceof TakebackEvent)
-            listener.takebackOccurred((TakebackEvent)evt);
-          else if (evt instanceof IllegalMoveEvent)
-            listener.illegalMoveAttempted((IllegalMoveEvent)evt);
-          else if (evt instanceof ClockAdjustmentEvent)
-            listener.clockAdjusted((ClockAdjustmentEvent)evt);
-          else if (evt instanceof BoardFlipEvent)
-            listener.boardFlipped((BoardFlipEvent)evt);
-          else if (evt instanceof OfferEvent)
-            listener.offerUpdated((OfferEvent)evt);
-          else
-            throw new IllegalArgumentException("Unknown GameEvent type: "+evt.getClass());
-        } catch (RuntimeException e){
-            e.printStackTrace();
-          }
-      }
+    LatencyMonitor latencyMonitor = LatencyMonitor.getInstance();
+    boolean isTraced = (evt instanceof MoveMadeEvent) && latencyMonitor.isEnabled();
+    if (isTraced)
+      latencyMonitor.eventFiringStarted();
+    
+    GameListener [] listeners = (GameListener [])listenerRegistry.getListeners(GameListener.class);
+    Object flightEvent = EVENT_FIRED_EVENT.begin();
+    for (int i = 0; i < listeners.length; i++){
+      GameListener listener = listeners[i];
+      try{
+        if (evt instanceof GameStartEvent)
+          listener.gameStarted((GameStartEvent)evt);
+        else if (evt instanceof GameEndEvent)
+          listener.gameEnded((GameEndEvent)evt);
+        else if (evt instanceof MoveMadeEvent)
+          listener.moveMade((MoveMadeEvent)evt);
+        else if (evt instanceof MoveListLoadedEvent)
+          listener.moveListLoaded((MoveListLoadedEvent)evt);
+        else if (evt instanceof PositionChangedEvent)
+          listener.positionChanged((PositionChangedEvent)evt);  
+        else if (evt instanceof TakebackEvent)
+          listener.takebackOccurred((TakebackEvent)evt);
+        else if (evt instanceof IllegalMoveEvent)
+          listener.illegalMoveAttempted((IllegalMoveEvent)evt);
+        else if (evt instanceof ClockAdjustmentEvent)
+          listener.clockAdjusted((ClockAdjustmentEvent)evt);
+        else if (evt instanceof BoardFlipEvent)
+          listener.boardFlipped((BoardFlipEvent)evt);
+        else if (evt instanceof OfferEvent)
+          listener.offerUpdated((OfferEvent)evt);
+        else
+          throw new IllegalArgumentException("Unknown GameEvent type: "+evt.getClass());
+      } catch (RuntimeException e){
+          e.printStackTrace();
+        }
     }
+    
+    eventFired(flightEvent, evt, listeners.length);
+    
+    if (isTraced)
+      latencyMonitor.eventFiringEnded();
   }
   
   
@@ -383,7 +412,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
     if (!(source instanceof SeekConnection))
       throw new UnsupportedOperationException("The source Connection is not an instance of SeekConnection");
     
-    listenerList.add(SeekListener.class, listener);
+    listenerRegistry.add(SeekListener.class, listener);
   }
   
   
@@ -398,7 +427,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
     if (!(source instanceof SeekConnection))
       throw new UnsupportedOperationException("The source Connection is not an instance of SeekConnection");
     
-    listenerList.remove(SeekListener.class, listener);
+    listenerRegistry.remove(SeekListener.class, listener);
   }
   
   
@@ -412,26 +441,27 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
     if (!(source instanceof SeekConnection))
       throw new UnsupportedOperationException("The source Connection is not an instance of SeekConnection");
     
-    Object [] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2){
-      if (listeners[i] == SeekListener.class){
-        SeekListener listener = (SeekListener)listeners[i+1];
-        try{
-          switch(evt.getID()){
-            case SeekEvent.SEEK_ADDED:
-              listener.seekAdded(evt);
-              break;
-            case SeekEvent.SEEK_REMOVED:
-              listener.seekRemoved(evt);
-              break;
-            default:
-              throw new IllegalArgumentException("Unknown SeekEvent ID: "+evt.getID());
-          }
-        } catch (RuntimeException e){
-            e.printStackTrace();
-          }
-      }
+    SeekListener [] listeners = (SeekListener [])listenerRegistry.getListeners(SeekListener.class);
+    Object flightEvent = EVENT_FIRED_EVENT.begin();
+    for (int i = 0; i < listeners.length; i++){
+      SeekListener listener = listeners[i];
+      try{
+        switch(evt.getID()){
+          case SeekEvent.SEEK_ADDED:
+            listener.seekAdded(evt);
+            break;
+          case SeekEvent.SEEK_REMOVED:
+            listener.seekRemoved(evt);
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown SeekEvent ID: "+evt.getID());
+        }
+      } catch (RuntimeException e){
+          e.printStackTrace();
+        }
     }
+    
+    eventFired(flightEvent, evt, listeners.length);
   }
   
   
@@ -446,7 +476,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
     if (!(source instanceof GameListConnection))
       throw new UnsupportedOperationException("The source Connection is not an instance of GameListConnection");
     
-    listenerList.add(GameListListener.class, listener);
+    listenerRegistry.add(GameListListener.class, listener);
   }
   
   
@@ -461,7 +491,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
     if (!(source instanceof GameListConnection))
       throw new UnsupportedOperationException("The source Connection is not an instance of GameListConnection");
     
-    listenerList.remove(GameListListener.class, listener);
+    listenerRegistry.remove(GameListListener.class, listener);
   }
   
   
@@ -475,17 +505,18 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
     if (!(source instanceof GameListConnection))
       throw new UnsupportedOperationException("The source Connection is not an instance of GameListConnection");
     
-    Object [] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2){
-      if (listeners[i] == GameListListener.class){
-        GameListListener listener = (GameListListener)listeners[i+1];
-        try{
-          listener.gameListArrived(evt);
-        } catch (RuntimeException e){
-            e.printStackTrace();
-          }
-      }
+    GameListListener [] listeners = (GameListListener [])listenerRegistry.getListeners(GameListListener.class);
+    Object flightEvent = EVENT_FIRED_EVENT.begin();
+    for (int i = 0; i < listeners.length; i++){
+      GameListListener listener = listeners[i];
+      try{
+        listener.gameListArrived(evt);
+      } catch (RuntimeException e){
+          e.printStackTrace();
+        }
     }
+    
+    eventFired(flightEvent, evt, listeners.length);
   }
   
   
@@ -500,7 +531,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
     if (!(source instanceof FriendsConnection))
       throw new UnsupportedOperationException("The source Connection is not an instance of FriendsConnection");
     
-    listenerList.add(FriendsListener.class, listener);
+    listenerRegistry.add(FriendsListener.class, listener);
   }
   
   
@@ -515,7 +546,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
     if (!(source instanceof FriendsConnection))
       throw new UnsupportedOperationException("The source Connection is not an instance of FriendsConnection");
     
-    listenerList.remove(FriendsListener.class, listener);
+    listenerRegistry.remove(FriendsListener.class, listener);
   }
   
   
@@ -528,33 +559,34 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
     if (!(source instanceof FriendsConnection))
       throw new UnsupportedOperationException("The source Connection is not an instance of FriendsConnection");
     
-    Object [] listenerList = this.listenerList.getListenerList();
-    for (int i = 0; i < listenerList.length; i += 2){
-      if (listenerList[i] == FriendsListener.class){
-        FriendsListener listener = (FriendsListener)listenerList[i+1];
-        try{
-          switch (evt.getID()){
-            case FriendsEvent.FRIEND_CONNECTED:
-              listener.friendConnected(evt);
-              break;
-            case FriendsEvent.FRIEND_DISCONNECTED:
-              listener.friendDisconnected(evt);
-              break;
-            case FriendsEvent.FRIEND_ADDED:
-              listener.friendAdded(evt);
-              break;
-            case FriendsEvent.FRIEND_REMOVED:
-              listener.friendRemoved(evt);
-              break;
-            case FriendsEvent.FRIEND_STATE_CHANGED:
-              listener.friendStateChanged(evt);
-              break;
-          }
-        } catch (RuntimeException e){
-            e.printStackTrace();
-          }
-      }
+    FriendsListener [] listeners = (FriendsListener [])listenerRegistry.getListeners(FriendsListener.class);
+    Object flightEvent = EVENT_FIRED_EVENT.begin();
+    for (int i = 0; i < listeners.length; i++){
+      FriendsListener listener = listeners[i];
+      try{
+        switch (evt.getID()){
+          case FriendsEvent.FRIEND_CONNECTED:
+            listener.friendConnected(evt);
+            break;
+          case FriendsEvent.FRIEND_DISCONNECTED:
+            listener.friendDisconnected(evt);
+            break;
+          case FriendsEvent.FRIEND_ADDED:
+            listener.friendAdded(evt);
+            break;
+          case FriendsEvent.FRIEND_REMOVED:
+            listener.friendRemoved(evt);
+            break;
+          case FriendsEvent.FRIEND_STATE_CHANGED:
+            listener.friendStateChanged(evt);
+            break;
+        }
+      } catch (RuntimeException e){
+          e.printStackTrace();
+        }
     }
+    
+    eventFired(flightEvent, evt, listeners.length);
   }
   
   
@@ -569,7 +601,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
     if (!(source instanceof MatchOfferConnection))
       throw new UnsupportedOperationException("The source connection is not an instance of MatchOfferConnection");
     
-    listenerList.add(MatchOfferListener.class, listener);
+    listenerRegistry.add(MatchOfferListener.class, listener);
   }
   
   
@@ -584,7 +616,7 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
     if (!(source instanceof MatchOfferConnection))
       throw new UnsupportedOperationException("The source connection is not an instance of MatchOfferConnection");
     
-    listenerList.remove(MatchOfferListener.class, listener);
+    listenerRegistry.remove(MatchOfferListener.class, listener);
   }
   
   
@@ -598,24 +630,25 @@ public class BasicListenerManager implements ListenerManager, SeekListenerManage
     if (!(source instanceof MatchOfferConnection))
       throw new UnsupportedOperationException("The source Connection is not an instance of MatchOfferConnection");
     
-    Object [] listenerList = this.listenerList.getListenerList();
-    for (int i = 0; i < listenerList.length; i += 2){
-      if (listenerList[i] == MatchOfferListener.class){
-        MatchOfferListener listener = (MatchOfferListener)listenerList[i+1];
-        try{
-          switch (evt.getID()){
-            case MatchOfferEvent.MATCH_OFFER_MADE:
-              listener.matchOfferMade(evt);
-              break;
-            case MatchOfferEvent.MATCH_OFFER_WITHDRAWN:
-              listener.matchOfferWithdrawn(evt);
-              break;
-          }
-        } catch (RuntimeException e){
-            e.printStackTrace();
-          }
-      }
+    MatchOfferListener [] listeners = (MatchOfferListener [])listenerRegistry.getListeners(MatchOfferListener.class);
+    Object flightEvent = EVENT_FIRED_EVENT.begin();
+    for (int i = 0; i < listeners.length; i++){
+      MatchOfferListener listener = listeners[i];
+      try{
+        switch (evt.getID()){
+          case MatchOfferEvent.MATCH_OFFER_MADE:
+            listener.matchOfferMade(evt);
+            break;
+          case MatchOfferEvent.MATCH_OFFER_WITHDRAWN:
+            listener.matchOfferWithdrawn(evt);
+            break;
+        }
+      } catch (RuntimeException e){
+          e.printStackTrace();
+        }
     }
+    
+    eventFired(flightEvent, evt, listeners.length);
   }
   
   
@@ -0,0 +1,602 @@
+/**
+ * Jin - a chess client for internet chess servers.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package free.jin.event;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+
+/**
+ * A bounded queue of tasks executed, in order, on a single background thread.
+ * Plugins which don't touch the UI when handling events (loggers, sound,
+ * scripts) use it to receive their events off the AWT event dispatching
+ * thread, so that their work doesn't compete with painting. The
+ * <code>xxxListener</code> methods wrap a listener into one which enqueues
+ * each notification, and may be registered with a {@link ListenerManager} in
+ * place of the real listener. When the queue is full, further tasks are
+ * handled according to the queue's overflow policy.
+ */
+
+public class EventDeliveryQueue{
+
+
+
+  /**
+   * The overflow policy under which the thread adding a task to a full queue
+   * waits until there is room for it. No events are lost, at the cost of
+   * stalling the thread delivering events if the queue's thread falls too far
+   * behind.
+   */
+
+  public static final int BLOCK = 0;
+
+
+
+  /**
+   * The overflow policy under which the oldest task in a full queue is
+   * discarded to make room for the new one.
+   */
+
+  public static final int DROP_OLDEST = 1;
+
+
+
+  /**
+   * The overflow policy under which a task added to a full queue is
+   * discarded.
+   */
+
+  public static final int DROP_NEWEST = 2;
+
+
+
+  /**
+   * All the open queues.
+   */
+
+  private static final Vector queues = new Vector();
+
+
+
+  /**
+   * The maximum amount of time, in milliseconds, {@link #close()} waits for
+   * the queue's thread to finish the pending tasks.
+   */
+
+  private static final long CLOSE_TIMEOUT = 5000;
+
+
+
+  /**
+   * The name of the queue.
+   */
+
+  private final String name;
+
+
+
+  /**
+   * The maximum amount of pending tasks.
+   */
+
+  private final int capacity;
+
+
+
+  /**
+   * The overflow policy.
+   */
+
+  private final int overflowPolicy;
+
+
+
+  /**
+   * The pending tasks, oldest first.
+   */
+
+  private final Vector tasks = new Vector();
+
+
+
+  /**
+   * Maps <code>GameListener</code>s to the wrappers we've created for them, so
+   * that the same wrapper is returned (and can be unregistered) for the same
+   * listener. Each listener type has its own map, since a single object may
+   * be wrapped as several types of listeners.
+   */
+
+  private final Hashtable gameListenerWrappers = new Hashtable();
+
+
+
+  /**
+   * Maps <code>ChatListener</code>s to the wrappers we've created for them.
+   */
+
+  private final Hashtable chatListenerWrappers = new Hashtable();
+
+
+
+  /**
+   * Maps <code>PlainTextListener</code>s to the wrappers we've created for
+   * them.
+   */
+
+  private final Hashtable plainTextListenerWrappers = new Hashtable();
+
+
+
+  /**
+   * The thread executing the tasks; <code>null</code> until the first task is
+   * added.
+   */
+
+  private Thread thread = null;
+
+
+
+  /**
+   * Whether the queue has been closed.
+   */
+
+  private boolean isClosed = false;
+
+
+
+  /**
+   * The largest amount of pending tasks seen so far.
+   */
+
+  private int maxQueueDepth = 0;
+
+
+
+  /**
+   * The amount of tasks executed so far.
+   */
+
+  private long executedCount = 0;
+
+
+
+  /**
+   * The amount of tasks discarded so far due to overflow.
+   */
+
+  private long droppedCount = 0;
+
+
+
+  /**
+   * Creates a new <code>EventDeliveryQueue</code> with the specified name
+   * (used for its thread and for diagnostics), capacity and overflow policy
+   * (one of {@link #BLOCK}, {@link #DROP_OLDEST} or {@link #DROP_NEWEST}).
+   */
+
+  public EventDeliveryQueue(String name, int capacity, int overflowPolicy){
+    if (name == null)
+      throw new IllegalArgumentException("name may not be null");
+    if (capacity <= 0)
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    switch (overflowPolicy){
+      case BLOCK:
+      case DROP_OLDEST:
+      case DROP_NEWEST:
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown overflow policy: " + overflowPolicy);
+    }
+
+    this.name = name;
+    this.capacity = capacity;
+    this.overflowPolicy = overflowPolicy;
+
+    queues.addElement(this);
+  }
+
+
+
+  /**
+   * Returns all the queues which have been created and not yet closed.
+   */
+
+  public static EventDeliveryQueue [] getQueues(){
+    synchronized(queues){
+      EventDeliveryQueue [] result = new EventDeliveryQueue[queues.size()];
+      queues.copyInto(result);
+      return result;
+    }
+  }
+
+
+
+  /**
+   * Returns the name of the queue.
+   */
+
+  public String getName(){
+    return name;
+  }
+
+
+
+  /**
+   * Returns the maximum amount of pending tasks.
+   */
+
+  public int getCapacity(){
+    return capacity;
+  }
+
+
+
+  /**
+   * Returns the overflow policy.
+   */
+
+  public int getOverflowPolicy(){
+    return overflowPolicy;
+  }
+
+
+
+  /**
+   * Returns the current amount of pending tasks.
+   */
+
+  public synchronized int getQueueDepth(){
+    return tasks.size();
+  }
+
+
+
+  /**
+   * Returns the largest amount of pending tasks seen so far.
+   */
+
+  public synchronized int getMaxQueueDepth(){
+    return maxQueueDepth;
+  }
+
+
+
+  /**
+   * Returns the amount of tasks executed so far.
+   */
+
+  public synchronized long getExecutedCount(){
+    return executedCount;
+  }
+
+
+
+  /**
+   * Returns the amount of tasks discarded so far because the queue was full.
+   */
+
+  public synchronized long getDroppedCount(){
+    return droppedCount;
+  }
+
+
+
+  /**
+   * Returns whether the current thread is the queue's thread.
+   */
+
+  public synchronized boolean isQueueThread(){
+    return Thread.currentThread() == thread;
+  }
+
+
+
+  /**
+   * Adds the specified task to the queue. Tasks are executed in the order
+   * they are added, one at a time. If the queue is full, the task is handled
+   * according to the overflow policy. Tasks added after the queue is closed
+   * are ignored.
+   */
+
+  public synchronized void execute(Runnable task){
+    if (task == null)
+      throw new IllegalArgumentException("task may not be null");
+    if (isClosed)
+      return;
+
+    // The queue's own thread may exceed the capacity - blocking it would
+    // deadlock the queue
+    if ((tasks.size() >= capacity) && (Thread.currentThread() != thread)){
+      if (overflowPolicy == BLOCK){
+        while ((tasks.size() >= capacity) && !isClosed){
+          try{
+            wait();
+          } catch (InterruptedException e){
+              Thread.currentThread().interrupt();
+              return;
+            }
+        }
+        if (isClosed)
+          return;
+      }
+      else if (overflowPolicy == DROP_OLDEST){
+        tasks.removeElementAt(0);
+        droppedCount++;
+      }
+      else{
+        droppedCount++;
+        return;
+      }
+    }
+
+    tasks.addElement(task);
+    if (tasks.size() > maxQueueDepth)
+      maxQueueDepth = tasks.size();
+
+    if (thread == null){
+      thread = new Thread(new Runnable(){
+        @Override
+        public void run(){
+          executeTasks();
+        }
+      }, name);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    notifyAll();
+  }
+
+
+
+  /**
+   * Closes the queue. Any further tasks are ignored. Under the {@link #BLOCK}
+   * policy, pending tasks are still executed, and this method waits (for a
+   * limited time) until they are; under the other policies, pending tasks are
+   * discarded and the queue's thread exits once it finishes the current task.
+   */
+
+  public void close(){
+    Thread thread;
+    synchronized(this){
+      if (isClosed)
+        return;
+
+      isClosed = true;
+      if (overflowPolicy != BLOCK)
+        tasks.removeAllElements();
+      notifyAll();
+
+      queues.removeElement(this);
+      thread = this.thread;
+    }
+
+    if ((thread != null) && (thread != Thread.currentThread())){
+      try{
+        thread.join(CLOSE_TIMEOUT);
+      } catch (InterruptedException e){
+          Thread.currentThread().interrupt();
+        }
+    }
+  }
+
+
+
+  /**
+   * Executes tasks until the queue is closed and there are no more pending
+   * tasks. This is the body of the queue's thread.
+   */
+
+  private void executeTasks(){
+    while (true){
+      Runnable task;
+      synchronized(this){
+        while (tasks.isEmpty() && !isClosed){
+          try{
+            wait();
+          } catch (InterruptedException e){}
+        }
+        if (tasks.isEmpty()) // Closed
+          return;
+
+        task = (Runnable)tasks.elementAt(0);
+        tasks.removeElementAt(0);
+        executedCount++;
+        notifyAll();
+      }
+
+      try{
+        task.run();
+      } catch (RuntimeException e){
+          e.printStackTrace();
+        }
+    }
+  }
+
+
+
+  /**
+   * Returns a <code>GameListener</code> which delivers the notifications it
+   * receives to the specified listener via this queue.
+   */
+
+  public synchronized GameListener gameListener(final GameListener listener){
+    GameListener wrapper = (GameListener)gameListenerWrappers.get(listener);
+    if (wrapper != null)
+      return wrapper;
+
+    wrapper = new GameListener(){
+      @Override
+      public void gameStarted(final GameStartEvent evt){
+        execute(new Runnable(){
+          @Override
+          public void run(){
+            listener.gameStarted(evt);
+          }
+        });
+      }
+      @Override
+      public void moveMade(final MoveMadeEvent evt){
+        execute(new Runnable(){
+          @Override
+          public void run(){
+            listener.moveMade(evt);
+          }
+        });
+      }
+      @Override
+      public void moveListLoaded(final MoveListLoadedEvent evt){
+        execute(new Runnable(){
+          @Override
+          public void run(){
+            listener.moveListLoaded(evt);
+          }
+        });
+      }
+      @Override
+      public void positionChanged(final PositionChangedEvent evt){
+        execute(new Runnable(){
+          @Override
+          public void run(){
+            listener.positionChanged(evt);
+          }
+        });
+      }
+      @Override
+      public void takebackOccurred(final TakebackEvent evt){
+        execute(new Runnable(){
+          @Override
+          public void run(){
+            listener.takebackOccurred(evt);
+          }
+        });
+      }
+      @Override
+      public void illegalMoveAttempted(final IllegalMoveEvent evt){
+        execute(new Runnable(){
+          @Override
+          public void run(){
+            listener.illegalMoveAttempted(evt);
+          }
+        });
+      }
+      @Override
+      public void clockAdjusted(final ClockAdjustmentEvent evt){
+        execute(new Runnable(){
+          @Override
+          public void run(){
+            listener.clockAdjusted(evt);
+          }
+        });
+      }
+      @Override
+      public void boardFlipped(final BoardFlipEvent evt){
+        execute(new Runnable(){
+          @Override
+          public void run(){
+            listener.boardFlipped(evt);
+          }
+        });
+      }
+      @Override
+      public void offerUpdated(final OfferEvent evt){
+        execute(new Runnable(){
+          @Override
+          public void run(){
+            listener.offerUpdated(evt);
+          }
+        });
+      }
+      @Override
+      public void gameEnded(final GameEndEvent evt){
+        execute(new Runnable(){
+          @Override
+          public void run(){
+            listener.gameEnded(evt);
+          }
+        });
+      }
+    };
+
+    gameListenerWrappers.put(listener, wrapper);
+    return wrapper;
+  }
+
+
+
+  /**
+   * Returns a <code>ChatListener</code> which delivers the notifications it
+   * receives to the specified listener via this queue.
+   */
+
+  public synchronized ChatListener chatListener(final ChatListener listener){
+    ChatListener wrapper = (ChatListener)chatListenerWrappers.get(listener);
+    if (wrapper != null)
+      return wrapper;
+
+    wrapper = new ChatListener(){
+      @Override
+      public void chatMessageReceived(final ChatEvent evt){
+        execute(new Runnable(){
+          @Override
+          public void run(){
+            listener.chatMessageReceived(evt);
+          }
+        });
+      }
+    };
+
+    chatListenerWrappers.put(listener, wrapper);
+    return wrapper;
+  }
+
+
+
+  /**
+   * Returns a <code>PlainTextListener</code> which delivers the notifications
+   * it receives to the specified listener via this queue.
+   */
+
+  public synchronized PlainTextListener plainTextListener(final PlainTextListener listener){
+    PlainTextListener wrapper = (PlainTextListener)plainTextListenerWrappers.get(listener);
+    if (wrapper != null)
+      return wrapper;
+
+    wrapper = new PlainTextListener(){
+      @Override
+      public void plainTextReceived(final PlainTextEvent evt){
+        execute(new Runnable(){
+          @Override
+          public void run(){
+            listener.plainTextReceived(evt);
+          }
+        });
+      }
+    };
+
+    plainTextListenerWrappers.put(listener, wrapper);
+    return wrapper;
+  }
+
+
+
+}
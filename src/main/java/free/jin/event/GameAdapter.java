@@ -36,6 +36,8 @@ public class GameAdapter implements GameListener{
   @Override
   public void moveMade(MoveMadeEvent evt){}
   @Override
+  public void moveListLoaded(MoveListLoadedEvent evt){}
+  @Override
   public void positionChanged(PositionChangedEvent evt){}
   @Override
   public void takebackOccurred(TakebackEvent evt){}
@@ -48,6 +48,15 @@ public interface GameListener extends EventListener{
 
 
 
+  /**
+   * Gets called when the moves made so far in a game are received in bulk,
+   * instead of one by one with <code>moveMade</code>.
+   */
+
+  void moveListLoaded(MoveListLoadedEvent evt);
+
+
+
 
   /**
    * Gets called when the position in the game changes. This is <B>NOT</B>
@@ -0,0 +1,125 @@
+/**
+ * Jin - a chess client for internet chess servers.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package free.jin.event;
+
+import free.chess.ChessMove;
+import free.chess.Move;
+import free.chess.Position;
+import free.jin.Connection;
+import free.jin.Game;
+import free.jin.PGNConnection;
+
+
+/**
+ * The event fired when the moves made so far in a game are received in bulk,
+ * such as when starting to observe or examine a game which is already in
+ * progress. No <code>MoveMadeEvent</code>s are fired for these moves, so
+ * listeners should bring themselves up to date with all of them at once. The
+ * moves are all "old", as described in {@link MoveMadeEvent#isNew()}.
+ */
+
+public class MoveListLoadedEvent extends GameEvent{
+
+
+
+  /**
+   * The loaded moves.
+   */
+
+  private final Move [] moves;
+
+
+
+  /**
+   * The position after the moves were made.
+   */
+
+  private final Position position;
+
+
+
+  /**
+   * Creates a new <code>MoveListLoadedEvent</code>.
+   *
+   * @param conn The <code>Connection</code>.
+   * @param game The game whose moves were loaded.
+   * @param moves The loaded moves, in the order they were made.
+   * @param position The position after the moves were made.
+   */
+
+  public MoveListLoadedEvent(Connection conn, String clientTag, Game game, Move [] moves, Position position){
+    super(conn, clientTag, game);
+
+    if (conn instanceof PGNConnection){
+      for (int i = 0; i < moves.length; i++)
+        if ((moves[i] instanceof ChessMove) && (((ChessMove)moves[i]).getSAN() == null))
+          throw new IllegalStateException("The source Connection implements PGNConnection, but did not provide a SAN representation of the move");
+    }
+
+    this.moves = (Move [])moves.clone();
+    this.position = new Position(position);
+  }
+
+
+
+  /**
+   * Returns the amount of loaded moves.
+   */
+
+  public int getMoveCount(){
+    return moves.length;
+  }
+
+
+
+  /**
+   * Returns the loaded move at the specified index.
+   */
+
+  public Move getMove(int index){
+    return moves[index];
+  }
+
+
+
+  /**
+   * Returns a new array holding the loaded moves, in the order they were made.
+   */
+
+  public Move [] getMoves(){
+    return (Move [])moves.clone();
+  }
+
+
+
+  /**
+   * Returns the position after the moves were made. Listeners should not
+   * modify it.
+   */
+
+  public Position getPosition(){
+    return position;
+  }
+
+
+
+}
@@ -49,7 +49,9 @@ public class PositionChangedEvent extends GameEvent{
 
   /**
    * Creates a new PositionChangeEvent with the given source Connection, the
-   * game in which the position changed and the new Position.
+   * game in which the position changed and the new Position. The position is
+   * copied, as listeners may handle the event after the connection has already
+   * modified it further.
    */
 
   public PositionChangedEvent(Connection conn, String clientTag, Game game, Position position){
@@ -59,7 +61,7 @@ public class PositionChangedEvent extends GameEvent{
         (position.getFEN() == null))
       throw new IllegalStateException("The source Connection implements PGNConnection, but did not provide a FEN representation of the position");
 
-    this.position = position;
+    this.position = new Position(position);
   } 
 
 
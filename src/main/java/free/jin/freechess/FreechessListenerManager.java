@@ -69,7 +69,7 @@ public class FreechessListenerManager extends BasicListenerManager{
   public void addSeekListener(SeekListener listener){
     super.addSeekListener(listener);
 
-    if (listenerList.getListenerCount(SeekListener.class) == 1)
+    if (listenerRegistry.getListenerCount(SeekListener.class) == 1)
       source.setIvarState(Ivar.SEEKINFO, true);
   }
 
@@ -85,7 +85,7 @@ public class FreechessListenerManager extends BasicListenerManager{
   public void removeSeekListener(SeekListener listener){
     super.removeSeekListener(listener);
 
-    if (listenerList.getListenerCount(SeekListener.class) == 0)
+    if (listenerRegistry.getListenerCount(SeekListener.class) == 0)
       source.setIvarState(Ivar.SEEKINFO, false);
   }
   
@@ -97,7 +97,7 @@ public class FreechessListenerManager extends BasicListenerManager{
    */
    
   public void addIvarStateChangeListener(IvarStateChangeListener listener){
-    listenerList.add(IvarStateChangeListener.class, listener);
+    listenerRegistry.add(IvarStateChangeListener.class, listener);
   }
   
 
@@ -108,7 +108,7 @@ public class FreechessListenerManager extends BasicListenerManager{
    */
    
   public void removeIvarStateChangeListener(IvarStateChangeListener listener){
-    listenerList.remove(IvarStateChangeListener.class, listener);
+    listenerRegistry.remove(IvarStateChangeListener.class, listener);
   }
   
   
@@ -119,12 +119,10 @@ public class FreechessListenerManager extends BasicListenerManager{
    */
    
   public void fireIvarStateChangeEvent(IvarStateChangeEvent evt){
-    Object [] listeners = listenerList.getListenerList();
-    for (int i = 0; i < listeners.length; i += 2){
-      if (listeners[i] == IvarStateChangeListener.class){
-        IvarStateChangeListener listener = (IvarStateChangeListener)listeners[i+1];
-        listener.ivarStateChanged(evt);
-      }
+    IvarStateChangeListener [] listeners = (IvarStateChangeListener [])listenerRegistry.getListeners(IvarStateChangeListener.class);
+    for (int i = 0; i < listeners.length; i++){
+      IvarStateChangeListener listener = listeners[i];
+      listener.ivarStateChanged(evt);
     }
   }
   
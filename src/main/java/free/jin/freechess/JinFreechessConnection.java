@@ -21,6 +21,7 @@
 
 package free.jin.freechess;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
@@ -42,6 +43,7 @@ import free.chess.ChessMove;
 import free.chess.ChessPiece;
 import free.chess.ChesslikeGenericVariant;
 import free.chess.FischerTimeControl;
+import free.chess.IntMoveList;
 import free.chess.Move;
 import free.chess.OddsTimeControl;
 import free.chess.Piece;
@@ -86,6 +88,9 @@ import free.jin.event.SeekListenerManager;
 import free.jin.event.TakebackEvent;
 import free.jin.freechess.event.IvarStateChangeEvent;
 import free.util.Pair;
+import free.util.ReplaySocket;
+import free.util.SelectorThread;
+import free.util.SessionRecorder;
 import free.util.TextUtilities;
 
 
@@ -125,7 +130,7 @@ public class JinFreechessConnection extends FreechessConnection implements Conne
     setIvarState(Ivar.SHOWOWNSEEK, true);
     setIvarState(Ivar.PENDINFO, true);
     setIvarState(Ivar.MOVECASE, true);
-    // setIvarState(Ivar.COMPRESSMOVE, true); Pending DAV's bugfixing spree
+    setIvarState(Ivar.COMPRESSMOVE, true);
     setIvarState(Ivar.LOCK, true);
   }
   
@@ -224,10 +229,34 @@ public class JinFreechessConnection extends FreechessConnection implements Conne
   
   /**
    * Fires an "attempting" connection event and invokes {@link free.util.Connection#initiateConnect(String, int)}.
+   * <P>If the <code>free.jin.nonBlockingIO</code> system property is set, the connection is read by the shared
+   * {@link SelectorThread} instead of a dedicated reader thread. This is a test and benchmark only option: the
+   * selector needs a plain <code>SocketChannel</code>, while the timesealing library only works over its own
+   * <code>TimesealingSocket</code>, so the property is ignored whenever that library is available - which it always is in
+   * the builds we ship.
    */
   
   @Override
   public void initiateConnectAndLogin(String hostname, int port){
+    String recordFile = System.getProperty("free.jin.recordSession");
+    if (recordFile != null){
+      try{
+        setSessionRecorder(SessionRecorder.createForFile(recordFile));
+      } catch (IOException e){
+          e.printStackTrace(); // Just don't record
+        }
+    }
+    
+    // Test-only; never taken when timesealing is available, see the method's doc
+    if (Boolean.getBoolean("free.jin.nonBlockingIO") && !isTimesealAvailable() &&
+        (System.getProperty("free.jin.replaySession") == null)){
+      try{
+        setSelectorThread(SelectorThread.getSharedInstance());
+      } catch (IOException e){
+          e.printStackTrace(); // Fall back to a dedicated reader thread
+        }
+    }
+    
     listenerManager.fireConnectionAttempted(this, hostname, port);
 
     initiateConnect(hostname, port);
@@ -304,11 +333,33 @@ public class JinFreechessConnection extends FreechessConnection implements Conne
 
 
   /**
-   * Overrides {@link free.util.Connection#connectImpl(String, int)} to return a timesealing socket.
+   * Returns whether the timesealing socket is available. Timesealing sockets are not
+   * channel based, so they can't be read by a {@link SelectorThread}.
+   */
+  
+  private static boolean isTimesealAvailable(){
+    try{
+      Class.forName("free.freechess.timeseal.TimesealingSocket");
+      return true;
+    } catch (ClassNotFoundException e){
+        return false;
+      }
+  }
+
+
+
+  /**
+   * Overrides {@link free.util.Connection#connectImpl(String, int)} to return a timesealing socket. If the
+   * <code>free.jin.replaySession</code> system property is set, a {@link ReplaySocket} replaying the session recorded
+   * in the specified file is returned instead.
    */
 
   @Override
   protected Socket connectImpl(String hostname, int port) throws IOException{
+    String replayFile = System.getProperty("free.jin.replaySession");
+    if (replayFile != null)
+      return new ReplaySocket(new FileInputStream(replayFile), getReplaySpeed());
+    
     Socket result = null;
     try{
       Class tsSocketClass = Class.forName("free.freechess.timeseal.TimesealingSocket");
@@ -339,6 +390,21 @@ public class JinFreechessConnection extends FreechessConnection implements Conne
 
 
 
+  /**
+   * Returns the speed at which a recorded session is replayed, as specified by the
+   * <code>free.jin.replaySpeed</code> system property; 1 (real time) by default, 0 for as fast as possible.
+   */
+
+  private static double getReplaySpeed(){
+    try{
+      return Double.parseDouble(System.getProperty("free.jin.replaySpeed", "1"));
+    } catch (NumberFormatException e){
+        return 1;
+      }
+  }
+
+
+
   /**
    * Notifies any interested PlainTextListener of the received line of otherwise
    * unidentified text.
@@ -982,9 +1048,11 @@ public class JinFreechessConnection extends FreechessConnection implements Conne
   
   
   /**
-   * Processes a delta-board. Instead of actually handing the delta-board, this
-   * method, instead, creates a Style12Struct object and then asks
-   * <code>processStyle12</code> to handle it.
+   * Processes a delta-board. Only the new move is applied, to the position
+   * we keep for the game, after which a Style12Struct describing the new
+   * position is created as if the server sent it. If the delta-board doesn't
+   * follow the last board we have for the game, a full board is requested
+   * from the server instead.
    */
    
   @Override
@@ -992,45 +1060,54 @@ public class JinFreechessConnection extends FreechessConnection implements Conne
     Integer gameNumber = new Integer(data.getGameNumber());
     InternalGameData gameData = (InternalGameData)ongoingGamesData.get(gameNumber);
     
-    Game game = gameData.game;
-    if (game.getVariant() != Chess.getInstance())
-      throw new IllegalStateException("delta-boards should only be sent for regular chess");
+    if (gameData == null){
+      if (!unsupportedGames.contains(gameNumber) && !unstartedGamesData.containsKey(gameNumber))
+        refreshGame(gameNumber.intValue());
+      return true;
+    }
     
+    Game game = gameData.game;
     Style12Struct lastBoardData = gameData.boardData;
-    Vector moveList = gameData.moveList;
     
-    Position pos = game.getInitialPosition();
-    for (int i = 0; i < moveList.size(); i++)
-      pos.makeMove((Move)moveList.elementAt(i));
+    // The server should only send delta-boards for regular chess, and only for
+    // the move following the last one we know of. In any other case, we
+    // resynchronize by asking for the full board.
+    if ((game.getVariant() != Chess.getInstance()) || gameData.isBSetup ||
+        (data.getPliesPlayedCount() != lastBoardData.getPlayedPlyCount() + 1)){
+      refreshGame(gameNumber.intValue());
+      return true;
+    }
+    
+    Position pos = gameData.getPosition();
     
     ChessMove move = (ChessMove)(Move.parseWarrenSmith(data.getMoveSmith(), pos, data.getMoveAlgebraic()));
     
     Square startSquare = move.getStartingSquare();
     ChessPiece movingPiece = (ChessPiece)((startSquare == null) ? null : pos.getPieceAt(startSquare));  
+    boolean kingMoved = move.isCastling() || ((movingPiece != null) && movingPiece.isKing());
     
-    pos.makeMove(move);
-    
-    
-    String boardLexigraphic = pos.getLexigraphic();
-    String currentPlayer = pos.getCurrentPlayer().isWhite() ? "W" : "B";
-    int doublePawnPushFile = move.getDoublePawnPushFile();
-    boolean kingMoved = movingPiece.isKing();
-    boolean canWhiteCastleKingside =
-      lastBoardData.canWhiteCastleKingside() && !kingMoved && !Square.getInstance(7, 0).equals(startSquare);
-    boolean canWhiteCastleQueenside =
-      lastBoardData.canBlackCastleQueenside() && !kingMoved && !Square.getInstance(0, 0).equals(startSquare);
-    boolean canBlackCastleKingside =
-      lastBoardData.canBlackCastleKingside() && !kingMoved && !Square.getInstance(7, 7).equals(startSquare);
-    boolean canBlackCastleQueenside =
-      lastBoardData.canBlackCastleQueenside() && !kingMoved && !Square.getInstance(0, 7).equals(startSquare);
+    boolean canWhiteCastleKingside = lastBoardData.canWhiteCastleKingside() && !(kingMoved && pos.getCurrentPlayer().isWhite()) &&
+      !isSquareAffected(move, Square.getInstance(7, 0));
+    boolean canWhiteCastleQueenside = lastBoardData.canWhiteCastleQueenside() && !(kingMoved && pos.getCurrentPlayer().isWhite()) &&
+      !isSquareAffected(move, Square.getInstance(0, 0));
+    boolean canBlackCastleKingside = lastBoardData.canBlackCastleKingside() && !(kingMoved && pos.getCurrentPlayer().isBlack()) &&
+      !isSquareAffected(move, Square.getInstance(7, 7));
+    boolean canBlackCastleQueenside = lastBoardData.canBlackCastleQueenside() && !(kingMoved && pos.getCurrentPlayer().isBlack()) &&
+      !isSquareAffected(move, Square.getInstance(0, 7));
     
-    boolean isIrreversibleMove = movingPiece.isPawn() || move.isCapture() ||
+    boolean isIrreversibleMove = ((movingPiece != null) && movingPiece.isPawn()) || move.isCapture() ||
       (canWhiteCastleKingside != lastBoardData.canWhiteCastleKingside()) ||
       (canWhiteCastleQueenside != lastBoardData.canWhiteCastleQueenside()) ||
       (canBlackCastleKingside != lastBoardData.canBlackCastleKingside()) ||
       (canBlackCastleQueenside != lastBoardData.canBlackCastleQueenside());
     int pliesSinceIrreversible = isIrreversibleMove ? 0 : lastBoardData.getPliesSinceIrreversible() + 1;
+    int doublePawnPushFile = move.getDoublePawnPushFile();
+    
+    // Makes the move in pos too
+    moveMade(gameData, move);
     
+    String boardLexigraphic = pos.getLexigraphic();
+    String currentPlayer = pos.getCurrentPlayer().isWhite() ? "W" : "B";
     String whiteName = lastBoardData.getWhiteName();
     String blackName = lastBoardData.getBlackName();
     int gameType = lastBoardData.getGameType();
@@ -1056,13 +1133,36 @@ public class JinFreechessConnection extends FreechessConnection implements Conne
       isMyTurn, initTime, inc, whiteStrength, blackStrength, whiteTime, blackTime, nextMoveNumber,
       moveVerbose, moveSAN, moveTime, isBoardFlipped, isClockRunning, lag);
       
-    processStyle12(boardData);
+    updateGame(gameData, boardData);
     
     return true; 
   }
   
   
   
+  /**
+   * Returns whether the specified move moves a piece from or to the specified
+   * square. Used to determine whether a move forfeits castling rights due to a
+   * rook moving or being captured.
+   */
+  
+  private static boolean isSquareAffected(ChessMove move, Square square){
+    return square.equals(move.getStartingSquare()) || square.equals(move.getEndingSquare());
+  }
+  
+  
+  
+  /**
+   * Asks the server to send us the full board of the specified game. This is
+   * done when we can't make sense of a delta-board.
+   */
+  
+  private void refreshGame(int gameNumber){
+    sendCommand("refresh " + gameNumber, true, true, true);
+  }
+  
+  
+  
   /**
    * Calculates the material strength of the specified player in the specified
    * position.
@@ -1149,10 +1249,10 @@ public class JinFreechessConnection extends FreechessConnection implements Conne
 
 
     /**
-     * A list of Moves done in the game.
+     * The moves done in the game.
      */
 
-    public Vector moveList = new Vector();
+    public final IntMoveList moveList = new IntMoveList();
 
 
 
@@ -1164,6 +1264,16 @@ public class JinFreechessConnection extends FreechessConnection implements Conne
 
 
 
+    /**
+     * The current position in the game, kept up to date incrementally as moves
+     * are added. <code>null</code> when it needs to be recomputed from the
+     * initial position and the move list.
+     */
+
+    private Position position = null;
+
+
+
     /**
      * Is this game in bsetup mode?
      */
@@ -1246,7 +1356,25 @@ public class JinFreechessConnection extends FreechessConnection implements Conne
      */
 
     public void addMove(Move move){
-      moveList.addElement(move);
+      Position position = getPosition();
+      moveList.addMove(position, move);
+      position.makeMove(move);
+    }
+
+
+
+    /**
+     * Returns the current position in the game. The returned position is
+     * updated as moves are added, so it must not be modified by the caller.
+     */
+
+    public Position getPosition(){
+      if (position == null){
+        position = game.getInitialPosition();
+        moveList.makeMoves(position, 0, moveList.size());
+      }
+
+      return position;
     }
 
 
@@ -1260,10 +1388,9 @@ public class JinFreechessConnection extends FreechessConnection implements Conne
       if (count > moveList.size())
         throw new IllegalArgumentException("Can't remove more elements than there are elements");
 
-      int first = moveList.size() - 1;
-      int last = moveList.size() - count;
-      for (int i = first; i >= last; i--)
-        moveList.removeElementAt(i);
+      moveList.setSize(moveList.size() - count);
+
+      position = null;
     }
 
 
@@ -1273,7 +1400,8 @@ public class JinFreechessConnection extends FreechessConnection implements Conne
      */
 
     public void clearMoves(){
-      moveList.removeAllElements();
+      moveList.clear();
+      position = null;
     }
 
 
@@ -1615,6 +1743,19 @@ public class JinFreechessConnection extends FreechessConnection implements Conne
       move = variant.createMove(position, fromSquare, toSquare, promotionPiece, moveSAN);
     }
 
+    moveMade(gameData, move);
+  }
+
+
+
+  /**
+   * Fires a MoveMadeEvent for the specified move, made in the specified game,
+   * and adds it to the game's move list.
+   */
+
+  private void moveMade(InternalGameData gameData, Move move){
+    Game game = gameData.game;
+
     listenerManager.fireGameEvent(new MoveMadeEvent(this, null, game, move, true)); 
       // (isNew == true) because FICS never sends the entire move history
 
@@ -1783,16 +1924,13 @@ public class JinFreechessConnection extends FreechessConnection implements Conne
       changePosition(gameData, boardData);
     else{
       Game game = gameData.game;
-      Vector moveList = gameData.moveList;
+      IntMoveList moveList = gameData.moveList;
       // Check whether the positions match, otherwise it could just be someone
       // issuing "bsetup fen ..." after making a few moves which resets the ply
       // count.
 
       Position oldPos = game.getInitialPosition();
-      for (int i = 0; i < moveList.size() - plyDifference; i++){
-        Move move = (Move)moveList.elementAt(i);
-        oldPos.makeMove(move);
-      }
+      moveList.makeMoves(oldPos, 0, moveList.size() - plyDifference);
 
       Position newPos = game.getInitialPosition();
       newPos.setFEN(boardData.getBoardFEN());
@@ -2546,7 +2684,7 @@ public class JinFreechessConnection extends FreechessConnection implements Conne
     if (!ourGame)
       throw new IllegalArgumentException("The specified Game object was not created by this JinConnection or the game has ended.");
 
-    sendCommand(moveToString(game, move), true, true, false);
+    sendCommand(moveToString(game, move), true, true, false, HIGH_PRIORITY);
 
     Vector unechoedGameMoves = (Vector)unechoedMoves.get(game);
     if (unechoedGameMoves == null){
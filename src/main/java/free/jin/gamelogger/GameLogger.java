@@ -37,16 +37,18 @@ import java.util.Hashtable;
 import java.util.Vector;
 
 import javax.swing.JFileChooser;
+import javax.swing.SwingUtilities;
 
 import bsh.EvalError;
 import bsh.Interpreter;
 import free.chess.Chess;
-import free.chess.ChessMove;
 import free.chess.FischerTimeControl;
+import free.chess.IntMoveList;
 import free.chess.Move;
 import free.chess.OddsTimeControl;
 import free.chess.Player;
 import free.chess.Position;
+import free.chess.SANCodec;
 import free.chess.TimeControl;
 import free.jin.Connection;
 import free.jin.Game;
@@ -56,11 +58,13 @@ import free.jin.Preferences;
 import free.jin.action.JinAction;
 import free.jin.event.BoardFlipEvent;
 import free.jin.event.ClockAdjustmentEvent;
+import free.jin.event.EventDeliveryQueue;
 import free.jin.event.GameEndEvent;
 import free.jin.event.GameListener;
 import free.jin.event.GameStartEvent;
 import free.jin.event.IllegalMoveEvent;
 import free.jin.event.ListenerManager;
+import free.jin.event.MoveListLoadedEvent;
 import free.jin.event.MoveMadeEvent;
 import free.jin.event.OfferEvent;
 import free.jin.event.PositionChangedEvent;
@@ -189,7 +193,7 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
    * <code>LOG_NONE</code>, <code>LOG_ALL</code> and <code>USE_RULES</code>.
    */
 
-  public int getLoggingMode(){
+  public synchronized int getLoggingMode(){
     return loggingMode;
   }
 
@@ -202,7 +206,7 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
    * user never specified such a file.
    */
 
-  public String getLogFileForAll(){
+  public synchronized String getLogFileForAll(){
     return allGamesLogFile;
   }
 
@@ -213,7 +217,7 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
    * Returns a deep copy of the <code>loggingRules</code> Vector.
    */
 
-  public Vector getLoggingRules(){
+  public synchronized Vector getLoggingRules(){
     Vector rules = new Vector(loggingRules.size());
     for (int i = 0; i < loggingRules.size(); i++){
       LoggingRule rule = (LoggingRule)loggingRules.elementAt(i);
@@ -226,14 +230,28 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
 
 
 
+  /**
+   * Creates the queue on which we receive game events and log games, so that
+   * writing the files doesn't hold up the AWT event dispatching thread. Events
+   * are never dropped, as that would corrupt the logged games.
+   */
+
+  @Override
+  protected EventDeliveryQueue createEventDeliveryQueue(){
+    return new EventDeliveryQueue("GameLogger", 10000, EventDeliveryQueue.BLOCK);
+  }
+
+
+
+
   /**
    * Initializes the plugin.
    */
 
   @Override
   public void start(){
-    registerListeners();
     loadLoggingConditions();
+    registerListeners();
     exportAction(saveGameAction);
   }
 
@@ -261,7 +279,7 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
     Connection conn = getConn();
     ListenerManager listenerManager = conn.getListenerManager();
 
-    listenerManager.addGameListener(this);
+    listenerManager.addGameListener(getEventDeliveryQueue().gameListener(this));
   }
 
 
@@ -276,7 +294,7 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
     Connection conn = getConn();
     ListenerManager listenerManager = conn.getListenerManager();
 
-    listenerManager.removeGameListener(this);
+    listenerManager.removeGameListener(getEventDeliveryQueue().gameListener(this));
   }
 
 
@@ -286,7 +304,7 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
    * Loads the logging mode and logging rules.
    */
 
-  private void loadLoggingConditions(){
+  private synchronized void loadLoggingConditions(){
     Preferences prefs = getPrefs();
 
     String loggingModeString = prefs.getString("logging.mode", "none");
@@ -372,7 +390,7 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
    * logged at all.
    */
 
-  private String [] getFilesToLogInto(Game game){
+  private synchronized String [] getFilesToLogInto(Game game){
     if (loggingMode == LOG_NONE)
       return null;
     else if (loggingMode == LOG_ALL){
@@ -498,9 +516,14 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
    * Logs the specified game to all the files it should be logged into.
    */
   
-  private void gameEnded(Game game){
-    GameInfo gameInfo = (GameInfo)gamesToGameInfo.get(game);
-    saveGameAction.setLastGame(game, gameInfo);
+  private void gameEnded(final Game game){
+    final GameInfo gameInfo = (GameInfo)gamesToGameInfo.get(game);
+    SwingUtilities.invokeLater(new Runnable(){
+      @Override
+      public void run(){
+        saveGameAction.setLastGame(game, gameInfo);
+      }
+    });
     
     String [] filenames = getFilesToLogInto(game);
     if (filenames != null){
@@ -513,7 +536,7 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
   
   /**
    * Logs the specified game, with the specified game info into the specified
-   * file.
+   * file. This method is only invoked in the plugin's event delivery queue.
    */
   
   private void log(Game game, GameInfo gameInfo, String filename){
@@ -564,15 +587,22 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
 
       out.writeBytes("\n");
 
-      Vector movelist = gameInfo.movelist;
+      // The move strings sent by the server aren't necessarily SAN, so we
+      // generate the SAN ourselves, replaying the game as we go, and only fall
+      // back to them for moves we can't generate the SAN of
+      IntMoveList movelist = gameInfo.movelist;
+      Vector moveStrings = gameInfo.moveStrings;
       int moveCount = movelist.size();
+      Position position = new Position(gameInfo.initPos);
+      SANCodec sanCodec = new SANCodec();
       StringBuffer lineBuf = new StringBuffer();
       StringBuffer buf = new StringBuffer();
       for (int i = 0; i < moveCount; i++){
         buf.setLength(0);
-        ChessMove move = (ChessMove)movelist.elementAt(i);
-        Player movingPlayer = move.getPlayer();
-        String san = move.getSAN();
+        Move move = movelist.getMove(position, i);
+        Player movingPlayer = position.getCurrentPlayer();
+        String san = getSAN(sanCodec, position, move, (String)moveStrings.elementAt(i));
+        position.makeMove(move);
         if ((i == 0) && movingPlayer.isBlack()){
           buf.append("1... ");
           buf.append(san);
@@ -613,9 +643,14 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
       out.writeBytes("\n\n");
 
       out.close();
-    } catch (IOException e){
+    } catch (final IOException e){
         e.printStackTrace();
-        OptionPanel.error("I/O Error", "Unable to log game:\n" + e.getMessage());
+        SwingUtilities.invokeLater(new Runnable(){
+          @Override
+          public void run(){
+            OptionPanel.error("I/O Error", "Unable to log game:\n" + e.getMessage());
+          }
+        });
       }
   }
 
@@ -633,6 +668,24 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
 
 
 
+
+  /**
+   * Returns the SAN of the specified move in the specified position, or, if
+   * it can't be generated (the variant doesn't have the move rules of chess,
+   * for example), the specified move string sent by the server for it. If that
+   * is <code>null</code> too, returns the move's string representation.
+   */
+
+  private static String getSAN(SANCodec sanCodec, Position position, Move move, String serverMoveString){
+    try{
+      return sanCodec.toSAN(position, move);
+    } catch (IllegalArgumentException e){
+        return serverMoveString == null ? move.toString() : serverMoveString;
+      }
+  }
+
+
+
   
   /**
    * Starts logging the moves.
@@ -667,15 +720,22 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
   
   
   /**
-   * Observes changes in the game which we care about.
+   * Observes changes in the game which we care about. Game properties change
+   * on the AWT event dispatching thread, so the change is passed on to our
+   * event delivery queue, to be handled in order with the game events.
    */
   
   @Override
   public void propertyChange(PropertyChangeEvent evt){
-    Game game = (Game)evt.getSource();
-    if (canLog(game)){
-      if (evt.getPropertyName().equals("played") && !game.isPlayed()) // The game ended and became examined
-        gameEnded(game);
+    final Game game = (Game)evt.getSource();
+    if (evt.getPropertyName().equals("played") && !game.isPlayed()){ // The game ended and became examined
+      getEventDeliveryQueue().execute(new Runnable(){
+        @Override
+        public void run(){
+          if (canLog(game))
+            gameEnded(game);
+        }
+      });
     }
   }
 
@@ -691,7 +751,23 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
     Game game = evt.getGame();
     Move move = evt.getMove();
     GameInfo gameInfo = (GameInfo)gamesToGameInfo.get(game);
-    gameInfo.movelist.addElement(move);
+    gameInfo.addMove(move);
+  }
+
+
+
+
+  /**
+   * Saves the loaded moves.
+   */
+
+  @Override
+  public void moveListLoaded(MoveListLoadedEvent evt){
+    Game game = evt.getGame();
+    GameInfo gameInfo = (GameInfo)gamesToGameInfo.get(game);
+    for (int i = 0; i < evt.getMoveCount(); i++){
+      gameInfo.addMove(evt.getMove(i));
+    }
   }
 
   
@@ -705,7 +781,7 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
   public void positionChanged(PositionChangedEvent evt){
     Game game = evt.getGame();
     GameInfo gameInfo = (GameInfo)gamesToGameInfo.get(game);
-    gameInfo.initPos = evt.getPosition();
+    gameInfo.setInitialPosition(evt.getPosition());
   }
 
 
@@ -718,11 +794,12 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
   public void takebackOccurred(TakebackEvent evt){
     Game game = evt.getGame();
     GameInfo gameInfo = (GameInfo)gamesToGameInfo.get(game);
-    Vector movelist = gameInfo.movelist;
-    int start = movelist.size() - 1;
+    IntMoveList movelist = gameInfo.movelist;
     int stop = Math.max(0, movelist.size() - evt.getTakebackCount());
-    for (int i = start; i >= stop; i--)
-      movelist.removeElementAt(i);
+    movelist.setSize(stop);
+    gameInfo.moveStrings.setSize(stop);
+    gameInfo.position.copyFrom(gameInfo.initPos);
+    movelist.makeMoves(gameInfo.position, 0, stop);
   }
 
 
@@ -799,7 +876,25 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
      * The move list.
      */
 
-    public Vector movelist;
+    public final IntMoveList movelist;
+
+
+
+    /**
+     * The move strings sent by the server for the moves in the move list;
+     * <code>null</code> for moves it sent no string for.
+     */
+
+    public final Vector moveStrings;
+
+
+
+    /**
+     * The current position - the initial position with the moves in the move
+     * list made on it. Needed to pack the moves as they are made.
+     */
+
+    public final Position position;
 
 
 
@@ -817,10 +912,39 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
      */
 
     public GameInfo(Position initPos){
-      this.initPos = initPos;
-      movelist = new Vector();
+      this.initPos = new Position(initPos);
+      this.position = new Position(initPos);
+      movelist = new IntMoveList();
+      moveStrings = new Vector();
       gameStartDate = new Date();
     }
+
+
+
+    /**
+     * Sets the initial position to (a copy of) the specified one, and clears
+     * the move list.
+     */
+
+    public void setInitialPosition(Position initPos){
+      this.initPos = new Position(initPos);
+      position.copyFrom(initPos);
+      movelist.clear();
+      moveStrings.removeAllElements();
+    }
+
+
+
+    /**
+     * Adds the specified move, made in the current position, to the move list
+     * and makes it.
+     */
+
+    public void addMove(Move move){
+      movelist.addMove(position, move);
+      moveStrings.addElement(move.getStringRepresentation());
+      position.makeMove(move);
+    }
     
     
     
@@ -928,7 +1052,15 @@ public class GameLogger extends Plugin implements GameListener, PropertyChangeLi
       if ((!file.exists()) && (path.lastIndexOf('.') == -1))
         path = path + ".pgn";
 
-      log(lastGame, lastGameInfo, path);
+      final Game game = lastGame;
+      final GameInfo gameInfo = lastGameInfo;
+      final String filename = path;
+      getEventDeliveryQueue().execute(new Runnable(){
+        @Override
+        public void run(){
+          log(game, gameInfo, filename);
+        }
+      });
       
       prefs.setString("defaultFile", path);
     }
@@ -34,6 +34,7 @@ import free.jin.Server;
 import free.jin.User;
 import free.jin.action.ActionContext;
 import free.jin.action.JinAction;
+import free.jin.event.EventDeliveryQueue;
 import free.jin.ui.PreferencesPanel;
 import free.jin.ui.UIProvider;
 import free.util.MemoryFile;
@@ -81,6 +82,23 @@ public abstract class Plugin{
 
 
 
+  /**
+   * The queue via which the plugin receives events from the connection;
+   * <code>null</code> if it receives them on the AWT event dispatching thread.
+   */
+
+  private EventDeliveryQueue eventDeliveryQueue = null;
+
+
+
+  /**
+   * Whether <code>createEventDeliveryQueue</code> has been invoked.
+   */
+
+  private boolean isEventDeliveryQueueCreated = false;
+
+
+
   /**
    * Sets the plugin's context. Returns whether it can operate properly with
    * the specified context. Plugins that require special types of context
@@ -446,6 +464,59 @@ public abstract class Plugin{
   public boolean isPaused(){
     return false;
   }
+
+
+
+  /**
+   * Creates the queue via which the plugin wishes to receive events from the
+   * connection. Plugins which don't touch the UI when handling events should
+   * override this method to return a new <code>EventDeliveryQueue</code>, and
+   * register the listeners obtained from it, so that their work is done off the
+   * AWT event dispatching thread. The default implementation returns
+   * <code>null</code>, meaning events are received on the AWT event
+   * dispatching thread.
+   */
+
+  protected EventDeliveryQueue createEventDeliveryQueue(){
+    return null;
+  }
+
+
+
+  /**
+   * Returns the queue via which the plugin receives events from the
+   * connection, creating it via <code>createEventDeliveryQueue</code> on the
+   * first invocation. Returns <code>null</code> if the plugin receives events
+   * on the AWT event dispatching thread.
+   */
+
+  public synchronized EventDeliveryQueue getEventDeliveryQueue(){
+    if (!isEventDeliveryQueueCreated){
+      eventDeliveryQueue = createEventDeliveryQueue();
+      isEventDeliveryQueueCreated = true;
+    }
+
+    return eventDeliveryQueue;
+  }
+
+
+
+  /**
+   * Closes the plugin's event delivery queue, if it has one. This is invoked
+   * after the plugin is stopped, and may wait for the events still pending in
+   * the queue to be delivered.
+   */
+
+  public void closeEventDeliveryQueue(){
+    EventDeliveryQueue eventDeliveryQueue;
+    synchronized(this){
+      eventDeliveryQueue = this.eventDeliveryQueue;
+    }
+
+    // Not holding our lock, since delivering the pending events may need it
+    if (eventDeliveryQueue != null)
+      eventDeliveryQueue.close();
+  }
    
 
 
@@ -175,7 +175,7 @@ public class BeanShellScript extends Script{
    */
 
   @Override
-  public void run(JinEvent event, String eventSubtype, Object [][] vars){
+  public synchronized void run(JinEvent event, String eventSubtype, Object [][] vars){
     try{
       bsh.set("event", event);
       bsh.set("eventSubtype", eventSubtype);
@@ -184,7 +184,7 @@ public class CommandScript extends Script{
    */
 
   @Override
-  public void run(JinEvent evt, String eventSubtype, Object [][] vars){
+  public synchronized void run(JinEvent evt, String eventSubtype, Object [][] vars){
     try{
       bsh.set("event", evt);
       bsh.set("eventSubtype", eventSubtype);
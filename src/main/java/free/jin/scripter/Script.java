@@ -181,7 +181,9 @@ public abstract class Script{
 
   /**
    * This method is invoked by the <code>Scripter</code> plugin each time an
-   * event is received.
+   * event is received. Note that it may be invoked on the
+   * <code>Scripter</code>'s event delivery queue thread rather than on the AWT
+   * event dispatching thread.
    *
    * @param evt The event that triggered this script to run.
    * @param eventSubtype The subtype of the event.
@@ -50,6 +50,7 @@ import free.jin.SeekConnection;
 import free.jin.event.BoardFlipEvent;
 import free.jin.event.ClockAdjustmentEvent;
 import free.jin.event.ConnectionListener;
+import free.jin.event.EventDeliveryQueue;
 import free.jin.event.FriendsEvent;
 import free.jin.event.FriendsListener;
 import free.jin.event.FriendsListenerManager;
@@ -60,6 +61,7 @@ import free.jin.event.GameStartEvent;
 import free.jin.event.IllegalMoveEvent;
 import free.jin.event.JinEvent;
 import free.jin.event.ListenerManager;
+import free.jin.event.MoveListLoadedEvent;
 import free.jin.event.MoveMadeEvent;
 import free.jin.event.OfferEvent;
 import free.jin.event.PlainTextEvent;
@@ -107,6 +109,19 @@ public class Scripter extends Plugin{
 
 
 
+  /**
+   * Creates the queue on which we receive game, chat and plain text events, so
+   * that running scripts doesn't hold up the AWT event dispatching thread.
+   * Scripts may rely on seeing every event, so none are dropped.
+   */
+
+  @Override
+  protected EventDeliveryQueue createEventDeliveryQueue(){
+    return new EventDeliveryQueue("Scripter", 1000, EventDeliveryQueue.BLOCK);
+  }
+
+
+
   /**
    * Registers the specified <code>ScriptDispatcher</code> to handle the
    * specified event type. If there is already a <code>ScriptDispatcher</code>
@@ -693,10 +708,12 @@ public class Scripter extends Plugin{
      */
 
     public Script [] getScripts(){
-      Script [] scriptsArr = new Script[scripts.size()];
-      scripts.copyInto(scriptsArr);
+      synchronized(scripts){
+        Script [] scriptsArr = new Script[scripts.size()];
+        scripts.copyInto(scriptsArr);
 
-      return scriptsArr;
+        return scriptsArr;
+      }
     }
 
 
@@ -717,9 +734,11 @@ public class Scripter extends Plugin{
       if (vars == null)
         vars = new Object[0][];
 
-      int scriptCount = scripts.size();
-      for (int i = 0; i < scriptCount; i++){
-        Script script = (Script)scripts.elementAt(i);
+      // Scripts may be added and removed (on the AWT event dispatching thread)
+      // while we're running them in the event delivery queue
+      Script [] scripts = getScripts();
+      for (int i = 0; i < scripts.length; i++){
+        Script script = scripts[i];
         String [] eventSubtypes = script.getEventSubtypes();
         if (script.isEnabled() && ((eventSubtype == null) || Utilities.contains(eventSubtypes, eventSubtype))){
           try{
@@ -836,12 +855,12 @@ public class Scripter extends Plugin{
 
     @Override
     public void registerForEvent(ListenerManager listenerManager){
-      listenerManager.addPlainTextListener(this);      
+      listenerManager.addPlainTextListener(getEventDeliveryQueue().plainTextListener(this));      
     }
 
     @Override
     public void unregisterForEvent(ListenerManager listenerManager){
-      listenerManager.removePlainTextListener(this);
+      listenerManager.removePlainTextListener(getEventDeliveryQueue().plainTextListener(this));
     }
 
     @Override
@@ -876,12 +895,12 @@ public class Scripter extends Plugin{
 
     @Override
     public void registerForEvent(ListenerManager listenerManager){
-      listenerManager.addGameListener(this);      
+      listenerManager.addGameListener(getEventDeliveryQueue().gameListener(this));      
     }
 
     @Override
     public void unregisterForEvent(ListenerManager listenerManager){
-      listenerManager.removeGameListener(this);
+      listenerManager.removeGameListener(getEventDeliveryQueue().gameListener(this));
     }
 
     /**
@@ -1006,6 +1025,17 @@ public class Scripter extends Plugin{
       runScripts(evt, subtypes[1], vars);
     }
 
+    @Override
+    public void moveListLoaded(MoveListLoadedEvent evt){
+      Vector varsVector = createVarsVector(evt);
+      varsVector.addElement(new Object[]{"newPosition", evt.getPosition()});
+
+      Object [][] vars = new Object[varsVector.size()][];
+      varsVector.copyInto(vars);
+
+      runScripts(evt, subtypes[6], vars);
+    }
+
     @Override
     public void positionChanged(PositionChangedEvent evt){
       Vector varsVector = createVarsVector(evt);
@@ -82,12 +82,12 @@ public class FreechessScripter extends Scripter{
 
     @Override
     public void registerForEvent(ListenerManager listenerManager){
-      listenerManager.addChatListener(this);
+      listenerManager.addChatListener(getEventDeliveryQueue().chatListener(this));
     }
 
     @Override
     public void unregisterForEvent(ListenerManager listenerManager){
-      listenerManager.removeChatListener(this);
+      listenerManager.removeChatListener(getEventDeliveryQueue().chatListener(this));
     }
 
     @Override
@@ -41,6 +41,7 @@ import free.jin.event.ChatEvent;
 import free.jin.event.ChatListener;
 import free.jin.event.ClockAdjustmentEvent;
 import free.jin.event.ConnectionListener;
+import free.jin.event.EventDeliveryQueue;
 import free.jin.event.FriendsEvent;
 import free.jin.event.FriendsListener;
 import free.jin.event.GameEndEvent;
@@ -48,6 +49,7 @@ import free.jin.event.GameListener;
 import free.jin.event.GameStartEvent;
 import free.jin.event.IllegalMoveEvent;
 import free.jin.event.ListenerManager;
+import free.jin.event.MoveListLoadedEvent;
 import free.jin.event.MoveMadeEvent;
 import free.jin.event.OfferEvent;
 import free.jin.event.PlainTextEvent;
@@ -111,6 +113,21 @@ public class SoundManager extends Plugin implements PlainTextListener, ChatListe
 
 
 
+  /**
+   * Creates the queue on which we receive game, chat and plain text events, so
+   * that matching them against the sound patterns doesn't hold up the AWT
+   * event dispatching thread. A sound played late is worse than no sound, so
+   * when the queue falls behind, the oldest events are dropped.
+   */
+
+  @Override
+  protected EventDeliveryQueue createEventDeliveryQueue(){
+    return new EventDeliveryQueue("SoundManager", 100, EventDeliveryQueue.DROP_OLDEST);
+  }
+
+
+
+
   /**
    * Initializes the state of the plugin from user properties, loads the sounds
    * and registers all the listeners.
@@ -278,10 +295,11 @@ public class SoundManager extends Plugin implements PlainTextListener, ChatListe
     Connection conn = getConn();
     ListenerManager listenerManager = conn.getListenerManager();
 
-    listenerManager.addPlainTextListener(this);
-    listenerManager.addChatListener(this);
+    EventDeliveryQueue queue = getEventDeliveryQueue();
+    listenerManager.addPlainTextListener(queue.plainTextListener(this));
+    listenerManager.addChatListener(queue.chatListener(this));
     listenerManager.addConnectionListener(this);
-    listenerManager.addGameListener(this);
+    listenerManager.addGameListener(queue.gameListener(this));
     
     if (conn instanceof FriendsConnection)
       ((FriendsConnection)conn).getFriendsListenerManager().addFriendsListener(this);
@@ -299,10 +317,11 @@ public class SoundManager extends Plugin implements PlainTextListener, ChatListe
     Connection conn = getConn();
     ListenerManager listenerManager = conn.getListenerManager();
 
-    listenerManager.removePlainTextListener(this);
-    listenerManager.removeChatListener(this);
+    EventDeliveryQueue queue = getEventDeliveryQueue();
+    listenerManager.removePlainTextListener(queue.plainTextListener(this));
+    listenerManager.removeChatListener(queue.chatListener(this));
     listenerManager.removeConnectionListener(this);
-    listenerManager.removeGameListener(this);
+    listenerManager.removeGameListener(queue.gameListener(this));
   }
 
 
@@ -343,7 +362,8 @@ public class SoundManager extends Plugin implements PlainTextListener, ChatListe
       if (matcher.find()){
         String filename = (String)chatPatternsToFilenames.get(regex);
         AudioClip clip = (AudioClip)FILENAMES_TO_AUDIO_CLIPS.get(filename);
-        clip.play();
+        if (clip != null) // The sounds may have been unloaded while the event was queued
+          clip.play();
       }
     } 
   }
@@ -369,7 +389,8 @@ public class SoundManager extends Plugin implements PlainTextListener, ChatListe
       if (matcher.find()){
         String filename = (String)textPatternsToFilenames.get(regex);
         AudioClip clip = (AudioClip)FILENAMES_TO_AUDIO_CLIPS.get(filename);
-        clip.play();
+        if (clip != null) // The sounds may have been unloaded while the event was queued
+          clip.play();
       }
     } 
   }
@@ -540,6 +561,8 @@ public class SoundManager extends Plugin implements PlainTextListener, ChatListe
   @Override
   public void moveMade(MoveMadeEvent evt){}
   @Override
+  public void moveListLoaded(MoveListLoadedEvent evt){}
+  @Override
   public void positionChanged(PositionChangedEvent evt){}
   @Override
   public void takebackOccurred(TakebackEvent evt){}
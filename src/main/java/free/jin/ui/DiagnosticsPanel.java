@@ -0,0 +1,407 @@
+/**
+ * Jin - a chess client for internet chess servers.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+
+package free.jin.ui;
+
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.text.DecimalFormat;
+
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import free.jin.I18n;
+import free.jin.event.EventDeliveryQueue;
+import free.util.LatencyHistogram;
+import free.util.LatencyMonitor;
+
+
+/**
+ * A panel displaying diagnostic information - the latencies measured by the
+ * {@link LatencyMonitor} and the state of the plugins' event delivery queues.
+ * Normally displayed in the "Help->Diagnostics" dialog.
+ */
+
+public class DiagnosticsPanel extends DialogPanel{
+
+
+
+  /**
+   * The interval, in milliseconds, at which the displayed information is
+   * refreshed.
+   */
+
+  private static final int REFRESH_INTERVAL = 1000;
+
+
+
+  /**
+   * The format of latencies, in milliseconds.
+   */
+
+  private static final DecimalFormat MILLIS_FORMAT = new DecimalFormat("0.00");
+
+
+
+  /**
+   * The model of the latencies table.
+   */
+
+  private final LatencyTableModel latencyTableModel = new LatencyTableModel();
+
+
+
+  /**
+   * The model of the event delivery queues table.
+   */
+
+  private final QueueTableModel queueTableModel = new QueueTableModel();
+
+
+
+  /**
+   * The timer refreshing the displayed information.
+   */
+
+  private final Timer refreshTimer = new Timer(REFRESH_INTERVAL, new ActionListener(){
+    @Override
+    public void actionPerformed(ActionEvent evt){
+      refresh();
+    }
+  });
+
+
+
+  /**
+   * Creates a new <code>DiagnosticsPanel</code>.
+   */
+
+  public DiagnosticsPanel(){
+    createUI();
+  }
+
+
+
+  /**
+   * Returns the title of this <code>DialogPanel</code>.
+   */
+
+  @Override
+  protected String getTitle(){
+    return I18n.get(DiagnosticsPanel.class).getString("title");
+  }
+
+
+
+  /**
+   * Displays this panel, refreshing the displayed information periodically
+   * until it's closed.
+   */
+
+  public void display(){
+    refreshTimer.start();
+    try{
+      super.askResult();
+    } finally{
+        refreshTimer.stop();
+      }
+  }
+
+
+
+  /**
+   * Refreshes the displayed information.
+   */
+
+  private void refresh(){
+    latencyTableModel.fireTableDataChanged();
+    queueTableModel.refresh();
+  }
+
+
+
+  /**
+   * Creates the user interface.
+   */
+
+  private void createUI(){
+    I18n i18n = I18n.get(DiagnosticsPanel.class);
+    final LatencyMonitor latencyMonitor = LatencyMonitor.getInstance();
+    latencyMonitor.registerMBean(); // Let the latencies be watched via JMX too
+
+    setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+
+    final JCheckBox measureLatencyBox = i18n.createCheckBox("measureLatencyCheckBox");
+    measureLatencyBox.setSelected(latencyMonitor.isEnabled());
+    measureLatencyBox.addActionListener(new ActionListener(){
+      @Override
+      public void actionPerformed(ActionEvent evt){
+        latencyMonitor.setEnabled(measureLatencyBox.isSelected());
+      }
+    });
+    measureLatencyBox.setAlignmentX(LEFT_ALIGNMENT);
+
+    JScrollPane latencyScrollPane = createTableScrollPane(new JTable(latencyTableModel));
+    latencyScrollPane.setBorder(i18n.createTitledBorder("latencyTable"));
+
+    JScrollPane queueScrollPane = createTableScrollPane(new JTable(queueTableModel));
+    queueScrollPane.setBorder(i18n.createTitledBorder("queueTable"));
+
+    JButton resetButton = i18n.createButton("resetButton");
+    resetButton.addActionListener(new ActionListener(){
+      @Override
+      public void actionPerformed(ActionEvent evt){
+        latencyMonitor.reset();
+        refresh();
+      }
+    });
+
+    JButton closeButton = i18n.createButton("closeButton");
+    closeButton.addActionListener(new ClosingListener(null));
+
+    Box buttonsBox = Box.createHorizontalBox();
+    buttonsBox.add(Box.createHorizontalGlue());
+    buttonsBox.add(resetButton);
+    buttonsBox.add(Box.createHorizontalStrut(5));
+    buttonsBox.add(closeButton);
+    buttonsBox.setAlignmentX(LEFT_ALIGNMENT);
+
+    add(measureLatencyBox);
+    add(Box.createVerticalStrut(5));
+    add(latencyScrollPane);
+    add(Box.createVerticalStrut(5));
+    add(queueScrollPane);
+    add(Box.createVerticalStrut(10));
+    add(buttonsBox);
+
+    setDefaultButton(closeButton);
+  }
+
+
+
+  /**
+   * Creates a scroll pane for the specified table, sized to display a few rows.
+   */
+
+  private static JScrollPane createTableScrollPane(JTable table){
+    table.setPreferredScrollableViewportSize(new Dimension(480, table.getRowHeight() * 6));
+    JScrollPane scrollPane = new JScrollPane(table);
+    scrollPane.setAlignmentX(LEFT_ALIGNMENT);
+    return scrollPane;
+  }
+
+
+
+  /**
+   * Formats the specified amount of nanoseconds as milliseconds.
+   */
+
+  private static String millis(long nanos){
+    synchronized(MILLIS_FORMAT){
+      return MILLIS_FORMAT.format(nanos / 1000000.0);
+    }
+  }
+
+
+
+  /**
+   * The table model displaying the latency of each stage measured by the
+   * <code>LatencyMonitor</code>.
+   */
+
+  private static class LatencyTableModel extends AbstractTableModel{
+
+
+
+    /**
+     * The i18n keys of the column names.
+     */
+
+    private static final String [] COLUMN_KEYS = new String[]{"stage", "count", "mean", "median", "percentile99", "max"};
+
+
+
+    /**
+     * The names of the stages, which are also the i18n keys of their display
+     * names.
+     */
+
+    private final String [] stageNames = LatencyMonitor.getInstance().getStageNames();
+
+
+
+    /**
+     * Returns the amount of stages.
+     */
+
+    @Override
+    public int getRowCount(){
+      return stageNames.length;
+    }
+
+
+
+    /**
+     * Returns the amount of columns.
+     */
+
+    @Override
+    public int getColumnCount(){
+      return COLUMN_KEYS.length;
+    }
+
+
+
+    /**
+     * Returns the name of the specified column.
+     */
+
+    @Override
+    public String getColumnName(int column){
+      return I18n.get(DiagnosticsPanel.class).getString("latencyTable." + COLUMN_KEYS[column]);
+    }
+
+
+
+    /**
+     * Returns the value in the specified cell.
+     */
+
+    @Override
+    public Object getValueAt(int row, int column){
+      LatencyHistogram histogram = LatencyMonitor.getInstance().getHistogram(row);
+      switch (column){
+        case 0: return I18n.get(DiagnosticsPanel.class).getString("stage." + stageNames[row]);
+        case 1: return String.valueOf(histogram.getCount());
+        case 2: return millis(histogram.getMean());
+        case 3: return millis(histogram.getPercentile(0.5));
+        case 4: return millis(histogram.getPercentile(0.99));
+        case 5: return millis(histogram.getMax());
+        default: throw new IllegalArgumentException("Unknown column: " + column);
+      }
+    }
+
+
+
+  }
+
+
+
+  /**
+   * The table model displaying the state of the event delivery queues.
+   */
+
+  private static class QueueTableModel extends AbstractTableModel{
+
+
+
+    /**
+     * The i18n keys of the column names.
+     */
+
+    private static final String [] COLUMN_KEYS = new String[]{"name", "depth", "maxDepth", "executed", "dropped"};
+
+
+
+    /**
+     * The queues we're displaying.
+     */
+
+    private EventDeliveryQueue [] queues = EventDeliveryQueue.getQueues();
+
+
+
+    /**
+     * Reloads the list of queues and notifies the table.
+     */
+
+    public void refresh(){
+      queues = EventDeliveryQueue.getQueues();
+      fireTableDataChanged();
+    }
+
+
+
+    /**
+     * Returns the amount of queues.
+     */
+
+    @Override
+    public int getRowCount(){
+      return queues.length;
+    }
+
+
+
+    /**
+     * Returns the amount of columns.
+     */
+
+    @Override
+    public int getColumnCount(){
+      return COLUMN_KEYS.length;
+    }
+
+
+
+    /**
+     * Returns the name of the specified column.
+     */
+
+    @Override
+    public String getColumnName(int column){
+      return I18n.get(DiagnosticsPanel.class).getString("queueTable." + COLUMN_KEYS[column]);
+    }
+
+
+
+    /**
+     * Returns the value in the specified cell.
+     */
+
+    @Override
+    public Object getValueAt(int row, int column){
+      EventDeliveryQueue queue = queues[row];
+      switch (column){
+        case 0: return queue.getName();
+        case 1: return queue.getQueueDepth() + "/" + queue.getCapacity();
+        case 2: return String.valueOf(queue.getMaxQueueDepth());
+        case 3: return String.valueOf(queue.getExecutedCount());
+        case 4: return String.valueOf(queue.getDroppedCount());
+        default: throw new IllegalArgumentException("Unknown column: " + column);
+      }
+    }
+
+
+
+  }
+
+
+
+}
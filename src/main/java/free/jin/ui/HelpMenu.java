@@ -51,6 +51,7 @@ public class HelpMenu extends JMenu{
     add(createCreditsMenuItem());
     add(createBugReportMenuItem());
     add(createFeatureRequestMenuItem());
+    add(createDiagnosticsMenuItem());
     add(createAboutMenuItem());
   }
 
@@ -121,6 +122,23 @@ public class HelpMenu extends JMenu{
 
 
 
+  /**
+   * Creates the "Diagnostics" menu item.
+   */
+
+  private JMenuItem createDiagnosticsMenuItem(){
+    JMenuItem item = I18n.get(HelpMenu.class).createMenuItem("diagnosticsMenuItem");
+    item.addActionListener(new ActionListener(){
+      @Override
+      public void actionPerformed(ActionEvent evt){
+        new DiagnosticsPanel().display();
+      }
+    });
+    return item;
+  }
+
+
+
   /**
    * Creates the "About..." menu item.
    */
@@ -0,0 +1,350 @@
+/**
+ * The utillib library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The utillib library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The utillib library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with utillib library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package free.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+
+
+/**
+ * The thread which sends the data queued via
+ * {@link Connection#sendData(byte[], int)} to the server. All the data queued
+ * since the last write is written and flushed at once. High priority data is
+ * always written before normal priority data, and only normal priority data is
+ * subject to the rate limit - except when the writer is asked to close after
+ * writing all the queued data, in which case it is written in the order it was
+ * queued, without a rate limit.
+ */
+
+class CommandWriter extends Thread{
+
+
+
+  /**
+   * The connection whose data we write.
+   */
+
+  private final Connection connection;
+
+
+
+  /**
+   * The stream we write to.
+   */
+
+  private final OutputStream out;
+
+
+
+  /**
+   * The queue of high priority data waiting to be written, as
+   * <code>QueuedData</code> objects.
+   */
+
+  private final LinkedList highPriorityQueue = new LinkedList();
+
+
+
+  /**
+   * The queue of normal priority data waiting to be written, as
+   * <code>QueuedData</code> objects.
+   */
+
+  private final LinkedList normalPriorityQueue = new LinkedList();
+
+
+
+  /**
+   * The maximum amount of normal priority commands written per second; 0 if
+   * unlimited.
+   */
+
+  private int maxCommandRate;
+
+
+
+  /**
+   * The amount of normal priority commands which can be written right now,
+   * according to the rate limit.
+   */
+
+  private double availableCommands;
+
+
+
+  /**
+   * The time, in nanoseconds, when {@link #availableCommands} was last
+   * replenished.
+   */
+
+  private long lastReplenishTime = System.nanoTime();
+
+
+
+  /**
+   * Set when the writer is closed.
+   */
+
+  private boolean isClosed = false;
+
+
+
+  /**
+   * Set when we've been asked to write all the queued data and then close the
+   * connection.
+   */
+
+  private boolean isDraining = false;
+
+
+
+  /**
+   * The sequence number of the next data queued.
+   */
+
+  private long nextSequenceNumber = 0;
+
+
+
+  /**
+   * Creates a new <code>CommandWriter</code> writing to the specified stream,
+   * on behalf of the specified connection. The rate limit is specified as the
+   * maximum amount of normal priority commands written per second; 0 for
+   * unlimited.
+   */
+
+  public CommandWriter(Connection connection, OutputStream out, int maxCommandRate){
+    super("WriterThread");
+
+    this.connection = connection;
+    this.out = out;
+
+    setMaxCommandRate(maxCommandRate);
+    setDaemon(true);
+  }
+
+
+
+  /**
+   * Sets the rate limit, as the maximum amount of normal priority commands
+   * written per second; 0 for unlimited.
+   */
+
+  public synchronized void setMaxCommandRate(int maxCommandRate){
+    this.maxCommandRate = maxCommandRate;
+    this.availableCommands = maxCommandRate;
+    notifyAll();
+  }
+
+
+
+  /**
+   * Queues the specified data to be written, with the specified priority.
+   */
+
+  public synchronized void write(byte [] data, boolean isHighPriority){
+    if (isClosed || isDraining)
+      return;
+
+    QueuedData queuedData = new QueuedData(data, nextSequenceNumber++);
+    (isHighPriority ? highPriorityQueue : normalPriorityQueue).addLast(queuedData);
+    notifyAll();
+  }
+
+
+
+  /**
+   * Asks the writer to write all the queued data, in the order it was queued
+   * and ignoring the rate limit, and then to close the connection. Any data
+   * queued afterwards is discarded. Returns immediately; returns
+   * <code>false</code> if the writer has already been asked to do this, or has
+   * been closed.
+   */
+
+  public synchronized boolean closeAfterDrain(){
+    if (isClosed || isDraining)
+      return false;
+
+    isDraining = true;
+    notifyAll();
+    return true;
+  }
+
+
+
+  /**
+   * Closes the writer. Any data not yet written is discarded.
+   */
+
+  public synchronized void close(){
+    isClosed = true;
+    notifyAll();
+  }
+
+
+
+  /**
+   * Moves the data which can be written right now into the specified stream.
+   * Returns the amount of milliseconds until more data can be written because
+   * of the rate limit, or 0 if there's nothing else waiting.
+   */
+
+  private long takeData(ByteArrayOutputStream batch){
+    if (isDraining){
+      // Keep the order the data was queued in, so that, say, a move sent
+      // just before closing doesn't overtake a resignation sent before it
+      while (!highPriorityQueue.isEmpty() || !normalPriorityQueue.isEmpty()){
+        LinkedList queue;
+        if (highPriorityQueue.isEmpty())
+          queue = normalPriorityQueue;
+        else if (normalPriorityQueue.isEmpty())
+          queue = highPriorityQueue;
+        else{
+          long highSequenceNumber = ((QueuedData)highPriorityQueue.getFirst()).sequenceNumber;
+          long normalSequenceNumber = ((QueuedData)normalPriorityQueue.getFirst()).sequenceNumber;
+          queue = highSequenceNumber < normalSequenceNumber ? highPriorityQueue : normalPriorityQueue;
+        }
+
+        byte [] data = ((QueuedData)queue.removeFirst()).data;
+        batch.write(data, 0, data.length);
+      }
+
+      return 0;
+    }
+
+    while (!highPriorityQueue.isEmpty()){
+      byte [] data = ((QueuedData)highPriorityQueue.removeFirst()).data;
+      batch.write(data, 0, data.length);
+    }
+
+    if (maxCommandRate > 0){
+      long now = System.nanoTime();
+      availableCommands = Math.min(maxCommandRate,
+          availableCommands + maxCommandRate * (now - lastReplenishTime) / 1000000000.0);
+      lastReplenishTime = now;
+    }
+
+    while (!normalPriorityQueue.isEmpty()){
+      if (maxCommandRate > 0){
+        if (availableCommands < 1)
+          return 1 + (long)((1 - availableCommands) * 1000 / maxCommandRate);
+        availableCommands--;
+      }
+
+      byte [] data = ((QueuedData)normalPriorityQueue.removeFirst()).data;
+      batch.write(data, 0, data.length);
+    }
+
+    return 0;
+  }
+
+
+
+  /**
+   * Waits for data and writes it. If asked to close after writing all the
+   * queued data, closes the connection once it's written.
+   */
+
+  @Override
+  public void run(){
+    ByteArrayOutputStream batch = new ByteArrayOutputStream();
+    try{
+      while (true){
+        synchronized(this){
+          while (true){
+            if (isClosed)
+              return;
+
+            long waitTime = takeData(batch);
+            if (batch.size() != 0)
+              break;
+
+            if (isDraining){
+              isClosed = true;
+              break;
+            }
+
+            wait(waitTime);
+          }
+        }
+
+        if (batch.size() == 0){ // Drained
+          connection.commandWriterDrained(this);
+          return;
+        }
+
+        batch.writeTo(out);
+        out.flush();
+        batch.reset();
+      }
+    } catch (IOException e){
+        close();
+        connection.connectionInterrupted(e);
+      }
+      catch (InterruptedException e){}
+  }
+
+
+
+  /**
+   * Data waiting to be written, along with its sequence number.
+   */
+
+  private static class QueuedData{
+
+
+
+    /**
+     * The data.
+     */
+
+    public final byte [] data;
+
+
+
+    /**
+     * The sequence number, which increases in the order data is queued.
+     */
+
+    public final long sequenceNumber;
+
+
+
+    /**
+     * Creates a new <code>QueuedData</code> with the specified data and
+     * sequence number.
+     */
+
+    public QueuedData(byte [] data, long sequenceNumber){
+      this.data = data;
+      this.sequenceNumber = sequenceNumber;
+    }
+
+
+
+  }
+
+
+
+}
@@ -22,11 +22,18 @@
 package free.util;
 
 import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
 
 
 /**
@@ -39,6 +46,18 @@ public abstract class Connection{
   
   
   
+  /**
+   * The flight recorder event type of messages framed out of the data sent by
+   * the server. See {@link #messageFramed(int, String)}.
+   */
+  
+  private static final FlightRecorderEventType MESSAGE_FRAMED_EVENT = new FlightRecorderEventType(
+      "free.util.MessageFramed", "Message Framed", new String[]{"Jin", "Protocol"},
+      "A message framed out of the data sent by the server",
+      new String[]{"size", "type"}, new String[]{"Size", "Type"}, new Class[]{int.class, String.class});
+  
+  
+  
   /**
    * The username requested by the user. This may be different from the actual username assigned by the server.
    */
@@ -72,6 +91,125 @@ public abstract class Connection{
   
   
   
+  /**
+   * The <code>SelectorThread</code> which reads data from the server for us,
+   * <code>null</code> if we use a dedicated reader thread.
+   */
+  
+  private SelectorThread selectorThread = null;
+  
+  
+  
+  /**
+   * The <code>SessionRecorder</code> which records the data we receive from the server, <code>null</code> if none.
+   */
+  
+  private volatile SessionRecorder sessionRecorder = null;
+  
+  
+  
+  /**
+   * The channel to the server, when connected via a {@link SelectorThread};
+   * <code>null</code> otherwise.
+   */
+  
+  private SocketChannel channel;
+  
+  
+  
+  /**
+   * The buffer into which the selector thread reads data from the channel.
+   * Holds data which has been read, but not yet framed into messages.
+   */
+  
+  private ByteBuffer readBuffer;
+  
+  
+  
+  /**
+   * The initial capacity of {@link #readBuffer}. The buffer grows if a single
+   * message does not fit into it.
+   */
+  
+  private static final int INITIAL_READ_BUFFER_CAPACITY = 16 * 1024;
+  
+  
+  
+  /**
+   * The queue of messages (and {@link QueuedRunnable}s) read from the server but not yet handled. Also serves as the
+   * lock for {@link #isBatchScheduled}.
+   */
+  
+  private final LinkedList messageQueue = new LinkedList();
+  
+  
+  
+  /**
+   * Whether the {@link #batchDispatcher} has been passed to {@link #execRunnable(Runnable)} and has not yet emptied the
+   * message queue.
+   */
+  
+  private boolean isBatchScheduled = false;
+  
+  
+  
+  /**
+   * The runnable which handles the messages in the message queue.
+   */
+  
+  private final BatchDispatcher batchDispatcher = new BatchDispatcher();
+  
+  
+  
+  /**
+   * The maximum amount of messages handled in a single batch.
+   */
+  
+  private volatile int maxBatchSize = 1000;
+  
+  
+  
+  /**
+   * The maximum amount of time, in milliseconds, spent handling a single batch of messages.
+   */
+  
+  private volatile long batchTimeBudget = 50;
+  
+  
+  
+  /**
+   * The priority of data which should be sent to the server as soon as possible, ahead of any other data waiting to
+   * be sent, such as moves. Data with this priority is not subject to the rate limit.
+   */
+  
+  public static final int HIGH_PRIORITY = 1;
+  
+  
+  
+  /**
+   * The priority of ordinary data sent to the server.
+   */
+  
+  public static final int NORMAL_PRIORITY = 0;
+  
+  
+  
+  /**
+   * The thread writing the data we send to the server. This is <code>null</code> when we're not connected.
+   */
+  
+  private CommandWriter commandWriter = null;
+  
+  
+  
+  /**
+   * The maximum amount of normal priority commands sent to the server per second; 0 if unlimited.
+   */
+  
+  private int maxCommandRate = 0;
+  
+  
+  
   /**
    * The username assigned to us by the server. This is <code>null</code> until we are logged in.
    */
@@ -125,18 +263,169 @@ public abstract class Connection{
 
 
 
+  /**
+   * Sets the {@link SelectorThread} which will read data from the server for this connection. If a
+   * <code>SelectorThread</code> is set, the connection is made via a non-blocking <code>SocketChannel</code> (see
+   * {@link #connectChannelImpl(String, int)}) and messages are framed by {@link #readMessage(ByteBuffer)}. Otherwise (the
+   * default), a dedicated reader thread reads the data via {@link #readMessage(InputStream)}. This method must be called
+   * before {@link #initiateConnect(String, int)}.
+   */
+  
+  public synchronized void setSelectorThread(SelectorThread selectorThread){
+    if (isConnected() || isConnecting())
+      throw new IllegalStateException("Already connected or connecting");
+    
+    this.selectorThread = selectorThread;
+  }
+  
+  
+  
+  /**
+   * Returns the {@link SelectorThread} which reads data from the server for this connection, or <code>null</code> if
+   * a dedicated reader thread is used.
+   */
+  
+  public synchronized SelectorThread getSelectorThread(){
+    return selectorThread;
+  }
+  
+  
+  
+  /**
+   * Sets the <code>SessionRecorder</code> which will record all the data received from the server, so that the session
+   * can later be replayed with a {@link ReplaySocket}. <code>null</code> stops recording. This may only be invoked when
+   * the connection is neither connected nor connecting. The recorder is closed, and recording stops, when the
+   * connection goes down or fails to connect.
+   */
+  
+  public synchronized void setSessionRecorder(SessionRecorder sessionRecorder){
+    if (isConnected() || isConnecting())
+      throw new IllegalStateException("Already connected or connecting");
+    
+    this.sessionRecorder = sessionRecorder;
+  }
+  
+  
+  
+  /**
+   * Returns the <code>SessionRecorder</code> recording the data received from the server; <code>null</code> if none.
+   */
+  
+  public synchronized SessionRecorder getSessionRecorder(){
+    return sessionRecorder;
+  }
+  
+  
+  
+  /**
+   * Closes the <code>SessionRecorder</code>, if any, and stops recording.
+   */
+  
+  private synchronized void closeSessionRecorder(){
+    if (sessionRecorder != null){
+      sessionRecorder.close();
+      sessionRecorder = null;
+    }
+  }
+
+  
+  
+  /**
+   * Sets the maximum amount of messages handled in a single batch. Messages read from the server are not passed to
+   * {@link #execRunnable(Runnable)} one by one; instead, a single runnable handles all the messages which have arrived
+   * since it last ran, up to the maximum batch size and the batch time budget (see
+   * {@link #setBatchTimeBudget(long)}). If there are more messages, another runnable is passed to
+   * <code>execRunnable</code> to handle them. The default is 1000.
+   */
+  
+  public void setMaxBatchSize(int maxBatchSize){
+    if (maxBatchSize <= 0)
+      throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+    
+    this.maxBatchSize = maxBatchSize;
+  }
+  
+  
+  
+  /**
+   * Returns the maximum amount of messages handled in a single batch.
+   */
+  
+  public int getMaxBatchSize(){
+    return maxBatchSize;
+  }
+  
+  
+  
+  /**
+   * Sets the maximum amount of time, in milliseconds, spent handling a single batch of messages. Once a batch exceeds
+   * its time budget, the remaining messages are handled in another batch, letting any other runnables (such as
+   * painting, when {@link #execRunnable(Runnable)} uses the AWT event thread) run in between. The default is 50.
+   */
+  
+  public void setBatchTimeBudget(long batchTimeBudget){
+    if (batchTimeBudget <= 0)
+      throw new IllegalArgumentException("batchTimeBudget must be positive: " + batchTimeBudget);
+    
+    this.batchTimeBudget = batchTimeBudget;
+  }
+  
+  
+  
+  /**
+   * Returns the maximum amount of time, in milliseconds, spent handling a single batch of messages.
+   */
+  
+  public long getBatchTimeBudget(){
+    return batchTimeBudget;
+  }
+  
+  
+  
+  /**
+   * Sets the maximum amount of normal priority commands sent to the server per second; 0 for unlimited. Commands sent
+   * beyond the limit are held back until they can be sent without exceeding it. High priority commands are never held
+   * back. The default is 0.
+   */
+  
+  public synchronized void setMaxCommandRate(int maxCommandRate){
+    if (maxCommandRate < 0)
+      throw new IllegalArgumentException("Maximum command rate may not be negative: " + maxCommandRate);
+    
+    this.maxCommandRate = maxCommandRate;
+    if (commandWriter != null)
+      commandWriter.setMaxCommandRate(maxCommandRate);
+  }
+  
+  
+  
+  /**
+   * Returns the maximum amount of normal priority commands sent to the server per second; 0 if unlimited.
+   */
+  
+  public synchronized int getMaxCommandRate(){
+    return maxCommandRate;
+  }
+
+
+
   /**
    * Initiates a connection to the specified hostname on the specified port. The actual connecting is done
    * asynchronously.
    */
 
   public synchronized void initiateConnect(final String hostname, final int port){
-    readerThread = new Thread("ReaderThread"){
+    final SelectorThread selectorThread = this.selectorThread;
+    readerThread = new Thread(selectorThread == null ? "ReaderThread" : "ConnectorThread"){
       @Override
       public void run(){
         try{
-          if (connect(hostname, port))
-            readerLoop();
+          if (connect(hostname, port)){
+            if (selectorThread == null)
+              readerLoop();
+            else
+              registerChannel(selectorThread);
+          }
         } finally{
             synchronized(Connection.this){
               if (readerThread == Thread.currentThread())
@@ -157,13 +446,27 @@ public abstract class Connection{
   
   private boolean connect(String hostname, int port){
     try{
-      Socket tmpSocket = connectImpl(hostname, port);
+      Socket tmpSocket;
+      SocketChannel tmpChannel = null;
+      if (selectorThread == null)
+        tmpSocket = connectImpl(hostname, port);
+      else{
+        tmpChannel = connectChannelImpl(hostname, port);
+        tmpChannel.configureBlocking(false);
+        tmpSocket = tmpChannel.socket();
+      }
       
       synchronized(this){
         socket = tmpSocket;
+        channel = tmpChannel;
+        if (channel != null)
+          readBuffer = ByteBuffer.allocateDirect(INITIAL_READ_BUFFER_CAPACITY);
+        
+        commandWriter = new CommandWriter(this, getOutputStream(), maxCommandRate);
+        commandWriter.start();
       }
       
-      execRunnable(new SafeRunnable(){
+      dispatchRunnable(new SafeRunnable(){
         @Override
         public void safeRun(){
           handleConnected();
@@ -172,10 +475,12 @@ public abstract class Connection{
 
       return true;
     } catch (final IOException e){
+        closeSessionRecorder();
+        
         // This may not be true if the connection was closed while we were
         // sitting in connectImpl, connecting to the server
         if (readerThread == Thread.currentThread())
-          execRunnable(new SafeRunnable(){
+          dispatchRunnable(new SafeRunnable(){
             @Override
             public void safeRun(){
               handleConnectingFailed(e);
@@ -187,6 +492,17 @@ public abstract class Connection{
   
   
   
+  /**
+   * Registers our channel with the specified <code>SelectorThread</code>, unless we've already been disconnected.
+   */
+  
+  private synchronized void registerChannel(SelectorThread selectorThread){
+    if (channel != null)
+      selectorThread.register(channel, this);
+  }
+  
+  
+  
   /**
    * Creates and connects a socket to the specified hostname on the specified port. Note that this method is called from
    * the constructor, so an implementation may not depend on the subclass's constructor having finished. The default
@@ -199,6 +515,19 @@ public abstract class Connection{
   
   
   
+  /**
+   * Creates and connects a <code>SocketChannel</code> to the specified hostname on the specified port. This is used
+   * instead of {@link #connectImpl(String, int)} when the connection is served by a {@link SelectorThread}. The channel
+   * is put into non-blocking mode by the caller. The default implementation returns a plain
+   * <code>SocketChannel</code>.
+   */
+  
+  protected SocketChannel connectChannelImpl(String hostname, int port) throws IOException{
+    return SocketChannel.open(new InetSocketAddress(hostname, port));
+  }
+  
+  
+  
   /**
    * Returns the <code>OutputStream</code> that sends data to the server.  
    */
@@ -207,11 +536,31 @@ public abstract class Connection{
     if (!isConnected())
       throw new IllegalStateException("Not connected");
     
+    if (channel != null)
+      return new ChannelOutputStream(channel);
+    
     return socket.getOutputStream();
   }
   
   
   
+  /**
+   * Queues the specified data to be sent to the server with the specified priority, which is either
+   * {@link #HIGH_PRIORITY} or {@link #NORMAL_PRIORITY}. The data is written asynchronously, by a dedicated thread,
+   * which sends all the data queued since its last write at once, high priority data first. Data with the same
+   * priority is sent in the order it was queued. Failing to send the data results in
+   * {@link #connectionInterrupted(IOException)} being invoked.
+   */
+  
+  protected synchronized void sendData(byte [] data, int priority){
+    if (!isConnected())
+      throw new IllegalStateException("Not connected");
+    
+    commandWriter.write(data, priority == HIGH_PRIORITY);
+  }
+  
+  
+  
   /**
    * Returns the host we're connected to.
    */
@@ -244,14 +593,19 @@ public abstract class Connection{
   
   private void readerLoop(){
     try{
-      InputStream in = createInputStream(socket.getInputStream());
+      InputStream in = socket.getInputStream();
+      SessionRecorder sessionRecorder = this.sessionRecorder;
+      if (sessionRecorder != null)
+        in = new RecordingInputStream(in, sessionRecorder);
+      
+      in = createInputStream(in);
       while (true){
         Object message = readMessage(in);
         
         if (message == null) // Clean exit
           break;
         
-        execRunnable(new MessageDispatcher(message));
+        messageRead(message);
       }
       connectionInterrupted(null);
     } catch (IOException e){
@@ -284,6 +638,95 @@ public abstract class Connection{
   
   
   
+  /**
+   * Frames a single message out of the specified buffer, when the connection is served by a {@link SelectorThread}.
+   * The buffer is ready for reading and holds the data received from the server which hasn't been consumed yet. If the
+   * buffer holds a complete message, the implementation should advance the buffer's position past it and return the
+   * message. Otherwise, it should return <code>null</code>; the method will be invoked again, with the same unconsumed
+   * data, once more data arrives. This method is invoked in the selector thread, so it must not block.
+   * <p>The default implementation throws an <code>UnsupportedOperationException</code>, meaning that the connection
+   * cannot be served by a <code>SelectorThread</code>.
+   * 
+   * @throws IOException if the data in the buffer cannot be framed.
+   */
+  
+  protected Object readMessage(ByteBuffer buffer) throws IOException{
+    throw new UnsupportedOperationException(getClass().getName() + " does not support non-blocking reading");
+  }
+  
+  
+  
+  /**
+   * Reads the data available in the specified channel and dispatches all the complete messages in it. Invoked by the
+   * {@link SelectorThread} when the channel is readable. Returns whether the channel should continue to be read from.
+   */
+  
+  boolean readChannel(SocketChannel channel){
+    try{
+      int position = readBuffer.position();
+      int count = channel.read(readBuffer);
+      
+      SessionRecorder sessionRecorder = this.sessionRecorder;
+      if ((sessionRecorder != null) && (count > 0))
+        record(sessionRecorder, readBuffer, position, count);
+      
+      readBuffer.flip();
+      Object message;
+      while ((message = readMessage(readBuffer)) != null)
+        messageRead(message);
+      readBuffer.compact();
+      
+      if (count < 0){ // Clean exit
+        connectionInterrupted(null);
+        return false;
+      }
+      
+      // Not even a single message fits - grow the buffer
+      if (!readBuffer.hasRemaining()){
+        ByteBuffer newBuffer = ByteBuffer.allocateDirect(readBuffer.capacity() * 2);
+        readBuffer.flip();
+        newBuffer.put(readBuffer);
+        readBuffer = newBuffer;
+      }
+      
+      return true;
+    } catch (IOException e){
+        connectionInterrupted(e);
+        return false;
+      }
+      catch (RuntimeException e){
+        e.printStackTrace();
+        connectionInterrupted(new IOException("Unable to frame message: " + e));
+        return false;
+      }
+  }
+  
+  
+  
+  /**
+   * A scratch array used to copy received data out of the (direct) read buffer for recording.
+   */
+  
+  private byte [] recordingScratch = null;
+  
+
+  
+  /**
+   * Records the specified amount of bytes, starting at the specified index, of the specified buffer.
+   */
+  
+  private void record(SessionRecorder sessionRecorder, ByteBuffer buffer, int index, int count){
+    if ((recordingScratch == null) || (recordingScratch.length < count))
+      recordingScratch = new byte[Math.max(count, 4096)];
+    
+    ByteBuffer data = buffer.duplicate();
+    data.position(index);
+    data.get(recordingScratch, 0, count);
+    sessionRecorder.record(recordingScratch, 0, count);
+  }
+  
+  
+  
   /**
    * Invoked when an interruption occurs in the communication with the server. The specified exception is the one that
    * was thrown, which may be <code>null</code> if we were disconnected cleanly from the server (end of stream was
@@ -298,9 +741,15 @@ public abstract class Connection{
     try{
       socket.close(); // Closing the socket causes a SocketException to be thrown in the reader thread
       socket = null;
+      channel = null;
       username = null;
       
-      execRunnable(new SafeRunnable(){
+      commandWriter.close();
+      commandWriter = null;
+      
+      closeSessionRecorder();
+      
+      dispatchRunnable(new SafeRunnable(){
         @Override
         public void safeRun(){
           handleDisconnection(exception);
@@ -385,15 +834,52 @@ public abstract class Connection{
   
   
   
+  /**
+   * The maximum amount of time, in milliseconds, we let the data queued for sending be written after {@link #close()}
+   * is invoked, before disconnecting regardless.
+   */
+  
+  private static final long CLOSE_DRAIN_TIMEOUT = 2000;
+  
+  
+  
+  /**
+   * Invoked by the specified <code>CommandWriter</code> once it has written all the queued data after being asked to
+   * close the connection, and by the thread watching it, if it fails to do so in time. Disconnects, unless already
+   * disconnected (or reconnected, with a different writer).
+   */
+  
+  synchronized void commandWriterDrained(CommandWriter writer){
+    if (commandWriter == writer)
+      connectionInterrupted(null);
+  }
+  
+  
+  
   /**
    * Closes this connection. If the connection is currently attempting to connect, the attempt is aborted.
-   * If the connection is connected, disconnection is initiated. Otherwise, the call is ignored.
-   * The actual disconnection is performed asynchronously.
+   * If the connection is connected, the writer thread is asked to write the data queued for sending and then
+   * disconnect (but it gets no more than {@link #CLOSE_DRAIN_TIMEOUT} milliseconds to do so). Otherwise, the call is
+   * ignored. The actual disconnection is performed asynchronously; this method doesn't wait for it.
    */
   
   public synchronized void close(){
-    if (isConnected())
-      connectionInterrupted(null);
+    if (isConnected()){
+      final CommandWriter writer = commandWriter;
+      if (writer.closeAfterDrain()){
+        Thread watchdog = new Thread("CloseWatchdog"){
+          @Override
+          public void run(){
+            try{
+              writer.join(CLOSE_DRAIN_TIMEOUT);
+            } catch (InterruptedException e){}
+            commandWriterDrained(writer);
+          }
+        };
+        watchdog.setDaemon(true);
+        watchdog.start();
+      }
+    }
     else if (isConnecting()){
       readerThread.interrupt();
       readerThread = null;
@@ -442,6 +928,63 @@ public abstract class Connection{
   
   
 
+  /**
+   * Subclasses should invoke this method from <code>readMessage</code> when
+   * they frame a message of the specified size, in bytes, and type (such as
+   * "line" or "datagram"). This emits a flight recorder event, if one is being
+   * recorded.
+   */
+  
+  protected void messageFramed(int size, String type){
+    Object flightEvent = MESSAGE_FRAMED_EVENT.begin();
+    if (flightEvent != null)
+      MESSAGE_FRAMED_EVENT.commit(flightEvent, new Object[]{new Integer(size), type});
+  }
+  
+  
+  
+  /**
+   * Invoked when the specified message is read from the server. Timestamps the message, if the
+   * {@link LatencyMonitor} is enabled, and dispatches it.
+   */
+  
+  private void messageRead(Object message){
+    if (LatencyMonitor.getInstance().isEnabled())
+      dispatchMessage(new TimedMessage(message, System.nanoTime()));
+    else
+      dispatchMessage(message);
+  }
+  
+  
+  
+  /**
+   * Queues the specified message to be handled by {@link #handleMessage(Object)}, scheduling a batch if needed.
+   */
+  
+  private void dispatchMessage(Object message){
+    synchronized(messageQueue){
+      messageQueue.addLast(message);
+      if (isBatchScheduled)
+        return;
+      isBatchScheduled = true;
+    }
+    
+    execRunnable(batchDispatcher);
+  }
+  
+  
+  
+  /**
+   * Queues the specified runnable to be run after all the currently queued messages are handled. This keeps the
+   * order of connection events (such as disconnection) relative to the messages read from the server.
+   */
+  
+  private void dispatchRunnable(Runnable runnable){
+    dispatchMessage(new QueuedRunnable(runnable));
+  }
+  
+  
+  
   /**
    * Any invocation of client code (all the <code>handleXXX</code> methods) from the thread that reads data from the
    * server is done via this method. This allows clients to specify which thread they want to handle connection events
@@ -524,31 +1067,251 @@ public abstract class Connection{
   
   
   /**
-   * A runnable which invokes the {@link #handleMessage(Object)} method.
+   * An <code>InputStream</code> which records all the data read from it with a <code>SessionRecorder</code>.
    */
   
-  private class MessageDispatcher extends SafeRunnable{
+  private static class RecordingInputStream extends FilterInputStream{
     
     
     
     /**
-     * The message to handle.
+     * The recorder.
      */
     
-    private final Object message;
+    private final SessionRecorder sessionRecorder;
     
     
     
     /**
-     * Creates a new <code>MessageDispatcher</code>.
+     * Creates a new <code>RecordingInputStream</code> which reads from the specified stream and records into the
+     * specified recorder.
      */
     
-    public MessageDispatcher(Object message){
-      this.message = message;
+    public RecordingInputStream(InputStream in, SessionRecorder sessionRecorder){
+      super(in);
+      
+      this.sessionRecorder = sessionRecorder;
+    }
+    
+    
+    
+    /**
+     * Reads and records a single byte.
+     */
+    
+    @Override
+    public int read() throws IOException{
+      int b = in.read();
+      if (b >= 0)
+        sessionRecorder.record(new byte[]{(byte)b}, 0, 1);
+      return b;
+    }
+    
+    
+    
+    /**
+     * Reads and records the bytes.
+     */
+    
+    @Override
+    public int read(byte [] buf, int offset, int length) throws IOException{
+      int count = in.read(buf, offset, length);
+      if (count > 0)
+        sessionRecorder.record(buf, offset, count);
+      return count;
+    }
+    
+    
+    
+    /**
+     * Skipped bytes are never seen, so we read them instead.
+     */
+    
+    @Override
+    public long skip(long n) throws IOException{
+      byte [] buf = new byte[(int)Math.min(n, 4096)];
+      int count = read(buf, 0, buf.length);
+      return count < 0 ? 0 : count;
+    }
+    
+    
+    
+    /**
+     * Marking is not supported, since reset bytes would be recorded twice.
+     */
+    
+    @Override
+    public boolean markSupported(){
+      return false;
+    }
+    
+    
+    
+  }
+  
+  
+  
+  /**
+   * An <code>OutputStream</code> which writes into a (possibly non-blocking) <code>SocketChannel</code>. Writes block
+   * until all the data has been written.
+   */
+  
+  private static class ChannelOutputStream extends OutputStream{
+    
+    
+    
+    /**
+     * The channel we write to.
+     */
+    
+    private final SocketChannel channel;
+    
+    
+    
+    /**
+     * Creates a new <code>ChannelOutputStream</code> writing into the specified channel.
+     */
+    
+    public ChannelOutputStream(SocketChannel channel){
+      this.channel = channel;
+    }
+    
+    
+    
+    /**
+     * Writes the specified byte.
+     */
+    
+    @Override
+    public void write(int b) throws IOException{
+      write(new byte[]{(byte)b}, 0, 1);
     }
     
     
     
+    /**
+     * Writes the specified bytes, waiting for the channel to become writable if the socket's send buffer is full.
+     */
+    
+    @Override
+    public void write(byte [] b, int off, int len) throws IOException{
+      ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+      
+      Selector writeSelector = null;
+      try{
+        while (buf.hasRemaining()){
+          if (channel.write(buf) != 0)
+            continue;
+          
+          if (writeSelector == null){
+            writeSelector = Selector.open();
+            channel.register(writeSelector, SelectionKey.OP_WRITE);
+          }
+          writeSelector.select();
+          writeSelector.selectedKeys().clear();
+        }
+      } finally{
+          if (writeSelector != null)
+            writeSelector.close();
+        }
+    }
+    
+    
+    
+  }
+  
+  
+  
+  /**
+   * A runnable which handles a batch of the messages in the message queue.
+   */
+  
+  private class BatchDispatcher implements Runnable{
+    
+    
+    
+    /**
+     * The <code>SafeRunnable</code> we use to handle each message, so that an exception thrown while handling one
+     * message doesn't prevent the rest from being handled.
+     */
+    
+    private final MessageDispatcher messageDispatcher = new MessageDispatcher();
+    
+    
+    
+    /**
+     * Handles messages from the message queue until it's empty, or until the maximum batch size or the batch time
+     * budget is exceeded, in which case we pass ourselves to {@link Connection#execRunnable(Runnable)} again.
+     */
+    
+    @Override
+    public void run(){
+      int maxBatchSize = getMaxBatchSize();
+      long deadline = System.nanoTime() + getBatchTimeBudget() * 1000000;
+      
+      for (int i = 0; i < maxBatchSize; i++){
+        Object message;
+        synchronized(messageQueue){
+          if (messageQueue.isEmpty()){
+            isBatchScheduled = false;
+            return;
+          }
+          message = messageQueue.removeFirst();
+        }
+        
+        if (message instanceof QueuedRunnable)
+          ((QueuedRunnable)message).runnable.run();
+        else if (message instanceof TimedMessage){
+          TimedMessage timedMessage = (TimedMessage)message;
+          LatencyMonitor latencyMonitor = LatencyMonitor.getInstance();
+          latencyMonitor.messageHandlingStarted(timedMessage.readTime);
+          messageDispatcher.message = timedMessage.message;
+          messageDispatcher.run();
+          messageDispatcher.message = null;
+          latencyMonitor.messageHandlingEnded();
+        }
+        else{
+          messageDispatcher.message = message;
+          messageDispatcher.run();
+          messageDispatcher.message = null;
+        }
+        
+        if (System.nanoTime() - deadline > 0)
+          break;
+      }
+      
+      synchronized(messageQueue){
+        if (messageQueue.isEmpty()){
+          isBatchScheduled = false;
+          return;
+        }
+      }
+      
+      execRunnable(this);
+    }
+    
+    
+    
+  }
+  
+  
+  
+  /**
+   * A runnable which invokes the {@link #handleMessage(Object)} method.
+   */
+  
+  private class MessageDispatcher extends SafeRunnable{
+    
+    
+    
+    /**
+     * The message to handle.
+     */
+    
+    private Object message;
+    
+    
+    
     /**
      * Invokes {@link Connection#handleMessage(Object)} with the message.
      */
@@ -560,7 +1323,77 @@ public abstract class Connection{
     
     
     
-  };
+  }
+  
+  
+  
+  /**
+   * Wraps a message put into the message queue along with the time it was read from the server, for the
+   * {@link LatencyMonitor}.
+   */
+  
+  private static class TimedMessage{
+    
+    
+    
+    /**
+     * The message.
+     */
+    
+    public final Object message;
+    
+    
+    
+    /**
+     * The time, as returned by <code>System.nanoTime()</code>, at which the message was read.
+     */
+    
+    public final long readTime;
+    
+    
+    
+    /**
+     * Creates a new <code>TimedMessage</code> with the specified message and read time.
+     */
+    
+    public TimedMessage(Object message, long readTime){
+      this.message = message;
+      this.readTime = readTime;
+    }
+    
+    
+    
+  }
+  
+  
+  
+  /**
+   * Wraps a runnable put into the message queue, so that it isn't mistaken for a message.
+   */
+  
+  private static class QueuedRunnable{
+    
+    
+    
+    /**
+     * The wrapped runnable.
+     */
+    
+    public final Runnable runnable;
+    
+    
+    
+    /**
+     * Creates a new <code>QueuedRunnable</code> wrapping the specified runnable.
+     */
+    
+    public QueuedRunnable(Runnable runnable){
+      this.runnable = runnable;
+    }
+    
+    
+    
+  }
   
   
   
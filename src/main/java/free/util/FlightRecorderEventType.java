@@ -0,0 +1,539 @@
+/**
+ * The utillib library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The utillib library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The utillib library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with utillib library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA
+ */
+
+
+package free.util;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+
+/**
+ * A custom JDK Flight Recorder event type, defined at runtime. The JFR API
+ * (<code>jdk.jfr</code>) is accessed reflectively, so that this class can be
+ * compiled and used on JVMs which don't have it; on such JVMs events are
+ * simply never recorded. The event type is only registered with JFR once the
+ * flight recorder is initialized, so that sessions which are never recorded
+ * don't pay for it. When no recording has the event type enabled,
+ * {@link #begin()} costs a single volatile read, so it may be invoked on hot
+ * paths. Usage:
+ * <pre>
+ * Object event = EVENT_TYPE.begin();
+ * ... // The work being timed
+ * if (event != null)
+ *   EVENT_TYPE.commit(event, new Object[]{...});
+ * </pre>
+ */
+
+public final class FlightRecorderEventType{
+
+
+
+  /**
+   * The <code>jdk.jfr.EventFactory.create(List, List)</code> method;
+   * <code>null</code> if JFR is unavailable.
+   */
+
+  private static final Method CREATE_FACTORY;
+
+
+
+  /**
+   * The <code>jdk.jfr.EventFactory.newEvent()</code> method.
+   */
+
+  private static final Method NEW_EVENT;
+
+
+
+  /**
+   * The <code>jdk.jfr.EventFactory.getEventType()</code> method.
+   */
+
+  private static final Method GET_EVENT_TYPE;
+
+
+
+  /**
+   * The <code>jdk.jfr.EventType.isEnabled()</code> method.
+   */
+
+  private static final Method IS_EVENT_TYPE_ENABLED;
+
+
+
+  /**
+   * The <code>jdk.jfr.Event.begin()</code> method.
+   */
+
+  private static final Method BEGIN;
+
+
+
+  /**
+   * The <code>jdk.jfr.Event.end()</code> method.
+   */
+
+  private static final Method END;
+
+
+
+  /**
+   * The <code>jdk.jfr.Event.set(int, Object)</code> method.
+   */
+
+  private static final Method SET;
+
+
+
+  /**
+   * The <code>jdk.jfr.Event.commit()</code> method.
+   */
+
+  private static final Method COMMIT;
+
+
+
+  /**
+   * The <code>jdk.jfr.AnnotationElement(Class, Object)</code> constructor.
+   */
+
+  private static final Constructor NEW_ANNOTATION_ELEMENT;
+
+
+
+  /**
+   * The <code>jdk.jfr.ValueDescriptor(Class, String, List)</code> constructor.
+   */
+
+  private static final Constructor NEW_VALUE_DESCRIPTOR;
+
+
+
+  /**
+   * The <code>jdk.jfr.Name</code>, <code>jdk.jfr.Label</code>,
+   * <code>jdk.jfr.Category</code>, <code>jdk.jfr.Description</code> and
+   * <code>jdk.jfr.StackTrace</code> annotation types.
+   */
+
+  private static final Class NAME, LABEL, CATEGORY, DESCRIPTION, STACK_TRACE;
+
+
+
+  /**
+   * All the event types created so far, which we register with JFR when the
+   * flight recorder is initialized and whose enabled state we update when
+   * recordings start and stop.
+   */
+
+  private static final Vector eventTypes = new Vector();
+
+
+
+  /**
+   * Whether the flight recorder has been initialized.
+   */
+
+  private static boolean isRecorderInitialized = false;
+
+
+
+  static{
+    Method createFactory = null, newEvent = null, getEventType = null, isEventTypeEnabled = null,
+      begin = null, end = null, set = null, commit = null;
+    Constructor newAnnotationElement = null, newValueDescriptor = null;
+    Class name = null, label = null, category = null, description = null, stackTrace = null;
+    try{
+      Class eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+      Class eventClass = Class.forName("jdk.jfr.Event");
+      Class annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+
+      name = Class.forName("jdk.jfr.Name");
+      label = Class.forName("jdk.jfr.Label");
+      category = Class.forName("jdk.jfr.Category");
+      description = Class.forName("jdk.jfr.Description");
+      stackTrace = Class.forName("jdk.jfr.StackTrace");
+
+      newAnnotationElement = annotationElementClass.getConstructor(new Class[]{Class.class, Object.class});
+      newValueDescriptor = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(new Class[]{Class.class, String.class, List.class});
+      newEvent = eventFactoryClass.getMethod("newEvent", new Class[0]);
+      getEventType = eventFactoryClass.getMethod("getEventType", new Class[0]);
+      isEventTypeEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled", new Class[0]);
+      begin = eventClass.getMethod("begin", new Class[0]);
+      end = eventClass.getMethod("end", new Class[0]);
+      set = eventClass.getMethod("set", new Class[]{int.class, Object.class});
+      commit = eventClass.getMethod("commit", new Class[0]);
+
+      // Register our event types when the recorder is initialized and keep
+      // their enabled state up to date
+      Class flightRecorderClass = Class.forName("jdk.jfr.FlightRecorder");
+      Class listenerClass = Class.forName("jdk.jfr.FlightRecorderListener");
+      Object listener = Proxy.newProxyInstance(FlightRecorderEventType.class.getClassLoader(),
+          new Class[]{listenerClass}, new RecorderListener());
+      flightRecorderClass.getMethod("addListener", new Class[]{listenerClass}).invoke(null, new Object[]{listener});
+
+      // Set last, so that we're only considered available if all of the above succeeded
+      createFactory = eventFactoryClass.getMethod("create", new Class[]{List.class, List.class});
+    } catch (ClassNotFoundException e){} // Not a JVM with JFR
+      catch (Exception e){
+        e.printStackTrace();
+      }
+      catch (LinkageError e){
+        e.printStackTrace();
+      }
+
+    CREATE_FACTORY = createFactory;
+    NEW_EVENT = newEvent;
+    GET_EVENT_TYPE = getEventType;
+    IS_EVENT_TYPE_ENABLED = isEventTypeEnabled;
+    BEGIN = begin;
+    END = end;
+    SET = set;
+    COMMIT = commit;
+    NEW_ANNOTATION_ELEMENT = newAnnotationElement;
+    NEW_VALUE_DESCRIPTOR = newValueDescriptor;
+    NAME = name;
+    LABEL = label;
+    CATEGORY = category;
+    DESCRIPTION = description;
+    STACK_TRACE = stackTrace;
+  }
+
+
+
+  /**
+   * The name of the event type.
+   */
+
+  private final String name;
+
+
+
+  /**
+   * The human readable name of the event type.
+   */
+
+  private final String label;
+
+
+
+  /**
+   * The category path of the event type.
+   */
+
+  private final String [] category;
+
+
+
+  /**
+   * The description of the event type.
+   */
+
+  private final String description;
+
+
+
+  /**
+   * The names of the fields.
+   */
+
+  private final String [] fieldNames;
+
+
+
+  /**
+   * The human readable names of the fields.
+   */
+
+  private final String [] fieldLabels;
+
+
+
+  /**
+   * The types of the fields.
+   */
+
+  private final Class [] fieldTypes;
+
+
+
+  /**
+   * The <code>jdk.jfr.EventFactory</code> of the event type;
+   * <code>null</code> until the event type is registered with JFR.
+   */
+
+  private Object factory = null;
+
+
+
+  /**
+   * The <code>jdk.jfr.EventType</code>; <code>null</code> until the event
+   * type is registered with JFR.
+   */
+
+  private Object eventType = null;
+
+
+
+  /**
+   * Whether events of this type are enabled in any running recording.
+   */
+
+  private volatile boolean isEnabled = false;
+
+
+
+  /**
+   * Creates a new <code>FlightRecorderEventType</code>.
+   *
+   * @param name The name of the event type, such as
+   * <code>free.chess.BoardPaint</code>.
+   * @param label The human readable name of the event type.
+   * @param category The category path of the event type, such as
+   * <code>{"Jin", "Painting"}</code>.
+   * @param description A description of the event type.
+   * @param fieldNames The names of the fields of events of this type.
+   * @param fieldLabels The human readable names of the fields.
+   * @param fieldTypes The types of the fields; primitive types or
+   * <code>String.class</code>.
+   */
+
+  public FlightRecorderEventType(String name, String label, String [] category, String description,
+      String [] fieldNames, String [] fieldLabels, Class [] fieldTypes){
+    if ((fieldNames.length != fieldLabels.length) || (fieldNames.length != fieldTypes.length))
+      throw new IllegalArgumentException("Field names, labels and types must be of the same length");
+
+    this.name = name;
+    this.label = label;
+    this.category = (String [])category.clone();
+    this.description = description;
+    this.fieldNames = (String [])fieldNames.clone();
+    this.fieldLabels = (String [])fieldLabels.clone();
+    this.fieldTypes = (Class [])fieldTypes.clone();
+
+    if (CREATE_FACTORY != null){
+      synchronized(eventTypes){
+        eventTypes.addElement(this);
+        if (isRecorderInitialized){
+          register();
+          updateEnabledState();
+        }
+      }
+    }
+  }
+
+
+
+  /**
+   * Invoked when the flight recorder is initialized. Registers all the event
+   * types created so far with JFR.
+   */
+
+  private static void recorderInitialized(){
+    synchronized(eventTypes){
+      isRecorderInitialized = true;
+      for (int i = 0; i < eventTypes.size(); i++){
+        FlightRecorderEventType type = (FlightRecorderEventType)eventTypes.elementAt(i);
+        type.register();
+        type.updateEnabledState();
+      }
+    }
+  }
+
+
+
+  /**
+   * Invoked when a recording starts or stops. Updates the enabled state of all
+   * the event types.
+   */
+
+  private static void recordingStateChanged(){
+    synchronized(eventTypes){
+      for (int i = 0; i < eventTypes.size(); i++)
+        ((FlightRecorderEventType)eventTypes.elementAt(i)).updateEnabledState();
+    }
+  }
+
+
+
+  /**
+   * Registers this event type with JFR, by creating its
+   * <code>jdk.jfr.EventFactory</code>.
+   */
+
+  private void register(){
+    try{
+      List annotations = new ArrayList();
+      annotations.add(annotation(NAME, name));
+      annotations.add(annotation(LABEL, label));
+      annotations.add(annotation(CATEGORY, category));
+      annotations.add(annotation(DESCRIPTION, description));
+      annotations.add(annotation(STACK_TRACE, Boolean.FALSE));
+
+      List fields = new ArrayList();
+      for (int i = 0; i < fieldNames.length; i++){
+        List fieldAnnotations = Arrays.asList(new Object[]{annotation(LABEL, fieldLabels[i])});
+        fields.add(NEW_VALUE_DESCRIPTOR.newInstance(new Object[]{fieldTypes[i], fieldNames[i], fieldAnnotations}));
+      }
+
+      factory = CREATE_FACTORY.invoke(null, new Object[]{annotations, fields});
+      eventType = GET_EVENT_TYPE.invoke(factory, new Object[0]);
+    } catch (Exception e){
+        e.printStackTrace();
+        factory = null;
+        eventType = null;
+      }
+  }
+
+
+
+  /**
+   * Creates a <code>jdk.jfr.AnnotationElement</code> of the specified
+   * annotation type with the specified value.
+   */
+
+  private static Object annotation(Class annotationType, Object value) throws Exception{
+    return NEW_ANNOTATION_ELEMENT.newInstance(new Object[]{annotationType, value});
+  }
+
+
+
+  /**
+   * Rereads whether events of this type are enabled.
+   */
+
+  private void updateEnabledState(){
+    if (eventType == null)
+      return;
+
+    try{
+      isEnabled = ((Boolean)IS_EVENT_TYPE_ENABLED.invoke(eventType, new Object[0])).booleanValue();
+    } catch (Exception e){
+        e.printStackTrace();
+        isEnabled = false;
+      }
+  }
+
+
+
+  /**
+   * Returns whether events of this type are enabled in any running recording.
+   */
+
+  public boolean isEnabled(){
+    return isEnabled;
+  }
+
+
+
+  /**
+   * Creates a new event of this type and starts timing it, if events of this
+   * type are enabled. Returns <code>null</code> otherwise.
+   */
+
+  public Object begin(){
+    if (!isEnabled)
+      return null;
+
+    try{
+      // isEnabled is only set after the factory is, and is volatile
+      Object event = NEW_EVENT.invoke(factory, new Object[0]);
+      BEGIN.invoke(event, new Object[0]);
+      return event;
+    } catch (Exception e){
+        e.printStackTrace();
+        isEnabled = false;
+        return null;
+      }
+  }
+
+
+
+  /**
+   * Stops timing the specified event (as returned by {@link #begin()}), sets
+   * its fields to the specified values, in the order they were specified at
+   * construction, and commits it. Primitive values are specified by their
+   * wrappers.
+   */
+
+  public void commit(Object event, Object [] values){
+    if (values.length != fieldNames.length)
+      throw new IllegalArgumentException("Expected " + fieldNames.length + " values, got " + values.length);
+
+    try{
+      END.invoke(event, new Object[0]);
+      for (int i = 0; i < values.length; i++)
+        SET.invoke(event, new Object[]{new Integer(i), values[i]});
+      COMMIT.invoke(event, new Object[0]);
+    } catch (Exception e){
+        e.printStackTrace();
+        isEnabled = false;
+      }
+  }
+
+
+
+  /**
+   * The <code>jdk.jfr.FlightRecorderListener</code> registering the event
+   * types when the flight recorder is initialized, and updating their enabled
+   * state when recordings start and stop.
+   */
+
+  private static class RecorderListener implements InvocationHandler{
+
+
+
+    /**
+     * Dispatches <code>recorderInitialized</code> and
+     * <code>recordingStateChanged</code> notifications, and implements the
+     * <code>Object</code> methods.
+     */
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object [] args){
+      String methodName = method.getName();
+      if ("recorderInitialized".equals(methodName))
+        recorderInitialized();
+      else if ("recordingStateChanged".equals(methodName))
+        recordingStateChanged();
+      else if ("equals".equals(methodName))
+        return Boolean.valueOf(proxy == args[0]);
+      else if ("hashCode".equals(methodName))
+        return new Integer(System.identityHashCode(proxy));
+      else if ("toString".equals(methodName))
+        return "FlightRecorderEventType.RecorderListener";
+
+      return null;
+    }
+
+
+
+  }
+
+
+
+}
@@ -0,0 +1,211 @@
+/**
+ * The utillib library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The utillib library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The utillib library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with utillib library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA
+ */
+
+package free.util;
+
+
+/**
+ * A histogram of latencies, with a fixed amount of memory regardless of how
+ * many latencies are recorded. Latencies are kept with microsecond resolution
+ * in logarithmic buckets, each power of two split into 8 linear sub-buckets,
+ * so percentiles are accurate to within about 12%. The count, mean and maximum
+ * are exact.
+ */
+
+public class LatencyHistogram{
+
+
+
+  /**
+   * The base 2 logarithm of the amount of sub-buckets in each power of two.
+   */
+
+  private static final int SUB_BUCKET_BITS = 3;
+
+
+
+  /**
+   * The amount of sub-buckets in each power of two.
+   */
+
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+
+
+  /**
+   * The amount of recorded latencies, in microseconds, falling into each
+   * bucket.
+   */
+
+  private final long [] buckets = new long[bucketIndex(Long.MAX_VALUE) + 1];
+
+
+
+  /**
+   * The amount of recorded latencies.
+   */
+
+  private long count = 0;
+
+
+
+  /**
+   * The sum of the recorded latencies, in nanoseconds.
+   */
+
+  private long total = 0;
+
+
+
+  /**
+   * The largest recorded latency, in nanoseconds.
+   */
+
+  private long max = 0;
+
+
+
+  /**
+   * Returns the index of the bucket holding the specified amount of
+   * microseconds.
+   */
+
+  private static int bucketIndex(long micros){
+    if (micros < SUB_BUCKET_COUNT)
+      return (int)micros;
+
+    int log = 63 - Long.numberOfLeadingZeros(micros);
+    int subBucket = (int)(micros >>> (log - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+    return (log - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+
+
+  /**
+   * Returns the smallest amount of microseconds held by the bucket with the
+   * specified index.
+   */
+
+  private static long bucketLowerBound(int index){
+    if (index < SUB_BUCKET_COUNT)
+      return index;
+
+    int log = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+    int subBucket = index % SUB_BUCKET_COUNT;
+    return (long)(SUB_BUCKET_COUNT + subBucket) << (log - SUB_BUCKET_BITS);
+  }
+
+
+
+  /**
+   * Records the specified latency, in nanoseconds. Negative latencies are
+   * recorded as 0.
+   */
+
+  public synchronized void record(long nanos){
+    if (nanos < 0)
+      nanos = 0;
+
+    buckets[bucketIndex(nanos / 1000)]++;
+    count++;
+    total += nanos;
+    if (nanos > max)
+      max = nanos;
+  }
+
+
+
+  /**
+   * Returns the amount of recorded latencies.
+   */
+
+  public synchronized long getCount(){
+    return count;
+  }
+
+
+
+  /**
+   * Returns the mean of the recorded latencies, in nanoseconds, or 0 if none
+   * have been recorded.
+   */
+
+  public synchronized long getMean(){
+    return count == 0 ? 0 : total / count;
+  }
+
+
+
+  /**
+   * Returns the largest recorded latency, in nanoseconds, or 0 if none have
+   * been recorded.
+   */
+
+  public synchronized long getMax(){
+    return max;
+  }
+
+
+
+  /**
+   * Returns (an approximation of) the specified percentile of the recorded
+   * latencies, in nanoseconds, or 0 if none have been recorded. The percentile
+   * is specified as a fraction between 0 and 1.
+   */
+
+  public synchronized long getPercentile(double fraction){
+    if ((fraction < 0) || (fraction > 1))
+      throw new IllegalArgumentException("fraction must be between 0 and 1: " + fraction);
+    if (count == 0)
+      return 0;
+
+    long rank = Math.max(1, (long)Math.ceil(count * fraction));
+    long seen = 0;
+    for (int i = 0; i < buckets.length; i++){
+      seen += buckets[i];
+      if (seen >= rank){
+        // The middle of the bucket, but never more than the (exact) maximum
+        long lowerBound = bucketLowerBound(i);
+        long upperBound = (i + 1 < buckets.length) ? bucketLowerBound(i + 1) : lowerBound;
+        return Math.min(max, (lowerBound + upperBound) * 1000 / 2);
+      }
+    }
+
+    return max;
+  }
+
+
+
+  /**
+   * Clears all the recorded latencies.
+   */
+
+  public synchronized void reset(){
+    for (int i = 0; i < buckets.length; i++)
+      buckets[i] = 0;
+    count = 0;
+    total = 0;
+    max = 0;
+  }
+
+
+
+}
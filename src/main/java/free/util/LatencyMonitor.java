@@ -0,0 +1,448 @@
+/**
+ * The utillib library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The utillib library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The utillib library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with utillib library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA
+ */
+
+
+package free.util;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+
+/**
+ * Measures the latency of moves (or whatever else the application wishes to
+ * trace) as they pass from the socket to the screen, split into stages:
+ * <ul>
+ *   <li>queue - from the moment the message is read from the server until its
+ *       handling starts in the thread {@link Connection} dispatches messages
+ *       in (normally, the AWT event dispatching thread).
+ *   <li>parse - from the start of handling the message until the event
+ *       describing it is fired.
+ *   <li>listeners - the time it takes the listeners to handle the event.
+ *   <li>paint - from the moment the listeners are done until the next time
+ *       the board is painted.
+ *   <li>total - from the moment the message is read until the board is
+ *       painted.
+ * </ul>
+ * The monitor is disabled by default, unless the
+ * <code>free.util.latencyMonitor</code> system property is set to
+ * <code>true</code>; when disabled, the hooks cost a volatile read each. The
+ * measured latencies are exposed via JMX, under the
+ * <code>free.util:type=LatencyMonitor</code> name, once the monitor is first
+ * enabled or {@link #registerMBean()} is invoked - registering any earlier
+ * would load JMX even when no one is measuring anything.
+ */
+
+public final class LatencyMonitor implements LatencyMonitorMBean{
+
+
+
+  /**
+   * The index of the queue stage.
+   */
+
+  public static final int QUEUE = 0;
+
+
+
+  /**
+   * The index of the parse stage.
+   */
+
+  public static final int PARSE = 1;
+
+
+
+  /**
+   * The index of the listeners stage.
+   */
+
+  public static final int LISTENERS = 2;
+
+
+
+  /**
+   * The index of the paint stage.
+   */
+
+  public static final int PAINT = 3;
+
+
+
+  /**
+   * The index of the total stage.
+   */
+
+  public static final int TOTAL = 4;
+
+
+
+  /**
+   * The names of the stages.
+   */
+
+  private static final String [] STAGE_NAMES = new String[]{"queue", "parse", "listeners", "paint", "total"};
+
+
+
+  /**
+   * The sole instance of this class.
+   */
+
+  private static final LatencyMonitor INSTANCE = new LatencyMonitor();
+
+
+
+  /**
+   * Whether latencies are being measured.
+   */
+
+  private volatile boolean isEnabled = false;
+
+
+
+  /**
+   * Whether we've registered ourselves with the platform MBean server.
+   */
+
+  private boolean isMBeanRegistered = false;
+
+
+
+  /**
+   * The latency histograms of the stages.
+   */
+
+  private final LatencyHistogram [] histograms = new LatencyHistogram[STAGE_NAMES.length];
+
+
+
+  /**
+   * The time at which the message currently being handled was read;
+   * <code>-1</code> if no (timed) message is being handled.
+   */
+
+  private long readTime = -1;
+
+
+
+  /**
+   * The time at which the handling of the current message started.
+   */
+
+  private long handlingStartTime;
+
+
+
+  /**
+   * The time at which the event currently being fired started firing;
+   * <code>-1</code> if no event is being fired.
+   */
+
+  private long firingStartTime = -1;
+
+
+
+  /**
+   * The time at which the oldest message whose event was fired since the last
+   * paint was read; <code>-1</code> if none.
+   */
+
+  private long unpaintedReadTime = -1;
+
+
+
+  /**
+   * The time at which the listeners finished handling the oldest event fired
+   * since the last paint.
+   */
+
+  private long unpaintedFiredTime;
+
+
+
+  /**
+   * Creates the sole instance of <code>LatencyMonitor</code>.
+   */
+
+  private LatencyMonitor(){
+    for (int i = 0; i < histograms.length; i++)
+      histograms[i] = new LatencyHistogram();
+
+    if (Boolean.getBoolean("free.util.latencyMonitor"))
+      setEnabled(true);
+  }
+
+
+
+  /**
+   * Returns the sole instance of <code>LatencyMonitor</code>.
+   */
+
+  public static LatencyMonitor getInstance(){
+    return INSTANCE;
+  }
+
+
+
+  /**
+   * Registers the monitor with the platform MBean server, under the
+   * <code>free.util:type=LatencyMonitor</code> name, unless it already is.
+   * This is done automatically when the monitor is enabled.
+   */
+
+  public synchronized void registerMBean(){
+    if (isMBeanRegistered)
+      return;
+
+    isMBeanRegistered = true;
+    try{
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("free.util:type=LatencyMonitor"));
+    } catch (Exception e){
+        e.printStackTrace(); // Just don't expose ourselves via JMX
+      }
+  }
+
+
+
+  /**
+   * Returns whether latencies are being measured. Hooks should check this
+   * before invoking any of the <code>xxxStarted</code>/<code>xxxEnded</code>
+   * methods.
+   */
+
+  @Override
+  public boolean isEnabled(){
+    return isEnabled;
+  }
+
+
+
+  /**
+   * Sets whether latencies are being measured.
+   */
+
+  @Override
+  public synchronized void setEnabled(boolean isEnabled){
+    if (isEnabled)
+      registerMBean();
+
+    this.isEnabled = isEnabled;
+
+    if (!isEnabled){
+      readTime = -1;
+      firingStartTime = -1;
+      unpaintedReadTime = -1;
+    }
+  }
+
+
+
+  /**
+   * Returns the histogram of the stage with the specified index.
+   */
+
+  public LatencyHistogram getHistogram(int stage){
+    return histograms[stage];
+  }
+
+
+
+  /**
+   * Invoked when the handling of a message read from the server at the
+   * specified time (as returned by <code>System.nanoTime()</code>) starts.
+   */
+
+  public synchronized void messageHandlingStarted(long readTime){
+    this.readTime = readTime;
+    this.handlingStartTime = System.nanoTime();
+  }
+
+
+
+  /**
+   * Invoked when the handling of the current message ends.
+   */
+
+  public synchronized void messageHandlingEnded(){
+    readTime = -1;
+    firingStartTime = -1;
+  }
+
+
+
+  /**
+   * Invoked right before the event describing the current message is fired.
+   * Does nothing if no timed message is being handled.
+   */
+
+  public synchronized void eventFiringStarted(){
+    if (readTime != -1)
+      firingStartTime = System.nanoTime();
+  }
+
+
+
+  /**
+   * Invoked right after all the listeners have handled the event describing
+   * the current message. Records the queue, parse and listeners latencies,
+   * and starts waiting for the board to be painted.
+   */
+
+  public synchronized void eventFiringEnded(){
+    if ((readTime == -1) || (firingStartTime == -1))
+      return;
+
+    long now = System.nanoTime();
+    histograms[QUEUE].record(handlingStartTime - readTime);
+    histograms[PARSE].record(firingStartTime - handlingStartTime);
+    histograms[LISTENERS].record(now - firingStartTime);
+    firingStartTime = -1;
+
+    // The next paint reflects all the events fired since the last one; we
+    // attribute it to the oldest of them
+    if (unpaintedReadTime == -1){
+      unpaintedReadTime = readTime;
+      unpaintedFiredTime = now;
+    }
+  }
+
+
+
+  /**
+   * Invoked when the board has been painted. Records the paint and total
+   * latencies of the oldest event fired since the last paint, if any.
+   */
+
+  public synchronized void boardPainted(){
+    if (unpaintedReadTime == -1)
+      return;
+
+    long now = System.nanoTime();
+    histograms[PAINT].record(now - unpaintedFiredTime);
+    histograms[TOTAL].record(now - unpaintedReadTime);
+    unpaintedReadTime = -1;
+  }
+
+
+
+  /**
+   * Returns the names of the stages.
+   */
+
+  @Override
+  public String [] getStageNames(){
+    return (String [])STAGE_NAMES.clone();
+  }
+
+
+
+  /**
+   * Returns the amount of latencies measured for each stage.
+   */
+
+  @Override
+  public long [] getCounts(){
+    long [] counts = new long[histograms.length];
+    for (int i = 0; i < counts.length; i++)
+      counts[i] = histograms[i].getCount();
+    return counts;
+  }
+
+
+
+  /**
+   * Returns the mean latency of each stage, in milliseconds.
+   */
+
+  @Override
+  public double [] getMeanMillis(){
+    double [] result = new double[histograms.length];
+    for (int i = 0; i < result.length; i++)
+      result[i] = histograms[i].getMean() / 1000000.0;
+    return result;
+  }
+
+
+
+  /**
+   * Returns the median latency of each stage, in milliseconds.
+   */
+
+  @Override
+  public double [] getMedianMillis(){
+    return getPercentileMillis(0.5);
+  }
+
+
+
+  /**
+   * Returns the 99th percentile latency of each stage, in milliseconds.
+   */
+
+  @Override
+  public double [] getPercentile99Millis(){
+    return getPercentileMillis(0.99);
+  }
+
+
+
+  /**
+   * Returns the specified percentile of the latency of each stage, in
+   * milliseconds.
+   */
+
+  private double [] getPercentileMillis(double fraction){
+    double [] result = new double[histograms.length];
+    for (int i = 0; i < result.length; i++)
+      result[i] = histograms[i].getPercentile(fraction) / 1000000.0;
+    return result;
+  }
+
+
+
+  /**
+   * Returns the maximum latency of each stage, in milliseconds.
+   */
+
+  @Override
+  public double [] getMaxMillis(){
+    double [] result = new double[histograms.length];
+    for (int i = 0; i < result.length; i++)
+      result[i] = histograms[i].getMax() / 1000000.0;
+    return result;
+  }
+
+
+
+  /**
+   * Clears all the measured latencies.
+   */
+
+  @Override
+  public void reset(){
+    for (int i = 0; i < histograms.length; i++)
+      histograms[i].reset();
+  }
+
+
+
+}
@@ -0,0 +1,108 @@
+/**
+ * The utillib library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The utillib library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The utillib library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with utillib library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA
+ */
+
+
+package free.util;
+
+
+/**
+ * The management interface of {@link LatencyMonitor}, through which its
+ * statistics are exposed via JMX. The statistics are returned as arrays
+ * indexed by stage, in the order of {@link #getStageNames()}.
+ */
+
+public interface LatencyMonitorMBean{
+
+
+
+  /**
+   * Returns whether latencies are being measured.
+   */
+
+  boolean isEnabled();
+
+
+
+  /**
+   * Sets whether latencies are being measured.
+   */
+
+  void setEnabled(boolean isEnabled);
+
+
+
+  /**
+   * Returns the names of the measured stages.
+   */
+
+  String [] getStageNames();
+
+
+
+  /**
+   * Returns the amount of latencies measured for each stage.
+   */
+
+  long [] getCounts();
+
+
+
+  /**
+   * Returns the mean latency of each stage, in milliseconds.
+   */
+
+  double [] getMeanMillis();
+
+
+
+  /**
+   * Returns the median latency of each stage, in milliseconds.
+   */
+
+  double [] getMedianMillis();
+
+
+
+  /**
+   * Returns the 99th percentile latency of each stage, in milliseconds.
+   */
+
+  double [] getPercentile99Millis();
+
+
+
+  /**
+   * Returns the maximum latency of each stage, in milliseconds.
+   */
+
+  double [] getMaxMillis();
+
+
+
+  /**
+   * Clears all the measured latencies.
+   */
+
+  void reset();
+
+
+
+}
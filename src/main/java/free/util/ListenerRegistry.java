@@ -0,0 +1,142 @@
+/**
+ * The utillib library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2007 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The utillib library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The utillib library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with utillib library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package free.util;
+
+import java.lang.reflect.Array;
+import java.util.EventListener;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * A storage place for listeners, indexed by listener type. The listeners of
+ * each type are kept in their own array, which is replaced (rather than
+ * modified) whenever a listener of that type is added or removed. Getting the
+ * listeners of a type, and iterating over them, thus requires no locking and
+ * takes time proportional only to the amount of listeners of that type, while
+ * adding and removing listeners is synchronized and relatively expensive. This
+ * suits listeners which are registered rarely, but notified often, possibly
+ * from several threads.
+ */
+
+public class ListenerRegistry{
+
+
+
+  /**
+   * Maps listener types to arrays of the listeners of that type, in the order
+   * they were added. Neither the map nor the arrays are ever modified once
+   * published; a modified copy replaces them instead.
+   */
+
+  private volatile Map typesToListeners = new HashMap();
+
+
+
+  /**
+   * Adds the specified listener as a listener of the specified type.
+   */
+
+  public synchronized void add(Class listenerType, EventListener listener){
+    if (listener == null)
+      return;
+    if (!listenerType.isInstance(listener))
+      throw new IllegalArgumentException("The listener is not an instance of the listener class.");
+
+    EventListener [] listeners = getListeners(listenerType);
+    EventListener [] newListeners = (EventListener [])Array.newInstance(listenerType, listeners.length + 1);
+    System.arraycopy(listeners, 0, newListeners, 0, listeners.length);
+    newListeners[listeners.length] = listener;
+
+    setListeners(listenerType, newListeners);
+  }
+
+
+
+  /**
+   * Removes the specified listener as a listener of the specified type. If it
+   * was added more than once, only the first occurrence is removed. Listeners
+   * are compared by identity, so a different but equal listener is not
+   * removed.
+   */
+
+  public synchronized void remove(Class listenerType, EventListener listener){
+    if (listener == null)
+      return;
+    if (!listenerType.isInstance(listener))
+      throw new IllegalArgumentException("The listener is not an instance of the listener class.");
+
+    EventListener [] listeners = getListeners(listenerType);
+    for (int i = 0; i < listeners.length; i++){
+      if (listeners[i] == listener){
+        EventListener [] newListeners = (EventListener [])Array.newInstance(listenerType, listeners.length - 1);
+        System.arraycopy(listeners, 0, newListeners, 0, i);
+        System.arraycopy(listeners, i + 1, newListeners, i, listeners.length - i - 1);
+
+        setListeners(listenerType, newListeners);
+        return;
+      }
+    }
+  }
+
+
+
+  /**
+   * Publishes the specified array as the listeners of the specified type.
+   */
+
+  private void setListeners(Class listenerType, EventListener [] listeners){
+    Map newTypesToListeners = new HashMap(typesToListeners);
+    newTypesToListeners.put(listenerType, listeners);
+    typesToListeners = newTypesToListeners;
+  }
+
+
+
+  /**
+   * Returns the listeners of the specified type, in the order they were added.
+   * The returned array is of the actual specified type, so it can be cast to
+   * that type once instead of casting each listener. <B>The array is shared
+   * and must not be modified.</B> It is not affected by listeners added or
+   * removed after it is returned, so it may safely be iterated over while
+   * listeners are added and removed.
+   */
+
+  public EventListener [] getListeners(Class listenerType){
+    EventListener [] listeners = (EventListener [])typesToListeners.get(listenerType);
+    return (listeners == null) ? (EventListener [])Array.newInstance(listenerType, 0) : listeners;
+  }
+
+
+
+  /**
+   * Returns the amount of listeners of the specified type.
+   */
+
+  public int getListenerCount(Class listenerType){
+    EventListener [] listeners = (EventListener [])typesToListeners.get(listenerType);
+    return (listeners == null) ? 0 : listeners.length;
+  }
+
+
+
+}
@@ -0,0 +1,287 @@
+/**
+ * The utillib library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The utillib library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The utillib library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with utillib library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package free.util;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+
+
+/**
+ * A <code>Socket</code> which, instead of communicating with a server, replays
+ * a session recorded by a {@link SessionRecorder}. The recorded data is
+ * returned from the socket's input stream, preserving the original timing
+ * between the chunks, scaled by a speed factor. Data written to the socket is
+ * discarded. To replay a session through a {@link Connection}, return a
+ * <code>ReplaySocket</code> from its
+ * {@link Connection#connectImpl(String, int)}.
+ */
+
+public class ReplaySocket extends Socket{
+
+
+
+  /**
+   * The stream the recording is read from.
+   */
+
+  private final InputStream recording;
+
+
+
+  /**
+   * The speed factor; 0 to replay as fast as possible.
+   */
+
+  private final double speed;
+
+
+
+  /**
+   * The time, in nanoseconds, when the replay started, scaled by the speed
+   * factor. Set when the first chunk is read.
+   */
+
+  private long replayStartTime;
+
+
+
+  /**
+   * The time, in nanoseconds since the beginning of the recording, of the
+   * current chunk.
+   */
+
+  private long chunkTime = 0;
+
+
+
+  /**
+   * The amount of bytes left in the current chunk.
+   */
+
+  private int chunkRemaining = 0;
+
+
+
+  /**
+   * Whether we've started replaying.
+   */
+
+  private boolean isStarted = false;
+
+
+
+  /**
+   * Whether the socket has been closed.
+   */
+
+  private boolean isClosed = false;
+
+
+
+  /**
+   * The input stream.
+   */
+
+  private final InputStream inputStream = new InputStream(){
+
+    @Override
+    public int read() throws IOException{
+      byte [] buf = new byte[1];
+      int count = read(buf, 0, 1);
+      return count < 0 ? -1 : buf[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte [] buf, int offset, int length) throws IOException{
+      return ReplaySocket.this.read(buf, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException{
+      ReplaySocket.this.close();
+    }
+
+  };
+
+
+
+  /**
+   * The output stream, which discards everything.
+   */
+
+  private final OutputStream outputStream = new OutputStream(){
+
+    @Override
+    public void write(int b){}
+
+    @Override
+    public void write(byte [] buf, int offset, int length){}
+
+  };
+
+
+
+  /**
+   * Creates a new <code>ReplaySocket</code> which replays the recording read
+   * from the specified stream at the specified speed. A speed of 1 replays the
+   * session in real time, a speed of 2 twice as fast, etc. A speed of 0
+   * replays the session as fast as possible.
+   *
+   * @throws IOException if the recording header can't be read or is invalid.
+   */
+
+  public ReplaySocket(InputStream recording, double speed) throws IOException{
+    if (speed < 0)
+      throw new IllegalArgumentException("Speed may not be negative: " + speed);
+
+    this.recording = new BufferedInputStream(recording);
+    this.speed = speed;
+
+    int magic = 0;
+    for (int i = 0; i < 4; i++){
+      int b = this.recording.read();
+      if (b < 0)
+        throw new EOFException("Truncated recording");
+      magic = (magic << 8) | b;
+    }
+    if (magic != SessionRecorder.MAGIC)
+      throw new IOException("Not a session recording");
+
+    int version = this.recording.read();
+    if (version != SessionRecorder.VERSION)
+      throw new IOException("Unsupported session recording version: " + version);
+  }
+
+
+
+  /**
+   * Reads replayed data into the specified array, blocking until the next
+   * chunk is due.
+   */
+
+  private synchronized int read(byte [] buf, int offset, int length) throws IOException{
+    if (isClosed)
+      throw new SocketException("Socket closed");
+
+    if (length == 0)
+      return 0;
+
+    if (!isStarted){
+      replayStartTime = System.nanoTime();
+      isStarted = true;
+    }
+
+    while (chunkRemaining == 0){
+      long delay = SessionRecorder.readVarInt(recording);
+      if (delay < 0) // End of recording
+        return -1;
+
+      long chunkLength = SessionRecorder.readVarInt(recording);
+      if ((chunkLength < 0) || (chunkLength > Integer.MAX_VALUE))
+        throw new IOException("Corrupt recording");
+
+      chunkTime += delay;
+      chunkRemaining = (int)chunkLength;
+
+      if (speed != 0)
+        waitUntil(replayStartTime + (long)(chunkTime / speed));
+    }
+
+    int count = recording.read(buf, offset, Math.min(length, chunkRemaining));
+    if (count < 0)
+      throw new EOFException("Truncated recording");
+
+    chunkRemaining -= count;
+    return count;
+  }
+
+
+
+  /**
+   * Waits until the specified time, in nanoseconds, or until the socket is
+   * closed.
+   */
+
+  private void waitUntil(long time) throws IOException{
+    try{
+      long remaining;
+      while (((remaining = time - System.nanoTime()) > 0) && !isClosed)
+        wait(remaining / 1000000, (int)(remaining % 1000000));
+    } catch (InterruptedException e){
+        throw new InterruptedIOException();
+      }
+
+    if (isClosed)
+      throw new SocketException("Socket closed");
+  }
+
+
+
+  /**
+   * Returns the stream from which the replayed data is read.
+   */
+
+  @Override
+  public InputStream getInputStream() throws IOException{
+    return inputStream;
+  }
+
+
+
+  /**
+   * Returns a stream which discards everything written to it.
+   */
+
+  @Override
+  public OutputStream getOutputStream() throws IOException{
+    return outputStream;
+  }
+
+
+
+  /**
+   * Closes the socket and the recording.
+   */
+
+  @Override
+  public void close() throws IOException{
+    synchronized(this){
+      if (isClosed)
+        return;
+
+      isClosed = true;
+      notifyAll();
+    }
+
+    recording.close();
+    super.close();
+  }
+
+
+
+}
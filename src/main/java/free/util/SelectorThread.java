@@ -0,0 +1,181 @@
+/**
+ * The utillib library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The utillib library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The utillib library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with utillib library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package free.util;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Vector;
+
+
+/**
+ * A thread which reads data for any number of {@link Connection}s from their
+ * non-blocking <code>SocketChannel</code>s, using a single
+ * <code>Selector</code>. A connection is served by a
+ * <code>SelectorThread</code> if one was specified via
+ * {@link Connection#setSelectorThread(SelectorThread)} before it connected.
+ * <P>Since all the connections served by a <code>SelectorThread</code> share
+ * it, the framing done by them (in
+ * {@link Connection#readMessage(java.nio.ByteBuffer)}) must never block.
+ * <P>Note that connections whose data must pass through a <code>Socket</code>
+ * subclass (such as the timesealing and timestamping sockets) cannot be served
+ * by a <code>SelectorThread</code>, and Jin uses it only for testing.
+ */
+
+public class SelectorThread extends Thread{
+
+
+
+  /**
+   * The shared instance, lazily created.
+   */
+
+  private static SelectorThread sharedInstance = null;
+
+
+
+  /**
+   * The selector.
+   */
+
+  private final Selector selector;
+
+
+
+  /**
+   * Channels waiting to be registered with the selector. Holds
+   * <code>Pair</code>s of <code>SocketChannel</code>s and their
+   * <code>Connection</code>s. Registration must be done in the selector
+   * thread, since <code>SelectableChannel.register</code> blocks while a
+   * select is in progress.
+   */
+
+  private final Vector pendingRegistrations = new Vector();
+
+
+
+  /**
+   * Creates a new <code>SelectorThread</code> with the specified name. The
+   * thread is a daemon thread and must be started by the caller.
+   *
+   * @throws IOException if the selector cannot be opened.
+   */
+
+  public SelectorThread(String name) throws IOException{
+    super(name);
+
+    this.selector = Selector.open();
+
+    setDaemon(true);
+    setPriority(Thread.MAX_PRIORITY);
+  }
+
+
+
+  /**
+   * Returns the shared, already started, <code>SelectorThread</code>, creating
+   * it if necessary.
+   *
+   * @throws IOException if the selector cannot be opened.
+   */
+
+  public static synchronized SelectorThread getSharedInstance() throws IOException{
+    if (sharedInstance == null){
+      sharedInstance = new SelectorThread("SelectorThread");
+      sharedInstance.start();
+    }
+
+    return sharedInstance;
+  }
+
+
+
+  /**
+   * Registers the specified non-blocking channel to be read on behalf of the
+   * specified connection. The registration happens asynchronously, in the
+   * selector thread.
+   */
+
+  void register(SocketChannel channel, Connection connection){
+    pendingRegistrations.addElement(new Pair(channel, connection));
+    selector.wakeup();
+  }
+
+
+
+  /**
+   * Registers all the pending channels with the selector.
+   */
+
+  private void registerPending(){
+    while (!pendingRegistrations.isEmpty()){
+      Pair registration = (Pair)pendingRegistrations.remove(0);
+      SocketChannel channel = (SocketChannel)registration.getFirst();
+      Connection connection = (Connection)registration.getSecond();
+
+      try{
+        channel.register(selector, SelectionKey.OP_READ, connection);
+      } catch (ClosedChannelException e){
+          connection.connectionInterrupted(e); // Closed before we got to it
+        }
+    }
+  }
+
+
+
+  /**
+   * The select loop.
+   */
+
+  @Override
+  public void run(){
+    while (true){
+      try{
+        selector.select();
+      } catch (IOException e){
+          e.printStackTrace();
+          return;
+        }
+
+      registerPending();
+
+      Iterator keys = selector.selectedKeys().iterator();
+      while (keys.hasNext()){
+        SelectionKey key = (SelectionKey)keys.next();
+        keys.remove();
+
+        if (!key.isValid() || !key.isReadable())
+          continue;
+
+        Connection connection = (Connection)key.attachment();
+        if (!connection.readChannel((SocketChannel)key.channel()))
+          key.cancel();
+      }
+    }
+  }
+
+
+
+}
@@ -0,0 +1,238 @@
+/**
+ * The utillib library.
+ * More information is available at http://www.jinchess.com/.
+ * Copyright (C) 2002 Alexander Maryanovsky.
+ * All rights reserved.
+ *
+ * The utillib library is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * The utillib library is distributed in the hope that it will
+ * be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with utillib library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package free.util;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+
+/**
+ * Records the raw data received by a {@link Connection}, along with the time
+ * each chunk of it was received, so that the session can later be replayed via
+ * a {@link ReplaySocket}. A recorder is attached to a connection via
+ * {@link Connection#setSessionRecorder(SessionRecorder)}.
+ * <P>The recording consists of a 4 byte magic number and a 1 byte format
+ * version, followed by the chunks. Each chunk is the amount of nanoseconds
+ * since the previous chunk (or since the recording started, for the first
+ * chunk) and the length of the chunk, both encoded as unsigned variable length
+ * integers (7 bits per byte, least significant first), followed by the data.
+ */
+
+public class SessionRecorder{
+
+
+
+  /**
+   * The magic number at the beginning of recordings ("JREC").
+   */
+
+  static final int MAGIC = 0x4A524543;
+
+
+
+  /**
+   * The format version.
+   */
+
+  static final int VERSION = 1;
+
+
+
+  /**
+   * The stream we write the recording to. <code>null</code> once closed.
+   */
+
+  private OutputStream out;
+
+
+
+  /**
+   * The time, in nanoseconds, when the last chunk was recorded.
+   */
+
+  private long lastChunkTime;
+
+
+
+  /**
+   * Creates a new <code>SessionRecorder</code> which writes the recording to
+   * the specified stream.
+   *
+   * @throws IOException if writing the recording header fails.
+   */
+
+  public SessionRecorder(OutputStream out) throws IOException{
+    this.out = new BufferedOutputStream(out);
+
+    this.out.write(MAGIC >>> 24);
+    this.out.write(MAGIC >>> 16);
+    this.out.write(MAGIC >>> 8);
+    this.out.write(MAGIC);
+    this.out.write(VERSION);
+
+    this.lastChunkTime = System.nanoTime();
+  }
+
+
+
+  /**
+   * Creates a new <code>SessionRecorder</code> which records into a new file,
+   * named after the specified one with the current date and time (and a
+   * counter, if such a file already exists) inserted before its extension.
+   * For example, recording into "session.rec" creates a file named
+   * "session-20071017-154501.rec". This allows recording several sessions
+   * without each one overwriting the previous.
+   *
+   * @throws IOException if the file can't be created or writing the
+   * recording header fails.
+   */
+
+  public static SessionRecorder createForFile(String filename) throws IOException{
+    int extensionIndex = filename.lastIndexOf('.');
+    if (extensionIndex <= filename.lastIndexOf(File.separatorChar))
+      extensionIndex = filename.length();
+    String base = filename.substring(0, extensionIndex) + "-" +
+      new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+    String extension = filename.substring(extensionIndex);
+
+    File file = new File(base + extension);
+    for (int i = 2; !file.createNewFile(); i++)
+      file = new File(base + "-" + i + extension);
+
+    OutputStream out = new FileOutputStream(file);
+    try{
+      return new SessionRecorder(out);
+    } catch (IOException e){
+        out.close();
+        throw e;
+      }
+  }
+
+
+
+  /**
+   * Records the specified chunk of received data. Failing to write the
+   * recording stops it, but does not affect the connection.
+   */
+
+  public synchronized void record(byte [] buf, int offset, int length){
+    if ((out == null) || (length <= 0))
+      return;
+
+    try{
+      long time = System.nanoTime();
+      writeVarInt(out, time - lastChunkTime);
+      writeVarInt(out, length);
+      out.write(buf, offset, length);
+      lastChunkTime = time;
+    } catch (IOException e){
+        e.printStackTrace();
+        close();
+      }
+  }
+
+
+
+  /**
+   * Flushes the recording.
+   */
+
+  public synchronized void flush(){
+    if (out == null)
+      return;
+
+    try{
+      out.flush();
+    } catch (IOException e){
+        e.printStackTrace();
+        close();
+      }
+  }
+
+
+
+  /**
+   * Flushes and closes the recording. Any data recorded afterwards is ignored.
+   */
+
+  public synchronized void close(){
+    if (out == null)
+      return;
+
+    try{
+      out.close();
+    } catch (IOException e){
+        e.printStackTrace();
+      }
+    out = null;
+  }
+
+
+
+  /**
+   * Writes the specified non-negative value as a variable length integer.
+   */
+
+  private static void writeVarInt(OutputStream out, long value) throws IOException{
+    while ((value & ~0x7fL) != 0){
+      out.write((int)(value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.write((int)value);
+  }
+
+
+
+  /**
+   * Reads a variable length integer written by
+   * {@link #writeVarInt(OutputStream, long)}. Returns -1 if the end of the
+   * stream is reached before the first byte of the value.
+   */
+
+  static long readVarInt(InputStream in) throws IOException{
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7){
+      int b = in.read();
+      if (b < 0){
+        if (shift == 0)
+          return -1;
+        throw new EOFException("Truncated recording");
+      }
+
+      value |= (long)(b & 0x7f) << shift;
+      if ((b & 0x80) == 0)
+        return value;
+    }
+
+    throw new IOException("Corrupt recording");
+  }
+
+
+
+}